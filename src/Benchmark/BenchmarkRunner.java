@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+
+
+/**
+ * A small microbenchmark harness in the style of JMH. Every benchmark runs for
+ * a number of timed warmup iterations followed by the measurement iterations
+ * and the mean throughput (with the standard deviation) is reported.
+ * 
+ * Usage: BenchmarkRunner [-wi warmups] [-i iterations] [-t ms per iteration] [regex]
+ * 
+ * Always run with a fixed heap (e.g. -Xms2g -Xmx2g) and nothing else running
+ * on the machine, the numbers are only comparable between runs on the same
+ * host and JVM.
+ */
+public final class BenchmarkRunner {
+    
+    /* ----------------------------------------------------- *
+     * Default settings                                      *
+     * ----------------------------------------------------- */
+    private static final int DEFAULT_WARMUP_ITERATIONS = 5;
+    private static final int DEFAULT_MEASUREMENT_ITERATIONS = 5;
+    private static final int DEFAULT_ITERATION_TIME_IN_MS = 1000;
+    
+    /* ----------------------------------------------------- *
+     * Registered benchmarks                                 *
+     * ----------------------------------------------------- */
+    private final LinkedHashMap<String, Benchmark> m_benchmarks;
+    
+    /* ----------------------------------------------------- *
+     * Settings                                              *
+     * ----------------------------------------------------- */
+    private int m_warmupIterations;
+    private int m_measurementIterations;
+    private long m_iterationTimeInNS;
+    
+    /* ----------------------------------------------------- *
+     * Sink for the benchmark results                        *
+     * ----------------------------------------------------- */
+    private int m_sink;
+    
+    
+    
+    public BenchmarkRunner() {
+        
+        m_benchmarks = new LinkedHashMap<>();
+        
+        m_warmupIterations = DEFAULT_WARMUP_ITERATIONS;
+        m_measurementIterations = DEFAULT_MEASUREMENT_ITERATIONS;
+        m_iterationTimeInNS = DEFAULT_ITERATION_TIME_IN_MS * 1000000l;
+    }
+    
+    
+    
+    public void add(String name, Benchmark benchmark) {
+        
+        if(m_benchmarks.put(name, benchmark) != null)
+            throw new IllegalArgumentException(String.format("The benchmark %s is already registered", name));
+    }
+    
+    public void run(Pattern filter) {
+        
+        System.out.printf("%-40s %5s %16s %14s  %s%n", "Benchmark", "Cnt", "Score", "Error", "Units");
+        
+        for(Map.Entry<String, Benchmark> entry : m_benchmarks.entrySet()) {
+            
+            if(!filter.matcher(entry.getKey()).find())
+                continue;
+            
+            Benchmark benchmark = entry.getValue();
+            
+            for(int i = 0; i < m_warmupIterations; i++)
+                runIteration(benchmark);
+            
+            ArrayList<Double> scores = new ArrayList<>();
+            for(int i = 0; i < m_measurementIterations; i++)
+                scores.add(runIteration(benchmark));
+            
+            double mean = scores.stream().mapToDouble(s -> s).average().orElse(0.0);
+            double variance = scores.stream().mapToDouble(s -> (s - mean) * (s - mean)).sum() / Math.max(1, scores.size() - 1);
+            
+            System.out.printf("%-40s %5d %16.3f %14s  ops/s%n", entry.getKey(), scores.size(), mean, String.format("+- %.3f", Math.sqrt(variance)));
+        }
+        
+        // Keeps the sink alive
+        if(m_sink == 0x7fffffff)
+            System.out.println();
+    }
+    
+    private double runIteration(Benchmark benchmark) {
+        
+        long ops = 0l;
+        long elapsed = 0l;
+        long batch = 1l;
+        
+        // The batch size grows until a batch takes about a millisecond, so
+        // that reading the clock doesn't distort fast benchmarks
+        do {
+            
+            long start = System.nanoTime();
+            
+            int sink = 0;
+            for(long i = 0; i < batch; i++)
+                sink += benchmark.run();
+            m_sink += sink;
+            
+            long duration = System.nanoTime() - start;
+            
+            ops += batch;
+            elapsed += duration;
+            
+            if(duration < 1000000l && batch < (1l << 30))
+                batch <<= 1;
+        }
+        while(elapsed < m_iterationTimeInNS);
+        
+        return ops * 1.0e9 / elapsed;
+    }
+    
+    
+    
+    public static void main(String[] args) {
+        
+        BenchmarkRunner runner = new BenchmarkRunner();
+        String filter = "";
+        
+        for(int i = 0; i < args.length; i++) {
+            
+            switch(args[i]) {
+                
+                case "-wi": runner.m_warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i": runner.m_measurementIterations = Integer.parseInt(args[++i]); break;
+                case "-t": runner.m_iterationTimeInNS = Long.parseLong(args[++i]) * 1000000l; break;
+                
+                default:
+                    filter = args[i];
+                    break;
+            }
+        }
+        
+        CPUBenchmarks.register(runner);
+        MemoryBenchmarks.register(runner);
+        VGABenchmarks.register(runner);
+        
+        runner.run(Pattern.compile(filter));
+    }
+}
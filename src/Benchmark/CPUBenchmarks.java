@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Benchmark;
+
+import Hardware.CPU.Intel80386.Intel80386;
+
+
+
+/**
+ * Decoding and execution of codeblocks. Every snippet ends with a "jmp $", so
+ * that it gets decoded into exactly one codeblock which can be run over and
+ * over again.
+ */
+public final class CPUBenchmarks {
+    
+    /* ----------------------------------------------------- *
+     * Integer arithmetic, logic and memory operands         *
+     * ----------------------------------------------------- */
+    private static final int[] CODE_ALU = {
+        
+        0xb8, 0x34, 0x12,   // mov ax, 1234h
+        0xbb, 0x78, 0x56,   // mov bx, 5678h
+        0xb9, 0x10, 0x00,   // mov cx, 0010h
+        0x01, 0xd8,         // add ax, bx
+        0x29, 0xc8,         // sub ax, cx
+        0x31, 0xd9,         // xor cx, bx
+        0x21, 0xc3,         // and bx, ax
+        0x09, 0xcb,         // or bx, cx
+        0xd1, 0xe0,         // shl ax, 1
+        0xd1, 0xeb,         // shr bx, 1
+        0x40,               // inc ax
+        0x4b,               // dec bx
+        0xf7, 0xe3,         // mul bx
+        0x89, 0x07,         // mov [bx], ax
+        0x8b, 0x17,         // mov dx, [bx]
+        0x03, 0x47, 0x02,   // add ax, [bx+2]
+        0x39, 0xd8,         // cmp ax, bx
+        0xeb, 0xfe          // jmp $
+    };
+    
+    /* ----------------------------------------------------- *
+     * String instructions                                   *
+     * ----------------------------------------------------- */
+    private static final int[] CODE_STRING = {
+        
+        0xfc,               // cld
+        0x31, 0xf6,         // xor si, si
+        0xbf, 0x00, 0x80,   // mov di, 8000h
+        0xb9, 0x00, 0x01,   // mov cx, 0100h
+        0xf3, 0xa5,         // rep movsw
+        0x31, 0xff,         // xor di, di
+        0xb9, 0x00, 0x01,   // mov cx, 0100h
+        0xf3, 0xab,         // rep stosw
+        0x31, 0xf6,         // xor si, si
+        0x31, 0xff,         // xor di, di
+        0xb9, 0x00, 0x01,   // mov cx, 0100h
+        0xf3, 0xa7,         // repe cmpsw
+        0xeb, 0xfe          // jmp $
+    };
+    
+    /* ----------------------------------------------------- *
+     * FPU instructions                                      *
+     * ----------------------------------------------------- */
+    private static final int[] CODE_FPU = {
+        
+        0xbb, 0x00, 0x01,   // mov bx, 0100h
+        0xdb, 0xe3,         // fninit
+        0xd9, 0xe8,         // fld1
+        0xd9, 0xeb,         // fldpi
+        0xde, 0xc1,         // faddp st(1), st
+        0xd9, 0xfa,         // fsqrt
+        0xdd, 0x1f,         // fstp qword [bx]
+        0xdd, 0x07,         // fld qword [bx]
+        0xd9, 0xe8,         // fld1
+        0xde, 0xf9,         // fdivp st(1), st
+        0xdd, 0x1f,         // fstp qword [bx]
+        0xeb, 0xfe          // jmp $
+    };
+    
+    
+    
+    public static void register(BenchmarkRunner runner) {
+        
+        runner.add("cpu.decode.alu", decode(CODE_ALU, false));
+        runner.add("cpu.decode.string", decode(CODE_STRING, false));
+        runner.add("cpu.decode.fpu", decode(CODE_FPU, true));
+        
+        runner.add("cpu.execute.alu", execute(CODE_ALU, false));
+        runner.add("cpu.execute.string", execute(CODE_STRING, false));
+        runner.add("cpu.execute.fpu", execute(CODE_FPU, true));
+    }
+    
+    
+    
+    private static Benchmark decode(int[] code, boolean hasFPU) {
+        
+        MinimalSystem system = new MinimalSystem(hasFPU);
+        system.loadCode(code);
+        
+        return () -> system.decode().hashCode();
+    }
+    
+    private static Benchmark execute(int[] code, boolean hasFPU) {
+        
+        MinimalSystem system = new MinimalSystem(hasFPU);
+        system.loadCode(code);
+        
+        Intel80386 cpu = system.getCPU();
+        
+        return () -> {
+            
+            system.run();
+            return cpu.EAX.getValue();
+        };
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Benchmark;
+
+import Hardware.CPU.Intel80386.MMU.MMU;
+import MemoryMap.MemoryMap;
+
+
+
+/**
+ * Address translation of the mmu and the dispatching of memory accesses
+ * through the memory map.
+ */
+public final class MemoryBenchmarks {
+    
+    /* ----------------------------------------------------- *
+     * Location of the page directory and page table         *
+     * ----------------------------------------------------- */
+    private static final int PAGE_DIRECTORY = 0x200000;
+    private static final int PAGE_TABLE = 0x201000;
+    
+    /* ----------------------------------------------------- *
+     * Number of accesses per operation                      *
+     * ----------------------------------------------------- */
+    private static final int ACCESSES = 1024;
+    
+    
+    
+    public static void register(BenchmarkRunner runner) {
+        
+        runner.add("mmu.translate.unpaged", translate(false, 0x00000000));
+        runner.add("mmu.translate.tlbHit", translate(true, 0x00000000));
+        runner.add("mmu.translate.tlbMiss", translate(true, 0x00400000));
+        
+        runner.add("memoryMap.read32", memoryMapRead());
+        runner.add("memoryMap.write32", memoryMapWrite());
+    }
+    
+    
+    
+    /**
+     * Translates 1024 consecutive dwords. If an alias is given, then every
+     * second access goes to the aliased address which maps to the same tlb
+     * entry and therefore forces a page walk on every access.
+     */
+    private static Benchmark translate(boolean isPagingEnabled, int alias) {
+        
+        MinimalSystem system = new MinimalSystem(false);
+        MemoryMap memMap = system.getMemoryMap();
+        MMU mmu = system.getCPU().getMMU();
+        
+        if(isPagingEnabled) {
+            
+            // Identity map the first 4MB and let the second 4MB alias them
+            memMap.writeMEM32(PAGE_DIRECTORY, PAGE_TABLE | 0x07);
+            memMap.writeMEM32(PAGE_DIRECTORY + 4, PAGE_TABLE | 0x07);
+            for(int i = 0; i < 1024; i++)
+                memMap.writeMEM32(PAGE_TABLE + (i << 2), (i << 12) | 0x07);
+            
+            mmu.setPageDirectoryBaseRegister(PAGE_DIRECTORY);
+            mmu.setPagingEnabled(true);
+        }
+        
+        return () -> {
+            
+            int res = 0;
+            for(int i = 0; i < ACCESSES; i++) {
+                
+                int address = 0x1000 + (i << 2);
+                if((i & 1) != 0)
+                    address += alias;
+                
+                res += mmu.getPhysicalAddress(address, false, MMU.SYSTEM_ACCESS);
+            }
+            return res;
+        };
+    }
+    
+    private static Benchmark memoryMapRead() {
+        
+        MemoryMap memMap = new MinimalSystem(false).getMemoryMap();
+        
+        return () -> {
+            
+            int res = 0;
+            for(int i = 0; i < ACCESSES; i++)
+                res += memMap.readMEM32(0x10000 + (i << 2));
+            
+            return res;
+        };
+    }
+    
+    private static Benchmark memoryMapWrite() {
+        
+        MemoryMap memMap = new MinimalSystem(false).getMemoryMap();
+        
+        return () -> {
+            
+            for(int i = 0; i < ACCESSES; i++)
+                memMap.writeMEM32(0x10000 + (i << 2), i);
+            
+            return ACCESSES;
+        };
+    }
+}
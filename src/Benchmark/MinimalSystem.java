@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Benchmark;
+
+import Hardware.CPU.Intel80386.Codeblock.CodeBlock;
+import Hardware.CPU.Intel80386.Decoder.Decoder;
+import Hardware.CPU.Intel80386.Intel80386;
+import Hardware.CPU.Intel80386.Intel80386.CPUType;
+import Hardware.InterruptController.PICs;
+import Hardware.SystemRAM.ATSystemRAM;
+import IOMap.IOMap;
+import MemoryMap.MemoryMap;
+import Scheduler.Scheduler;
+
+
+
+/**
+ * A cpu with system ram and nothing else. It is used to run small code
+ * snippets in real mode without having to boot a whole system (and therefore
+ * without needing any rom images).
+ */
+public final class MinimalSystem {
+    
+    /* ----------------------------------------------------- *
+     * Location of the code and data                         *
+     * ----------------------------------------------------- */
+    public static final int CODE_SEGMENT = 0x1000;
+    public static final int DATA_SEGMENT = 0x2000;
+    
+    /* ----------------------------------------------------- *
+     * Components                                            *
+     * ----------------------------------------------------- */
+    private final IOMap m_ioMap;
+    private final MemoryMap m_memMap;
+    private final Scheduler m_scheduler;
+    private final ATSystemRAM m_ram;
+    private final PICs m_pics;
+    private final Intel80386 m_cpu;
+    
+    
+    
+    public MinimalSystem(boolean hasFPU) {
+        
+        m_ioMap = new IOMap();
+        m_memMap = new MemoryMap(32);
+        m_scheduler = new Scheduler();
+        m_scheduler.setSynchronizationEnabled(false);
+        m_scheduler.setBaseFrequency(33.0e6f, false);
+        m_scheduler.reset();
+        
+        m_ram = new ATSystemRAM();
+        m_ram.reset();
+        m_memMap.addDevice(m_ram);
+        m_memMap.reset();
+        
+        m_pics = new PICs(false);
+        m_pics.reset();
+        
+        m_cpu = new Intel80386(CPUType.i486, hasFPU, m_ioMap, m_memMap, m_scheduler);
+        m_cpu.wireWith(m_pics);
+        m_cpu.reset();
+        m_cpu.CS.loadRealMode(CODE_SEGMENT);
+        m_cpu.DS.loadRealMode(DATA_SEGMENT);
+        m_cpu.ES.loadRealMode(DATA_SEGMENT);
+        m_cpu.SS.loadRealMode(DATA_SEGMENT);
+        m_cpu.ESP.setValue(0xfffe);
+    }
+    
+    
+    
+    public void loadCode(int... code) {
+        
+        int address = CODE_SEGMENT << 4;
+        for(int i = 0; i < code.length; i++)
+            m_memMap.writeMEM8(address + i, code[i]);
+        
+        m_cpu.EIP.setValue(0);
+    }
+    
+    /**
+     * Runs the code from its beginning. The codeblock gets decoded only once
+     * and is taken from the codeblock cache afterwards.
+     */
+    public void run() {
+        
+        m_cpu.EIP.setValue(0);
+        m_cpu.run(1);
+    }
+    
+    public CodeBlock decode() {
+        
+        m_cpu.EIP.setValue(0);
+        
+        return new Decoder(m_cpu).decodeCodeBlock();
+    }
+    
+    
+    
+    public Intel80386 getCPU() {
+        
+        return m_cpu;
+    }
+    
+    public MemoryMap getMemoryMap() {
+        
+        return m_memMap;
+    }
+    
+    public IOMap getIOMap() {
+        
+        return m_ioMap;
+    }
+}
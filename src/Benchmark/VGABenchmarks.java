@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Benchmark;
+
+import Hardware.Video.GraphicsCardListener;
+import Hardware.Video.VGA.TsengET4000.TsengET4000;
+import Hardware.Video.VGA.VGAAdapter;
+import Hardware.Video.VGA.VGARam;
+import Scheduler.Scheduler;
+
+
+
+/**
+ * Rendering of whole frames in the standard video modes and the different
+ * write modes of the video ram.
+ */
+public final class VGABenchmarks {
+    
+    /* ----------------------------------------------------- *
+     * Register sets of the standard video modes             *
+     * (misc, sequencer, crtc, gdc and atc)                  *
+     * ----------------------------------------------------- */
+    private static final class VideoMode {
+        
+        final int misc;
+        final int[] seq, crtc, gdc, atc;
+        
+        VideoMode(int misc, int[] seq, int[] crtc, int[] gdc, int[] atc) {
+            
+            this.misc = misc;
+            this.seq = seq;
+            this.crtc = crtc;
+            this.gdc = gdc;
+            this.atc = atc;
+        }
+    }
+    
+    private static final VideoMode MODE_01H = new VideoMode(0x67,
+    
+        new int[] { 0x03, 0x08, 0x03, 0x00, 0x02 },
+        new int[] { 0x2d, 0x27, 0x28, 0x90, 0x2b, 0xa0, 0xbf, 0x1f, 0x00, 0x4f, 0x0d, 0x0e, 0x00, 0x00, 0x00, 0x00, 0x9c, 0x8e, 0x8f, 0x14, 0x1f, 0x96, 0xb9, 0xa3, 0xff },
+        new int[] { 0x00, 0x00, 0x00, 0x00, 0x00, 0x10, 0x0e, 0x00, 0xff },
+        new int[] { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x14, 0x07, 0x38, 0x39, 0x3a, 0x3b, 0x3c, 0x3d, 0x3e, 0x3f, 0x0c, 0x00, 0x0f, 0x08, 0x00 }
+    );
+    
+    private static final VideoMode MODE_03H = new VideoMode(0x67,
+    
+        new int[] { 0x03, 0x00, 0x03, 0x00, 0x02 },
+        new int[] { 0x5f, 0x4f, 0x50, 0x82, 0x55, 0x81, 0xbf, 0x1f, 0x00, 0x4f, 0x0d, 0x0e, 0x00, 0x00, 0x00, 0x00, 0x9c, 0x8e, 0x8f, 0x28, 0x1f, 0x96, 0xb9, 0xa3, 0xff },
+        new int[] { 0x00, 0x00, 0x00, 0x00, 0x00, 0x10, 0x0e, 0x00, 0xff },
+        new int[] { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x14, 0x07, 0x38, 0x39, 0x3a, 0x3b, 0x3c, 0x3d, 0x3e, 0x3f, 0x0c, 0x00, 0x0f, 0x08, 0x00 }
+    );
+    
+    private static final VideoMode MODE_04H = new VideoMode(0x63,
+    
+        new int[] { 0x03, 0x09, 0x03, 0x00, 0x02 },
+        new int[] { 0x2d, 0x27, 0x28, 0x90, 0x2b, 0x80, 0xbf, 0x1f, 0x00, 0xc1, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x9c, 0x8e, 0x8f, 0x14, 0x00, 0x96, 0xb9, 0xa2, 0xff },
+        new int[] { 0x00, 0x00, 0x00, 0x00, 0x00, 0x30, 0x0f, 0x00, 0xff },
+        new int[] { 0x00, 0x13, 0x15, 0x17, 0x02, 0x04, 0x06, 0x07, 0x10, 0x11, 0x12, 0x13, 0x14, 0x15, 0x16, 0x17, 0x01, 0x00, 0x03, 0x00, 0x00 }
+    );
+    
+    private static final VideoMode MODE_0DH = new VideoMode(0x63,
+    
+        new int[] { 0x03, 0x09, 0x0f, 0x00, 0x06 },
+        new int[] { 0x2d, 0x27, 0x28, 0x90, 0x2b, 0x80, 0xbf, 0x1f, 0x00, 0xc0, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x9c, 0x8e, 0x8f, 0x14, 0x00, 0x96, 0xb9, 0xe3, 0xff },
+        new int[] { 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x05, 0x0f, 0xff },
+        new int[] { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x10, 0x11, 0x12, 0x13, 0x14, 0x15, 0x16, 0x17, 0x01, 0x00, 0x0f, 0x00, 0x00 }
+    );
+    
+    private static final VideoMode MODE_12H = new VideoMode(0xe3,
+    
+        new int[] { 0x03, 0x01, 0x0f, 0x00, 0x06 },
+        new int[] { 0x5f, 0x4f, 0x50, 0x82, 0x54, 0x80, 0x0b, 0x3e, 0x00, 0x40, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0xea, 0x8c, 0xdf, 0x28, 0x00, 0xe7, 0x04, 0xe3, 0xff },
+        new int[] { 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x05, 0x0f, 0xff },
+        new int[] { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x14, 0x07, 0x38, 0x39, 0x3a, 0x3b, 0x3c, 0x3d, 0x3e, 0x3f, 0x01, 0x00, 0x0f, 0x00, 0x00 }
+    );
+    
+    private static final VideoMode MODE_13H = new VideoMode(0x63,
+    
+        new int[] { 0x03, 0x01, 0x0f, 0x00, 0x0e },
+        new int[] { 0x5f, 0x4f, 0x50, 0x82, 0x54, 0x80, 0xbf, 0x1f, 0x00, 0x41, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x9c, 0x0e, 0x8f, 0x28, 0x40, 0x96, 0xb9, 0xa3, 0xff },
+        new int[] { 0x00, 0x00, 0x00, 0x00, 0x00, 0x40, 0x05, 0x0f, 0xff },
+        new int[] { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0a, 0x0b, 0x0c, 0x0d, 0x0e, 0x0f, 0x41, 0x00, 0x0f, 0x00, 0x00 }
+    );
+    
+    /* ----------------------------------------------------- *
+     * Number of vram accesses per operation                 *
+     * ----------------------------------------------------- */
+    private static final int ACCESSES = 1024;
+    
+    
+    
+    public static void register(BenchmarkRunner runner) {
+        
+        runner.add("vga.frame.text40", frame(MODE_01H, false, false));
+        runner.add("vga.frame.text80", frame(MODE_03H, false, false));
+        runner.add("vga.frame.cga320x200", frame(MODE_04H, false, false));
+        runner.add("vga.frame.ega320x200", frame(MODE_0DH, false, false));
+        runner.add("vga.frame.vga640x480", frame(MODE_12H, false, false));
+        runner.add("vga.frame.vga320x200x256", frame(MODE_13H, false, false));
+        runner.add("vga.frame.svga8bpp", frame(MODE_13H, true, false));
+        runner.add("vga.frame.et4000HiColor", frame(MODE_13H, true, true));
+        
+        for(int mode = 0; mode < 4; mode++)
+            runner.add("vga.vram.writeMode" + mode, vramWrite(mode));
+        runner.add("vga.vram.readMode0", vramRead());
+    }
+    
+    
+    
+    /**
+     * Renders one whole frame per operation.
+     */
+    private static Benchmark frame(VideoMode mode, boolean isFullPELClock, boolean isHiColor) {
+        
+        int[] numFrames = new int[1];
+        VGAAdapter vga = new TsengET4000(new GraphicsCardListener() {
+            
+            @Override
+            public void onInit(int[] frameData, int width, int height) {
+            }
+            
+            @Override
+            public void onRedraw() {
+                
+                numFrames[0]++;
+            }
+        });
+        vga.reset();
+        vga.setBaseFrequency(33.0e6f);
+        
+        setVideoMode(vga, mode);
+        if(isFullPELClock) {
+            
+            // Select the mode control register but keep the palette enabled
+            writeATC(vga, 0x30, mode.atc[0x10] & ~0x40);
+        }
+        if(isHiColor) {
+            
+            // Unlock the HiColor DAC and select 15bpp
+            for(int i = 0; i < 4; i++)
+                vga.readIO8(0x3c6);
+            vga.writeIO8(0x3c6, 0xa0);
+        }
+        
+        int cycles = Scheduler.toFixedPoint(1024);
+        return () -> {
+            
+            int frame = numFrames[0];
+            while(frame == numFrames[0])
+                vga.updateClock(cycles);
+            
+            return frame;
+        };
+    }
+    
+    private static Benchmark vramWrite(int writeMode) {
+        
+        VGARam vram = createPlanarVRAM();
+        vram.setWriteMode(writeMode);
+        vram.setALUOperation(writeMode == 0 ? 0 : 3);
+        
+        return () -> {
+            
+            for(int i = 0; i < ACCESSES; i++)
+                vram.writeMEM8(0xa0000 + i, i & 0xff);
+            
+            return ACCESSES;
+        };
+    }
+    
+    private static Benchmark vramRead() {
+        
+        VGARam vram = createPlanarVRAM();
+        vram.setReadMode(0);
+        
+        return () -> {
+            
+            int res = 0;
+            for(int i = 0; i < ACCESSES; i++)
+                res += vram.readMEM8(0xa0000 + i);
+            
+            return res;
+        };
+    }
+    
+    
+    
+    private static VGARam createPlanarVRAM() {
+        
+        VGARam vram = new VGARam(256 * 1024);
+        vram.reset();
+        vram.setMemoryMappingMode(1);
+        vram.setChain4(false);
+        vram.setOddEvenRead(false);
+        vram.setOddEvenWrite(false);
+        vram.setWritePlaneMask(0x0f);
+        vram.setALUBitMask(0xff);
+        
+        return vram;
+    }
+    
+    private static void setVideoMode(VGAAdapter vga, VideoMode mode) {
+        
+        vga.writeIO8(0x3c2, mode.misc);
+        
+        for(int i = 0; i < mode.seq.length; i++) {
+            
+            vga.writeIO8(0x3c4, i);
+            vga.writeIO8(0x3c5, mode.seq[i]);
+        }
+        
+        // Unlock crtc registers 0-7
+        vga.writeIO8(0x3d4, 0x11);
+        vga.writeIO8(0x3d5, 0x00);
+        for(int i = 0; i < mode.crtc.length; i++) {
+            
+            vga.writeIO8(0x3d4, i);
+            vga.writeIO8(0x3d5, mode.crtc[i]);
+        }
+        
+        for(int i = 0; i < mode.gdc.length; i++) {
+            
+            vga.writeIO8(0x3ce, i);
+            vga.writeIO8(0x3cf, mode.gdc[i]);
+        }
+        
+        for(int i = 0; i < mode.atc.length; i++)
+            writeATC(vga, i, mode.atc[i]);
+        
+        // Enable the palette again, which also enables the screen
+        vga.readIO8(0x3da);
+        vga.writeIO8(0x3c0, 0x20);
+    }
+    
+    private static void writeATC(VGAAdapter vga, int index, int data) {
+        
+        vga.readIO8(0x3da);
+        vga.writeIO8(0x3c0, index);
+        vga.writeIO8(0x3c0, data);
+    }
+}
@@ -21,6 +21,8 @@ import Hardware.HardwareComponent;
 import Hardware.InterruptController.PICs;
 import IOMap.IOReadable;
 import IOMap.IOWritable;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import Scheduler.Schedulable;
 import Scheduler.Scheduler;
 import Utility.FileResource;
@@ -179,6 +181,44 @@ public final class CMOS implements HardwareComponent,
         
         updateTimings();
     }
+    
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInts(m_nvRam);
+        writer.writeInt(m_address);
+        writer.writeInt(m_regA);
+        writer.writeInt(m_regB);
+        writer.writeInt(m_regC);
+        writer.writeInt(m_regD);
+        writer.writeInt(m_alarmSeconds);
+        writer.writeInt(m_alarmMinutes);
+        writer.writeInt(m_alarmHours);
+        writer.writeLong(m_calendarTime);
+        writer.writeInt(m_periodicINTRemaining);
+        writer.writeInt(m_updateINTRemaining);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        reader.readInts(m_nvRam);
+        m_address = reader.readInt();
+        m_regA = reader.readInt();
+        m_regB = reader.readInt();
+        m_regC = reader.readInt();
+        m_regD = reader.readInt();
+        m_alarmSeconds = reader.readInt();
+        m_alarmMinutes = reader.readInt();
+        m_alarmHours = reader.readInt();
+        
+        // The guest clock continues where it was saved, not at the host time
+        m_calendarTime = reader.readLong();
+        
+        updateTimings();
+        m_periodicINTRemaining = reader.readInt();
+        m_updateINTRemaining = reader.readInt();
+    }
 
     @Override
     public void wireWith(HardwareComponent component) {
@@ -301,6 +341,18 @@ public final class CMOS implements HardwareComponent,
         }
     }
     
+    @Override
+    public int getCyclesUntilNextEvent() {
+        
+        int cycles = Integer.MAX_VALUE;
+        if(m_isPeriodicUpdateEnabled)
+            cycles = Math.min(cycles, m_periodicINTRemaining);
+        if(m_isUpdateEnabled)
+            cycles = Math.min(cycles, m_updateINTRemaining);
+        
+        return cycles;
+    }
+    
     private void updateTimings() {
         
         int rateSelect = m_regA & REG_A_RATE_SELECT_MASK;
@@ -323,6 +375,15 @@ public final class CMOS implements HardwareComponent,
     
     // <editor-fold defaultstate="collapsed" desc="RTC register access">
     
+    /**
+     * Sets the time the rtc starts with after the next reset. Benchmarks use
+     * this to be independent of the host time.
+     */
+    public void setCalendarTime(long timeInMillis) {
+        
+        m_calendar.setTimeInMillis(timeInMillis);
+    }
+    
     public void writeRTC(int data) {
         
         // Convert bcd to binary before updating the internal alarm / time registers
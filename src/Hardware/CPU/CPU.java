@@ -24,4 +24,20 @@ import Hardware.HardwareComponent;
 public interface CPU extends HardwareComponent {
     
     void run(int numBlocks);
+    
+    /**
+     * Asks the cpu to return from run() as soon as possible. This may be
+     * called from any thread.
+     */
+    void requestYield();
+    
+    /**
+     * Execution counters since the creation of the cpu. They are used to
+     * measure the emulation performance and never get reset.
+     */
+    long getRetiredInstructions();
+    long getDecodedBlocks();
+    long getExecutedBlocks();
+    long getCacheInvalidations();
+    long getDeliveredInterrupts();
 }
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.CPU.Intel80386.Codeblock;
+
+import Hardware.CPU.Intel80386.Intel80386;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Objects;
+
+
+
+/**
+ * Collects execution statistics per codeblock. Every executed block gets
+ * counted, but only every n-th execution is timed (the measured time is then
+ * weighted with the sampling interval), so that reading the clock doesn't
+ * dominate the measurement. Blocks are identified by cpu mode, cs:eip and
+ * physical address, so the numbers survive the redecoding of a block.
+ */
+public final class BlockProfiler {
+    
+    /* ----------------------------------------------------- *
+     * Some constants                                        *
+     * ----------------------------------------------------- */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+    
+    /* ----------------------------------------------------- *
+     * Statistics of one block                               *
+     * ----------------------------------------------------- */
+    public static final class Profile {
+        
+        private final String m_mode;
+        private final int m_cs;
+        private final int m_eip;
+        private final int m_physicalAddress;
+        private final int m_numInstructions;
+        
+        private long m_executions;
+        private long m_decodes;
+        private long m_invalidations;
+        private long m_time;
+        
+        private Profile(String mode, CodeBlock block) {
+            
+            m_mode = mode;
+            m_cs = block.getCS();
+            m_eip = block.getIP();
+            m_physicalAddress = block.getPhysicalAddress();
+            m_numInstructions = block.getNumberOfInstructions();
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            
+            if(!(obj instanceof Profile))
+                return false;
+            
+            Profile p = (Profile)obj;
+            return m_cs == p.m_cs &&
+                   m_eip == p.m_eip &&
+                   m_physicalAddress == p.m_physicalAddress &&
+                   m_mode.equals(p.m_mode);
+        }
+        
+        @Override
+        public int hashCode() {
+            
+            return Objects.hash(m_mode, m_cs, m_eip, m_physicalAddress);
+        }
+    }
+    private final HashMap<Profile, Profile> m_profiles;
+    
+    /* ----------------------------------------------------- *
+     * Sampling of the execution time                        *
+     * ----------------------------------------------------- */
+    private final int m_sampleInterval;
+    private int m_sampleCountdown;
+    
+    /* ----------------------------------------------------- *
+     * Reference to the cpu                                  *
+     * ----------------------------------------------------- */
+    private final Intel80386 m_cpu;
+    
+    
+    
+    public BlockProfiler(Intel80386 cpu, int sampleInterval) {
+        
+        if(sampleInterval < 1)
+            throw new IllegalArgumentException("The sample interval has to be at least 1");
+        
+        m_cpu = cpu;
+        m_sampleInterval = sampleInterval;
+        m_sampleCountdown = sampleInterval;
+        
+        m_profiles = new HashMap<>();
+    }
+    
+    
+    
+    // <editor-fold defaultstate="collapsed" desc="Recording">
+    
+    public void run(CodeBlock block) {
+        
+        Profile profile = getProfile(block);
+        profile.m_executions++;
+        
+        if(--m_sampleCountdown > 0) {
+            
+            block.run();
+        }
+        else {
+            
+            m_sampleCountdown = m_sampleInterval;
+            
+            long time = System.nanoTime();
+            try {
+                
+                block.run();
+            }
+            finally {
+                
+                profile.m_time += (System.nanoTime() - time) * m_sampleInterval;
+            }
+        }
+    }
+    
+    public void onDecoded(CodeBlock block) {
+        
+        getProfile(block).m_decodes++;
+    }
+    
+    public void onInvalidated(Collection<CodeBlock> blocks) {
+        
+        for(CodeBlock block : blocks)
+            getProfile(block).m_invalidations++;
+    }
+    
+    private Profile getProfile(CodeBlock block) {
+        
+        Profile profile = block.getProfile();
+        if(profile == null) {
+            
+            Profile key = new Profile(getMode(), block);
+            
+            profile = m_profiles.putIfAbsent(key, key);
+            if(profile == null)
+                profile = key;
+            
+            block.setProfile(profile);
+        }
+        
+        return profile;
+    }
+    
+    private String getMode() {
+        
+        if(m_cpu.CR.isInRealMode())
+            return "real";
+        else if(m_cpu.FLAGS.VM)
+            return "v86";
+        else
+            return "protected";
+    }
+    
+    public void clear() {
+        
+        m_profiles.clear();
+        m_sampleCountdown = m_sampleInterval;
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Reporting">
+    
+    /**
+     * Writes the blocks with the highest estimated execution time.
+     */
+    public void writeReport(File file, int maxEntries) throws IOException {
+        
+        ArrayList<Profile> profiles = getSortedProfiles();
+        
+        long totalTime = profiles.stream().mapToLong(p -> p.m_time).sum();
+        long totalExecutions = profiles.stream().mapToLong(p -> p.m_executions).sum();
+        
+        try(PrintWriter out = new PrintWriter(file)) {
+            
+            out.printf("Blocks: %d, Executions: %d, Sampled time: %.3f ms (every %d. execution)\n\n",
+            
+                profiles.size(),
+                totalExecutions,
+                totalTime / 1.0e6,
+                m_sampleInterval
+            );
+            out.printf("%4s  %-9s  %-13s  %-8s  %-12s  %12s  %14s  %8s  %8s  %10s  %6s\n",
+            
+                "Rank", "Mode", "CS:EIP", "Physical", "Region", "Executions", "Instructions", "Decodes", "Invalid.", "Time [ms]", "Time"
+            );
+            
+            for(int i = 0; i < Math.min(maxEntries, profiles.size()); i++) {
+                
+                Profile p = profiles.get(i);
+                out.printf("%4d  %-9s  %04x:%08x  %08x  %-12s  %12d  %14d  %8d  %8d  %10.3f  %5.1f%%\n",
+                
+                    i + 1,
+                    p.m_mode,
+                    p.m_cs, p.m_eip,
+                    p.m_physicalAddress,
+                    getRegion(p.m_physicalAddress),
+                    p.m_executions,
+                    p.m_executions * p.m_numInstructions,
+                    p.m_decodes,
+                    p.m_invalidations,
+                    p.m_time / 1.0e6,
+                    totalTime > 0l ? (p.m_time * 100.0) / totalTime : 0.0
+                );
+            }
+        }
+    }
+    
+    /**
+     * Writes the estimated time (in microseconds) per block in the collapsed
+     * stack format of flamegraph.pl. The guest has no call stack that could
+     * be traced cheaply, so the frames are cpu mode, memory region and block.
+     */
+    public void writeCollapsedStacks(File file) throws IOException {
+        
+        try(PrintWriter out = new PrintWriter(file)) {
+            
+            for(Profile p : getSortedProfiles()) {
+                
+                long time = p.m_time / 1000l;
+                if(time > 0l)
+                    out.printf("%s;%s;%04x:%08x %d\n", p.m_mode, getRegion(p.m_physicalAddress), p.m_cs, p.m_eip, time);
+            }
+        }
+    }
+    
+    private ArrayList<Profile> getSortedProfiles() {
+        
+        ArrayList<Profile> profiles = new ArrayList<>(m_profiles.values());
+        profiles.sort(Comparator.comparingLong((Profile p) -> p.m_time)
+                                .thenComparingLong(p -> p.m_executions)
+                                .reversed());
+        
+        return profiles;
+    }
+    
+    private String getRegion(int physicalAddress) {
+        
+        if(Integer.compareUnsigned(physicalAddress, 0xa0000) < 0)
+            return "conventional";
+        else if(Integer.compareUnsigned(physicalAddress, 0xc0000) < 0)
+            return "video-ram";
+        else if(Integer.compareUnsigned(physicalAddress, 0xc8000) < 0)
+            return "video-bios";
+        else if(Integer.compareUnsigned(physicalAddress, 0xf0000) < 0)
+            return "upper-memory";
+        else if(Integer.compareUnsigned(physicalAddress, 0x100000) < 0)
+            return "system-bios";
+        else
+            return "extended";
+    }
+    
+    // </editor-fold>
+}
@@ -19,6 +19,7 @@ package Hardware.CPU.Intel80386.Codeblock;
 
 import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Instructions.Instruction;
+import Hardware.CPU.Intel80386.Instructions.i386.Programflow.JMP_FUSED;
 import Hardware.CPU.Intel80386.Intel80386;
 import Scheduler.Scheduler;
 
@@ -36,14 +37,25 @@ public final class CodeBlock {
     private final boolean m_isCode32;
     private final boolean m_isStack32;
     private final boolean m_isCacheable;
+    private final int m_numInstructions;
     private final int m_cycles;
-    private boolean m_isRunning;
+    
+    /* ----------------------------------------------------- *
+     * Eip of the branch target and the fall through         *
+     * ----------------------------------------------------- */
+    private static final int[] NO_SUCCESSORS = new int[0];
+    private int[] m_successors;
     
     /* ----------------------------------------------------- *
      * Instructions of this codeblock                        *
      * ----------------------------------------------------- */
     private final Instruction[] m_instructions;
     
+    /* ----------------------------------------------------- *
+     * Statistics of the profiler (if it is enabled)         *
+     * ----------------------------------------------------- */
+    private BlockProfiler.Profile m_profile;
+    
     /* ----------------------------------------------------- *
      * Reference to the Intel 80386 cpu                      *
      * ----------------------------------------------------- */
@@ -71,7 +83,14 @@ public final class CodeBlock {
         m_isCacheable = isCacheable;
         m_instructions = instructions;
         
-        m_cycles = Scheduler.toFixedPoint(instructions.length * 6);
+        // A fused conditional jump retires as two instructions
+        int numInstructions = instructions.length;
+        if(numInstructions > 0 && instructions[numInstructions - 1] instanceof JMP_FUSED)
+            numInstructions++;
+        
+        m_numInstructions = numInstructions;
+        m_cycles = Scheduler.toFixedPoint(numInstructions * 6);
+        m_successors = NO_SUCCESSORS;
     }
     
     
@@ -85,6 +104,13 @@ public final class CodeBlock {
                m_isStack32 == isStack32;
     }
     
+    public boolean isMatchingSegment(int cs, boolean isCode32, boolean isStack32) {
+        
+        return m_cs == cs &&
+               m_isCode32 == isCode32 &&
+               m_isStack32 == isStack32;
+    }
+    
     public boolean isCoveringPhysicalAddress(int start, int end) {
         
         return Integer.compareUnsigned(start, m_physicalAddressEnd) <= 0 &&
@@ -96,9 +122,46 @@ public final class CodeBlock {
         return m_isCacheable;
     }
     
-    public void invalidate() {
+    public void setSuccessors(int... eips) {
+        
+        m_successors = eips;
+    }
+    
+    public int[] getSuccessors() {
         
-        m_isRunning = false;
+        return m_successors;
+    }
+    
+    
+    
+    int getCS() {
+        
+        return m_cs;
+    }
+    
+    int getIP() {
+        
+        return m_ip;
+    }
+    
+    int getPhysicalAddress() {
+        
+        return m_physicalAddressBegin;
+    }
+    
+    int getNumberOfInstructions() {
+        
+        return m_instructions.length;
+    }
+    
+    BlockProfiler.Profile getProfile() {
+        
+        return m_profile;
+    }
+    
+    void setProfile(BlockProfiler.Profile profile) {
+        
+        m_profile = profile;
     }
     
     
@@ -108,8 +171,8 @@ public final class CodeBlock {
         int i = 0;
         try {
             
-            m_isRunning = true;
-            while(i < m_instructions.length && m_isRunning) {
+            // A write to the code of this block aborts it
+            while(i < m_instructions.length && (m_cpu.getAttention() & Intel80386.ATTENTION_ABORT_BLOCK) == 0) {
                 
                 m_cpu.EIP.setValue(m_instructions[i].getNextEIP());
                 m_instructions[i].run();
@@ -125,6 +188,10 @@ public final class CodeBlock {
             
             throw ex;
         }
+        finally {
+            
+            m_cpu.retireInstructions(i == m_instructions.length ? m_numInstructions : i);
+        }
     }
     
     
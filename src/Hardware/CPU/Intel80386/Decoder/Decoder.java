@@ -43,6 +43,11 @@ import Hardware.CPU.Intel80386.Intel80386.CPUType;
 import Hardware.CPU.Intel80386.MMU.MMU;
 import Hardware.CPU.Intel80386.Operands.Immediate.OperandImmediate;
 import Hardware.CPU.Intel80386.Operands.Memory.OperandMemory;
+import Hardware.CPU.Intel80386.Operands.Register.OperandRegister;
+import Hardware.CPU.Intel80386.Operands.Register.OperandRegister16;
+import Hardware.CPU.Intel80386.Operands.Register.OperandRegister32;
+import Hardware.CPU.Intel80386.Operands.Register.OperandRegister8Hi;
+import Hardware.CPU.Intel80386.Operands.Register.OperandRegister8Lo;
 import Hardware.CPU.Intel80386.Pointer.Pointer;
 import Hardware.CPU.Intel80386.Register.General.*;
 import Hardware.CPU.Intel80386.Register.General.Register;
@@ -136,6 +141,12 @@ public final class Decoder {
     private int m_decoderOffset;
     private final ArrayList<Instruction> m_buffer;
     
+    /* ----------------------------------------------------- *
+     * Static branch target of the decoded block             *
+     * ----------------------------------------------------- */
+    private int m_branchTarget;
+    private boolean m_hasBranchTarget;
+    
     /* ----------------------------------------------------- *
      * Whether or not a fpu instruction was decoded          *
      * ----------------------------------------------------- */
@@ -357,6 +368,7 @@ public final class Decoder {
             // Decode a block
             //
             m_buffer.clear();
+            m_hasBranchTarget = false;
             
             m_decoderOffset = instrEIP;
             m_decoderPage = instrEIP & 0xfffff000;
@@ -420,7 +432,8 @@ public final class Decoder {
                 
                 // Add instruction
                 instr.setEIP(instrEIP, m_decoderOffset);
-                m_buffer.add(instr);
+                if(!fuseConditionalJump(instr))
+                    m_buffer.add(instr);
             }
         }
         
@@ -431,6 +444,7 @@ public final class Decoder {
         catch(CPUException ex) {
             
             isCacheable = false;
+            m_hasBranchTarget = false;
             
             instr = new EXCEPTION_WRAPPER(m_cpu, ex);
             instr.setEIP(instrEIP, -1);
@@ -442,6 +456,8 @@ public final class Decoder {
         // is currently in memory. The instruction that crosses the page
         // boundary will then get decoded in the next run.
         catch(DecoderPageCrossException ex) {
+            
+            m_hasBranchTarget = false;
         }
         
         // Some other horrible error in the decoder happened...
@@ -454,7 +470,7 @@ public final class Decoder {
         int physicalAddressBegin = m_mmu.getPhysicalAddress(m_cpu.CS.getBase() + m_cpu.EIP.getValue(), false, true);
         int physicalAddressEnd = m_mmu.getPhysicalAddress(m_cpu.CS.getBase() + m_decoderOffset - 1, false, true);
         
-        return new CodeBlock(
+        CodeBlock block = new CodeBlock(
                 
             m_cpu,
             m_cpu.CS.getSelector(),
@@ -466,6 +482,18 @@ public final class Decoder {
             isCacheable,
             m_buffer.toArray(new Instruction[m_buffer.size()])
         );
+        
+        // Remember where the block continues, so that these blocks can be
+        // decoded in advance. Only an unconditional jump has no fall through.
+        if(m_hasBranchTarget) {
+            
+            if(m_buffer.get(m_buffer.size() - 1) instanceof JMP)
+                block.setSuccessors(m_branchTarget);
+            else
+                block.setSuccessors(m_branchTarget, m_decoderOffset);
+        }
+        
+        return block;
     }
     
     // </editor-fold>
@@ -676,23 +704,31 @@ public final class Decoder {
         int relative = readIMM8();
         
         if(isOperandSize32())
-            return buildImmediate(m_decoderOffset + signExtend8To32(relative));
+            return buildBranchTarget(m_decoderOffset + signExtend8To32(relative));
         else
-            return buildImmediate((m_decoderOffset + signExtend8To16(relative)) & 0xffff);
+            return buildBranchTarget((m_decoderOffset + signExtend8To16(relative)) & 0xffff);
     }
     
     private Operand buildIPRelativeIMM16() {
         
         int relative = readIMM16();
         
-        return buildImmediate((m_decoderOffset + relative) & 0xffff);
+        return buildBranchTarget((m_decoderOffset + relative) & 0xffff);
     }
     
     private Operand buildIPRelativeIMM32() {
         
         int relative = readIMM32();
         
-        return buildImmediate(m_decoderOffset + relative);
+        return buildBranchTarget(m_decoderOffset + relative);
+    }
+    
+    private Operand buildBranchTarget(int eip) {
+        
+        m_branchTarget = eip;
+        m_hasBranchTarget = true;
+        
+        return buildImmediate(eip);
     }
     
     // </editor-fold>
@@ -703,9 +739,9 @@ public final class Decoder {
         
         switch(size) {
             
-            case 8: return new OperandRegister(m_reg8[reg]);
-            case 16: return new OperandRegister(m_reg16[reg]);
-            case 32: return new OperandRegister(m_reg32[reg]);
+            case 8: return reg < 4 ? new OperandRegister8Lo(m_reg8[reg]) : new OperandRegister8Hi(m_reg8[reg]);
+            case 16: return new OperandRegister16(m_reg16[reg]);
+            case 32: return new OperandRegister32(m_reg32[reg]);
             
             default:
                 throw new IllegalArgumentException(String.format("Illegal register size of %d specified", size));
@@ -714,122 +750,122 @@ public final class Decoder {
     
     private Operand buildAH() {
         
-        return new OperandRegister(m_cpu.AH);
+        return new OperandRegister8Hi(m_cpu.AH);
     }
     
     private Operand buildBH() {
         
-        return new OperandRegister(m_cpu.BH);
+        return new OperandRegister8Hi(m_cpu.BH);
     }
     
     private Operand buildCH() {
         
-        return new OperandRegister(m_cpu.CH);
+        return new OperandRegister8Hi(m_cpu.CH);
     }
     
     private Operand buildDH() {
         
-        return new OperandRegister(m_cpu.DH);
+        return new OperandRegister8Hi(m_cpu.DH);
     }
     
     private Operand buildAL() {
         
-        return new OperandRegister(m_cpu.AL);
+        return new OperandRegister8Lo(m_cpu.AL);
     }
     
     private Operand buildBL() {
         
-        return new OperandRegister(m_cpu.BL);
+        return new OperandRegister8Lo(m_cpu.BL);
     }
     
     private Operand buildCL() {
         
-        return new OperandRegister(m_cpu.CL);
+        return new OperandRegister8Lo(m_cpu.CL);
     }
     
     private Operand buildDL() {
         
-        return new OperandRegister(m_cpu.DL);
+        return new OperandRegister8Lo(m_cpu.DL);
     }
     
     private Operand buildAX() {
         
-        return new OperandRegister(m_cpu.AX);
+        return new OperandRegister16(m_cpu.AX);
     }
     
     private Operand buildBX() {
         
-        return new OperandRegister(m_cpu.BX);
+        return new OperandRegister16(m_cpu.BX);
     }
     
     private Operand buildCX() {
         
-        return new OperandRegister(m_cpu.CX);
+        return new OperandRegister16(m_cpu.CX);
     }
     
     private Operand buildDX() {
         
-        return new OperandRegister(m_cpu.DX);
+        return new OperandRegister16(m_cpu.DX);
     }
     
     private Operand buildSP() {
         
-        return new OperandRegister(m_cpu.SP);
+        return new OperandRegister16(m_cpu.SP);
     }
     
     private Operand buildBP() {
         
-        return new OperandRegister(m_cpu.BP);
+        return new OperandRegister16(m_cpu.BP);
     }
     
     private Operand buildSI() {
         
-        return new OperandRegister(m_cpu.SI);
+        return new OperandRegister16(m_cpu.SI);
     }
     
     private Operand buildDI() {
         
-        return new OperandRegister(m_cpu.DI);
+        return new OperandRegister16(m_cpu.DI);
     }
     
     private Operand buildEAX() {
         
-        return new OperandRegister(m_cpu.EAX);
+        return new OperandRegister32(m_cpu.EAX);
     }
     
     private Operand buildEBX() {
         
-        return new OperandRegister(m_cpu.EBX);
+        return new OperandRegister32(m_cpu.EBX);
     }
     
     private Operand buildECX() {
         
-        return new OperandRegister(m_cpu.ECX);
+        return new OperandRegister32(m_cpu.ECX);
     }
     
     private Operand buildEDX() {
         
-        return new OperandRegister(m_cpu.EDX);
+        return new OperandRegister32(m_cpu.EDX);
     }
     
     private Operand buildESP() {
         
-        return new OperandRegister(m_cpu.ESP);
+        return new OperandRegister32(m_cpu.ESP);
     }
     
     private Operand buildEBP() {
         
-        return new OperandRegister(m_cpu.EBP);
+        return new OperandRegister32(m_cpu.EBP);
     }
     
     private Operand buildESI() {
         
-        return new OperandRegister(m_cpu.ESI);
+        return new OperandRegister32(m_cpu.ESI);
     }
     
     private Operand buildEDI() {
         
-        return new OperandRegister(m_cpu.EDI);
+        return new OperandRegister32(m_cpu.EDI);
     }
     
     // </editor-fold>
@@ -1178,6 +1214,72 @@ public final class Decoder {
         return new ConditionCTRZero(getCounter());
     }
     
+    /**
+     * Fuses a conditional jump with a preceding cmp, test or dec into one
+     * instruction. The flags are still written, as the jump ends the block
+     * and the following code might depend on them.
+     */
+    private boolean fuseConditionalJump(Instruction instr) {
+        
+        if(!(instr instanceof JMP_CONDITIONAL) || m_buffer.isEmpty())
+            return false;
+        
+        JMP_CONDITIONAL jcc = (JMP_CONDITIONAL)instr;
+        int conditionCode = getConditionCode(jcc.getCondition());
+        if(conditionCode < 0)
+            return false;
+        
+        Instruction prev = m_buffer.get(m_buffer.size() - 1);
+        Instruction fused;
+        if(prev instanceof CMP8)
+            fused = new CMP_JCC(m_cpu, ((CMP8)prev).getDestination(), ((CMP8)prev).getSource(), 8, jcc.getIP(), jcc.getCondition(), conditionCode);
+        else if(prev instanceof CMP16)
+            fused = new CMP_JCC(m_cpu, ((CMP16)prev).getDestination(), ((CMP16)prev).getSource(), 16, jcc.getIP(), jcc.getCondition(), conditionCode);
+        else if(prev instanceof CMP32)
+            fused = new CMP_JCC(m_cpu, ((CMP32)prev).getDestination(), ((CMP32)prev).getSource(), 32, jcc.getIP(), jcc.getCondition(), conditionCode);
+        else if(prev instanceof TEST8)
+            fused = new TEST_JCC(m_cpu, ((TEST8)prev).getDestination(), ((TEST8)prev).getSource(), 8, jcc.getIP(), jcc.getCondition(), conditionCode);
+        else if(prev instanceof TEST16)
+            fused = new TEST_JCC(m_cpu, ((TEST16)prev).getDestination(), ((TEST16)prev).getSource(), 16, jcc.getIP(), jcc.getCondition(), conditionCode);
+        else if(prev instanceof TEST32)
+            fused = new TEST_JCC(m_cpu, ((TEST32)prev).getDestination(), ((TEST32)prev).getSource(), 32, jcc.getIP(), jcc.getCondition(), conditionCode);
+        else if(prev instanceof DEC8)
+            fused = new DEC_JCC(m_cpu, ((DEC8)prev).getDestination(), 8, jcc.getIP(), jcc.getCondition(), conditionCode);
+        else if(prev instanceof DEC16)
+            fused = new DEC_JCC(m_cpu, ((DEC16)prev).getDestination(), 16, jcc.getIP(), jcc.getCondition(), conditionCode);
+        else if(prev instanceof DEC32)
+            fused = new DEC_JCC(m_cpu, ((DEC32)prev).getDestination(), 32, jcc.getIP(), jcc.getCondition(), conditionCode);
+        else
+            return false;
+        
+        fused.setEIP(prev.getCurrentEIP(), jcc.getNextEIP());
+        m_buffer.set(m_buffer.size() - 1, fused);
+        
+        return true;
+    }
+    
+    private int getConditionCode(Condition condition) {
+        
+        if(condition instanceof ConditionOverflow) return 0;
+        if(condition instanceof ConditionNotOverflow) return 1;
+        if(condition instanceof ConditionBellow) return 2;
+        if(condition instanceof ConditionNotBellow) return 3;
+        if(condition instanceof ConditionZero) return 4;
+        if(condition instanceof ConditionNotZero) return 5;
+        if(condition instanceof ConditionBellowOrEqual) return 6;
+        if(condition instanceof ConditionNotBellowOrEqual) return 7;
+        if(condition instanceof ConditionSign) return 8;
+        if(condition instanceof ConditionNotSign) return 9;
+        if(condition instanceof ConditionParity) return 10;
+        if(condition instanceof ConditionNotParity) return 11;
+        if(condition instanceof ConditionLess) return 12;
+        if(condition instanceof ConditionNotLess) return 13;
+        if(condition instanceof ConditionLessOrEqual) return 14;
+        if(condition instanceof ConditionNotLessOrEqual) return 15;
+        
+        return -1;
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="FPU specific operands">
     
@@ -37,11 +37,6 @@ public final class CPUException extends RuntimeException {
     private static final CPUException COPROCESSOR_NOT_AVAILABLE = new CPUException("Coprocessor not available", 0x07, false, PushedIP.Faulted, ErrorClass.Benign);
     private static final CPUException DOUBLE_FAULT = new CPUException("Double fault", 0x08, true, PushedIP.Faulted, ErrorClass.DoubleFault);
     private static final CPUException COPROCESSOR_SEG_OVERRUN = new CPUException("Coprocessor segment overrun", 0x09, false, PushedIP.Next, ErrorClass.Contributory);
-    private static final CPUException INVALID_TSS = new CPUException("Invalid Task State Segment", 0x0a, true, PushedIP.Faulted, ErrorClass.Contributory);
-    private static final CPUException SEGMENT_NOT_PRESENT = new CPUException("Segment not present", 0x0b, true, PushedIP.Faulted, ErrorClass.Contributory);
-    private static final CPUException STACK_FAULT = new CPUException("Stack fault", 0x0c, true, PushedIP.Faulted, ErrorClass.Contributory);
-    private static final CPUException GENERAL_PROTECTION_FAULT = new CPUException("General protection fault", 0x0d, true, PushedIP.Faulted, ErrorClass.Contributory);
-    private static final CPUException PAGE_FAULT = new CPUException("Page fault", 0x0e, true, PushedIP.Faulted, ErrorClass.PageFault);
     private static final CPUException COPROCESSOR_ERROR = new CPUException("Coprocessor error", 0x0f, false, PushedIP.Faulted, ErrorClass.Benign);
     
     /* ----------------------------------------------------- *
@@ -180,58 +175,39 @@ public final class CPUException extends RuntimeException {
         return COPROCESSOR_SEG_OVERRUN;
     }
     
-    public static CPUException getInvalidTSS(int data) {
+    public static CPUException getCoprocessorError() {
         
-        INVALID_TSS.setErrorCode(data);
-        return INVALID_TSS;
+        return COPROCESSOR_ERROR;
     }
     
-    public static CPUException getSegmentNotPresent(int data) {
-        
-        SEGMENT_NOT_PRESENT.setErrorCode(data);
-        return SEGMENT_NOT_PRESENT;
-    }
     
-    public static CPUException getStackFault(int data) {
+    
+    // The following exceptions carry an error code, which makes them mutable.
+    // Every cpu creates its own instances of them, so that multiple systems
+    // can run in parallel without overwriting each other's error codes.
+    
+    public static CPUException createInvalidTSS() {
         
-        STACK_FAULT.setErrorCode(data);
-        return STACK_FAULT;
+        return new CPUException("Invalid Task State Segment", 0x0a, true, PushedIP.Faulted, ErrorClass.Contributory);
     }
     
-    public static CPUException getGeneralProtectionFault(int data) {
+    public static CPUException createSegmentNotPresent() {
         
-        GENERAL_PROTECTION_FAULT.setErrorCode(data);
-        return GENERAL_PROTECTION_FAULT;
+        return new CPUException("Segment not present", 0x0b, true, PushedIP.Faulted, ErrorClass.Contributory);
     }
     
-    public static CPUException getPageProtectionViolation(boolean isWriteAccess, boolean isUserAccess) {
-        
-        int errorCode = 0x01;
+    public static CPUException createStackFault() {
         
-        if(isWriteAccess)
-            errorCode |= 0x02;
-        if(isUserAccess)
-            errorCode |= 0x04;
-        
-        PAGE_FAULT.setErrorCode(errorCode);
-        return PAGE_FAULT;
+        return new CPUException("Stack fault", 0x0c, true, PushedIP.Faulted, ErrorClass.Contributory);
     }
     
-    public static CPUException getPageNotPresent(boolean isWriteAccess,  boolean isUserAccess) {
-        
-        int errorCode = 0x00;
-        
-        if(isWriteAccess)
-            errorCode |= 0x02;
-        if(isUserAccess)
-            errorCode |= 0x04;
+    public static CPUException createGeneralProtectionFault() {
         
-        PAGE_FAULT.setErrorCode(errorCode);
-        return PAGE_FAULT;
-    }   
+        return new CPUException("General protection fault", 0x0d, true, PushedIP.Faulted, ErrorClass.Contributory);
+    }
     
-    public static CPUException getCoprocessorError() {
+    public static CPUException createPageFault() {
         
-        return COPROCESSOR_ERROR;
+        return new CPUException("Page fault", 0x0e, true, PushedIP.Faulted, ErrorClass.PageFault);
     }
 }
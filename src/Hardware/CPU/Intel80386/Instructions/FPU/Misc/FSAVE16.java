@@ -29,6 +29,7 @@ public final class FSAVE16 extends Instruction {
 
     private final Segment m_segment;
     private final Pointer m_offset;
+    private final ExtendedDouble.Float80 m_fp80;
     
     public FSAVE16(Intel80386 cpu,
                    Segment segment,
@@ -38,6 +39,7 @@ public final class FSAVE16 extends Instruction {
         
         m_segment = segment;
         m_offset = offset;
+        m_fp80 = new ExtendedDouble.Float80();
     }
 
     @Override
@@ -54,7 +56,7 @@ public final class FSAVE16 extends Instruction {
         addr += 14;
         for(int i = 0; i < 8; i++, addr += 10) {
             
-            ExtendedDouble.Float80 fp80 = ExtendedDouble.toFloat80(m_cpu.FPU.getST(i));
+            ExtendedDouble.Float80 fp80 = ExtendedDouble.toFloat80(m_cpu.FPU.getST(i), m_fp80);
             
             m_cpu.writeMEM32(m_segment, addr, fp80.low);
             m_cpu.writeMEM32(m_segment, addr + 4, fp80.mid);
@@ -30,6 +30,7 @@ public final class FSAVE32 extends Instruction {
     
     private final Segment m_segment;
     private final Pointer m_offset;
+    private final Float80 m_fp80;
     
     public FSAVE32(Intel80386 cpu,
                    Segment segment,
@@ -39,6 +40,7 @@ public final class FSAVE32 extends Instruction {
         
         m_segment = segment;
         m_offset = offset;
+        m_fp80 = new Float80();
     }
 
     @Override
@@ -55,7 +57,7 @@ public final class FSAVE32 extends Instruction {
         addr += 28;
         for(int i = 0; i < 8; i++, addr += 10) {
             
-            Float80 fp80 = ExtendedDouble.toFloat80(m_cpu.FPU.getST(i));
+            Float80 fp80 = ExtendedDouble.toFloat80(m_cpu.FPU.getST(i), m_fp80);
             
             m_cpu.writeMEM32(m_segment, addr, fp80.low);
             m_cpu.writeMEM32(m_segment, addr + 4, fp80.mid);
@@ -51,6 +51,16 @@ public final class CMP16 extends Instruction {
         m_cpu.FLAGS.AF = (((dest ^ src) ^ result) & 0x10) != 0;
     }
 
+    public Operand getDestination() {
+        
+        return m_destination;
+    }
+    
+    public Operand getSource() {
+        
+        return m_source;
+    }
+    
     @Override
     public String toString() {
 
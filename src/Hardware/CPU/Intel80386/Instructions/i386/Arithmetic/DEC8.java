@@ -47,6 +47,11 @@ public final class DEC8 extends Instruction {
         m_destination.setValue(result);
     }
     
+    public Operand getDestination() {
+        
+        return m_destination;
+    }
+    
     @Override
     public String toString() {
 
@@ -17,7 +17,6 @@
  */
 package Hardware.CPU.Intel80386.Instructions.i386.Datatransfer;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Instructions.Instruction;
 import Hardware.CPU.Intel80386.Intel80386;
 import Hardware.CPU.Intel80386.Operands.Operand;
@@ -43,7 +42,7 @@ public final class LGDT16 extends Instruction {
     public void run() {
         
         if(m_cpu.getCPL() != 0)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         m_cpu.GDT.setLimit(m_limit.getValue());
         m_cpu.GDT.setBase(m_base.getValue() & 0x00ffffff);
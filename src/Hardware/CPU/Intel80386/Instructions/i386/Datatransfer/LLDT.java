@@ -44,7 +44,7 @@ public final class LLDT extends Instruction {
             throw CPUException.getInvalidOpcode();
         
         if(m_cpu.getCPL() != 0)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         
         int selector = m_selector.getValue();
@@ -57,20 +57,20 @@ public final class LLDT extends Instruction {
             
             // The selector must point into GDT
             if(m_cpu.isReferencingLDT(selector))
-                throw CPUException.getGeneralProtectionFault(selector & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(selector & 0xfffc);
             
             // Load descriptor
             Descriptor desc;
             if((desc = m_cpu.getDescriptor(selector)) == null)
-                throw CPUException.getGeneralProtectionFault(selector & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(selector & 0xfffc);
             
             // Assure that this entry describes a LDT
             if(!desc.getTypeInfo().isLDT())
-                throw CPUException.getGeneralProtectionFault(selector & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(selector & 0xfffc);
             
             // Assure that the ldt is present
             if(!desc.isPresent())
-                throw CPUException.getSegmentNotPresent(selector & 0xfffc);
+                throw m_cpu.getSegmentNotPresent(selector & 0xfffc);
             
             m_cpu.LDT.setSelector(selector);
             m_cpu.LDT.setBase(desc.getBase());
@@ -17,7 +17,6 @@
  */
 package Hardware.CPU.Intel80386.Instructions.i386.Datatransfer;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Instructions.Instruction;
 import Hardware.CPU.Intel80386.Intel80386;
 import Hardware.CPU.Intel80386.Operands.Operand;
@@ -40,7 +39,7 @@ public final class LMSW extends Instruction {
     public void run() {
         
         if(m_cpu.getCPL() != 0)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         m_cpu.CR.setMSW(m_source.getValue());
     }
@@ -44,31 +44,31 @@ public final class LTR extends Instruction {
             throw CPUException.getInvalidOpcode();
         
         if(m_cpu.getCPL() != 0)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         
         int selector = m_source.getValue();
         
         // Selector must be non null
         if(m_cpu.isNullSelector(selector))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         // The selector must reference GDT
         if(m_cpu.isReferencingLDT(selector))
-            throw CPUException.getGeneralProtectionFault(selector & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(selector & 0xfffc);
         
         // Load descriptor
         Descriptor desc;
         if((desc = m_cpu.getDescriptor(selector)) == null)
-            throw CPUException.getGeneralProtectionFault(selector & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(selector & 0xfffc);
         
         // Descriptor must describe an available task state segment
         if(!desc.getTypeInfo().isAvailableTaskStateSegment())
-            throw CPUException.getGeneralProtectionFault(selector & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(selector & 0xfffc);
         
         // Segment must be present
         if(!desc.isPresent())
-            throw CPUException.getSegmentNotPresent(selector & 0xfffc);
+            throw m_cpu.getSegmentNotPresent(selector & 0xfffc);
         
         // Load task register
         m_cpu.TR.loadTaskRegister(selector, desc);
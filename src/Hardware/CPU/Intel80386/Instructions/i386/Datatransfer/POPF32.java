@@ -35,7 +35,7 @@ public final class POPF32 extends Instruction {
     public void run() {
             
         if(m_cpu.FLAGS.VM && m_cpu.FLAGS.IOPL != 3)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         int oldESP = m_cpu.ESP.getValue();
         try {
@@ -38,7 +38,7 @@ public final class PUSHF16 extends Instruction {
         
             // IOPL must be 3 in VM8086 Mode
             if(m_cpu.FLAGS.VM && m_cpu.FLAGS.IOPL != 3)
-                throw CPUException.getGeneralProtectionFault(0);
+                throw m_cpu.getGeneralProtectionFault(0);
             
             m_cpu.pushStack16(m_cpu.FLAGS.getValue());
         }
@@ -39,7 +39,7 @@ public final class PUSHF32 extends Instruction {
         
             // IOPL must be 3 in VM8086 Mode
             if(m_cpu.FLAGS.VM && m_cpu.FLAGS.IOPL != 3)
-                throw CPUException.getGeneralProtectionFault(0);
+                throw m_cpu.getGeneralProtectionFault(0);
 
             // VM and RF flag are never pushed on the stack and always read as 0
             int flags = m_cpu.FLAGS.getValue();
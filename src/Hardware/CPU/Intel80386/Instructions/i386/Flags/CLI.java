@@ -17,7 +17,6 @@
  */
 package Hardware.CPU.Intel80386.Instructions.i386.Flags;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Instructions.Instruction;
 import Hardware.CPU.Intel80386.Intel80386;
 
@@ -34,7 +33,7 @@ public final class CLI extends Instruction {
     public void run() {
         
         if(m_cpu.CR.isInProtectedMode() && m_cpu.getCPL() > m_cpu.FLAGS.IOPL)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         m_cpu.FLAGS.IF = false;
     }
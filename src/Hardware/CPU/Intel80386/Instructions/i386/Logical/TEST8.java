@@ -47,6 +47,16 @@ public final class TEST8 extends Instruction {
         m_cpu.FLAGS.AF = false;
     }
     
+    public Operand getDestination() {
+        
+        return m_destination;
+    }
+    
+    public Operand getSource() {
+        
+        return m_source;
+    }
+    
     @Override
     public String toString() {
 
@@ -17,7 +17,6 @@
  */
 package Hardware.CPU.Intel80386.Instructions.i386.Misc;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Instructions.Instruction;
 import Hardware.CPU.Intel80386.Intel80386;
 
@@ -34,12 +33,12 @@ public final class HALT extends Instruction {
     public void run() {
         
         if(m_cpu.FLAGS.VM)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         if(m_cpu.CR.isInProtectedMode() && m_cpu.getCPL() != 0)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
-        m_cpu.HALTED = true;
+        m_cpu.halt();
     }
     
     @Override
@@ -125,16 +125,16 @@ public final class CALL_FAR extends Instruction {
         
         // New CS selector must be not null
         if(m_cpu.isNullSelector(cs))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
 
         // Check that new CS selector index is within its descriptor table limits
         Descriptor descCS;
         if((descCS = m_cpu.getDescriptor(cs)) == null)
-            throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
 
         // Segment must be present
         if(!descCS.isPresent())
-            throw CPUException.getSegmentNotPresent(cs & 0xfffc);
+            throw m_cpu.getSegmentNotPresent(cs & 0xfffc);
         
         
         // Perform far call
@@ -150,18 +150,18 @@ public final class CALL_FAR extends Instruction {
         else if(descCS.getTypeInfo().isTaskStateSegment())
             CALL_FAR_TASK_STATE_SEGMENT(cs, ip, descCS, CPL);
         else
-            throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
     }
     
     private void CALL_FAR_CONFORMING_CS(int cs, int ip, Descriptor descCS, int CPL) {
         
         // Instruction pointer must be in code segment limit
         if(descCS.isOutsideLimit(ip, 1))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         // Descriptor DPL must be <= CPL
         if(descCS.getDPL() > CPL)
-            throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         
         
         // Push return address
@@ -186,15 +186,15 @@ public final class CALL_FAR extends Instruction {
         
         // Instruction pointer must be in code segment limit
         if(descCS.isOutsideLimit(ip, 1))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         // RPL of destination selector must be <= CPL
         if(m_cpu.getSelectorsRPL(cs) > CPL)
-           throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+           throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
 
         // Descriptor DPL must be equal to CPL
         if(descCS.getDPL() != CPL)
-           throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+           throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         
         
         // Push return address
@@ -219,11 +219,11 @@ public final class CALL_FAR extends Instruction {
         
         // Call gate DPL must be >= CPL
         if(descGate.getDPL() < CPL)
-            throw CPUException.getGeneralProtectionFault(gateSelector & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(gateSelector & 0xfffc);
         
         // Call gate DPL must be >= RPL
         if(descGate.getDPL() < m_cpu.getSelectorsRPL(gateSelector))
-            throw CPUException.getGeneralProtectionFault(gateSelector & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(gateSelector & 0xfffc);
         
         
         // Get cs:ip from gate descriptor
@@ -233,24 +233,24 @@ public final class CALL_FAR extends Instruction {
         
         // CS selector must be non null
         if(m_cpu.isNullSelector(cs))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         // Make sure that the new CS selector index is within its descriptor table limits
         Descriptor descCS;
         if((descCS = m_cpu.getDescriptor(cs)) == null)
-            throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         
         // Instruction pointer must be in code segment limit
         if(descCS.isOutsideLimit(ip, 1))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         // Descriptor AR byte must indicate code segment
         if(!descCS.getTypeInfo().isCodeSegment())
-            throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         
         // The descriptors DPL must be <= CPL
         if(descCS.getDPL() > CPL)
-            throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         
         
         // Perform call
@@ -269,28 +269,28 @@ public final class CALL_FAR extends Instruction {
         
         // SS Selector must be non null
         if(m_cpu.isNullSelector(ss))
-            throw CPUException.getInvalidTSS(0);
+            throw m_cpu.getInvalidTSS(0);
         
         // Selectors RPL must be equal to DPL of cs
         if(m_cpu.getSelectorsRPL(ss) != descCS.getDPL())
-            throw CPUException.getInvalidTSS(ss & 0xfffc);
+            throw m_cpu.getInvalidTSS(ss & 0xfffc);
         
         // Make sure that the new SS selector index is within its descriptor table limits
         Descriptor descSS;
         if((descSS = m_cpu.getDescriptor(ss)) == null)
-            throw CPUException.getInvalidTSS(ss & 0xfffc);
+            throw m_cpu.getInvalidTSS(ss & 0xfffc);
         
         // Stack segment DPL must equal DPL of code segment
         if(descSS.getDPL() != descCS.getDPL())
-            throw CPUException.getInvalidTSS(ss & 0xfffc);
+            throw m_cpu.getInvalidTSS(ss & 0xfffc);
         
         // Descriptor must indicate writable data segment
         if(!descSS.getTypeInfo().isWritableDataSegment())
-            throw CPUException.getInvalidTSS(ss & 0xfffc);
+            throw m_cpu.getInvalidTSS(ss & 0xfffc);
         
         // Segment must be present
         if(!descSS.isPresent())
-            throw CPUException.getStackFault(ss & 0xfffc);
+            throw m_cpu.getStackFault(ss & 0xfffc);
 
         
         // New stack must have enough room for the long pointer to the current
@@ -305,7 +305,7 @@ public final class CALL_FAR extends Instruction {
             neededSpace = 16 + (numParams << 2);
         
         if(descSS.isOutsideLimit(sp - neededSpace, 1))
-            throw CPUException.getStackFault(0);
+            throw m_cpu.getStackFault(0);
         
         
         // Store long pointer to the current stack and program address
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.CPU.Intel80386.Instructions.i386.Programflow;
+
+import Hardware.CPU.Intel80386.Condition.Condition;
+import Hardware.CPU.Intel80386.Intel80386;
+import Hardware.CPU.Intel80386.Operands.Operand;
+import Hardware.CPU.Intel80386.Register.Flags.Flags;
+
+
+
+public final class DEC_JCC extends JMP_FUSED {
+    
+    private final Operand m_destination;
+    private final int m_mask;
+    private final int m_signMask;
+    
+    public DEC_JCC(Intel80386 cpu,
+                   Operand destination,
+                   int size,
+                   Operand ip,
+                   Condition condition,
+                   int conditionCode) {
+        
+        super(cpu, ip, condition, conditionCode);
+        
+        m_destination = destination;
+        m_mask = size == 32 ? 0xffffffff : (1 << size) - 1;
+        m_signMask = 1 << (size - 1);
+    }
+    
+    @Override
+    public void run() {
+        
+        int result = (m_destination.getValue() - 1) & m_mask;
+        boolean of = result == m_signMask - 1;
+        
+        Flags flags = m_cpu.FLAGS;
+        flags.setSZP(result, m_signMask);
+        flags.OF = of;
+        flags.AF = (result & 0x0f) == 0x0f;
+        
+        m_destination.setValue(result);
+        
+        jumpIf(flags.CF, result == 0, (result & m_signMask) != 0, of, flags.PF);
+    }
+    
+    @Override
+    public String toString() {
+        
+        return String.format("dec %s; %s", m_destination.toString(), getJumpString());
+    }
+}
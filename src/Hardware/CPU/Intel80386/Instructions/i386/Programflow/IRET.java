@@ -88,7 +88,7 @@ public final class IRET extends Instruction {
     private void IRET_VIRTUALMODE() {
         
         if(m_cpu.FLAGS.IOPL != 3)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
 
         int cs, ip, flags, flagMask;
         
@@ -119,7 +119,7 @@ public final class IRET extends Instruction {
     private void IRET_PROTECTEDMODE() {
         
         if(m_cpu.CR.isInProtectedMode() && m_cpu.FLAGS.VM && m_cpu.FLAGS.IOPL != 3)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         
         if(m_cpu.FLAGS.NT) {
@@ -162,28 +162,28 @@ public final class IRET extends Instruction {
             
             // Return CS selector RPL must be >= CPL
             if(m_cpu.getSelectorsRPL(cs) < CPL)
-                throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
             
             // Return CS selector must be non-null
             if(m_cpu.isNullSelector(cs))
-                throw CPUException.getGeneralProtectionFault(0);
+                throw m_cpu.getGeneralProtectionFault(0);
             
             // Selector index must be within its descriptor table limits
             Descriptor descCS;
             if((descCS = m_cpu.getDescriptor(cs)) == null)
-                throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
             
             // AR byte must indicate code segment
             if(!descCS.getTypeInfo().isCodeSegment())
-                throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
             
             // Segment must be present
             if(!descCS.isPresent())
-                throw CPUException.getSegmentNotPresent(cs & 0xfffc);
+                throw m_cpu.getSegmentNotPresent(cs & 0xfffc);
             
             // Instruction pointer must be within code segment limits
             if(descCS.isOutsideLimit(ip, 1))
-                throw CPUException.getGeneralProtectionFault(0);
+                throw m_cpu.getGeneralProtectionFault(0);
 
 
             // Perform the return
@@ -202,20 +202,20 @@ public final class IRET extends Instruction {
 
         // The selector must reference GDT
         if(m_cpu.isReferencingLDT(tssSelector))
-            throw CPUException.getInvalidTSS(tssSelector & 0xfffc);
+            throw m_cpu.getInvalidTSS(tssSelector & 0xfffc);
 
         // Index must be within GDT limits
         Descriptor tssDesc;
         if((tssDesc = m_cpu.getDescriptor(m_cpu.GDT, tssSelector & 0xfff8)) == null)
-            throw CPUException.getInvalidTSS(tssSelector & 0xfffc);
+            throw m_cpu.getInvalidTSS(tssSelector & 0xfffc);
         
         // New TSS must be a busy task state segment
         if(!tssDesc.getTypeInfo().isBusyTaskStateSegment())
-            throw CPUException.getInvalidTSS(tssSelector & 0xfffc);
+            throw m_cpu.getInvalidTSS(tssSelector & 0xfffc);
 
         // TSS must be present
         if(!tssDesc.isPresent())
-            throw CPUException.getSegmentNotPresent(tssSelector & 0xfffc);
+            throw m_cpu.getSegmentNotPresent(tssSelector & 0xfffc);
         
         // Switch back to the old task
         m_cpu.TR.switchToTask(tssSelector, tssDesc, TaskRegister.TASKSWITCH_IRET);
@@ -257,13 +257,13 @@ public final class IRET extends Instruction {
         if(descCS.getTypeInfo().isNonConformingCodeSegment()) {
 
             if(descCS.getDPL() != CPL)
-                throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         }
         // If conforming then code segment DPL must be <= CPL
         else if(descCS.getTypeInfo().isConformingCodeSegment()) {
 
             if(descCS.getDPL() > CPL)
-                throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         }
 
         // Load CS:EIP
@@ -280,13 +280,13 @@ public final class IRET extends Instruction {
         if(descCS.getTypeInfo().isNonConformingCodeSegment()) {
 
             if(descCS.getDPL() != m_cpu.getSelectorsRPL(cs))
-                throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         }
         // If conforming then code segment DPL must be > CPL */
         else if(descCS.getTypeInfo().isConformingCodeSegment()) {
 
             if(descCS.getDPL() <= CPL)
-                throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         }
 
         
@@ -305,28 +305,28 @@ public final class IRET extends Instruction {
         
         // Return SS selector must be non-null
         if(m_cpu.isNullSelector(ss))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
 
         // Selector index must be within its descriptor table limits
         Descriptor descSS;
         if((descSS = m_cpu.getDescriptor(ss)) == null)
-            throw CPUException.getGeneralProtectionFault(ss & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(ss & 0xfffc);
 
         /* Selector RPL must equal the RPL of the return CS selector */
         if(m_cpu.getSelectorsRPL(ss) != m_cpu.getSelectorsRPL(cs))
-            throw CPUException.getGeneralProtectionFault(ss & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(ss & 0xfffc);
 
         // AR byte must indicate a writable data segment
         if(!descSS.getTypeInfo().isWritableDataSegment())
-            throw CPUException.getGeneralProtectionFault(ss & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(ss & 0xfffc);
 
         // Stack segment DPL must equal the RPL of the return CS selector
         if(descSS.getDPL() != m_cpu.getSelectorsRPL(cs))
-            throw CPUException.getGeneralProtectionFault(ss & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(ss & 0xfffc);
 
         // SS must be present
         if(!descSS.isPresent())
-            throw CPUException.getSegmentNotPresent(ss & 0xfffc);
+            throw m_cpu.getSegmentNotPresent(ss & 0xfffc);
         
         
         // Load CS:EIP
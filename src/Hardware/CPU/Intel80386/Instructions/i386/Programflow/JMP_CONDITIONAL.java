@@ -46,6 +46,16 @@ public final class JMP_CONDITIONAL extends Instruction {
             m_cpu.EIP.setValue(m_ip.getValue());
     }
     
+    public Operand getIP() {
+        
+        return m_ip;
+    }
+    
+    public Condition getCondition() {
+        
+        return m_condition;
+    }
+    
     @Override
     public String toString() {
         
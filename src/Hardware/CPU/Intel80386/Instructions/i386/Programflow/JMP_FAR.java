@@ -17,7 +17,6 @@
  */
 package Hardware.CPU.Intel80386.Instructions.i386.Programflow;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Instructions.Instruction;
 import Hardware.CPU.Intel80386.Intel80386;
 import Hardware.CPU.Intel80386.Operands.Operand;
@@ -77,20 +76,20 @@ public final class JMP_FAR extends Instruction {
         
         // Destination selector must be non null
         if(m_cpu.isNullSelector(cs))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
 
         // Destination selector index has to be within the limits of its descriptor table
         Descriptor descCS;
         if((descCS = m_cpu.getDescriptor(cs)) == null)
-            throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
 
         // Segment must be present
         if(!descCS.isPresent())
-            throw CPUException.getSegmentNotPresent(cs & 0xfffc);
+            throw m_cpu.getSegmentNotPresent(cs & 0xfffc);
         
         // Instruction pointer must be within code-segment limit
         if(descCS.isOutsideLimit(ip, 1))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         
         // Perform the far jump
@@ -107,14 +106,14 @@ public final class JMP_FAR extends Instruction {
         else if(descCS.getTypeInfo().isTaskStateSegment())
             JMP_FAR_TASK_STATE_SEGMENT(cs, descCS, CPL);
         else
-            throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
     }
     
     private void JMP_FAR_CONFORMING_CS(int cs, int ip, Descriptor descCS, int CPL) {
     
         // Descriptor DPL must be <= CPL
         if(descCS.getDPL() > CPL)
-            throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         
         // Load CS:IP
         m_cpu.CS.loadProtectedMode(cs, descCS);
@@ -125,11 +124,11 @@ public final class JMP_FAR extends Instruction {
         
         // RPL of destination selector must be <= CPL
         if(m_cpu.getSelectorsRPL(cs) > CPL)
-           throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+           throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
 
         // Descriptor DPL must be equal to CPL
         if(descCS.getDPL() != CPL)
-           throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+           throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         
         // Load CS:IP
         m_cpu.CS.loadProtectedMode(cs, descCS);
@@ -152,16 +151,16 @@ public final class JMP_FAR extends Instruction {
         if(descTSS.getDPL() < CPL ||
            descTSS.getDPL() < m_cpu.getSelectorsRPL(tssSelector)) {
             
-            throw CPUException.getGeneralProtectionFault(tssSelector & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(tssSelector & 0xfffc);
         }
         
         // Task must be available
         if(!descTSS.getTypeInfo().isAvailableTaskStateSegment())
-            throw CPUException.getGeneralProtectionFault(tssSelector & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(tssSelector & 0xfffc);
         
         // Segment must be present
         if(!descTSS.isPresent())
-            throw CPUException.getSegmentNotPresent(tssSelector & 0xfffc);
+            throw m_cpu.getSegmentNotPresent(tssSelector & 0xfffc);
         
         m_cpu.TR.switchToTask(tssSelector, descTSS, TaskRegister.TASKSWITCH_JMP);
     }
@@ -114,24 +114,24 @@ public final class RET_FAR extends Instruction {
         
         // Return selector must be non-null
         if(m_cpu.isNullSelector(cs))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
 
         // Selector index must be within its descriptor table limits
         Descriptor descCS;
         if((descCS = m_cpu.getDescriptor(cs)) == null)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
 
         // Descriptor AR byte must indicate code segment
         if(!descCS.getTypeInfo().isCodeSegment())
-            throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         
         // Return selector RPL must be >= CPL
         if(m_cpu.getSelectorsRPL(cs) < CPL)
-            throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
 
         // Code segment must be present
         if(!descCS.isPresent())
-            throw CPUException.getSegmentNotPresent(cs & 0xfffc);
+            throw m_cpu.getSegmentNotPresent(cs & 0xfffc);
         
         
         // Update stack pointer
@@ -155,19 +155,19 @@ public final class RET_FAR extends Instruction {
 
         // Instruction pointer must be within code-segment limit
         if(descCS.isOutsideLimit(ip, 1))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         // If non-conforming then code segment DPL must be equal to CPL
         if(descCS.getTypeInfo().isNonConformingCodeSegment()) {
 
             if(descCS.getDPL() != CPL)
-                throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         }
         // If conforming then code segment DPL must be <= CPL
         else {
             
             if(descCS.getDPL() > CPL)
-                throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         }
 
         // Load CS:EIP
@@ -179,19 +179,19 @@ public final class RET_FAR extends Instruction {
         
         // Instruction pointer must be within code-segment limit
         if(descCS.isOutsideLimit(ip, 1))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         // If non-conforming then code segment DPL must be equal to the CS selectors RPL
         if(descCS.getTypeInfo().isNonConformingCodeSegment()) {
 
             if(descCS.getDPL() != m_cpu.getSelectorsRPL(cs))
-                throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         }
         // If conforming then code segment DPL must be <= CS selectors RPL
         else if(descCS.getTypeInfo().isConformingCodeSegment()) {
 
             if(descCS.getDPL() > m_cpu.getSelectorsRPL(cs))
-                throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(cs & 0xfffc);
         }
         
         
@@ -211,26 +211,26 @@ public final class RET_FAR extends Instruction {
         
         // Return SS selector must be non-null
         if(m_cpu.isNullSelector(ss))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
 
         // Selector index must be within its descriptor table limits
         Descriptor descSS;
         if((descSS = m_cpu.getDescriptor(ss)) == null)
-            throw CPUException.getGeneralProtectionFault(ss & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(ss & 0xfffc);
         
         // AR byte must indicate a writable data segment
         if(!descSS.getTypeInfo().isWritableDataSegment())
-            throw CPUException.getGeneralProtectionFault(ss & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(ss & 0xfffc);
         
         // SS must be present
         if(!descSS.isPresent())
-            throw CPUException.getSegmentNotPresent(ss & 0xfffc);
+            throw m_cpu.getSegmentNotPresent(ss & 0xfffc);
 
         // Stack segment RPL and DPL must be equal to the RPL of the return CS selector
         if(m_cpu.getSelectorsRPL(cs) != m_cpu.getSelectorsRPL(ss) ||
            m_cpu.getSelectorsRPL(cs) != descSS.getDPL()) {
             
-            throw CPUException.getGeneralProtectionFault(ss & 0xfffc);
+            throw m_cpu.getGeneralProtectionFault(ss & 0xfffc);
         }
         
         
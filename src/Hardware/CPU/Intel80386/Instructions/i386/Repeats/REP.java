@@ -18,6 +18,7 @@
 package Hardware.CPU.Intel80386.Instructions.i386.Repeats;
 
 import Hardware.CPU.Intel80386.Exceptions.CPUException;
+import Hardware.CPU.Intel80386.Instructions.BlockTransfer;
 import Hardware.CPU.Intel80386.Instructions.Instruction;
 import Hardware.CPU.Intel80386.Intel80386;
 import Hardware.CPU.Intel80386.Register.General.Register;
@@ -28,6 +29,7 @@ import Scheduler.Scheduler;
 public final class REP extends Instruction {
 
     private final Instruction m_instruction;
+    private final BlockTransfer m_blockTransfer;
     private final Register m_counter;
     
     public REP(Intel80386 cpu,
@@ -38,6 +40,11 @@ public final class REP extends Instruction {
         
         m_instruction = instruction;
         m_counter = counter;
+        
+        if(instruction instanceof BlockTransfer)
+            m_blockTransfer = (BlockTransfer)instruction;
+        else
+            m_blockTransfer = null;
     }
 
     @Override
@@ -50,7 +57,18 @@ public final class REP extends Instruction {
                 
                 if(m_cpu.isInterruptPending())
                     throw CPUException.getREPInterrupted();
-
+                
+                // Move as many elements as possible at once
+                if(m_blockTransfer != null) {
+                    
+                    int count = m_blockTransfer.runBlock(Integer.compareUnsigned(counter, 0x1000) < 0 ? counter : 0x1000);
+                    if(count > 0) {
+                        
+                        counter -= count;
+                        continue;
+                    }
+                }
+                
                 m_instruction.run();
                 counter--;
             }
@@ -17,15 +17,18 @@
  */
 package Hardware.CPU.Intel80386.Instructions.i386.String;
 
+import Hardware.CPU.Intel80386.Instructions.BlockTransfer;
 import Hardware.CPU.Intel80386.Instructions.Instruction;
 import Hardware.CPU.Intel80386.Intel80386;
+import Hardware.CPU.Intel80386.Register.General.Reg32;
 import Hardware.CPU.Intel80386.Register.General.Register;
 
 
 
-public final class INSW extends Instruction {
+public final class INSW extends Instruction implements BlockTransfer {
     
     private final Register m_destIndex;
+    private final boolean m_isAddressSize32;
     
     public INSW(Intel80386 cpu,
                 Register destIndex) {
@@ -33,6 +36,7 @@ public final class INSW extends Instruction {
         super(cpu);
         
         m_destIndex = destIndex;
+        m_isAddressSize32 = destIndex instanceof Reg32;
     }
     
     @Override
@@ -50,6 +54,30 @@ public final class INSW extends Instruction {
             m_destIndex.setValue(destIndex + 2);
     }
     
+    @Override
+    public int runBlock(int count) {
+        
+        if(m_cpu.FLAGS.DF)
+            return 0;
+        
+        int destIndex = m_destIndex.getValue();
+        int length = m_cpu.getBlockLength(m_cpu.ES, destIndex, count << 1, m_isAddressSize32) & ~0x01;
+        if(length == 0)
+            return 0;
+        
+        // Read the whole block from i/o port DX and write it to ES:[(E)DI]
+        byte[] buffer = m_cpu.getBlockBuffer();
+        
+        m_cpu.checkMEMBlockWrite(m_cpu.ES, destIndex, length);
+        m_cpu.readIOBlock16(m_cpu.DX.getValue(), buffer, length >>> 1);
+        m_cpu.writeMEMBlock(m_cpu.ES, destIndex, buffer, length);
+        
+        // Update index
+        m_destIndex.setValue(destIndex + length);
+        
+        return length >>> 1;
+    }
+    
     @Override
     public String toString() {
         
@@ -17,17 +17,20 @@
  */
 package Hardware.CPU.Intel80386.Instructions.i386.String;
 
+import Hardware.CPU.Intel80386.Instructions.BlockTransfer;
 import Hardware.CPU.Intel80386.Instructions.Instruction;
 import Hardware.CPU.Intel80386.Intel80386;
+import Hardware.CPU.Intel80386.Register.General.Reg32;
 import Hardware.CPU.Intel80386.Register.General.Register;
 import Hardware.CPU.Intel80386.Register.Segments.Segment;
 
 
 
-public final class OUTSD extends Instruction {
+public final class OUTSD extends Instruction implements BlockTransfer {
     
     private final Register m_srcIndex;
     private final Segment m_srcSegment;
+    private final boolean m_isAddressSize32;
     
     public OUTSD(Intel80386 cpu,
                  Register srcIndex,
@@ -37,6 +40,7 @@ public final class OUTSD extends Instruction {
         
         m_srcIndex = srcIndex;
         m_srcSegment = srcSegment;
+        m_isAddressSize32 = srcIndex instanceof Reg32;
     }
     
     @Override
@@ -54,6 +58,29 @@ public final class OUTSD extends Instruction {
             m_srcIndex.setValue(srcIndex + 4);
     }
     
+    @Override
+    public int runBlock(int count) {
+        
+        if(m_cpu.FLAGS.DF)
+            return 0;
+        
+        int srcIndex = m_srcIndex.getValue();
+        int length = m_cpu.getBlockLength(m_srcSegment, srcIndex, count << 2, m_isAddressSize32) & ~0x03;
+        if(length == 0)
+            return 0;
+        
+        // Output the whole block at DS:[(E)SI] to i/o port DX
+        byte[] buffer = m_cpu.getBlockBuffer();
+        
+        m_cpu.readMEMBlock(m_srcSegment, srcIndex, buffer, length);
+        m_cpu.writeIOBlock32(m_cpu.DX.getValue(), buffer, length >>> 2);
+        
+        // Update index
+        m_srcIndex.setValue(srcIndex + length);
+        
+        return length >>> 2;
+    }
+    
     @Override
     public String toString() {
         
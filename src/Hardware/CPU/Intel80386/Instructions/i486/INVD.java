@@ -17,7 +17,6 @@
  */
 package Hardware.CPU.Intel80386.Instructions.i486;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Instructions.Instruction;
 import Hardware.CPU.Intel80386.Intel80386;
 
@@ -34,7 +33,7 @@ public final class INVD extends Instruction {
     public void run() {
         
         if(m_cpu.getCPL() != 0)
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         // Cache isn't implemented, so there's nothing to invalidate.
     }
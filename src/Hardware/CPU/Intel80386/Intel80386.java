@@ -18,6 +18,7 @@
 package Hardware.CPU.Intel80386;
 
 import Hardware.CPU.CPU;
+import Hardware.CPU.Intel80386.Codeblock.BlockProfiler;
 import Hardware.CPU.Intel80386.Codeblock.CodeBlock;
 import Hardware.CPU.Intel80386.Decoder.Decoder;
 import Hardware.CPU.Intel80386.Exceptions.CPUException;
@@ -46,9 +47,15 @@ import IOMap.IOMap;
 import Main.Systems.ComponentConfig;
 import Main.Systems.ComponentConfig.Type;
 import MemoryMap.MemoryMap;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import Scheduler.Scheduler;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 
 
@@ -65,6 +72,13 @@ public final class Intel80386 implements HardwareComponent,
     private final CPUType m_cpuType;
     private final boolean m_hasFPU;
     
+    /* ----------------------------------------------------- *
+     * General purpose registers and eip in the order of     *
+     * their encoding (eax, ecx, edx, ebx, esp, ebp, esi,    *
+     * edi, eip), the register objects are views onto it     *
+     * ----------------------------------------------------- */
+    private final int[] m_registerFile;
+    
     /* ----------------------------------------------------- *
      * Intel 80386 register set                              *
      * ----------------------------------------------------- */
@@ -81,7 +95,6 @@ public final class Intel80386 implements HardwareComponent,
     public final RegDebug DR0, DR1, DR2, DR3, DR6, DR7;
     public final RegTest TR6, TR7;
     public final FPURegisters FPU;
-    public boolean HALTED;
     
     /* ----------------------------------------------------- *
      * Code block cache                                      *
@@ -95,22 +108,104 @@ public final class Intel80386 implements HardwareComponent,
     private final Integer[] m_integerLUT;
     private CodeBlock m_currentBlock;
     
+    /* ----------------------------------------------------- *
+     * Validated trap and interrupt gates of the idt, they   *
+     * stay valid as long as their descriptors are cached    *
+     * ----------------------------------------------------- */
+    private final class InterruptGate {
+        
+        public Descriptor gate;
+        public Descriptor descCS;
+        public int cs;
+        public int ip;
+    }
+    private final InterruptGate[] m_interruptGates;
+    private long m_fastInterrupts;
+    
+    /* ----------------------------------------------------- *
+     * Execution counters                                    *
+     * ----------------------------------------------------- */
+    private long m_retiredInstructions;
+    private long m_decodedBlocks;
+    private long m_executedBlocks;
+    private long m_cacheInvalidations;
+    private long m_deliveredInterrupts;
+    private final long[] m_exceptionCounts;
+    
+    /* ----------------------------------------------------- *
+     * Idle loop detection                                   *
+     * ----------------------------------------------------- */
+    private static final int IDLE_LOOP_ITERATIONS = 16;
+    private CodeBlock m_idleBlock;
+    private int[] m_idleState;
+    private int[] m_idleStateNext;
+    private int m_idleIterations;
+    private boolean m_hasWrittenIO;
+    private boolean m_hasWrittenMEM;
+    
+    /* ----------------------------------------------------- *
+     * Speculative decoding of branch targets                *
+     * ----------------------------------------------------- */
+    private static final int PREDECODE_QUEUE_SIZE = 64;
+    private static final int PREDECODE_BLOCKS_PER_IDLE = 16;
+    private final ArrayDeque<CodeBlock> m_predecodeQueue;
+    private boolean m_isPredecodeEnabled;
+    private long m_predecodedBlocks;
+    
+    /* ----------------------------------------------------- *
+     * Attention word, the hot loops only test this to see   *
+     * whether they have to do anything else than running    *
+     * code. Other threads set bits too (yield requests), so *
+     * every update is done atomically                       *
+     * ----------------------------------------------------- */
+    public static final int ATTENTION_INTERRUPT = 0x01;
+    public static final int ATTENTION_HALTED = 0x02;
+    public static final int ATTENTION_ABORT_BLOCK = 0x04;
+    public static final int ATTENTION_YIELD = 0x08;
+    private static final AtomicIntegerFieldUpdater<Intel80386> ATTENTION_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Intel80386.class, "m_attention");
+    private volatile int m_attention;
+    
+    /* ----------------------------------------------------- *
+     * Block profiler (null if profiling is disabled)        *
+     * ----------------------------------------------------- */
+    private BlockProfiler m_profiler;
+    
     /* ----------------------------------------------------- *
      * Code block decoder                                    *
      * ----------------------------------------------------- */
     private final Decoder m_decoder;
     
     /* ----------------------------------------------------- *
-     * Descriptor cache                                      *
+     * System table caches (descriptors are kept by their    *
+     * table, the i/o permissions by the task register),     *
+     * physical pages holding cached entries and the address *
+     * translation they rely on                              *
+     * ----------------------------------------------------- */
+    private final boolean[] m_systemTablePages;
+    private long m_systemTableTLBFlushes;
+    private boolean m_isSystemTablePagingEnabled;
+    private long m_descriptorCacheHits;
+    private long m_descriptorCacheMisses;
+    
+    /* ----------------------------------------------------- *
+     * Buffer for block transfers of string instructions     *
      * ----------------------------------------------------- */
-    private final Descriptor[] m_descriptorCache;
-    private int m_descriptorIndex;
+    private final byte[] m_blockBuffer;
+    
+    /* ----------------------------------------------------- *
+     * Exceptions that carry an error code                   *
+     * ----------------------------------------------------- */
+    private final CPUException m_invalidTSS;
+    private final CPUException m_segmentNotPresent;
+    private final CPUException m_stackFault;
+    private final CPUException m_generalProtectionFault;
+    private final CPUException m_pageFault;
     
     /* ----------------------------------------------------- *
      * Interrupt handling                                    *
      * ----------------------------------------------------- */
-    public static int INTERRUPT_HARDWARE = 0;
-    public static int INTERRUPT_SOFTWARE = 1;
+    public static final int INTERRUPT_HARDWARE = 0;
+    public static final int INTERRUPT_SOFTWARE = 1;
     private PICs m_pics;
     
     /* ----------------------------------------------------- *
@@ -132,11 +227,12 @@ public final class Intel80386 implements HardwareComponent,
         m_scheduler = scheduler;
         
         // Initialize register set
-        EAX = new Reg32("eax"); EBX = new Reg32("ebx");
-        ECX = new Reg32("ecx"); EDX = new Reg32("edx");
-        ESP = new Reg32("esp"); EBP = new Reg32("ebp");
-        ESI = new Reg32("esi"); EDI = new Reg32("edi");
-        EIP = new Reg32("eip");
+        m_registerFile = new int[9];
+        EAX = new Reg32("eax", m_registerFile, 0); EBX = new Reg32("ebx", m_registerFile, 3);
+        ECX = new Reg32("ecx", m_registerFile, 1); EDX = new Reg32("edx", m_registerFile, 2);
+        ESP = new Reg32("esp", m_registerFile, 4); EBP = new Reg32("ebp", m_registerFile, 5);
+        ESI = new Reg32("esi", m_registerFile, 6); EDI = new Reg32("edi", m_registerFile, 7);
+        EIP = new Reg32("eip", m_registerFile, 8);
         AX = new Reg16("ax", EAX); BX = new Reg16("bx", EBX);
         CX = new Reg16("cx", ECX); DX = new Reg16("dx", EDX);
         SP = new Reg16("sp", ESP); BP = new Reg16("bp", EBP);
@@ -170,10 +266,33 @@ public final class Intel80386 implements HardwareComponent,
         // Initialize decoder
         m_decoder = new Decoder(this);
         
-        // Initialize descriptor cache
-        m_descriptorCache = new Descriptor[4];
-        for(int i = 0; i < 4; i++)
-            m_descriptorCache[i] = new Descriptor();
+        // Initialize execution counters (one per exception vector)
+        m_exceptionCounts = new long[32];
+        
+        // Initialize idle loop detection
+        m_idleState = new int[14];
+        m_idleStateNext = new int[14];
+        
+        // Initialize the queue of blocks whose successors get predecoded
+        m_predecodeQueue = new ArrayDeque<>();
+        
+        // Initialize system table caches
+        m_systemTablePages = new boolean[(ATSystemRAM.RAM_SIZE_IN_MB * 1024 * 1024) >>> 12];
+        
+        // Initialize block transfer buffer (a block never leaves its page)
+        m_blockBuffer = new byte[0x1000];
+        
+        // Initialize the exceptions with error code (they are mutable and can't be shared)
+        m_invalidTSS = CPUException.createInvalidTSS();
+        m_segmentNotPresent = CPUException.createSegmentNotPresent();
+        m_stackFault = CPUException.createStackFault();
+        m_generalProtectionFault = CPUException.createGeneralProtectionFault();
+        m_pageFault = CPUException.createPageFault();
+        
+        // Initialize interrupt gate cache
+        m_interruptGates = new InterruptGate[256];
+        for(int i = 0; i < m_interruptGates.length; i++)
+            m_interruptGates[i] = new InterruptGate();
         
         // Initialize codeblock cache
         m_codeBlockCache = new CodeBlockCache[(ATSystemRAM.RAM_SIZE_IN_MB * 1024 * 1024) >>> 12];
@@ -197,7 +316,8 @@ public final class Intel80386 implements HardwareComponent,
         // Reset registers
         EAX.reset(); EBX.reset(); ECX.reset(); EDX.reset();
         ESP.reset(); EBP.reset(); ESI.reset(); EDI.reset();
-        EIP.reset(); FLAGS.reset(); CR.reset(); HALTED = false;
+        EIP.reset(); FLAGS.reset(); CR.reset();
+        m_idleBlock = null;
         DR0.reset(); DR1.reset(); DR2.reset();
         DR3.reset(); DR6.reset(); DR7.reset();
         TR6.reset(); TR7.reset();
@@ -219,25 +339,87 @@ public final class Intel80386 implements HardwareComponent,
         EIP.setValue(0xfff0);
         IDT.setLimit(0x3ff);
         
-        // Reset descriptor cache
-        m_descriptorIndex = 0;
+        // Reset system table caches
+        invalidateSystemTableCaches();
+        
+        // Not halted, but look for pending interrupts once
+        m_attention = ATTENTION_INTERRUPT;
 
         // Reset codeblock cache
-        for(CodeBlockCache cache : m_codeBlockCache) {
-            
-            cache.map.clear();
-            cache.isValid = true;
-        }
+        clearCodeBlockCache();
         
         // Reset mmu
         m_mmu.reset();
     }
+    
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeString(m_cpuType.name());
+        
+        // General purpose registers and flags
+        for(Reg32 reg : new Reg32[] { EAX, EBX, ECX, EDX, ESP, EBP, ESI, EDI, EIP })
+            writer.writeInt(reg.getValue());
+        writer.writeInt(FLAGS.getValue());
+        writer.writeInt(CR.getCR0());
+        writer.writeBoolean(isHalted());
+        
+        // Segments including their descriptor caches
+        for(Segment seg : new Segment[] { CS, DS, ES, FS, GS, SS })
+            seg.saveState(writer);
+        GDT.saveState(writer);
+        LDT.saveState(writer);
+        IDT.saveState(writer);
+        TR.saveState(writer);
+        
+        // Debug and test registers
+        for(RegDebug reg : new RegDebug[] { DR0, DR1, DR2, DR3, DR6, DR7 })
+            writer.writeInt(reg.getValue());
+        writer.writeInt(TR6.getValue());
+        writer.writeInt(TR7.getValue());
+        
+        FPU.saveState(writer);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        String cpuType = reader.readString();
+        if(!cpuType.equals(m_cpuType.name()))
+            throw new IOException(String.format("The save state was made with an %s cpu", cpuType));
+        
+        for(Reg32 reg : new Reg32[] { EAX, EBX, ECX, EDX, ESP, EBP, ESI, EDI, EIP })
+            reg.setValue(reader.readInt());
+        FLAGS.setValue(reader.readInt(), 0xffffffff);
+        CR.setCR0(reader.readInt());
+        m_attention = ATTENTION_INTERRUPT | (reader.readBoolean() ? ATTENTION_HALTED : 0);
+        
+        for(Segment seg : new Segment[] { CS, DS, ES, FS, GS, SS })
+            seg.loadState(reader);
+        GDT.loadState(reader);
+        LDT.loadState(reader);
+        IDT.loadState(reader);
+        TR.loadState(reader);
+        
+        for(RegDebug reg : new RegDebug[] { DR0, DR1, DR2, DR3, DR6, DR7 })
+            reg.setValue(reader.readInt());
+        TR6.setValue(reader.readInt());
+        TR7.setValue(reader.readInt());
+        
+        FPU.loadState(reader);
+        
+        // None of the decoded blocks is valid anymore
+        clearCodeBlockCache();
+    }
 
     @Override
     public void wireWith(HardwareComponent component) {
         
-        if(component instanceof PICs)
+        if(component instanceof PICs) {
+            
             m_pics = (PICs)component;
+            m_pics.setRequestHandler(() -> requestAttention(ATTENTION_INTERRUPT));
+        }
     }
 
     @Override
@@ -270,6 +452,9 @@ public final class Intel80386 implements HardwareComponent,
                .option("66 MHz", "66000000")
                .option("75 MHz", "75000000")
                .build();
+        
+        builder.value("Predecode branch targets", "False", Type.ToggleValue, this::setPredecodeEnabled)
+               .build();
     }
     
     private boolean setFrequency(String value) {
@@ -278,6 +463,13 @@ public final class Intel80386 implements HardwareComponent,
         return true;
     }
     
+    private boolean setPredecodeEnabled(String value) {
+        
+        m_isPredecodeEnabled = Boolean.valueOf(value);
+        m_predecodeQueue.clear();
+        return true;
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Interface implementation of CPU">
     
@@ -288,28 +480,49 @@ public final class Intel80386 implements HardwareComponent,
             
             try {
                 
-                if(m_pics.isPending()) {
+                int attention = m_attention;
+                if(attention != 0) {
                     
-                    HALTED = false;
-                    if(FLAGS.IF) {
+                    if((attention & ATTENTION_YIELD) != 0) {
+                        
+                        clearAttention(ATTENTION_YIELD);
+                        return;
+                    }
+                    
+                    if((attention & ATTENTION_INTERRUPT) != 0)
+                        checkInterrupt();
                     
-                        if(CR.isInRealMode())
-                            handleRealModeInterrupt(m_pics.getInterrupt());
-                        else
-                            handleProtectedModeInterrupt(m_pics.getInterrupt(), INTERRUPT_HARDWARE, null);
+                    // The interrupt delivery might have hit the last block
+                    // as well, so this is cleared afterwards
+                    if((attention & ATTENTION_ABORT_BLOCK) != 0)
+                        clearAttention(ATTENTION_ABORT_BLOCK);
+                    
+                    if(isHalted()) {
                         
-                        m_scheduler.updateClock(Scheduler.toFixedPoint(61));
+                        // Nothing happens until the next interrupt arrives
+                        predecodeSuccessors();
+                        m_scheduler.skipIdleCycles(Math.max(Scheduler.toFixedPoint(4), m_scheduler.getCyclesUntilNextEvent()));
+                        continue;
                     }
                 }
-                if(HALTED) {
+                
+                m_currentBlock = getCurrentBlock();
+                m_executedBlocks++;
+                
+                if(m_currentBlock == m_idleBlock) {
                     
-                    m_scheduler.updateClock(Scheduler.toFixedPoint(4));
+                    detectIdleLoop();
                 }
                 else {
                     
-                    m_currentBlock = getCurrentBlock();
-                    m_currentBlock.run();
+                    m_idleBlock = m_currentBlock;
+                    m_idleIterations = -1;
                 }
+                
+                if(m_profiler != null)
+                    m_profiler.run(m_currentBlock);
+                else
+                    m_currentBlock.run();
             }
             catch(CPUException ex) {
                 
@@ -319,22 +532,187 @@ public final class Intel80386 implements HardwareComponent,
         }
     }
     
+    @Override
+    public void requestYield() {
+        
+        requestAttention(ATTENTION_YIELD);
+    }
+    
+    public void requestAttention(int bits) {
+        
+        int attention;
+        do {
+            
+            attention = m_attention;
+        }
+        while(!ATTENTION_UPDATER.compareAndSet(this, attention, attention | bits));
+    }
+    
+    public void clearAttention(int bits) {
+        
+        int attention;
+        do {
+            
+            attention = m_attention;
+        }
+        while(!ATTENTION_UPDATER.compareAndSet(this, attention, attention & ~bits));
+    }
+    
+    public int getAttention() {
+        
+        return m_attention;
+    }
+    
+    public void halt() {
+        
+        requestAttention(ATTENTION_HALTED);
+    }
+    
+    public boolean isHalted() {
+        
+        return (m_attention & ATTENTION_HALTED) != 0;
+    }
+    
     public void updateClock(int cycles) {
         
         m_scheduler.updateClock(cycles);
     }
     
+    /**
+     * Called whenever a block jumps back to its own start. If the registers
+     * didn't change over a couple of iterations and neither memory nor a
+     * port was written, the block is polling for something that only a
+     * device can change. In that case the time up to the next device event
+     * gets skipped.
+     */
+    private void detectIdleLoop() {
+        
+        int[] state = m_idleStateNext;
+        state[0] = EAX.getValue(); state[1] = EBX.getValue();
+        state[2] = ECX.getValue(); state[3] = EDX.getValue();
+        state[4] = ESP.getValue(); state[5] = EBP.getValue();
+        state[6] = ESI.getValue(); state[7] = EDI.getValue();
+        state[8] = FLAGS.getValue();
+        state[9] = DS.getSelector(); state[10] = ES.getSelector();
+        state[11] = FS.getSelector(); state[12] = GS.getSelector();
+        state[13] = SS.getSelector();
+        
+        if(!m_hasWrittenIO && !m_hasWrittenMEM && m_idleIterations >= 0 && Arrays.equals(state, m_idleState)) {
+            
+            if(++m_idleIterations >= IDLE_LOOP_ITERATIONS) {
+                
+                int cycles = m_scheduler.getCyclesUntilNextEvent();
+                if(cycles > 0)
+                    m_scheduler.skipIdleCycles(cycles);
+                
+                predecodeSuccessors();
+                m_idleIterations = 0;
+            }
+        }
+        else {
+            
+            m_idleIterations = 0;
+        }
+        
+        m_idleStateNext = m_idleState;
+        m_idleState = state;
+        m_hasWrittenIO = false;
+        m_hasWrittenMEM = false;
+    }
+    
+    public void retireInstructions(int count) {
+        
+        m_retiredInstructions += count;
+    }
+    
+    @Override
+    public long getRetiredInstructions() {
+        
+        return m_retiredInstructions;
+    }
+    
+    @Override
+    public long getDecodedBlocks() {
+        
+        return m_decodedBlocks;
+    }
+    
+    @Override
+    public long getExecutedBlocks() {
+        
+        return m_executedBlocks;
+    }
+    
+    @Override
+    public long getCacheInvalidations() {
+        
+        return m_cacheInvalidations;
+    }
+    
+    @Override
+    public long getDeliveredInterrupts() {
+        
+        return m_deliveredInterrupts;
+    }
+    
+    public long getExceptionCount(int vector) {
+        
+        return m_exceptionCounts[vector];
+    }
+    
+    /**
+     * Enables the block profiler. It should be set before the system runs,
+     * as it is accessed by the emulation thread only.
+     */
+    public void setProfiler(BlockProfiler profiler) {
+        
+        m_profiler = profiler;
+    }
+    
+    public BlockProfiler getProfiler() {
+        
+        return m_profiler;
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="Interrupt handling">
     
     public boolean isInterruptPending() {
         
-        return FLAGS.IF & m_pics.isPending();
+        return (m_attention & ATTENTION_INTERRUPT) != 0 && FLAGS.IF && m_pics.isPending();
+    }
+    
+    private void checkInterrupt() {
+        
+        // The attention bit only says that there might be a request, it is
+        // kept as long as one is pending
+        if(!m_pics.isPending()) {
+            
+            clearAttention(ATTENTION_INTERRUPT);
+            return;
+        }
+        
+        if(isHalted())
+            clearAttention(ATTENTION_HALTED);
+        
+        if(FLAGS.IF) {
+            
+            m_deliveredInterrupts++;
+            
+            if(CR.isInRealMode())
+                handleRealModeInterrupt(m_pics.getInterrupt());
+            else
+                handleProtectedModeInterrupt(m_pics.getInterrupt(), INTERRUPT_HARDWARE, null);
+            
+            m_scheduler.updateClock(Scheduler.toFixedPoint(61));
+        }
     }
     
     private void handleCPUException(CPUException exception) {
         
+        m_exceptionCounts[exception.getVector() & 0x1f]++;
+        
         try {
             
             if(CR.isInRealMode())
@@ -387,7 +765,7 @@ public final class Intel80386 implements HardwareComponent,
     public void handleProtectedModeInterrupt(int vector, int type, CPUException exception) {
         
         if(FLAGS.VM && (FLAGS.IOPL != 3) && (type != INTERRUPT_HARDWARE))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw getGeneralProtectionFault(0);
         
         int oldESP = ESP.getValue();
         try {
@@ -398,16 +776,32 @@ public final class Intel80386 implements HardwareComponent,
             // Interrupt vector must be within IDT table limits
             Descriptor descGate;
             if((descGate = getDescriptor(IDT, offset)) == null)
-                throw CPUException.getGeneralProtectionFault(offset + 2 + EXT);
+                throw getGeneralProtectionFault(offset + 2 + EXT);
+            
+            // Fast path for a trap or interrupt gate that was already
+            // validated and doesn't change the privilege level
+            InterruptGate gate = m_interruptGates[vector];
+            if(gate.gate == descGate && !FLAGS.VM &&
+               (type == INTERRUPT_HARDWARE || descGate.getDPL() >= getCPL())) {
+                
+                Descriptor descCS = getDescriptor(gate.cs);
+                if(descCS == gate.descCS &&
+                   (descCS.getTypeInfo().isConformingCodeSegment() || descCS.getDPL() == getCPL())) {
+                    
+                    enterInterruptGate(descGate, gate.cs, descCS, gate.ip, exception);
+                    m_fastInterrupts++;
+                    return;
+                }
+            }
             
 
             // If software interrupt (INT n, INT 3, INTO) then gate descriptor DPL >= CPL
             if(type != INTERRUPT_HARDWARE && descGate.getDPL() < getCPL())
-                throw CPUException.getGeneralProtectionFault(offset + 2 + EXT);
+                throw getGeneralProtectionFault(offset + 2 + EXT);
             
             // Gate must be present
             if(!descGate.isPresent())
-                throw CPUException.getSegmentNotPresent(offset + 2 + EXT);
+                throw getSegmentNotPresent(offset + 2 + EXT);
 
             
             //
@@ -422,29 +816,35 @@ public final class Intel80386 implements HardwareComponent,
 
                 // Selector must be non-null
                 if(isNullSelector(cs))
-                    throw CPUException.getGeneralProtectionFault(EXT);
+                    throw getGeneralProtectionFault(EXT);
 
                 // Selector must be within its descriptor table limits
                 Descriptor descCS;
                 if((descCS = getDescriptor(cs)) == null)
-                    throw CPUException.getGeneralProtectionFault((cs & 0xfffc) + EXT);
+                    throw getGeneralProtectionFault((cs & 0xfffc) + EXT);
 
                 // AR byte must indicate code segment
                 if(!descCS.getTypeInfo().isCodeSegment())
-                    throw CPUException.getGeneralProtectionFault((cs & 0xfffc) + EXT);
+                    throw getGeneralProtectionFault((cs & 0xfffc) + EXT);
 
                 // Segment must be present
                 if(!descCS.isPresent())
-                    throw CPUException.getSegmentNotPresent((cs & 0xfffc) + EXT);
+                    throw getSegmentNotPresent((cs & 0xfffc) + EXT);
 
                 // Instruction pointer must be within CS segment limits
                 if(descCS.isOutsideLimit(ip, 1))
-                    throw CPUException.getGeneralProtectionFault(0);
+                    throw getGeneralProtectionFault(0);
                 
                 
                 if(!descCS.isSize32())
                     ip &= 0xffff;
                 
+                // Remember the validated gate for the fast path
+                gate.gate = descGate;
+                gate.descCS = descCS;
+                gate.cs = cs;
+                gate.ip = ip;
+                
                 
                 //
                 // Trap or Interrupt Gate: Inner privilege
@@ -454,7 +854,7 @@ public final class Intel80386 implements HardwareComponent,
 
                     // CS selector's DPL has to be 0 in VM8086 Mode
                     if(FLAGS.VM && descCS.getDPL() != 0)
-                        throw CPUException.getGeneralProtectionFault(cs & 0xfffc);
+                        throw getGeneralProtectionFault(cs & 0xfffc);
                     
                     
                     int oldSS = SS.getSelector();
@@ -465,27 +865,27 @@ public final class Intel80386 implements HardwareComponent,
                     
                     // SS selector must be non-null
                     if(isNullSelector(ss))
-                        throw CPUException.getGeneralProtectionFault(EXT);
+                        throw getGeneralProtectionFault(EXT);
 
                     // Selector index must be within its descriptor table limits
                     Descriptor descSS;
                     if((descSS = getDescriptor(ss)) == null)
-                        throw CPUException.getInvalidTSS((ss & 0xfffc) + EXT);
+                        throw getInvalidTSS((ss & 0xfffc) + EXT);
 
                     // Selectors RPL and DPL must be equal to the code segments DPL
                     if(descCS.getDPL() != getSelectorsRPL(ss) ||
                        descCS.getDPL() != descSS.getDPL()) {
                         
-                        throw CPUException.getInvalidTSS((ss & 0xfffc) + EXT);
+                        throw getInvalidTSS((ss & 0xfffc) + EXT);
                     }
 
                     // Descriptor must indicate writable data segment
                     if(!descSS.getTypeInfo().isWritableDataSegment())
-                        throw CPUException.getInvalidTSS((ss & 0xfffc) + EXT);
+                        throw getInvalidTSS((ss & 0xfffc) + EXT);
 
                     // Segment must be present
                     if(!descSS.isPresent())
-                        throw CPUException.getStackFault((ss & 0xfffc) + EXT);
+                        throw getStackFault((ss & 0xfffc) + EXT);
                     
                     
                     // Load SS:eSP
@@ -537,39 +937,10 @@ public final class Intel80386 implements HardwareComponent,
                 //
                 else {
                     
-                    throw CPUException.getGeneralProtectionFault((cs & 0xfffc) + EXT);
-                }
-                
-                // Push return information on the stack
-                if(descGate.getTypeInfo().is32BitGate()) {
-
-                    pushStack32(FLAGS.getValue());
-                    pushStack32(CS.getSelector());
-                    pushStack32(EIP.getValue());
-
-                    if(exception != null && exception.hasErrorCode())
-                        pushStack32(exception.getErrorCode());
-                }
-                else {
-
-                    pushStack16(FLAGS.getValue());
-                    pushStack16(CS.getSelector());
-                    pushStack16(EIP.getValue());
-
-                    if(exception != null && exception.hasErrorCode())
-                        pushStack16(exception.getErrorCode());
+                    throw getGeneralProtectionFault((cs & 0xfffc) + EXT);
                 }
                 
-                // Load CS:IP
-                CS.loadProtectedMode(cs, descCS);
-                EIP.setValue(ip);
-                
-                // Update flags
-                FLAGS.NT = false;
-                FLAGS.TF = false;
-                FLAGS.VM = false;
-                if(descGate.getTypeInfo().isInterruptGate())
-                    FLAGS.IF = false;
+                enterInterruptGate(descGate, cs, descCS, ip, exception);
             }
             
             //
@@ -581,20 +952,20 @@ public final class Intel80386 implements HardwareComponent,
                 
                 // Must specify global in the local/global bit
                 if(isReferencingLDT(tssSelector))
-                    throw CPUException.getInvalidTSS(tssSelector & 0xfffc);
+                    throw getInvalidTSS(tssSelector & 0xfffc);
 
                 // Index must be within GDT limits
                 Descriptor tssDescriptor;
                 if((tssDescriptor = getDescriptor(GDT, tssSelector & 0xfff8)) == null)
-                    throw CPUException.getInvalidTSS(tssSelector & 0xfffc);
+                    throw getInvalidTSS(tssSelector & 0xfffc);
 
                 // AR byte must specify an available task state segment
                 if(!tssDescriptor.getTypeInfo().isAvailableTaskStateSegment())
-                    throw CPUException.getInvalidTSS(tssSelector & 0xfffc);
+                    throw getInvalidTSS(tssSelector & 0xfffc);
                 
                 // TSS must be present
                 if(!tssDescriptor.isPresent())
-                    throw CPUException.getSegmentNotPresent(tssSelector & 0xfffc);
+                    throw getSegmentNotPresent(tssSelector & 0xfffc);
 
                 // Switch to task
                 TR.switchToTask(tssSelector, tssDescriptor, TaskRegister.TASKSWITCH_INT);
@@ -614,7 +985,7 @@ public final class Intel80386 implements HardwareComponent,
             //
             else {
                 
-                throw CPUException.getGeneralProtectionFault(offset + 2 + EXT);
+                throw getGeneralProtectionFault(offset + 2 + EXT);
             }
         }
         catch(CPUException ex) {
@@ -626,11 +997,53 @@ public final class Intel80386 implements HardwareComponent,
     
     }
     
+    private void enterInterruptGate(Descriptor descGate, int cs, Descriptor descCS, int ip, CPUException exception) {
+        
+        // Push return information on the stack
+        if(descGate.getTypeInfo().is32BitGate()) {
+            
+            pushStack32(FLAGS.getValue());
+            pushStack32(CS.getSelector());
+            pushStack32(EIP.getValue());
+            
+            if(exception != null && exception.hasErrorCode())
+                pushStack32(exception.getErrorCode());
+        }
+        else {
+            
+            pushStack16(FLAGS.getValue());
+            pushStack16(CS.getSelector());
+            pushStack16(EIP.getValue());
+            
+            if(exception != null && exception.hasErrorCode())
+                pushStack16(exception.getErrorCode());
+        }
+        
+        // Load CS:IP
+        CS.loadProtectedMode(cs, descCS);
+        EIP.setValue(ip);
+        
+        // Update flags
+        FLAGS.NT = false;
+        FLAGS.TF = false;
+        FLAGS.VM = false;
+        if(descGate.getTypeInfo().isInterruptGate())
+            FLAGS.IF = false;
+    }
+    
+    public long getFastInterrupts() {
+        
+        return m_fastInterrupts;
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Codeblock cache">
     
     public void invalidateAddress(int addrStart, int offs) {
         
+        // Every memory write of the cpu ends up here
+        m_hasWrittenMEM = true;
+        
         // Everything about this is sooooo hacky... Find a way to do this
         // properly
         
@@ -638,8 +1051,23 @@ public final class Intel80386 implements HardwareComponent,
             
             m_codeBlockCache[addrStart >>> 12].isValid = false;
             
+            if(m_systemTablePages[addrStart >>> 12]) {
+                
+                m_systemTablePages[addrStart >>> 12] = false;
+                invalidateSystemTableCaches();
+            }
+            
             if(m_currentBlock.isCoveringPhysicalAddress(addrStart, addrStart + offs))
-                m_currentBlock.invalidate();
+                requestAttention(ATTENTION_ABORT_BLOCK);
+        }
+    }
+    
+    private void clearCodeBlockCache() {
+        
+        for(CodeBlockCache cache : m_codeBlockCache) {
+            
+            cache.map.clear();
+            cache.isValid = true;
         }
     }
     
@@ -673,20 +1101,113 @@ public final class Intel80386 implements HardwareComponent,
             // the whole block cache for this page. TODO: Find a better way.
             // The method in Intel8086 sucks also as it creates a ton of
             // HashMap entry iterator objects...
+            if(m_profiler != null)
+                m_profiler.onInvalidated(cache.map.values());
+            
             cache.map.clear();
+            m_cacheInvalidations++;
             cache.isValid = true;
         }
         
         // Decode the block and put it into the cache
         block = m_decoder.decodeCodeBlock();
-        if(block.isCacheable())
+        m_decodedBlocks++;
+        
+        if(m_profiler != null)
+            m_profiler.onDecoded(block);
+        if(block.isCacheable()) {
+            
             cache.map.put(m_integerLUT[address & 0xfff], block);
+            
+            if(m_isPredecodeEnabled)
+                queuePredecode(block);
+        }
         
         return block;
     }
     
+    private void queuePredecode(CodeBlock block) {
+        
+        if(block.getSuccessors().length == 0)
+            return;
+        
+        if(m_predecodeQueue.size() >= PREDECODE_QUEUE_SIZE)
+            m_predecodeQueue.poll();
+        
+        m_predecodeQueue.add(block);
+    }
+    
+    /**
+     * Decodes the static successors of recently decoded blocks in advance.
+     * This happens while the cpu idles, so that the decoding doesn't delay
+     * the emulation once the guest jumps into that code. Only targets in the
+     * current code segment whose page is in the tlb are decoded, so that the
+     * decoding has no visible side effects.
+     */
+    private void predecodeSuccessors() {
+        
+        if(m_predecodeQueue.isEmpty())
+            return;
+        
+        int eip = EIP.getValue();
+        int cr2 = CR.getCR2();
+        try {
+            
+            int numBlocks = PREDECODE_BLOCKS_PER_IDLE;
+            while(numBlocks > 0 && !m_predecodeQueue.isEmpty()) {
+                
+                CodeBlock source = m_predecodeQueue.poll();
+                if(!source.isMatchingSegment(CS.getSelector(), CS.isSize32(), SS.isSize32()))
+                    continue;
+                
+                for(int target : source.getSuccessors()) {
+                    
+                    // The first instruction might otherwise reach into the next page
+                    int linearAddress = CS.getBase() + target;
+                    if((linearAddress & 0xfff) > 0xff0 || !m_mmu.isTranslationCached(linearAddress))
+                        continue;
+                    
+                    int address = m_mmu.getPhysicalAddress(linearAddress, false, true);
+                    if((address & ~ATSystemRAM.RAM_SIZE_MASK) != 0)
+                        continue;
+                    
+                    CodeBlockCache cache = m_codeBlockCache[address >>> 12];
+                    CodeBlock block = cache.map.get(m_integerLUT[address & 0xfff]);
+                    if(!cache.isValid || (block != null && block.isMatching(address, CS.getSelector(), target, CS.isSize32(), SS.isSize32())))
+                        continue;
+                    
+                    EIP.setValue(target);
+                    block = m_decoder.decodeCodeBlock();
+                    m_predecodedBlocks++;
+                    numBlocks--;
+                    
+                    if(block.isCacheable()) {
+                        
+                        cache.map.put(m_integerLUT[address & 0xfff], block);
+                        
+                        queuePredecode(block);
+                    }
+                }
+            }
+        }
+        catch(CPUException ex) {
+            
+            // A target that isn't accessible just isn't decoded
+        }
+        finally {
+            
+            EIP.setValue(eip);
+            CR.setCR2(cr2);
+        }
+    }
+    
+    public long getPredecodedBlocks() {
+        
+        return m_predecodedBlocks;
+    }
+    
     // </editor-fold>
-    // <editor-fold defaultstate="collapsed" desc="Descriptor cache">
+    // <editor-fold defaultstate="collapsed" desc="System table caches">
     
     public Descriptor getDescriptor(int selector) {
         
@@ -703,17 +1224,86 @@ public final class Intel80386 implements HardwareComponent,
         if(table.isOutsideLimit(offset, 8))
             return null;
         
-        Descriptor desc = m_descriptorCache[m_descriptorIndex];
+        validateSystemTableCaches();
+        
+        Descriptor desc = table.getCachedDescriptor(offset);
+        if(desc != null) {
+            
+            m_descriptorCacheHits++;
+            return desc;
+        }
+        
+        int address = table.getBase() + offset;
+        
+        // A new descriptor is created for every miss, as the callers may
+        // still hold on to the one that was cached before
+        desc = new Descriptor();
         desc.setDescriptor(
                 
-            m_mmu.readMEM32(table.getBase() + offset, false),
-            m_mmu.readMEM32(table.getBase() + offset + 4, false)
+            m_mmu.readMEM32(address, false),
+            m_mmu.readMEM32(address + 4, false)
         );
-        m_descriptorIndex = (m_descriptorIndex + 1) & 0x03;
+        m_descriptorCacheMisses++;
+        
+        if(markSystemTablePages(address, 8))
+            table.putCachedDescriptor(offset, desc);
         
         return desc;
     }
     
+    public void validateSystemTableCaches() {
+        
+        // The tables are addressed linear, so every change of the address
+        // translation might move them
+        if(m_systemTableTLBFlushes != m_mmu.getTLBFlushes() ||
+           m_isSystemTablePagingEnabled != m_mmu.isPagingEnabled()) {
+            
+            invalidateSystemTableCaches();
+        }
+    }
+    
+    /**
+     * Marks the physical pages of a system table entry that was just read,
+     * so that a write to them invalidates the system table caches. Returns
+     * false if the entry is not in ram and therefore must not be cached, as
+     * writes to other memory don't invalidate anything.
+     */
+    public boolean markSystemTablePages(int address, int size) {
+        
+        int physStart = m_mmu.getPhysicalAddress(address, false, false);
+        int physEnd = m_mmu.getPhysicalAddress(address + size - 1, false, false);
+        if(((physStart | physEnd) & ~ATSystemRAM.RAM_SIZE_MASK) != 0)
+            return false;
+        
+        m_systemTablePages[physStart >>> 12] = true;
+        m_systemTablePages[physEnd >>> 12] = true;
+        
+        return true;
+    }
+    
+    private void invalidateSystemTableCaches() {
+        
+        GDT.invalidateCache();
+        LDT.invalidateCache();
+        IDT.invalidateCache();
+        TR.invalidateIOPermissionCache();
+        
+        // Marks of other pages are kept, they just cause another
+        // invalidation once that page gets written
+        m_systemTableTLBFlushes = m_mmu.getTLBFlushes();
+        m_isSystemTablePagingEnabled = m_mmu.isPagingEnabled();
+    }
+    
+    public long getDescriptorCacheHits() {
+        
+        return m_descriptorCacheHits;
+    }
+    
+    public long getDescriptorCacheMisses() {
+        
+        return m_descriptorCacheMisses;
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="Methods for I/O access">
@@ -739,21 +1329,50 @@ public final class Intel80386 implements HardwareComponent,
     public void writeIO8(int port, int data) {
         
         TR.checkIOAccess(port, 1);
+        m_hasWrittenIO = true;
         m_ioMap.writeIO8(port, data & 0xff);
     }
     
     public void writeIO16(int port, int data) {
         
         TR.checkIOAccess(port, 2);
+        m_hasWrittenIO = true;
         m_ioMap.writeIO16(port, data & 0xffff);
     }
     
     public void writeIO32(int port, int data) {
         
         TR.checkIOAccess(port, 4);
+        m_hasWrittenIO = true;
         m_ioMap.writeIO32(port, data);
     }
     
+    public void readIOBlock16(int port, byte[] dst, int count) {
+        
+        TR.checkIOAccess(port, 2);
+        m_ioMap.readIOBlock16(port, dst, 0, count);
+    }
+    
+    public void readIOBlock32(int port, byte[] dst, int count) {
+        
+        TR.checkIOAccess(port, 4);
+        m_ioMap.readIOBlock32(port, dst, 0, count);
+    }
+    
+    public void writeIOBlock16(int port, byte[] src, int count) {
+        
+        TR.checkIOAccess(port, 2);
+        m_hasWrittenIO = true;
+        m_ioMap.writeIOBlock16(port, src, 0, count);
+    }
+    
+    public void writeIOBlock32(int port, byte[] src, int count) {
+        
+        TR.checkIOAccess(port, 4);
+        m_hasWrittenIO = true;
+        m_ioMap.writeIOBlock32(port, src, 0, count);
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Methods for memory access">
     
@@ -857,6 +1476,100 @@ public final class Intel80386 implements HardwareComponent,
         return data;
     }
     
+    // </editor-fold>
+    // <editor-fold defaultstate="collapsed" desc="Methods for block transfers">
+    
+    public byte[] getBlockBuffer() {
+        
+        return m_blockBuffer;
+    }
+    
+    public int getBlockLength(Segment segment, int offset, int length, boolean isAddressSize32) {
+        
+        // A block never leaves the current page and never wraps the index register
+        long indexLimit = isAddressSize32 ? 0x100000000l : 0x10000l;
+        
+        length = Math.min(length, 0x1000 - ((segment.getBase() + offset) & 0xfff));
+        length = (int)Math.min(length, indexLimit - (offset & 0xffffffffl));
+        
+        // Limit violations are left to the single element access
+        if(length <= 0 || segment.isOutsideLimit(offset, length))
+            return 0;
+        
+        return length;
+    }
+    
+    public void checkMEMBlockWrite(Segment segment, int offset, int length) {
+        
+        segment.checkProtectionWrite(offset, length);
+        m_mmu.getPhysicalAddress(segment.getBase() + offset, true, MMU.USER_ACCESS);
+    }
+    
+    public void readMEMBlock(Segment segment, int offset, byte[] dst, int length) {
+        
+        segment.checkProtectionRead(offset, length);
+        m_mmu.readMEMBlock(segment.getBase() + offset, dst, length, MMU.USER_ACCESS);
+    }
+    
+    public void writeMEMBlock(Segment segment, int offset, byte[] src, int length) {
+        
+        segment.checkProtectionWrite(offset, length);
+        m_mmu.writeMEMBlock(segment.getBase() + offset, src, length, MMU.USER_ACCESS);
+    }
+    
+    // </editor-fold>
+    // <editor-fold defaultstate="collapsed" desc="Exceptions with error code">
+    
+    public CPUException getInvalidTSS(int data) {
+        
+        m_invalidTSS.setErrorCode(data);
+        return m_invalidTSS;
+    }
+    
+    public CPUException getSegmentNotPresent(int data) {
+        
+        m_segmentNotPresent.setErrorCode(data);
+        return m_segmentNotPresent;
+    }
+    
+    public CPUException getStackFault(int data) {
+        
+        m_stackFault.setErrorCode(data);
+        return m_stackFault;
+    }
+    
+    public CPUException getGeneralProtectionFault(int data) {
+        
+        m_generalProtectionFault.setErrorCode(data);
+        return m_generalProtectionFault;
+    }
+    
+    public CPUException getPageProtectionViolation(boolean isWriteAccess, boolean isUserAccess) {
+        
+        int errorCode = 0x01;
+        
+        if(isWriteAccess)
+            errorCode |= 0x02;
+        if(isUserAccess)
+            errorCode |= 0x04;
+        
+        m_pageFault.setErrorCode(errorCode);
+        return m_pageFault;
+    }
+    
+    public CPUException getPageNotPresent(boolean isWriteAccess, boolean isUserAccess) {
+        
+        int errorCode = 0x00;
+        
+        if(isWriteAccess)
+            errorCode |= 0x02;
+        if(isUserAccess)
+            errorCode |= 0x04;
+        
+        m_pageFault.setErrorCode(errorCode);
+        return m_pageFault;
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="Some helper">
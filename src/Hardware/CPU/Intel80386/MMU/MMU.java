@@ -17,10 +17,12 @@
  */
 package Hardware.CPU.Intel80386.MMU;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Intel80386;
 import Hardware.HardwareComponent;
 import MemoryMap.MemoryMap;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 import java.util.Arrays;
 
 
@@ -61,6 +63,13 @@ public final class MMU implements HardwareComponent {
      * ----------------------------------------------------- */
     private final int[] m_tlb;
     
+    /* ----------------------------------------------------- *
+     * TLB statistics                                        *
+     * ----------------------------------------------------- */
+    private long m_tlbLookups;
+    private long m_tlbMisses;
+    private long m_tlbFlushes;
+    
     /* ----------------------------------------------------- *
      * Reference to the cpu and memory map                   *
      * ----------------------------------------------------- */
@@ -93,6 +102,27 @@ public final class MMU implements HardwareComponent {
         Arrays.fill(m_tlb, 0xffffffff);
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(m_pdbr);
+        writer.writeInt(m_pfla);
+        writer.writeBoolean(m_isPagingEnabled);
+        writer.writeInt(m_a20GateMask);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_pdbr = reader.readInt();
+        m_pfla = reader.readInt();
+        m_isPagingEnabled = reader.readBoolean();
+        m_a20GateMask = reader.readInt();
+        
+        // The TLB is rebuilt on demand
+        Arrays.fill(m_tlb, 0xffffffff);
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="A20 Gate">
@@ -138,6 +168,22 @@ public final class MMU implements HardwareComponent {
         m_pdbr = address & 0xfffff000;
         
         Arrays.fill(m_tlb, 0xffffffff);
+        m_tlbFlushes++;
+    }
+    
+    public long getTLBHits() {
+        
+        return m_tlbLookups - m_tlbMisses;
+    }
+    
+    public long getTLBMisses() {
+        
+        return m_tlbMisses;
+    }
+    
+    public long getTLBFlushes() {
+        
+        return m_tlbFlushes;
     }
     
     public void invalidatePage(int address) {
@@ -148,6 +194,21 @@ public final class MMU implements HardwareComponent {
     
     
     
+    /**
+     * Returns true if the linear address can be translated without walking
+     * the page tables, which might modify the accessed bits or page fault.
+     */
+    public boolean isTranslationCached(int linearAddress) {
+        
+        if(!m_isPagingEnabled)
+            return true;
+        
+        int physicalAddress = m_tlb[(linearAddress >>> 12) & 0x3ff];
+        
+        return physicalAddress != 0xffffffff &&
+               (((linearAddress >>> 22) ^ physicalAddress) & 0x3ff) == 0;
+    }
+    
     public int getPhysicalAddress(int linearAddress, boolean isWrite, boolean isUserAccess) {
         
         if(m_isPagingEnabled) {
@@ -156,12 +217,15 @@ public final class MMU implements HardwareComponent {
             int linearAddrHi = linearAddress >>> 22;
             
             int physicalAddress = m_tlb[tlbIdx];
+            m_tlbLookups++;
             
             //
             // Walk the page tables if no entry in the tlb was found
             //
             if(physicalAddress == 0xffffffff || (((linearAddrHi ^ physicalAddress) & 0x3ff) != 0)) {
                 
+                m_tlbMisses++;
+                
                 // Read page directory
                 int pdEntryAddress = m_pdbr + ((linearAddress >>> 20) & 0xffc);
                 int pdEntry = m_memoryMap.readMEM32(pdEntryAddress);
@@ -170,7 +234,7 @@ public final class MMU implements HardwareComponent {
 
                     setPageFaultLinearAddress(linearAddress);
 
-                    throw CPUException.getPageNotPresent(isWrite, m_cpu.getCPL() == 3);
+                    throw m_cpu.getPageNotPresent(isWrite, m_cpu.getCPL() == 3);
                 }
 
                 // Read page table
@@ -181,7 +245,7 @@ public final class MMU implements HardwareComponent {
 
                     setPageFaultLinearAddress(linearAddress);
 
-                    throw CPUException.getPageNotPresent(isWrite, m_cpu.getCPL() == 3);
+                    throw m_cpu.getPageNotPresent(isWrite, m_cpu.getCPL() == 3);
                 }
 
                 // Mark page directory/table accesses
@@ -215,7 +279,7 @@ public final class MMU implements HardwareComponent {
                 if(isSystemPage || (isReadOnly && isWrite)) {
 
                     setPageFaultLinearAddress(linearAddress);
-                    throw CPUException.getPageProtectionViolation(isWrite, true);
+                    throw m_cpu.getPageProtectionViolation(isWrite, true);
                 }
             }
             
@@ -308,5 +372,19 @@ public final class MMU implements HardwareComponent {
         }
     }
     
+    // Block transfers must not cross a page boundary
+    public void readMEMBlock(int address, byte[] dst, int length, boolean isUserAccess) {
+        
+        m_memoryMap.readMEMBlock(getPhysicalAddress(address, READ_ACCESS, isUserAccess), dst, 0, length);
+    }
+    
+    public void writeMEMBlock(int address, byte[] src, int length, boolean isUserAccess) {
+        
+        address = getPhysicalAddress(address, WRITE_ACCESS, isUserAccess);
+        
+        m_cpu.invalidateAddress(address, length - 1);
+        m_memoryMap.writeMEMBlock(address, src, 0, length);
+    }
+    
     // </editor-fold>
 }
@@ -30,6 +30,7 @@ public final class OperandM80ExtendedDouble implements OperandFPU {
     private final Intel80386 m_cpu;
     private final Segment m_segment;
     private final Pointer m_offset;
+    private final Float80 m_f80;
     
     public OperandM80ExtendedDouble(Intel80386 cpu,
                                     Segment segment,
@@ -38,6 +39,7 @@ public final class OperandM80ExtendedDouble implements OperandFPU {
         m_cpu = cpu;
         m_segment = segment;
         m_offset = offset;
+        m_f80 = new Float80();
     }
     
     @Override
@@ -53,7 +55,7 @@ public final class OperandM80ExtendedDouble implements OperandFPU {
     @Override
     public void setValue(double value) {
         
-        Float80 f80 = ExtendedDouble.toFloat80(value);
+        Float80 f80 = ExtendedDouble.toFloat80(value, m_f80);
         
         m_cpu.writeMEM32(m_segment, m_offset.getAddress(), f80.low);
         m_cpu.writeMEM32(m_segment, m_offset.getAddress() + 4, f80.mid);
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.CPU.Intel80386.Operands.Register;
+
+import Hardware.CPU.Intel80386.Operands.Operand;
+import Hardware.CPU.Intel80386.Register.General.Reg32;
+
+
+
+public final class OperandRegister32 implements Operand {
+    
+    private final String m_name;
+    private final int[] m_regs;
+    private final int m_index;
+    
+    public OperandRegister32(Reg32 reg) {
+        
+        m_name = reg.toString();
+        m_regs = reg.getRegisterFile();
+        m_index = reg.getIndex();
+    }
+    
+    @Override
+    public int getValue() {
+        
+        return m_regs[m_index];
+    }
+    
+    @Override
+    public void setValue(int value) {
+        
+        m_regs[m_index] = value;
+    }
+    
+    @Override
+    public String toString() {
+        
+        return m_name;
+    }
+}
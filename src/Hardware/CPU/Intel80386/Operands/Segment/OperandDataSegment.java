@@ -17,7 +17,6 @@
  */
 package Hardware.CPU.Intel80386.Operands.Segment;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Intel80386;
 import Hardware.CPU.Intel80386.Operands.Operand;
 import Hardware.CPU.Intel80386.Register.Segments.*;
@@ -73,13 +72,13 @@ public final class OperandDataSegment implements Operand {
                 // Selector index must be within its descriptor table limits
                 Descriptor desc;
                 if((desc = m_cpu.getDescriptor(value)) == null)
-                    throw CPUException.getGeneralProtectionFault(value & 0xfffc);
+                    throw m_cpu.getGeneralProtectionFault(value & 0xfffc);
                 
                 // Segment has to be a data or readable code segment
                 if(!(desc.getTypeInfo().isDataSegment() ||
                      desc.getTypeInfo().isReadableCodeSegment())) {
                     
-                    throw CPUException.getGeneralProtectionFault(value & 0xfffc);
+                    throw m_cpu.getGeneralProtectionFault(value & 0xfffc);
                 }
                 
                 // The selectors RPL and the CPL must both be less than or equal to DPL
@@ -90,13 +89,13 @@ public final class OperandDataSegment implements Operand {
                     if(desc.getDPL() < m_cpu.getSelectorsRPL(value) ||
                        desc.getDPL() < m_cpu.getCPL()) {
                         
-                        throw CPUException.getGeneralProtectionFault(value & 0xfffc);
+                        throw m_cpu.getGeneralProtectionFault(value & 0xfffc);
                     }
                 }
 
                 // Segment must be present
                 if(!desc.isPresent())
-                    throw CPUException.getSegmentNotPresent(value & 0xfffc);
+                    throw m_cpu.getSegmentNotPresent(value & 0xfffc);
                 
                 // Load segment
                 m_seg.loadProtectedMode(value, desc);
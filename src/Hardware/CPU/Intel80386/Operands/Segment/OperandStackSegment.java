@@ -17,7 +17,6 @@
  */
 package Hardware.CPU.Intel80386.Operands.Segment;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Intel80386;
 import Hardware.CPU.Intel80386.Operands.Operand;
 import Hardware.CPU.Intel80386.Register.Segments.Descriptor;
@@ -67,27 +66,27 @@ public final class OperandStackSegment implements Operand {
             
             // Selector must be non null
             if(m_cpu.isNullSelector(value))
-                throw CPUException.getGeneralProtectionFault(0);
+                throw m_cpu.getGeneralProtectionFault(0);
 
             // Selector index must be within its descriptor table limit
             Descriptor desc;
             if((desc = m_cpu.getDescriptor(value)) == null)
-                throw CPUException.getGeneralProtectionFault(value & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(value & 0xfffc);
 
             // Selectors RPL and descriptors DPL must be equal to CPL
             if(m_cpu.getCPL() != m_cpu.getSelectorsRPL(value) ||
                m_cpu.getCPL() != desc.getDPL()) {
                 
-                throw CPUException.getGeneralProtectionFault(value & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(value & 0xfffc);
             }
             
             // Segment must be a writable data segment
             if(!desc.getTypeInfo().isWritableDataSegment())
-                throw CPUException.getGeneralProtectionFault(value & 0xfffc);
+                throw m_cpu.getGeneralProtectionFault(value & 0xfffc);
             
             // Segment must be present
             if(!desc.isPresent())
-                throw CPUException.getStackFault(value & 0xfffc);
+                throw m_cpu.getStackFault(value & 0xfffc);
             
             // Load segment
             m_cpu.SS.loadProtectedMode(value, desc);
@@ -19,7 +19,10 @@ package Hardware.CPU.Intel80386.Register.FPU;
 
 import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Intel80386;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import Utility.MathHelper;
+import java.io.IOException;
 import java.util.Arrays;
 
 
@@ -47,6 +50,12 @@ public final class FPURegisters {
     private static final int STATUS_BUSY = 0x8000;
     private int m_status;
     
+    /* ----------------------------------------------------- *
+     * FPU stack pointer (it's kept apart from the status    *
+     * register and only merged into it if that gets read)   *
+     * ----------------------------------------------------- */
+    private int m_top;
+    
     /* ----------------------------------------------------- *
      * FPU control register                                  *
      * ----------------------------------------------------- */
@@ -76,6 +85,7 @@ public final class FPURegisters {
     private static final int TAG_ZERO = 0x01;
     private static final int TAG_SPECIAL = 0x02;
     private static final int TAG_EMPTY = 0x03;
+    private static final int TAG_UNCLASSIFIED = 0x04;
     private final int[] m_tag;
     
     /* ----------------------------------------------------- *
@@ -104,9 +114,30 @@ public final class FPURegisters {
         Arrays.fill(m_tag, TAG_EMPTY);
         
         m_status = 0x0000;
+        m_top = 0;
         m_control = CTRL_PC_64BIT | CTRL_INT_EX_MASK;
     }
     
+    public void saveState(StateWriter writer) throws IOException {
+        
+        int[] tags = new int[8];
+        for(int i = 0; i < 8; i++)
+            tags[i] = getTag(i);
+        
+        writer.writeInt(getStatus());
+        writer.writeInt(m_control);
+        writer.writeInts(tags);
+        writer.writeDoubles(m_stack);
+    }
+    
+    public void loadState(StateReader reader) throws IOException {
+        
+        setStatus(reader.readInt());
+        m_control = reader.readInt();
+        reader.readInts(m_tag);
+        reader.readDoubles(m_stack);
+    }
+    
     
     
     public void compareWithST0(double src) {
@@ -214,17 +245,17 @@ public final class FPURegisters {
     
     public boolean isRegisterValid(int reg) {
         
-        return m_tag[getStackPtr(reg)] == TAG_VALID;
+        return getTag(getStackPtr(reg)) == TAG_VALID;
     }
 
     public boolean isRegisterZero(int reg) {
         
-        return m_tag[getStackPtr(reg)] == TAG_ZERO;
+        return getTag(getStackPtr(reg)) == TAG_ZERO;
     }
     
     public boolean isRegisterSpecial(int reg) {
         
-        return m_tag[getStackPtr(reg)] == TAG_SPECIAL;
+        return getTag(getStackPtr(reg)) == TAG_SPECIAL;
     }
     
     public boolean isRegisterEmpty(int reg) {
@@ -261,7 +292,8 @@ public final class FPURegisters {
     
     public void setStatus(int status) {
         
-        m_status = status;
+        m_status = status & ~STATUS_SP_MASK;
+        m_top = (status & STATUS_SP_MASK) >>> 11;
     }
     
     public void setC0(boolean value) {
@@ -300,18 +332,42 @@ public final class FPURegisters {
     
     public int getStatus() {
     
-        return m_status;
+        return m_status | (m_top << 11);
     }
     
     public int getTags() {
         
         int tags = 0;
         for(int i = 7; i >= 0; i--)
-            tags |= m_tag[i] << (i << 1);
+            tags |= getTag(i) << (i << 1);
         
         return tags;
     }
     
+    /**
+     * Returns the tag of a physical register. Registers that were written
+     * since the last time are classified here, as the tags are only needed
+     * by the few instructions that store or examine them.
+     */
+    private int getTag(int idx) {
+        
+        int tag = m_tag[idx];
+        if(tag == TAG_UNCLASSIFIED) {
+            
+            double value = m_stack[idx];
+            if(value == 0.0)
+                tag = TAG_ZERO;
+            else if(Double.isInfinite(value) || Double.isNaN(value))
+                tag = TAG_SPECIAL;
+            else
+                tag = TAG_VALID;
+            
+            m_tag[idx] = tag;
+        }
+        
+        return tag;
+    }
+    
     public void setTags(int tags) {
         
         for(int i = 0; i < 8; i++, tags >>= 2)
@@ -344,13 +400,12 @@ public final class FPURegisters {
     
     private int getStackPtr(int idx) {
         
-        return ((m_status >>> 11) + idx) & 0x07;
+        return (m_top + idx) & 0x07;
     }
     
     private void setStackPtr(int topIdx) {
         
-        m_status &= ~STATUS_SP_MASK;
-        m_status |= (topIdx & 0x07) << 11;
+        m_top = topIdx & 0x07;
     }
     
     
@@ -398,14 +453,10 @@ public final class FPURegisters {
     
     private void setValue(int reg, double value) {
         
-        m_stack[getStackPtr(reg)] = value;
-            
-        if(value == 0.0)
-            setTag(reg, TAG_ZERO);
-        else if(Double.isInfinite(value) || Double.isNaN(value))
-            setTag(reg, TAG_SPECIAL);
-        else
-            setTag(reg, TAG_VALID);
+        int idx = getStackPtr(reg);
+        
+        m_stack[idx] = value;
+        m_tag[idx] = TAG_UNCLASSIFIED;
     }
     
     
@@ -451,9 +502,9 @@ public final class FPURegisters {
                 (m_status & STATUS_CC_C2) != 0,
                 (m_status & STATUS_CC_C3) != 0,
                 getTags(),
-                m_status,
+                getStatus(),
                 m_control,
-                (m_status & STATUS_SP_MASK) >> 11
+                m_top
         );
     }
 }
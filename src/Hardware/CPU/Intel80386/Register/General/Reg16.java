@@ -21,25 +21,37 @@ package Hardware.CPU.Intel80386.Register.General;
 
 public final class Reg16 implements Register {
     
-    private final Reg32 m_reg32;
     private final String m_name;
+    private final int[] m_regs;
+    private final int m_index;
     
     public Reg16(String name, Reg32 reg32) {
         
         m_name = name;
-        m_reg32 = reg32;
+        m_regs = reg32.getRegisterFile();
+        m_index = reg32.getIndex();
     }
     
     @Override
     public int getValue() {
         
-        return m_reg32.getValue() & 0xffff;
+        return m_regs[m_index] & 0xffff;
     }
     
     @Override
     public void setValue(int value) {
         
-        m_reg32.setValue((m_reg32.getValue() & 0xffff0000) | (value & 0xffff));
+        m_regs[m_index] = (m_regs[m_index] & 0xffff0000) | (value & 0xffff);
+    }
+    
+    public int[] getRegisterFile() {
+        
+        return m_regs;
+    }
+    
+    public int getIndex() {
+        
+        return m_index;
     }
     
     @Override
@@ -22,28 +22,41 @@ package Hardware.CPU.Intel80386.Register.General;
 public final class Reg32 implements Register {
     
     private final String m_name;
-    private int m_value;
+    private final int[] m_regs;
+    private final int m_index;
     
-    public Reg32(String name) {
+    public Reg32(String name, int[] regs, int index) {
         
         m_name = name;
+        m_regs = regs;
+        m_index = index;
     }
     
     public void reset() {
         
-        m_value = 0;
+        m_regs[m_index] = 0;
     }
     
     @Override
     public int getValue() {
         
-        return m_value;
+        return m_regs[m_index];
     }
     
     @Override
     public void setValue(int value) {
         
-        m_value = value;
+        m_regs[m_index] = value;
+    }
+    
+    public int[] getRegisterFile() {
+        
+        return m_regs;
+    }
+    
+    public int getIndex() {
+        
+        return m_index;
     }
     
     @Override
@@ -22,12 +22,24 @@ package Hardware.CPU.Intel80386.Register.General;
 public abstract class Reg8 implements Register {
     
     private final String m_name;
-    protected final Reg32 m_reg32;
+    protected final int[] m_regs;
+    protected final int m_index;
     
     public Reg8(String name, Reg32 reg) {
         
         m_name = name;
-        m_reg32 = reg;
+        m_regs = reg.getRegisterFile();
+        m_index = reg.getIndex();
+    }
+    
+    public int[] getRegisterFile() {
+        
+        return m_regs;
+    }
+    
+    public int getIndex() {
+        
+        return m_index;
     }
     
     @Override
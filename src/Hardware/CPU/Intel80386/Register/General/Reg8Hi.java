@@ -29,12 +29,12 @@ public final class Reg8Hi extends Reg8 {
     @Override
     public int getValue() {
         
-        return (m_reg32.getValue() >>> 8) & 0xff;
+        return (m_regs[m_index] >>> 8) & 0xff;
     }
 
     @Override
     public void setValue(int value) {
         
-        m_reg32.setValue((m_reg32.getValue() & 0xffff00ff) | ((value & 0xff) << 8));
+        m_regs[m_index] = (m_regs[m_index] & 0xffff00ff) | ((value & 0xff) << 8);
     }
 }
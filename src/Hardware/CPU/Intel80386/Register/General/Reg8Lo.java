@@ -29,12 +29,12 @@ public final class Reg8Lo extends Reg8 {
     @Override
     public int getValue() {
         
-        return m_reg32.getValue() & 0xff;
+        return m_regs[m_index] & 0xff;
     }
     
     @Override
     public void setValue(int value) {
         
-        m_reg32.setValue((m_reg32.getValue() & 0xffffff00) | (value & 0xff));
+        m_regs[m_index] = (m_regs[m_index] & 0xffffff00) | (value & 0xff);
     }
 }
@@ -17,7 +17,6 @@
  */
 package Hardware.CPU.Intel80386.Register.Segments;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Intel80386;
 
 
@@ -55,13 +54,13 @@ public final class CodeSegment extends Segment {
     public void checkProtectionRead(int offset, int size) {
             
         if(isInvalid())
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
 
         if(isOutsideLimit(offset, size))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         if(!isReadable())
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         // TODO: Check Alignment (486+)
     }
@@ -73,15 +72,15 @@ public final class CodeSegment extends Segment {
         // virtual 8086 mode
         if(m_cpu.CR.isInProtectedMode() && !m_cpu.FLAGS.VM) {
         
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         }
         else {
             
             if(isInvalid())
-                throw CPUException.getGeneralProtectionFault(0);
+                throw m_cpu.getGeneralProtectionFault(0);
             
             if(isOutsideLimit(offset, size))
-                throw CPUException.getGeneralProtectionFault(0);
+                throw m_cpu.getGeneralProtectionFault(0);
         
             // TODO: Check Alignment (486+)
         }
@@ -17,7 +17,6 @@
  */
 package Hardware.CPU.Intel80386.Register.Segments;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Intel80386;
 
 
@@ -33,10 +32,10 @@ public final class DataSegment extends Segment {
     public void checkProtectionRead(int offset, int size) {
         
         if(isInvalid())
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         if(isOutsideLimit(offset, size))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         // TODO: Check Alignment (486+)
     }
@@ -45,13 +44,13 @@ public final class DataSegment extends Segment {
     public void checkProtectionWrite(int offset, int size) {
         
         if(isInvalid())
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         if(!isWritable())
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         if(isOutsideLimit(offset, size))
-            throw CPUException.getGeneralProtectionFault(0);
+            throw m_cpu.getGeneralProtectionFault(0);
         
         // TODO: Check Alignment (486+)
     }
@@ -17,6 +17,10 @@
  */
 package Hardware.CPU.Intel80386.Register.Segments;
 
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
+
 
 
 public final class DescriptorTable {
@@ -38,17 +42,31 @@ public final class DescriptorTable {
     private boolean m_isInvalid;
     private int m_selector;
     
+    /* ----------------------------------------------------- *
+     * Decoded descriptors of this table, an entry is only   *
+     * valid if it belongs to the current cache generation   *
+     * ----------------------------------------------------- */
+    private final Descriptor[] m_cache;
+    private final int[] m_cacheGeneration;
+    private int m_generation;
+    
     
     
     public DescriptorTable(String name) {
         
         m_name = name;
+        
+        m_cache = new Descriptor[0x2000];
+        m_cacheGeneration = new int[0x2000];
+        m_generation = 1;
     }
     
     
     
     public void reset() {
         
+        invalidateCache();
+        
         setSelector(0);
         setBase(0);
         setLimit(0xffff);
@@ -71,6 +89,9 @@ public final class DescriptorTable {
     
     public void setBase(int base) {
         
+        if(m_base != base)
+            invalidateCache();
+        
         m_base = base;
     }
     
@@ -106,6 +127,54 @@ public final class DescriptorTable {
     
     
     
+    /**
+     * Returns the decoded descriptor at the given offset, or null if it
+     * wasn't read since the cache was invalidated the last time.
+     */
+    public Descriptor getCachedDescriptor(int offset) {
+        
+        int index = offset >>> 3;
+        if(m_cacheGeneration[index] != m_generation)
+            return null;
+        
+        return m_cache[index];
+    }
+    
+    public void putCachedDescriptor(int offset, Descriptor descriptor) {
+        
+        int index = offset >>> 3;
+        
+        m_cache[index] = descriptor;
+        m_cacheGeneration[index] = m_generation;
+    }
+    
+    public void invalidateCache() {
+        
+        m_generation++;
+    }
+    
+    
+    
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(m_base);
+        writer.writeInt(m_limit);
+        writer.writeBoolean(m_isInvalid);
+        writer.writeInt(m_selector);
+    }
+    
+    public void loadState(StateReader reader) throws IOException {
+        
+        invalidateCache();
+        
+        m_base = reader.readInt();
+        m_limit = reader.readInt();
+        m_isInvalid = reader.readBoolean();
+        m_selector = reader.readInt();
+    }
+    
+    
+    
     @Override
     public String toString() {
         
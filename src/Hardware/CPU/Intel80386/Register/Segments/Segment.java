@@ -19,6 +19,9 @@ package Hardware.CPU.Intel80386.Register.Segments;
 
 import Hardware.CPU.Intel80386.Intel80386;
 import Hardware.CPU.Intel80386.Register.Segments.SegmentTypes.SegmentType;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 
 
 
@@ -284,6 +287,32 @@ public abstract class Segment {
     
     
     
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(m_selector);
+        writer.writeBoolean(m_isInvalid);
+        writer.writeInt(m_type);
+        writer.writeBoolean(m_isSize32);
+        writer.writeInt(m_base);
+        writer.writeInt(m_dpl);
+        writer.writeInt(m_limit);
+    }
+    
+    public void loadState(StateReader reader) throws IOException {
+        
+        setSelector(reader.readInt());
+        setValid(!reader.readBoolean());
+        setType(reader.readInt() & 0x1f);
+        setSize32(reader.readBoolean());
+        setBase(reader.readInt());
+        setDPL(reader.readInt());
+        
+        // The limit depends on the type and size, so it has to be set last
+        setLimit(reader.readInt());
+    }
+    
+    
+    
     @Override
     public String toString() {
         
@@ -17,12 +17,14 @@
  */
 package Hardware.CPU.Intel80386.Register.TaskRegister;
 
-import Hardware.CPU.Intel80386.Exceptions.CPUException;
 import Hardware.CPU.Intel80386.Intel80386;
 import Hardware.CPU.Intel80386.MMU.MMU;
 import Hardware.CPU.Intel80386.Register.Flags.Flags;
 import Hardware.CPU.Intel80386.Register.Segments.*;
 import Hardware.CPU.Intel80386.Register.Segments.SegmentTypes.SegmentType;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 
 
 
@@ -94,6 +96,17 @@ public final class TaskRegister {
     private int m_type;
     private SegmentType m_typeInfo;
     
+    /* ----------------------------------------------------- *
+     * Words of the i/o permission bitmap that were read     *
+     * since the last task register load or write to the     *
+     * task state segment (valid if of current generation)   *
+     * ----------------------------------------------------- */
+    private final int[] m_ioPermissions;
+    private final int[] m_ioPermissionGeneration;
+    private int m_ioGeneration;
+    private long m_ioPermissionCacheHits;
+    private long m_ioPermissionCacheMisses;
+    
     /* ----------------------------------------------------- *
      * Reference to the cpu and mmu                          *
      * ----------------------------------------------------- */
@@ -106,6 +119,10 @@ public final class TaskRegister {
         
         m_cpu = cpu;
         m_mmu = mmu;
+        
+        m_ioPermissions = new int[0x2000];
+        m_ioPermissionGeneration = new int[0x2000];
+        m_ioGeneration = 1;
     }
     
     
@@ -120,6 +137,38 @@ public final class TaskRegister {
     
     
     
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(m_selector);
+        writer.writeInt(m_base);
+        writer.writeInt(m_limit);
+        writer.writeBoolean(m_isBusy);
+        writer.writeBoolean(m_typeInfo != null);
+        writer.writeInt(m_type);
+    }
+    
+    public void loadState(StateReader reader) throws IOException {
+        
+        setSelector(reader.readInt());
+        setBase(reader.readInt());
+        setLimit(reader.readInt());
+        m_isBusy = reader.readBoolean();
+        
+        boolean hasType = reader.readBoolean();
+        int type = reader.readInt();
+        if(hasType) {
+            
+            setType(type & 0x1f);
+        }
+        else {
+            
+            m_type = type;
+            m_typeInfo = null;
+        }
+    }
+    
+    
+    
     public void loadTaskRegister(int selector, Descriptor descriptor) {
         
         setSelector(selector);
@@ -143,6 +192,8 @@ public final class TaskRegister {
     private void setBase(int base) {
         
         m_base = base;
+        
+        invalidateIOPermissionCache();
     }
     
     public int getBase() {
@@ -218,7 +269,7 @@ public final class TaskRegister {
             address = TSS286_SS0 + (level << 2);
         
         if(isOutsideLimit(address, 2))
-            throw CPUException.getInvalidTSS(m_selector & 0xfffc);
+            throw m_cpu.getInvalidTSS(m_selector & 0xfffc);
         
         return m_mmu.readMEM16(m_base + address, false);
     }
@@ -229,7 +280,7 @@ public final class TaskRegister {
             
             int address = TSS386_ESP0 + (level << 3);
             if(isOutsideLimit(address, 4))
-                throw CPUException.getInvalidTSS(m_selector & 0xfffc);
+                throw m_cpu.getInvalidTSS(m_selector & 0xfffc);
             
             return m_mmu.readMEM32(m_base + address, false);
         }
@@ -237,7 +288,7 @@ public final class TaskRegister {
             
             int address = TSS286_SP0 + (level << 2);
             if(isOutsideLimit(address, 2))
-                throw CPUException.getInvalidTSS(m_selector & 0xfffc);
+                throw m_cpu.getInvalidTSS(m_selector & 0xfffc);
             
             return m_mmu.readMEM16(m_base + address, false);
         }
@@ -248,17 +299,55 @@ public final class TaskRegister {
         if(m_cpu.CR.isInProtectedMode() && (m_cpu.FLAGS.VM || m_cpu.getCPL() > m_cpu.FLAGS.IOPL)) {
             
             if(m_typeInfo.is286TaskStateSegment())
-                throw CPUException.getGeneralProtectionFault(0);    
+                throw m_cpu.getGeneralProtectionFault(0);    
             
-            int addr = m_mmu.readMEM16(m_base + TSS386_IOMAP, false) + (port >>> 3);
-            int access = m_mmu.readMEM16(m_base + addr, false);
+            int access = getIOPermissions(port >>> 3);
             int mask = ((size << 1) - 1) << (port & 0x07);
             
             if((access & mask) != 0)
-                throw CPUException.getGeneralProtectionFault(0);
+                throw m_cpu.getGeneralProtectionFault(0);
         }
     }
     
+    private int getIOPermissions(int index) {
+        
+        m_cpu.validateSystemTableCaches();
+        
+        if(m_ioPermissionGeneration[index] == m_ioGeneration) {
+            
+            m_ioPermissionCacheHits++;
+            return m_ioPermissions[index];
+        }
+        
+        int addr = m_mmu.readMEM16(m_base + TSS386_IOMAP, false) + index;
+        int access = m_mmu.readMEM16(m_base + addr, false);
+        m_ioPermissionCacheMisses++;
+        
+        if(m_cpu.markSystemTablePages(m_base + TSS386_IOMAP, 2) &&
+           m_cpu.markSystemTablePages(m_base + addr, 2)) {
+            
+            m_ioPermissions[index] = access;
+            m_ioPermissionGeneration[index] = m_ioGeneration;
+        }
+        
+        return access;
+    }
+    
+    public void invalidateIOPermissionCache() {
+        
+        m_ioGeneration++;
+    }
+    
+    public long getIOPermissionCacheHits() {
+        
+        return m_ioPermissionCacheHits;
+    }
+    
+    public long getIOPermissionCacheMisses() {
+        
+        return m_ioPermissionCacheMisses;
+    }
+    
     
     
     public void switchToTask(int selector, Descriptor descriptor, int operationType) {
@@ -278,7 +367,7 @@ public final class TaskRegister {
         
         // Limit of incoming TSS must be greater than or equal to 103
         if(descTSS.getLimit() < 103)
-            throw CPUException.getInvalidTSS(tss & 0xfffc);
+            throw m_cpu.getInvalidTSS(tss & 0xfffc);
         
         
         // Clear current tasks busy flag
@@ -393,20 +482,20 @@ public final class TaskRegister {
             
             // Selector has to point into GDT
             if(m_cpu.isReferencingLDT(ldt))
-                throw CPUException.getInvalidTSS(ldt & 0xfffc);
+                throw m_cpu.getInvalidTSS(ldt & 0xfffc);
             
             // Selector has to be in GDTs limit
             Descriptor desc;
             if((desc = m_cpu.getDescriptor(m_cpu.GDT, ldt & 0xfff8)) == null)
-                throw CPUException.getInvalidTSS(ldt & 0xfffc);
+                throw m_cpu.getInvalidTSS(ldt & 0xfffc);
             
             // AR byte must indicate LDT
             if(!desc.getTypeInfo().isLDT())
-                throw CPUException.getInvalidTSS(ldt & 0xfffc);
+                throw m_cpu.getInvalidTSS(ldt & 0xfffc);
             
             // Segment must be present
             if(!desc.isPresent())
-                throw CPUException.getInvalidTSS(ldt & 0xfffc);
+                throw m_cpu.getInvalidTSS(ldt & 0xfffc);
            
             // Load local descriptor table
             m_cpu.LDT.setBase(desc.getBase());
@@ -425,34 +514,34 @@ public final class TaskRegister {
             
             // CS selector must be non null
             if(m_cpu.isNullSelector(cs))
-                throw CPUException.getInvalidTSS(0);
+                throw m_cpu.getInvalidTSS(0);
 
             // CS selector must be within its descriptor table limits
             Descriptor descCS;
             if((descCS = m_cpu.getDescriptor(cs)) == null)
-                throw CPUException.getInvalidTSS(cs & 0xfffc);
+                throw m_cpu.getInvalidTSS(cs & 0xfffc);
 
             // If non-conforming then DPL must equal selectors RPL
             if(descCS.getTypeInfo().isNonConformingCodeSegment()) {
 
                 if(descCS.getDPL() != m_cpu.getSelectorsRPL(cs))
-                    throw CPUException.getInvalidTSS(cs & 0xfffc);
+                    throw m_cpu.getInvalidTSS(cs & 0xfffc);
             }
             // If conforming then DPL must be <= selectors RPL
             else if(descCS.getTypeInfo().isConformingCodeSegment()) {
 
                 if(descCS.getDPL() > m_cpu.getSelectorsRPL(cs))
-                    throw CPUException.getInvalidTSS(cs & 0xfffc);
+                    throw m_cpu.getInvalidTSS(cs & 0xfffc);
             }
             // AR byte of the descriptor must indicate a code segment
             else {
 
-                throw CPUException.getInvalidTSS(cs & 0xfffc);
+                throw m_cpu.getInvalidTSS(cs & 0xfffc);
             }
 
             // Segment must be present
             if(!descCS.isPresent())
-                throw CPUException.getSegmentNotPresent(cs & 0xfffc);
+                throw m_cpu.getSegmentNotPresent(cs & 0xfffc);
 
             // Load code segment
             m_cpu.CS.loadProtectedMode(cs, descCS);
@@ -469,27 +558,27 @@ public final class TaskRegister {
         
             // SS selector must be non null
             if(m_cpu.isNullSelector(ss))
-                throw CPUException.getInvalidTSS(0);
+                throw m_cpu.getInvalidTSS(0);
 
             // SS selector must be within its descriptor table limits
             Descriptor descSS;
             if((descSS = m_cpu.getDescriptor(ss)) == null)
-                throw CPUException.getInvalidTSS(ss & 0xfffc);
+                throw m_cpu.getInvalidTSS(ss & 0xfffc);
 
             // AR byte must indicate a writable data segment
             if(!descSS.getTypeInfo().isWritableDataSegment())
-                throw CPUException.getInvalidTSS(ss & 0xfffc);
+                throw m_cpu.getInvalidTSS(ss & 0xfffc);
 
             // SS selector RPL and descriptor DPL must be equal to CPL
             if(m_cpu.getCPL() != m_cpu.getSelectorsRPL(ss) ||
                m_cpu.getCPL() != descSS.getDPL()) {
 
-                throw CPUException.getInvalidTSS(ss & 0xfffc);
+                throw m_cpu.getInvalidTSS(ss & 0xfffc);
             }
 
             // Segment must be present
             if(!descSS.isPresent())
-                throw CPUException.getStackFault(ss & 0xfffc);
+                throw m_cpu.getStackFault(ss & 0xfffc);
 
             // Load stack segment
             m_cpu.SS.loadProtectedMode(ss, descSS);
@@ -507,13 +596,13 @@ public final class TaskRegister {
             // Selector must be within its descriptor table limits
             Descriptor desc;
             if((desc = m_cpu.getDescriptor(selector)) == null)
-                throw CPUException.getInvalidTSS(selector & 0xfffc);
+                throw m_cpu.getInvalidTSS(selector & 0xfffc);
             
             // Segment has to be a data or readable code segment
             if(!(desc.getTypeInfo().isDataSegment() ||
                  desc.getTypeInfo().isReadableCodeSegment())) {
                 
-                throw CPUException.getInvalidTSS(selector & 0xfffc);
+                throw m_cpu.getInvalidTSS(selector & 0xfffc);
             }
             
             // The selectors RPL and the CPL must both be less than or equal to DPL
@@ -524,13 +613,13 @@ public final class TaskRegister {
                 if(desc.getDPL() < m_cpu.getSelectorsRPL(selector) ||
                    desc.getDPL() < m_cpu.getCPL()) {
 
-                    throw CPUException.getGeneralProtectionFault(selector & 0xfffc);
+                    throw m_cpu.getGeneralProtectionFault(selector & 0xfffc);
                 }
             }
             
             // Segment must be present
             if(!desc.isPresent())
-                throw CPUException.getSegmentNotPresent(selector & 0xfffc);
+                throw m_cpu.getSegmentNotPresent(selector & 0xfffc);
             
             // Load data segment
             segment.loadProtectedMode(selector, desc);
@@ -19,6 +19,7 @@ package Hardware.CPU.Intel8086.Codeblock;
 
 import Hardware.CPU.Intel8086.Exceptions.InterruptException;
 import Hardware.CPU.Intel8086.Instructions.Instruction;
+import Hardware.CPU.Intel8086.Instructions.Programflow.JMP_FUSED;
 import Hardware.CPU.Intel8086.Intel8086;
 
 
@@ -29,18 +30,20 @@ public final class CodeBlock {
      * Address of this codeblock                             *
      * ----------------------------------------------------- */
     private final int m_cs;
+    private final int m_address;
     private final int m_paragraphStart;
     private final int m_paragraphEnd;
     
     /* ----------------------------------------------------- *
-     * Last time this block was executed                     *
+     * Code cache epoch in which this block was executed     *
      * ----------------------------------------------------- */
-    private long m_lastExecutionTime;
+    private int m_lastEpoch;
     
     /* ----------------------------------------------------- *
      * Instructions of this codeblock                        *
      * ----------------------------------------------------- */
     private final Instruction[] m_instructions;
+    private final int m_numInstructions;
     private boolean m_isRunning;
     
     /* ----------------------------------------------------- *
@@ -59,11 +62,19 @@ public final class CodeBlock {
         m_cpu = cpu;
         
         m_cs = base >>> 4;
+        m_address = base + offsetStart;
         m_paragraphStart = (base + offsetStart) & 0xffff0;
         m_paragraphEnd = (base + offsetEnd) & 0xffff0;
         
         m_instructions = instructions;
-        m_lastExecutionTime = 0L;
+        
+        // A fused conditional jump retires as two instructions
+        int numInstructions = instructions.length;
+        if(numInstructions > 0 && instructions[numInstructions - 1] instanceof JMP_FUSED)
+            numInstructions++;
+        
+        m_numInstructions = numInstructions;
+        m_lastEpoch = cpu.getCacheEpoch();
     }
     
     
@@ -74,9 +85,19 @@ public final class CodeBlock {
                m_paragraphEnd >= paragraph;
     }
     
-    public long getLastExecutionTime() {
+    public int getAddress() {
+        
+        return m_address;
+    }
+    
+    public int getNumberOfInstructions() {
         
-        return m_lastExecutionTime;
+        return m_instructions.length;
+    }
+    
+    public int getLastEpoch() {
+        
+        return m_lastEpoch;
     }
     
     
@@ -86,7 +107,7 @@ public final class CodeBlock {
         int i = 0;
         try {
             
-            m_lastExecutionTime = System.currentTimeMillis();
+            m_lastEpoch = m_cpu.getCacheEpoch();
             m_isRunning = true;
             
             while(i < m_instructions.length & m_isRunning) {
@@ -102,6 +123,10 @@ public final class CodeBlock {
             m_cpu.IP.setValue(m_instructions[i].getCurrentIP());
             throw ex;
         }
+        finally {
+            
+            m_cpu.retireInstructions(i == m_instructions.length ? m_numInstructions : i);
+        }
     }
     
     public void abort() {
@@ -18,6 +18,7 @@
 package Hardware.CPU.Intel8086.Decoder;
 
 import Hardware.CPU.Intel8086.Codeblock.CodeBlock;
+import Hardware.CPU.Intel8086.Condition.Condition;
 import Hardware.CPU.Intel8086.Condition.Conditions.*;
 import Hardware.CPU.Intel8086.Instructions.Instruction;
 import Hardware.CPU.Intel8086.Exceptions.DecoderException;
@@ -2938,7 +2939,8 @@ public final class Decoder {
                 instr = new WAIT(m_cpu, instr, getCycleCount(3));
 
             instr.setIP(instrOffset, m_offset);
-            m_buffer.add(instr);
+            if(!fuseConditionalJump(instr))
+                m_buffer.add(instr);
             
             if(m_buffer.size() >= 4096)
                 throw new DecoderException("Decoder buffer overrun. This is most likely caused by trying to run code that was not made for this cpu.");
@@ -2951,6 +2953,69 @@ public final class Decoder {
                              m_buffer.toArray(new Instruction[m_buffer.size()]));
     }
     
+    /**
+     * Fuses a conditional jump with a preceding cmp, test or dec into one
+     * instruction. The flags are still written, as the jump ends the block
+     * and the following code might depend on them.
+     */
+    private boolean fuseConditionalJump(Instruction instr) {
+        
+        if(!(instr instanceof JMP_CONDITIONAL) || m_buffer.isEmpty())
+            return false;
+        
+        JMP_CONDITIONAL jcc = (JMP_CONDITIONAL)instr;
+        int conditionCode = getConditionCode(jcc.getCondition());
+        if(conditionCode < 0)
+            return false;
+        
+        Instruction prev = m_buffer.get(m_buffer.size() - 1);
+        int cyclesBT = prev.getCycles() + jcc.getCyclesBranchTaken();
+        int cyclesBNT = prev.getCycles() + jcc.getCyclesBranchNotTaken();
+        
+        Instruction fused;
+        if(prev instanceof CMP8)
+            fused = new CMP_JCC(m_cpu, ((CMP8)prev).getDestination(), ((CMP8)prev).getSource(), 8, jcc.getIP(), jcc.getCondition(), conditionCode, cyclesBT, cyclesBNT);
+        else if(prev instanceof CMP16)
+            fused = new CMP_JCC(m_cpu, ((CMP16)prev).getDestination(), ((CMP16)prev).getSource(), 16, jcc.getIP(), jcc.getCondition(), conditionCode, cyclesBT, cyclesBNT);
+        else if(prev instanceof TEST8)
+            fused = new TEST_JCC(m_cpu, ((TEST8)prev).getDestination(), ((TEST8)prev).getSource(), 8, jcc.getIP(), jcc.getCondition(), conditionCode, cyclesBT, cyclesBNT);
+        else if(prev instanceof TEST16)
+            fused = new TEST_JCC(m_cpu, ((TEST16)prev).getDestination(), ((TEST16)prev).getSource(), 16, jcc.getIP(), jcc.getCondition(), conditionCode, cyclesBT, cyclesBNT);
+        else if(prev instanceof DEC8)
+            fused = new DEC_JCC(m_cpu, ((DEC8)prev).getDestination(), 8, jcc.getIP(), jcc.getCondition(), conditionCode, cyclesBT, cyclesBNT);
+        else if(prev instanceof DEC16)
+            fused = new DEC_JCC(m_cpu, ((DEC16)prev).getDestination(), 16, jcc.getIP(), jcc.getCondition(), conditionCode, cyclesBT, cyclesBNT);
+        else
+            return false;
+        
+        fused.setIP(prev.getCurrentIP(), jcc.getNextIP());
+        m_buffer.set(m_buffer.size() - 1, fused);
+        
+        return true;
+    }
+    
+    private int getConditionCode(Condition condition) {
+        
+        if(condition instanceof ConditionOverflow) return 0;
+        if(condition instanceof ConditionNotOverflow) return 1;
+        if(condition instanceof ConditionBellow) return 2;
+        if(condition instanceof ConditionNotBellow) return 3;
+        if(condition instanceof ConditionZero) return 4;
+        if(condition instanceof ConditionNotZero) return 5;
+        if(condition instanceof ConditionBellowOrEqual) return 6;
+        if(condition instanceof ConditionNotBellowOrEqual) return 7;
+        if(condition instanceof ConditionSign) return 8;
+        if(condition instanceof ConditionNotSign) return 9;
+        if(condition instanceof ConditionParity) return 10;
+        if(condition instanceof ConditionNotParity) return 11;
+        if(condition instanceof ConditionLess) return 12;
+        if(condition instanceof ConditionNotLess) return 13;
+        if(condition instanceof ConditionLessOrEqual) return 14;
+        if(condition instanceof ConditionNotLessOrEqual) return 15;
+        
+        return -1;
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Decoding of the MOD R/M byte">
     
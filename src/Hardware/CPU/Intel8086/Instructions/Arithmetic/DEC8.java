@@ -50,6 +50,11 @@ public final class DEC8 extends Instruction {
         m_cpu.updateClock(getCycles());
     }
     
+    public Operand getDestination() {
+        
+        return m_destination;
+    }
+    
     @Override
     public String toString() {
 
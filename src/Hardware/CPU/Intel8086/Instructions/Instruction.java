@@ -64,9 +64,9 @@ public abstract class Instruction {
     
     
     
-    protected int getCycles() { return m_cyclesBT; }
-    protected int getCyclesBranchTaken() { return m_cyclesBT; }
-    protected int getCyclesBranchNotTaken() { return m_cyclesBNT; }
+    public int getCycles() { return m_cyclesBT; }
+    public int getCyclesBranchTaken() { return m_cyclesBT; }
+    public int getCyclesBranchNotTaken() { return m_cyclesBNT; }
     
     
     
@@ -50,6 +50,16 @@ public final class TEST16 extends Instruction {
         m_cpu.updateClock(getCycles());
     }
     
+    public Operand getDestination() {
+        
+        return m_destination;
+    }
+    
+    public Operand getSource() {
+        
+        return m_source;
+    }
+    
     @Override
     public String toString() {
 
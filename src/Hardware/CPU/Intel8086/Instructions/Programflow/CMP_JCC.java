@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.CPU.Intel8086.Instructions.Programflow;
+
+import Hardware.CPU.Intel8086.Intel8086;
+import Hardware.CPU.Intel8086.Condition.Condition;
+import Hardware.CPU.Intel8086.Operands.Operand;
+import Hardware.CPU.Intel8086.Register.Flags;
+
+
+
+public final class CMP_JCC extends JMP_FUSED {
+    
+    private final Operand m_destination;
+    private final Operand m_source;
+    private final int m_mask;
+    private final int m_signMask;
+    
+    public CMP_JCC(Intel8086 cpu,
+                   Operand destination,
+                   Operand source,
+                   int size,
+                   Operand ip,
+                   Condition condition,
+                   int conditionCode,
+                   int cyclesBranchTaken,
+                   int cyclesBranchNotTaken) {
+        
+        super(cpu, ip, condition, conditionCode, cyclesBranchTaken, cyclesBranchNotTaken);
+        
+        m_destination = destination;
+        m_source = source;
+        m_mask = (1 << size) - 1;
+        m_signMask = 1 << (size - 1);
+    }
+    
+    @Override
+    public void run() {
+        
+        int dest = m_destination.getValue();
+        int src = m_source.getValue();
+        int result = (dest - src) & m_mask;
+        boolean cf = Integer.compareUnsigned(dest, src) < 0;
+        boolean of = (((dest ^ src) & (dest ^ result)) & m_signMask) != 0;
+        
+        Flags flags = m_cpu.FLAGS;
+        flags.setSZP(result, m_signMask);
+        flags.CF = cf;
+        flags.OF = of;
+        flags.AF = (((dest ^ src) ^ result) & 0x10) != 0;
+        
+        jumpIf(cf, result == 0, (result & m_signMask) != 0, of, flags.PF);
+    }
+    
+    @Override
+    public String toString() {
+        
+        return String.format("cmp %s, %s; %s", m_destination.toString(), m_source.toString(), getJumpString());
+    }
+}
@@ -55,6 +55,16 @@ public final class JMP_CONDITIONAL extends Instruction {
         }
     }
     
+    public Operand getIP() {
+        
+        return m_ip;
+    }
+    
+    public Condition getCondition() {
+        
+        return m_condition;
+    }
+    
     @Override
     public String toString() {
         
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.CPU.Intel8086.Instructions.Programflow;
+
+import Hardware.CPU.Intel8086.Intel8086;
+import Hardware.CPU.Intel8086.Instructions.Instruction;
+import Hardware.CPU.Intel8086.Condition.Condition;
+import Hardware.CPU.Intel8086.Operands.Operand;
+
+
+
+/**
+ * Base of an instruction that was fused with the conditional jump following
+ * it. The condition is evaluated from the flags computed by the subclass,
+ * instead of reading them back through a Condition object.
+ */
+public abstract class JMP_FUSED extends Instruction {
+    
+    private final Operand m_ip;
+    private final Condition m_condition;
+    private final int m_conditionCode;
+    
+    public JMP_FUSED(Intel8086 cpu,
+                     Operand ip,
+                     Condition condition,
+                     int conditionCode,
+                     int cyclesBranchTaken,
+                     int cyclesBranchNotTaken) {
+        
+        super(cpu, cyclesBranchTaken, cyclesBranchNotTaken);
+        
+        m_ip = ip;
+        m_condition = condition;
+        m_conditionCode = conditionCode;
+    }
+    
+    protected final void jumpIf(boolean cf, boolean zf, boolean sf, boolean of, boolean pf) {
+        
+        boolean isTrue;
+        switch(m_conditionCode >>> 1) {
+            
+            case 0: isTrue = of; break;
+            case 1: isTrue = cf; break;
+            case 2: isTrue = zf; break;
+            case 3: isTrue = cf || zf; break;
+            case 4: isTrue = sf; break;
+            case 5: isTrue = pf; break;
+            case 6: isTrue = sf != of; break;
+            default: isTrue = zf || (sf != of); break;
+        }
+        
+        // Odd condition codes are the negated ones
+        if(isTrue != ((m_conditionCode & 1) != 0)) {
+            
+            m_cpu.IP.setValue(m_ip.getValue());
+            m_cpu.updateClock(getCyclesBranchTaken());
+        }
+        else {
+            
+            m_cpu.updateClock(getCyclesBranchNotTaken());
+        }
+    }
+    
+    protected final String getJumpString() {
+        
+        return String.format("j%s %s", m_condition.toString(), m_ip.toString());
+    }
+}
@@ -28,7 +28,11 @@ import Hardware.CPU.Intel8086.Segments.Segment;
 import Hardware.InterruptController.PICs;
 import Main.Systems.ComponentConfig;
 import MemoryMap.MemoryMap;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import Scheduler.Scheduler;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -51,6 +55,11 @@ public final class Intel8086 implements HardwareComponent,
     public final Flags FLAGS;
     public boolean HALTED;
     
+    /* ----------------------------------------------------- *
+     * Set by other threads to end the current run() early   *
+     * ----------------------------------------------------- */
+    private volatile boolean m_isYieldRequested;
+    
     /* ----------------------------------------------------- *
      * Code block decoder                                    *
      * ----------------------------------------------------- */
@@ -67,9 +76,39 @@ public final class Intel8086 implements HardwareComponent,
     }
     private final CodeBlockCache[] m_codeBlockCache;
     private final Integer[] m_integerLUT;
-    private long m_timeNextCacheClear;
     private CodeBlock m_currentBlock;
     
+    /* ----------------------------------------------------- *
+     * Eviction of code blocks (CLOCK)                       *
+     * ----------------------------------------------------- */
+    private final ArrayList<CodeBlock> m_clockRing;
+    private int m_clockHand;
+    private int m_cacheEpoch;
+    private int m_schedulerEpoch;
+    private int m_cachedInstructions;
+    private int m_maxCachedInstructions;
+    private long m_evictedBlocks;
+    
+    /* ----------------------------------------------------- *
+     * Execution counters                                    *
+     * ----------------------------------------------------- */
+    private long m_retiredInstructions;
+    private long m_decodedBlocks;
+    private long m_executedBlocks;
+    private long m_cacheInvalidations;
+    private long m_deliveredInterrupts;
+    
+    /* ----------------------------------------------------- *
+     * Idle loop detection                                   *
+     * ----------------------------------------------------- */
+    private static final int IDLE_LOOP_ITERATIONS = 16;
+    private CodeBlock m_idleBlock;
+    private int[] m_idleState;
+    private int[] m_idleStateNext;
+    private int m_idleIterations;
+    private boolean m_hasWrittenIO;
+    private boolean m_hasWrittenMEM;
+    
     /* ----------------------------------------------------- *
      * Reference to the i/o map and interrupt controller     *
      * ----------------------------------------------------- */
@@ -122,6 +161,13 @@ public final class Intel8086 implements HardwareComponent,
         m_integerLUT = new Integer[0x1000];
         for(int i = 0; i < m_integerLUT.length; i++)
             m_integerLUT[i] = i;
+        
+        m_clockRing = new ArrayList<>();
+        m_maxCachedInstructions = 0x40000;
+        
+        // Initialize idle loop detection
+        m_idleState = new int[13];
+        m_idleStateNext = new int[13];
     }
     
     
@@ -136,8 +182,40 @@ public final class Intel8086 implements HardwareComponent,
         SP.reset(); BP.reset(); SI.reset(); DI.reset();
         IP.reset(); DS.reset(); ES.reset(); SS.reset();
         CS.setSelector(0xffff); FLAGS.reset(); HALTED = false;
+        m_idleBlock = null;
         
         // Reset code block cache
+        clearCodeBlockCache();
+    }
+    
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        for(Reg16 reg : new Reg16[] { AX, BX, CX, DX, SP, BP, SI, DI, IP })
+            writer.writeInt(reg.getValue());
+        for(Segment seg : new Segment[] { CS, DS, ES, SS })
+            writer.writeInt(seg.getSelector());
+        
+        writer.writeInt(FLAGS.getValue());
+        writer.writeBoolean(HALTED);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        for(Reg16 reg : new Reg16[] { AX, BX, CX, DX, SP, BP, SI, DI, IP })
+            reg.setValue(reader.readInt());
+        for(Segment seg : new Segment[] { CS, DS, ES, SS })
+            seg.setSelector(reader.readInt());
+        
+        FLAGS.setValue(reader.readInt());
+        HALTED = reader.readBoolean();
+        
+        clearCodeBlockCache();
+    }
+    
+    private void clearCodeBlockCache() {
+        
         for(CodeBlockCache codeBlockCache : m_codeBlockCache) {
             
             codeBlockCache.map.clear();
@@ -146,9 +224,9 @@ public final class Intel8086 implements HardwareComponent,
             codeBlockCache.isInvalidated = false;
         }
         
-        // Time when the cache gets cleared from blocks that were not used for
-        // a certain amount of time
-        m_timeNextCacheClear = System.currentTimeMillis() + 10000L;
+        m_clockRing.clear();
+        m_clockHand = 0;
+        m_cachedInstructions = 0;
     }
 
     @Override
@@ -174,6 +252,13 @@ public final class Intel8086 implements HardwareComponent,
                .option("12 MHz", "12000000")
                .option("16 MHz", "16000000")
                .build();
+        
+        builder.value("Code cache size", "262144", ComponentConfig.Type.ToggleGroup, this::setCodeCacheSize)
+               .option("16K instructions", "16384")
+               .option("64K instructions", "65536")
+               .option("256K instructions", "262144")
+               .option("1M instructions", "1048576")
+               .build();
     }
     
     private boolean setFrequency(String value) {
@@ -182,6 +267,12 @@ public final class Intel8086 implements HardwareComponent,
         return true;
     }
     
+    private boolean setCodeCacheSize(String value) {
+        
+        m_maxCachedInstructions = Integer.valueOf(value);
+        return true;
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Interface implementation of CPU">
     
@@ -190,22 +281,41 @@ public final class Intel8086 implements HardwareComponent,
             
         while(numBlocks-- > 0) {
 
+            if(m_isYieldRequested) {
+                
+                m_isYieldRequested = false;
+                return;
+            }
             if(isInterruptPending()) {
 
                 HALTED = false;
+                m_deliveredInterrupts++;
                 handleInterrupt(m_pic.getInterrupt(), true);
 
                 updateClock(Scheduler.toFixedPoint(61));
             }
             if(HALTED) {
 
-                updateClock(Scheduler.toFixedPoint(2));
+                // Nothing happens until the next interrupt arrives
+                m_scheduler.skipIdleCycles(Math.max(Scheduler.toFixedPoint(2), m_scheduler.getCyclesUntilNextEvent()));
             }
             else {
 
                 try {
 
                     m_currentBlock = findBlock(CS.getBase(), IP.getValue());
+                    m_executedBlocks++;
+                    
+                    if(m_currentBlock == m_idleBlock) {
+                        
+                        detectIdleLoop();
+                    }
+                    else {
+                        
+                        m_idleBlock = m_currentBlock;
+                        m_idleIterations = -1;
+                    }
+                    
                     m_currentBlock.run();
                 }
                 catch(DivisionException ex) {
@@ -221,19 +331,101 @@ public final class Intel8086 implements HardwareComponent,
             }
         }
         
-        // Remove all blocks that were not used since the last 10 seconds
-        if(System.currentTimeMillis() >= m_timeNextCacheClear) {
-            
-            m_timeNextCacheClear = System.currentTimeMillis() + 10000L;
+        // Blocks that weren't executed since the scheduler started a new
+        // epoch are candidates for the eviction
+        int epoch = m_scheduler.getEpoch();
+        if(epoch != m_schedulerEpoch) {
             
-            removeUnusedBlocks();
+            m_schedulerEpoch = epoch;
+            m_cacheEpoch++;
         }
     }
     
+    @Override
+    public void requestYield() {
+        
+        m_isYieldRequested = true;
+    }
+    
     public void updateClock(int cycles) {
         
         m_scheduler.updateClock(cycles);
     }
+    
+    /**
+     * Called whenever a block jumps back to its own start. If the registers
+     * didn't change over a couple of iterations and neither memory nor a
+     * port was written, the block is polling for something that only a
+     * device can change. In that case the time up to the next device event
+     * gets skipped.
+     */
+    private void detectIdleLoop() {
+        
+        int[] state = m_idleStateNext;
+        state[0] = AX.getValue(); state[1] = BX.getValue();
+        state[2] = CX.getValue(); state[3] = DX.getValue();
+        state[4] = SP.getValue(); state[5] = BP.getValue();
+        state[6] = SI.getValue(); state[7] = DI.getValue();
+        state[8] = FLAGS.getValue();
+        state[9] = CS.getSelector(); state[10] = DS.getSelector();
+        state[11] = ES.getSelector(); state[12] = SS.getSelector();
+        
+        if(!m_hasWrittenIO && !m_hasWrittenMEM && m_idleIterations >= 0 && Arrays.equals(state, m_idleState)) {
+            
+            if(++m_idleIterations >= IDLE_LOOP_ITERATIONS) {
+                
+                int cycles = m_scheduler.getCyclesUntilNextEvent();
+                if(cycles > 0)
+                    m_scheduler.skipIdleCycles(cycles);
+                
+                m_idleIterations = 0;
+            }
+        }
+        else {
+            
+            m_idleIterations = 0;
+        }
+        
+        m_idleStateNext = m_idleState;
+        m_idleState = state;
+        m_hasWrittenIO = false;
+        m_hasWrittenMEM = false;
+    }
+    
+    public void retireInstructions(int count) {
+        
+        m_retiredInstructions += count;
+    }
+    
+    @Override
+    public long getRetiredInstructions() {
+        
+        return m_retiredInstructions;
+    }
+    
+    @Override
+    public long getDecodedBlocks() {
+        
+        return m_decodedBlocks;
+    }
+    
+    @Override
+    public long getExecutedBlocks() {
+        
+        return m_executedBlocks;
+    }
+    
+    @Override
+    public long getCacheInvalidations() {
+        
+        return m_cacheInvalidations;
+    }
+    
+    @Override
+    public long getDeliveredInterrupts() {
+        
+        return m_deliveredInterrupts;
+    }
         
     // </editor-fold>
     
@@ -266,12 +458,63 @@ public final class Intel8086 implements HardwareComponent,
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Codeblock cache">
     
-    private void removeUnusedBlocks() {
+    public int getCacheEpoch() {
         
-        long minTime = System.currentTimeMillis() - 10000L;
+        return m_cacheEpoch;
+    }
+    
+    public long getEvictedBlocks() {
         
-        for(CodeBlockCache blockCache : m_codeBlockCache)
-            blockCache.map.values().removeIf(block -> block.getLastExecutionTime() < minTime);
+        return m_evictedBlocks;
+    }
+    
+    /**
+     * Makes room for the given number of instructions. The clock hand sweeps
+     * over the cached blocks and evicts every block that wasn't executed in
+     * the current epoch. If a whole revolution doesn't free enough space, the
+     * epoch is advanced so that all blocks become candidates.
+     */
+    private void evictBlocks(int numInstructions) {
+        
+        int numChecked = 0;
+        while(!m_clockRing.isEmpty() && m_cachedInstructions + numInstructions > m_maxCachedInstructions) {
+            
+            if(m_clockHand >= m_clockRing.size())
+                m_clockHand = 0;
+            
+            if(numChecked++ >= m_clockRing.size()) {
+                
+                numChecked = 0;
+                m_cacheEpoch++;
+            }
+            
+            CodeBlock block = m_clockRing.get(m_clockHand);
+            int addr = block.getAddress() & m_memMap.MAP_ADDR_MASK;
+            CodeBlockCache blockCache = m_codeBlockCache[(addr >>> m_memMap.MAP_PAGE_BITS) & 0xff];
+            Integer key = m_integerLUT[addr & 0xfff];
+            
+            // Blocks that were already invalidated are only removed from the ring
+            boolean isCached = blockCache.map.get(key) == block;
+            if(isCached && block.getLastEpoch() == m_cacheEpoch) {
+                
+                m_clockHand++;
+            }
+            else {
+                
+                if(isCached) {
+                    
+                    blockCache.map.remove(key);
+                    m_evictedBlocks++;
+                }
+                
+                // Replace the block by the last one of the ring
+                CodeBlock last = m_clockRing.remove(m_clockRing.size() - 1);
+                if(m_clockHand < m_clockRing.size())
+                    m_clockRing.set(m_clockHand, last);
+                
+                m_cachedInstructions -= block.getNumberOfInstructions();
+            }
+        }
     }
     
     private CodeBlock findBlock(int base, int offset) throws DecoderException {
@@ -288,6 +531,7 @@ public final class Intel8086 implements HardwareComponent,
         if(blockCache.isInvalidated) {
             
             blockCache.isInvalidated = false;
+            m_cacheInvalidations++;
             
             // Check all 256 paragraphs of this page (1 page = 4k of memory, 1 paragraph = 16 byte)
             for(int i = 0; i < 256; i++) {
@@ -316,7 +560,12 @@ public final class Intel8086 implements HardwareComponent,
         if((block = blockCache.map.get(m_integerLUT[addr & 0xfff])) == null) {
 
             block = m_decoder.decodeCodeBlock(base, offset);
+            evictBlocks(block.getNumberOfInstructions());
+            
             blockCache.map.put(m_integerLUT[addr & 0xfff], block);
+            m_clockRing.add(block);
+            m_cachedInstructions += block.getNumberOfInstructions();
+            m_decodedBlocks++;
         }
         
         return block;
@@ -346,6 +595,7 @@ public final class Intel8086 implements HardwareComponent,
     
     public void writeIO8(int port, int data) {
         
+        m_hasWrittenIO = true;
         m_ioMap.writeIO8(port, data & 0xff);
     }
     
@@ -357,6 +607,7 @@ public final class Intel8086 implements HardwareComponent,
     
     public void writeIO16(int port, int data) {
         
+        m_hasWrittenIO = true;
         m_ioMap.writeIO8(port, data & 0xff);
         m_ioMap.writeIO8(port + 1, (data >>> 8) & 0xff);
     }
@@ -373,6 +624,7 @@ public final class Intel8086 implements HardwareComponent,
         
         int addr = base + (offset & 0xffff);
         
+        m_hasWrittenMEM = true;
         m_memMap.writeMEM8(addr, data & 0xff);
         
         invalidateBlocks(addr);
@@ -393,6 +645,7 @@ public final class Intel8086 implements HardwareComponent,
         
         int addrA = base + (offset & 0xffff);
         
+        m_hasWrittenMEM = true;
         if((offset & 0x01) == 0) {
             
             invalidateBlocks(addrA);
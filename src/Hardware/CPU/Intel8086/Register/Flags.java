@@ -133,6 +133,17 @@ public final class Flags {
         PF = m_parityLUT[data & 0xff];
     }
     
+    /**
+     * Sets SF, ZF and PF for a result that is already masked to the width of
+     * the operation, where signMask selects its sign bit.
+     */
+    public void setSZP(int data, int signMask) {
+        
+        SF = (data & signMask) != 0;
+        ZF = data == 0;
+        PF = m_parityLUT[data & 0xff];
+    }
+    
     
     
     @Override
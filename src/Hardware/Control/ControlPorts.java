@@ -24,6 +24,9 @@ import Hardware.Speaker.Speaker;
 import Hardware.Timer.Intel8253;
 import IOMap.IOReadable;
 import IOMap.IOWritable;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 
 
 
@@ -55,6 +58,20 @@ public final class ControlPorts implements HardwareComponent,
         m_ctrlPortA = 0x00;
         m_ctrlPortB = 0x00;
     }
+    
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(m_ctrlPortA);
+        writer.writeInt(m_ctrlPortB);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_ctrlPortA = reader.readInt();
+        m_ctrlPortB = reader.readInt();
+    }
 
     @Override
     public void wireWith(HardwareComponent component) {
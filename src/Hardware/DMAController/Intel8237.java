@@ -18,6 +18,9 @@
 package Hardware.DMAController;
 
 import Hardware.HardwareComponent;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 import java.util.Arrays;
 import IOMap.IOReadable;
 import IOMap.IOWritable;
@@ -87,6 +90,30 @@ public final class Intel8237 implements HardwareComponent,
         m_flipFlop = false;
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInts(m_page);
+        writer.writeInts(m_address);
+        writer.writeInts(m_count);
+        writer.writeInts(m_mode);
+        writer.writeInt(m_status);
+        writer.writeInt(m_mask);
+        writer.writeBoolean(m_flipFlop);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        reader.readInts(m_page);
+        reader.readInts(m_address);
+        reader.readInts(m_count);
+        reader.readInts(m_mode);
+        m_status = reader.readInt();
+        m_mask = reader.readInt();
+        m_flipFlop = reader.readBoolean();
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Interface implementation of IOReadable / IOWritable">
     
@@ -19,6 +19,9 @@ package Hardware;
 
 import Hardware.CMOS.CMOSMap;
 import Main.Systems.ComponentConfig;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 
 
@@ -32,6 +35,8 @@ public interface HardwareComponent {
     default String getConfigCategory() { return ""; }
     default void provideConfigValues(ComponentConfig.Builder builder) {}
     default void updateCMOS(CMOSMap map) {}
+    default void saveState(StateWriter writer) throws IOException {}
+    default void loadState(StateReader reader) throws IOException {}
     
     default ArrayList<HardwareComponent> getSubComponents() {
         
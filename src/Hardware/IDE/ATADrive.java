@@ -17,10 +17,18 @@
  */
 package Hardware.IDE;
 
+import Hardware.IDE.Image.DiskImage;
+import Hardware.IDE.Image.ISOImage;
+import Hardware.IDE.Image.OverlayImage;
+import Hardware.IDE.Image.VirtualFATImage;
 import Hardware.InterruptController.PICs;
+import SaveState.Snapshot;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Map;
 
 
 
@@ -31,13 +39,35 @@ public final class ATADrive {
      * ----------------------------------------------------- */
     private File m_imageFile;
     private long m_imageSize;
-    private RandomAccessFile m_image;
+    private DiskImage m_image;
+    private boolean m_isVirtualFAT32;
+    
+    /* ----------------------------------------------------- *
+     * Block cache between the drive and its image           *
+     * ----------------------------------------------------- */
+    private BlockCache m_cache;
+    private int m_cacheSize;
+    private int m_cacheBlockSize;
+    private BlockCache.WriteMode m_cacheWriteMode;
+    
+    /* ----------------------------------------------------- *
+     * Mounted cd-rom image and sense data (ATAPI only)      *
+     * ----------------------------------------------------- */
+    private ISOImage m_cdrom;
+    private int m_senseKey;
+    private int m_senseASC;
     
     /* ----------------------------------------------------- *
      * Drive indicator                                       *
      * ----------------------------------------------------- */
     private boolean m_driveIndicator;
     
+    /* ----------------------------------------------------- *
+     * Transfer statistics                                   *
+     * ----------------------------------------------------- */
+    private long m_bytesRead;
+    private long m_bytesWritten;
+    
     /* ----------------------------------------------------- *
      * Disk geometry (default and also translated)           *
      * ----------------------------------------------------- */   
@@ -76,35 +106,95 @@ public final class ATADrive {
         
         m_regs = new ATARegister();
         m_pioBuffer = new PIOBuffer(0x10000);
+        
+        m_cacheSize = 4 << 20;
+        m_cacheBlockSize = 4 << 10;
+        m_cacheWriteMode = BlockCache.WriteMode.WriteThrough;
     }
     
     
     
     public boolean mountImage(String image) {
 
-        m_regs.isDisconnected = true;
+        ejectImage();
         
         File imageFile = new File(image);
         if(imageFile.exists()) {
         
             try {
 
-                m_image = new RandomAccessFile(imageFile, "rw");
+                // A directory of the host is presented as a virtual FAT volume
+                if(imageFile.isDirectory())
+                    m_image = new VirtualFATImage(imageFile, m_isVirtualFAT32);
+                else
+                    m_image = DiskImage.open(imageFile);
                 m_imageFile = imageFile;
-                m_imageSize = m_image.length();
+                m_imageSize = m_image.getSize();
                 
-                // Define default disk geometry
+                // Define default disk geometry (prefer the one that is stored in the image)
                 m_geometryLBAs = (int)(m_imageSize / 512l);
                 
                 m_geometryIndex = IDX_DEFAULT;
-                m_sectors[IDX_DEFAULT] = 63;
-                m_heads[IDX_DEFAULT] = 16;
-                m_cylinders[IDX_DEFAULT] = (int)(m_imageSize / (m_sectors[0] * m_heads[0] * 512l));
+                if(m_image.getSectors() > 0 && m_image.getHeads() > 0 && m_image.getHeads() <= 16) {
+                    
+                    m_sectors[IDX_DEFAULT] = m_image.getSectors();
+                    m_heads[IDX_DEFAULT] = m_image.getHeads();
+                    m_cylinders[IDX_DEFAULT] = m_image.getCylinders();
+                }
+                else {
+                    
+                    m_sectors[IDX_DEFAULT] = 63;
+                    m_heads[IDX_DEFAULT] = 16;
+                    m_cylinders[IDX_DEFAULT] = (int)(m_imageSize / (m_sectors[0] * m_heads[0] * 512l));
+                }
+                
+                // Put the cache in front of the image
+                initCache();
+                
+                // Success
+                m_regs.isDisconnected = false;
+            }
+            catch(IOException ex) {
+                
+                ex.printStackTrace(System.err);
+            }
+        }
+        
+        return !m_regs.isDisconnected;
+    }
+    
+    public boolean mountCDROM(String image) {
+        
+        ejectImage();
+        
+        File imageFile = new File(image);
+        if(imageFile.exists()) {
+            
+            RandomAccessFile file = null;
+            try {
+                
+                file = new RandomAccessFile(imageFile, "r");
+                
+                m_cdrom = new ISOImage(file);
+                m_imageFile = imageFile;
+                m_imageSize = m_cdrom.getSize();
+                
+                setSense(0, 0);
                 
                 // Success
+                m_regs.isATAPI = true;
                 m_regs.isDisconnected = false;
             }
             catch(IOException ex) {
+                
+                ex.printStackTrace(System.err);
+                try {
+                    
+                    if(file != null)
+                        file.close();
+                }
+                catch(IOException ex2) {
+                }
             }
         }
         
@@ -113,17 +203,46 @@ public final class ATADrive {
     
     public boolean ejectImage() {
         
-        try {
+        if(m_cdrom != null) {
             
-            if(m_image != null) {
-
-                m_image.close();
-                m_image = null;
+            try {
+                
+                m_cdrom.close();
             }
+            catch(IOException ex) {
+                
+                ex.printStackTrace(System.err);
+            }
+            
+            m_cdrom = null;
         }
-        catch(IOException ex) {
+        
+        if(m_image != null) {
+            
+            // Dirty blocks of the cache have to reach the image before it gets closed
+            try {
+                
+                m_cache.flush();
+            }
+            catch(IOException ex) {
+                
+                ex.printStackTrace(System.err);
+            }
+            
+            try {
+                
+                m_image.close();
+            }
+            catch(IOException ex) {
+                
+                ex.printStackTrace(System.err);
+            }
+            
+            m_cache = null;
+            m_image = null;
         }
         
+        m_regs.isATAPI = false;
         return m_regs.isDisconnected = true;
     }
     
@@ -152,6 +271,11 @@ public final class ATADrive {
         return m_regs.isDisconnected;
     }
     
+    public boolean isATAPI() {
+        
+        return m_regs.isATAPI;
+    }
+    
     
     
     public int getTotalNumberOfLBAs() {
@@ -212,6 +336,91 @@ public final class ATADrive {
     
     
     
+    // <editor-fold defaultstate="collapsed" desc="Save state">
+    
+    /**
+     * Saves the register set and the transfer state of this drive. The image
+     * itself is not part of the state, so the same image has to be mounted
+     * when the state gets loaded again.
+     */
+    public void saveState(StateWriter writer) throws IOException {
+        
+        m_regs.saveState(writer);
+        m_pioBuffer.saveState(writer);
+        
+        writer.writeInt(m_senseKey);
+        writer.writeInt(m_senseASC);
+        writer.writeInts(m_sectors);
+        writer.writeInts(m_heads);
+        writer.writeInts(m_cylinders);
+        writer.writeInt(m_geometryIndex);
+        writer.writeBoolean(m_isLBAEnabled);
+        writer.writeBoolean(m_irq);
+        writer.writeBoolean(m_irqEnable);
+        
+        // The saved state may already depend on writes that are still in
+        // the cache, so they have to reach the image before it gets saved,
+        // wrapped or frozen
+        flush();
+        
+        // A snapshot freezes the image and shares the written blocks with
+        // the systems that get forked from it
+        Snapshot snapshot = writer.getSnapshot();
+        
+        writer.writeBoolean(snapshot != null && m_image != null);
+        if(snapshot != null && m_image != null) {
+            
+            if(!(m_image instanceof OverlayImage)) {
+                
+                m_image = new OverlayImage(m_image);
+                initCache();
+            }
+            
+            writer.writeInt(snapshot.share(((OverlayImage)m_image).freeze()));
+        }
+    }
+    
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_regs.loadState(reader);
+        m_pioBuffer.loadState(reader);
+        
+        m_senseKey = reader.readInt();
+        m_senseASC = reader.readInt();
+        reader.readInts(m_sectors);
+        reader.readInts(m_heads);
+        reader.readInts(m_cylinders);
+        m_geometryIndex = reader.readInt();
+        m_isLBAEnabled = reader.readBoolean();
+        m_irq = reader.readBoolean();
+        m_irqEnable = reader.readBoolean();
+        
+        if(reader.readBoolean()) {
+            
+            Map<?, ?> blocks = reader.getSnapshot().getShared(reader.readInt(), Map.class);
+            if(m_image == null)
+                throw new IOException("The snapshot requires a mounted hard disk image");
+            
+            // The own image stays untouched, the blocks of the snapshot are put on top of it
+            DiskImage image = m_image;
+            if(image instanceof OverlayImage)
+                image = ((OverlayImage)image).getImage();
+            
+            @SuppressWarnings("unchecked")
+            Map<Long, byte[]> sharedBlocks = (Map<Long, byte[]>)blocks;
+            
+            // Writes of the replaced state still belong to the old image
+            flush();
+            
+            m_image = new OverlayImage(image, sharedBlocks);
+            initCache();
+        }
+    }
+    
+    // </editor-fold>
+    
+    
+    
     public void setLBAEnable(boolean isEnabled) {
         
         m_isLBAEnabled = isEnabled;
@@ -281,8 +490,8 @@ public final class ATADrive {
         
         long lba = getAddress();
         
-        m_image.seek(lba * 512l);
-        m_image.read(m_pioBuffer.getArray(), 0, numSectors * 512);
+        m_cache.read(lba, m_pioBuffer.getArray(), 0, numSectors);
+        m_bytesRead += numSectors * 512l;
         
         setAddress(lba + numSectors);
     }
@@ -291,12 +500,119 @@ public final class ATADrive {
         
         long lba = getAddress();
         
-        m_image.seek(lba * 512);
-        m_image.write(m_pioBuffer.getArray(), 0, numSectors * 512);
+        m_cache.write(lba, m_pioBuffer.getArray(), 0, numSectors);
+        m_bytesWritten += numSectors * 512l;
         
         setAddress(lba + numSectors);
     }
     
+    public void flush() throws IOException {
+        
+        if(m_cache != null)
+            m_cache.flush();
+    }
+    
+    
+    
+    public long getNumberOfCDROMSectors() {
+        
+        return m_cdrom.getNumberOfSectors();
+    }
+    
+    public void readCDROM(long lba, byte[] dst, int dstOffset, int numSectors) throws IOException {
+        
+        m_cdrom.read(lba * ISOImage.SECTOR_SIZE, dst, dstOffset, numSectors * ISOImage.SECTOR_SIZE);
+        m_bytesRead += numSectors * (long)ISOImage.SECTOR_SIZE;
+    }
+    
+    public long getBytesRead() {
+        
+        return m_bytesRead;
+    }
+    
+    public long getBytesWritten() {
+        
+        return m_bytesWritten;
+    }
+    
+    public void setSense(int senseKey, int asc) {
+        
+        m_senseKey = senseKey;
+        m_senseASC = asc;
+    }
+    
+    public int getSenseKey() {
+        
+        return m_senseKey;
+    }
+    
+    public int getSenseASC() {
+        
+        return m_senseASC;
+    }
+    
+    
+    
+    public void setVirtualFAT32(boolean isFAT32) {
+        
+        if(m_isVirtualFAT32 == isFAT32)
+            return;
+        
+        m_isVirtualFAT32 = isFAT32;
+        
+        // A mounted directory has to be presented with the new file system
+        if(m_image instanceof VirtualFATImage)
+            mountImage(m_imageFile.getPath());
+    }
+    
+    
+    
+    public void setCacheSize(int cacheSize) {
+        
+        m_cacheSize = cacheSize;
+        updateCache();
+    }
+    
+    public void setCacheBlockSize(int blockSize) {
+        
+        m_cacheBlockSize = blockSize;
+        updateCache();
+    }
+    
+    public void setCacheWriteMode(BlockCache.WriteMode writeMode) {
+        
+        m_cacheWriteMode = writeMode;
+        updateCache();
+    }
+    
+    public BlockCache getCache() {
+        
+        return m_cache;
+    }
+    
+    private void initCache() {
+        
+        m_cache = new BlockCache(m_image, m_imageSize, m_cacheBlockSize, m_cacheSize, m_cacheWriteMode);
+    }
+    
+    private void updateCache() {
+        
+        if(m_image == null)
+            return;
+        
+        // Dirty blocks of the old cache have to reach the image first
+        try {
+            
+            m_cache.flush();
+        }
+        catch(IOException ex) {
+            
+            ex.printStackTrace(System.err);
+        }
+        
+        initCache();
+    }
+    
     
 
     public void setPICs(PICs pics) {
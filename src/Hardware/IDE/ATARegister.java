@@ -1,5 +1,9 @@
 package Hardware.IDE;
 
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
+
 
 
 public final class ATARegister {
@@ -40,6 +44,7 @@ public final class ATARegister {
     /* ----------------------------------------------------- *
      * Command register                                      *
      * ----------------------------------------------------- */
+    public static final int ATA_CMD_DEVICE_RESET = 0x08;
     public static final int ATA_CMD_RECALIBRATE = 0x10;
     public static final int ATA_CMD_READ_PIO = 0x20;
     public static final int ATA_CMD_WRITE_PIO = 0x30;
@@ -47,6 +52,7 @@ public final class ATARegister {
     public static final int ATA_CMD_SEEK = 0x70;
     public static final int ATA_CMD_DRIVE_DIAGNOSTIC = 0x90;
     public static final int ATA_CMD_INIT_DRIVE_PARAMS = 0x91;
+    public static final int ATA_CMD_PACKET = 0xa0;
     public static final int ATA_CMD_ATAPI_IDENTIFY = 0xa1;
     public static final int ATA_CMD_STANDBY_IMMEDIATE = 0xe0;
     public static final int ATA_CMD_IDENTIFY = 0xec;
@@ -67,10 +73,17 @@ public final class ATARegister {
     public int cylinderHigh;
     public int driveAndHead;
     
+    /* ----------------------------------------------------- *
+     * ATAPI interrupt reason (in the sector count register) *
+     * ----------------------------------------------------- */
+    public static final int ATAPI_IR_COD = 0x01;  // Command packet
+    public static final int ATAPI_IR_IO = 0x02;   // Transfer to the host
+    
     /* ----------------------------------------------------- *
      * ATA device connected / disconnected                   *
      * ----------------------------------------------------- */
     public boolean isDisconnected;
+    public boolean isATAPI;
     
     
     
@@ -87,9 +100,51 @@ public final class ATARegister {
         error = ATA_ER_AMNF;
         sectorCount = 0x01;
         sectorNumber = 0x01;
-        cylinderLow = isDisconnected ? 0xff : 0x00;
-        cylinderHigh = isDisconnected ? 0xff : 0x00;
         driveAndHead = 0x00;
+        setSignature();
+    }
+    
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(status);
+        writer.writeInt(error);
+        writer.writeInt(control);
+        writer.writeInt(command);
+        writer.writeInt(features);
+        writer.writeInt(sectorCount);
+        writer.writeInt(sectorNumber);
+        writer.writeInt(cylinderLow);
+        writer.writeInt(cylinderHigh);
+        writer.writeInt(driveAndHead);
+    }
+    
+    public void loadState(StateReader reader) throws IOException {
+        
+        status = reader.readInt();
+        error = reader.readInt();
+        control = reader.readInt();
+        command = reader.readInt();
+        features = reader.readInt();
+        sectorCount = reader.readInt();
+        sectorNumber = reader.readInt();
+        cylinderLow = reader.readInt();
+        cylinderHigh = reader.readInt();
+        driveAndHead = reader.readInt();
+    }
+    
+    public void setSignature() {
+        
+        // ATAPI devices identify themselves with 14h, EBh in the cylinder register
+        if(isATAPI) {
+            
+            cylinderLow = 0x14;
+            cylinderHigh = 0xeb;
+        }
+        else {
+            
+            cylinderLow = isDisconnected ? 0xff : 0x00;
+            cylinderHigh = isDisconnected ? 0xff : 0x00;
+        }
     }
     
     
@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.IDE;
+
+import Hardware.IDE.Image.DiskImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+
+
+/**
+ * A sector cache that sits between an ATA drive and its image file. The image
+ * is split into fixed-size blocks which are kept in LRU order. Sequential reads
+ * are detected on block boundaries and the following blocks get prefetched.
+ */
+public final class BlockCache {
+    
+    /* ----------------------------------------------------- *
+     * Some constants                                        *
+     * ----------------------------------------------------- */
+    private static final int SECTOR_SIZE = 512;
+    private static final int SEQUENTIAL_THRESHOLD = 2;
+    private static final int PREFETCH_DEPTH = 4;
+    
+    /* ----------------------------------------------------- *
+     * Write handling of the cache                           *
+     * ----------------------------------------------------- */
+    public enum WriteMode {
+        
+        WriteThrough, WriteBack
+    }
+    private final WriteMode m_writeMode;
+    
+    /* ----------------------------------------------------- *
+     * Cached blocks (in LRU order)                          *
+     * ----------------------------------------------------- */
+    private final class Block {
+        
+        long index;
+        byte[] data;
+        boolean isDirty;
+        boolean isPrefetched;
+    }
+    private final LinkedHashMap<Long, Block> m_blocks;
+    private final int m_blockSize;
+    private final int m_sectorsPerBlock;
+    private final int m_numMaxBlocks;
+    
+    /* ----------------------------------------------------- *
+     * Sequential access detection                           *
+     * ----------------------------------------------------- */
+    private long m_lastBlock;
+    private int m_sequentialCount;
+    
+    /* ----------------------------------------------------- *
+     * Statistics                                            *
+     * ----------------------------------------------------- */
+    private long m_hits;
+    private long m_misses;
+    private long m_prefetchedBlocks;
+    private long m_prefetchHits;
+    private long m_bytesReadFromHost;
+    private long m_bytesWrittenToHost;
+    
+    /* ----------------------------------------------------- *
+     * Backing image                                         *
+     * ----------------------------------------------------- */
+    private final DiskImage m_image;
+    private final long m_imageSize;
+    
+    
+    
+    public BlockCache(DiskImage image,
+                      long imageSize,
+                      int blockSize,
+                      int cacheSize,
+                      WriteMode writeMode) {
+        
+        if(blockSize < SECTOR_SIZE || (blockSize % SECTOR_SIZE) != 0)
+            throw new IllegalArgumentException("The block size has to be a multiple of the sector size");
+        
+        m_image = image;
+        m_imageSize = imageSize;
+        m_blockSize = blockSize;
+        m_sectorsPerBlock = blockSize / SECTOR_SIZE;
+        m_numMaxBlocks = cacheSize / blockSize;
+        m_writeMode = writeMode;
+        
+        m_blocks = new LinkedHashMap<>(16, 0.75f, true);
+        m_lastBlock = -1l;
+    }
+    
+    
+    
+    // <editor-fold defaultstate="collapsed" desc="Sector access">
+    
+    public void read(long lba, byte[] dst, int dstOffset, int numSectors) throws IOException {
+        
+        if(!isEnabled()) {
+            
+            readFromHost(lba * SECTOR_SIZE, dst, dstOffset, numSectors * SECTOR_SIZE);
+            return;
+        }
+        
+        while(numSectors > 0) {
+            
+            long blockIdx = lba / m_sectorsPerBlock;
+            int sectorIdx = (int)(lba % m_sectorsPerBlock);
+            int sectors = Math.min(numSectors, m_sectorsPerBlock - sectorIdx);
+            
+            Block block = getBlock(blockIdx);
+            System.arraycopy(block.data, sectorIdx * SECTOR_SIZE, dst, dstOffset, sectors * SECTOR_SIZE);
+            
+            updateSequentialAccess(blockIdx);
+            
+            lba += sectors;
+            dstOffset += sectors * SECTOR_SIZE;
+            numSectors -= sectors;
+        }
+    }
+    
+    public void write(long lba, byte[] src, int srcOffset, int numSectors) throws IOException {
+        
+        if(!isEnabled() || m_writeMode == WriteMode.WriteThrough)
+            writeToHost(lba * SECTOR_SIZE, src, srcOffset, numSectors * SECTOR_SIZE);
+        
+        if(!isEnabled())
+            return;
+        
+        while(numSectors > 0) {
+            
+            long blockIdx = lba / m_sectorsPerBlock;
+            int sectorIdx = (int)(lba % m_sectorsPerBlock);
+            int sectors = Math.min(numSectors, m_sectorsPerBlock - sectorIdx);
+            
+            // A write through cache only updates blocks that are already present,
+            // whereas a write back cache has to allocate the block. Writes
+            // don't count as hits or misses, these are about reads only.
+            Block block = m_blocks.get(blockIdx);
+            if(block == null && m_writeMode == WriteMode.WriteBack) {
+                
+                // A block that gets overwritten completely isn't read first
+                if(sectors == m_sectorsPerBlock) {
+                    
+                    block = createBlock(blockIdx, false);
+                    m_blocks.put(blockIdx, block);
+                }
+                else
+                    block = loadBlock(blockIdx, false);
+            }
+            
+            if(block != null) {
+                
+                System.arraycopy(src, srcOffset, block.data, sectorIdx * SECTOR_SIZE, sectors * SECTOR_SIZE);
+                
+                if(m_writeMode == WriteMode.WriteBack)
+                    block.isDirty = true;
+            }
+            
+            lba += sectors;
+            srcOffset += sectors * SECTOR_SIZE;
+            numSectors -= sectors;
+        }
+    }
+    
+    public void flush() throws IOException {
+        
+        for(Block block : m_blocks.values())
+            writeBack(block);
+        
+        m_image.flush();
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Block handling">
+    
+    private Block getBlock(long blockIdx) throws IOException {
+        
+        Block block = m_blocks.get(blockIdx);
+        if(block != null) {
+            
+            if(block.isPrefetched) {
+                
+                block.isPrefetched = false;
+                m_prefetchHits++;
+            }
+            
+            m_hits++;
+            return block;
+        }
+        
+        m_misses++;
+        return loadBlock(blockIdx, false);
+    }
+    
+    private Block loadBlock(long blockIdx, boolean isPrefetch) throws IOException {
+        
+        Block block = createBlock(blockIdx, isPrefetch);
+        
+        long offset = blockIdx * m_blockSize;
+        int length = (int)Math.max(0l, Math.min(m_blockSize, m_imageSize - offset));
+        
+        Arrays.fill(block.data, length, m_blockSize, (byte)0);
+        if(length > 0)
+            readFromHost(offset, block.data, 0, length);
+        
+        m_blocks.put(blockIdx, block);
+        
+        return block;
+    }
+    
+    private Block createBlock(long blockIdx, boolean isPrefetch) throws IOException {
+        
+        Block block = allocateBlock();
+        block.index = blockIdx;
+        block.isDirty = false;
+        block.isPrefetched = isPrefetch;
+        
+        return block;
+    }
+    
+    private Block allocateBlock() throws IOException {
+        
+        // Reuse the buffer of the least recently used block if the cache is full
+        if(m_blocks.size() >= m_numMaxBlocks) {
+            
+            Iterator<Block> it = m_blocks.values().iterator();
+            Block eldest = it.next();
+            
+            // Keep the block in the cache until its data is safely written
+            writeBack(eldest);
+            it.remove();
+            
+            return eldest;
+        }
+        
+        Block block = new Block();
+        block.data = new byte[m_blockSize];
+        
+        return block;
+    }
+    
+    private void writeBack(Block block) throws IOException {
+        
+        if(block.isDirty) {
+            
+            long offset = block.index * m_blockSize;
+            int length = (int)Math.max(0l, Math.min(m_blockSize, m_imageSize - offset));
+            
+            if(length > 0)
+                writeToHost(offset, block.data, 0, length);
+            
+            block.isDirty = false;
+        }
+    }
+    
+    // </editor-fold>
+    // <editor-fold defaultstate="collapsed" desc="Sequential access detection and prefetching">
+    
+    private void updateSequentialAccess(long blockIdx) throws IOException {
+        
+        if(blockIdx == m_lastBlock)
+            return;
+        
+        if(blockIdx == m_lastBlock + 1l)
+            m_sequentialCount++;
+        else
+            m_sequentialCount = 0;
+        
+        m_lastBlock = blockIdx;
+        
+        if(m_sequentialCount >= SEQUENTIAL_THRESHOLD)
+            prefetch(blockIdx + 1l);
+    }
+    
+    private void prefetch(long blockIdx) throws IOException {
+        
+        // Never evict more than the half of the cache for prefetched blocks
+        int depth = Math.min(PREFETCH_DEPTH, m_numMaxBlocks >> 1);
+        
+        for(int i = 0; i < depth; i++, blockIdx++) {
+            
+            if(blockIdx * m_blockSize >= m_imageSize)
+                break;
+            
+            if(!m_blocks.containsKey(blockIdx)) {
+                
+                loadBlock(blockIdx, true);
+                m_prefetchedBlocks++;
+            }
+        }
+    }
+    
+    // </editor-fold>
+    // <editor-fold defaultstate="collapsed" desc="Host access">
+    
+    private void readFromHost(long offset, byte[] dst, int dstOffset, int length) throws IOException {
+        
+        m_image.read(offset, dst, dstOffset, length);
+        
+        m_bytesReadFromHost += length;
+    }
+    
+    private void writeToHost(long offset, byte[] src, int srcOffset, int length) throws IOException {
+        
+        m_image.write(offset, src, srcOffset, length);
+        
+        m_bytesWrittenToHost += length;
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Statistics">
+    
+    public boolean isEnabled() {
+        
+        return m_numMaxBlocks > 0;
+    }
+    
+    public int getBlockSize() {
+        
+        return m_blockSize;
+    }
+    
+    public int getCacheSize() {
+        
+        return m_numMaxBlocks * m_blockSize;
+    }
+    
+    public WriteMode getWriteMode() {
+        
+        return m_writeMode;
+    }
+    
+    public long getHits() {
+        
+        return m_hits;
+    }
+    
+    public long getMisses() {
+        
+        return m_misses;
+    }
+    
+    public float getHitRate() {
+        
+        long accesses = m_hits + m_misses;
+        
+        return accesses > 0l ? (float)m_hits / accesses : 0.0f;
+    }
+    
+    public long getPrefetchedBlocks() {
+        
+        return m_prefetchedBlocks;
+    }
+    
+    public long getPrefetchHits() {
+        
+        return m_prefetchHits;
+    }
+    
+    public float getPrefetchAccuracy() {
+        
+        return m_prefetchedBlocks > 0l ? (float)m_prefetchHits / m_prefetchedBlocks : 0.0f;
+    }
+    
+    public long getBytesReadFromHost() {
+        
+        return m_bytesReadFromHost;
+    }
+    
+    public long getBytesWrittenToHost() {
+        
+        return m_bytesWrittenToHost;
+    }
+    
+    @Override
+    public String toString() {
+        
+        return String.format("Hit rate: %.1f%%, Prefetch accuracy: %.1f%%, Host read: %d KB, Host written: %d KB",
+        
+            getHitRate() * 100.0f,
+            getPrefetchAccuracy() * 100.0f,
+            m_bytesReadFromHost >>> 10,
+            m_bytesWrittenToHost >>> 10
+        );
+    }
+    
+    // </editor-fold>
+}
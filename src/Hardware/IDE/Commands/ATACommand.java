@@ -24,6 +24,9 @@ import static Hardware.IDE.ATARegister.ATA_SR_DRQ;
 import static Hardware.IDE.ATARegister.ATA_SR_DSC;
 import static Hardware.IDE.ATARegister.ATA_SR_ERR;
 import Hardware.IDE.IDE;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 
 
 
@@ -49,12 +52,29 @@ public abstract class ATACommand {
         
         if(m_currDrive.isDisconnected())
             return abort();
+        else if(m_currDrive.isATAPI() && !isSupportingATAPI())
+            return abort();
         else
             return onFirstExecute();
     }
     
     
     
+    /**
+     * Saves the state of a command that is still in progress. The drives are
+     * taken from the adapter again when the state gets loaded.
+     */
+    public void saveState(StateWriter writer) throws IOException {
+    }
+    
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_currDrive = m_ide.getCurrentDrive();
+        m_otherDrive = m_ide.getOtherDrive();
+    }
+    
+    
+    
     protected boolean abort() {
         
         m_currDrive.getRegister().command = 0;
@@ -77,9 +97,17 @@ public abstract class ATACommand {
     
     
     
+    protected boolean isSupportingATAPI() {
+        
+        return false;
+    }
+    
+    
+    
     protected void initPIOTransfer() {
         
         m_currDrive.getPIOBuffer().setPosition(0);
+        m_currDrive.getPIOBuffer().setLimit(512);
         m_currDrive.getRegister().status = ATA_SR_DRDY | ATA_SR_DSC | ATA_SR_DRQ;
         m_currDrive.requestIRQ();
     }
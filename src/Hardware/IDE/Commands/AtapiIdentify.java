@@ -18,28 +18,56 @@
 package Hardware.IDE.Commands;
 
 import Hardware.IDE.IDE;
+import Hardware.IDE.PIOBuffer;
+import java.nio.charset.Charset;
 
 
 
 public final class AtapiIdentify extends ATACommand {
+    
+    private final Charset ASCII = Charset.forName("US-ASCII");
 
     public AtapiIdentify(IDE ide) {
         
         super(ide);
     }
     
+    @Override
+    protected boolean isSupportingATAPI() {
+        
+        return true;
+    }
+    
     @Override
     public boolean onFirstExecute() {
         
-        // No support for atapi drives atm, sorry
-        return abort();
+        // Only atapi devices respond to this command
+        if(!m_currDrive.isATAPI())
+            return abort();
+        
+        return proceed();
     }
 
     @Override
     public void onExecute() {
+        
+        PIOBuffer pio = m_currDrive.getPIOBuffer();
+        pio.reset();
+        
+        // Create identification packet
+        pio.setInt16(0, 0x8580); // ATAPI, CD-ROM, removable, 12 byte command packets
+        pio.setRPadStr16(20, 20, "S/N:007", ASCII);
+        pio.setLPadStr16(46, 8, "v0.1", ASCII);
+        pio.setLPadStr16(54, 40, String.format("jPC CD-ROM - [%s]", m_currDrive.getFileName()), ASCII);
+        pio.setInt16(98, 1 << 9); // LBA supported
+        pio.setInt16(160, 0x001e); // ATA/ATAPI-1 to 4
+        
+        initPIOTransfer();
     }
 
     @Override
     public void onPIOBufferEvent() {
+        
+        finishPIOTransfer();
     }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.IDE.Commands;
+
+import Hardware.IDE.ATARegister;
+import Hardware.IDE.IDE;
+
+
+
+public final class DeviceReset extends ATACommand {
+    
+    public DeviceReset(IDE ide) {
+        
+        super(ide);
+    }
+    
+    @Override
+    protected boolean isSupportingATAPI() {
+        
+        return true;
+    }
+    
+    @Override
+    public boolean onFirstExecute() {
+        
+        // Only atapi devices respond to this command
+        if(!m_currDrive.isATAPI())
+            return abort();
+        
+        return proceed();
+    }
+    
+    @Override
+    public void onExecute() {
+        
+        // The device stays selected and doesn't request an interrupt
+        ATARegister regs = m_currDrive.getRegister();
+        
+        int driveAndHead = regs.driveAndHead;
+        regs.reset();
+        regs.driveAndHead = driveAndHead;
+        
+        m_currDrive.setSense(0, 0);
+    }
+    
+    @Override
+    public void onPIOBufferEvent() {
+    }
+}
@@ -29,6 +29,12 @@ public final class DriveDiagnostic extends ATACommand {
         super(ide);
     }
     
+    @Override
+    protected boolean isSupportingATAPI() {
+        
+        return true;
+    }
+    
     @Override
     public boolean onFirstExecute() {
         
@@ -43,6 +49,9 @@ public final class DriveDiagnostic extends ATACommand {
         m_otherDrive.getRegister().driveAndHead = 0x00;
         m_ide.updateDrive(0x00);
         
+        m_currDrive.getRegister().setSignature();
+        m_otherDrive.getRegister().setSignature();
+        
         m_currDrive.getRegister().error = ATARegister.ATA_ER_AMNF;
         m_currDrive.requestIRQ();
     }
@@ -32,9 +32,22 @@ public final class Identify extends ATACommand {
         super(ide);
     }
     
+    @Override
+    protected boolean isSupportingATAPI() {
+        
+        return true;
+    }
+    
     @Override
     public boolean onFirstExecute() {
         
+        // Atapi devices abort and leave their signature for the host
+        if(m_currDrive.isATAPI()) {
+            
+            m_currDrive.getRegister().setSignature();
+            return abort();
+        }
+        
         return proceed();
     }
     
@@ -0,0 +1,534 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.IDE.Commands;
+
+import Hardware.IDE.ATARegister;
+import static Hardware.IDE.ATARegister.ATAPI_IR_COD;
+import static Hardware.IDE.ATARegister.ATAPI_IR_IO;
+import static Hardware.IDE.ATARegister.ATA_SR_DRDY;
+import static Hardware.IDE.ATARegister.ATA_SR_DRQ;
+import static Hardware.IDE.ATARegister.ATA_SR_DSC;
+import static Hardware.IDE.ATARegister.ATA_SR_ERR;
+import Hardware.IDE.IDE;
+import Hardware.IDE.Image.ISOImage;
+import Hardware.IDE.PIOBuffer;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+
+
+/**
+ * The PACKET command of an ATAPI CD-ROM. The host writes a 12 byte command
+ * packet, the response is transferred in data blocks as large as the byte
+ * count the host put into the cylinder register. Sector reads fill the whole
+ * pio buffer at once, so a single DRQ block carries up to 31 sectors.
+ */
+public final class Packet extends ATACommand {
+    
+    /* ----------------------------------------------------- *
+     * Some constants                                        *
+     * ----------------------------------------------------- */
+    private static final int SECTOR_SIZE = ISOImage.SECTOR_SIZE;
+    private static final int PACKET_SIZE = 12;
+    private final Charset ASCII = Charset.forName("US-ASCII");
+    
+    /* ----------------------------------------------------- *
+     * Sense keys and additional sense codes                 *
+     * ----------------------------------------------------- */
+    private static final int SENSE_NONE = 0x00;
+    private static final int SENSE_MEDIUM_ERROR = 0x03;
+    private static final int SENSE_ILLEGAL_REQUEST = 0x05;
+    private static final int ASC_UNRECOVERED_READ_ERROR = 0x11;
+    private static final int ASC_INVALID_OPCODE = 0x20;
+    private static final int ASC_LBA_OUT_OF_RANGE = 0x21;
+    private static final int ASC_INVALID_FIELD = 0x24;
+    
+    /* ----------------------------------------------------- *
+     * Packet commands                                       *
+     * ----------------------------------------------------- */
+    private static final int CMD_TEST_UNIT_READY = 0x00;
+    private static final int CMD_REQUEST_SENSE = 0x03;
+    private static final int CMD_INQUIRY = 0x12;
+    private static final int CMD_MODE_SENSE_6 = 0x1a;
+    private static final int CMD_START_STOP_UNIT = 0x1b;
+    private static final int CMD_PREVENT_ALLOW_MEDIUM_REMOVAL = 0x1e;
+    private static final int CMD_READ_CAPACITY = 0x25;
+    private static final int CMD_READ_10 = 0x28;
+    private static final int CMD_SEEK_10 = 0x2b;
+    private static final int CMD_READ_TOC = 0x43;
+    private static final int CMD_MODE_SENSE_10 = 0x5a;
+    private static final int CMD_READ_12 = 0xa8;
+    
+    /* ----------------------------------------------------- *
+     * Mode pages                                            *
+     * ----------------------------------------------------- */
+    private static final int PAGE_ERROR_RECOVERY = 0x01;
+    private static final int PAGE_CAPABILITIES = 0x2a;
+    private static final int PAGE_ALL = 0x3f;
+    
+    /* ----------------------------------------------------- *
+     * Command packet and transfer state                     *
+     * ----------------------------------------------------- */
+    private final byte[] m_packet;
+    private boolean m_isPacketPhase;
+    private int m_byteCountLimit;
+    private int m_dataLength;
+    private long m_lba;
+    private long m_sectorsLeft;
+    
+    
+    
+    public Packet(IDE ide) {
+        
+        super(ide);
+        
+        m_packet = new byte[PACKET_SIZE];
+    }
+    
+    
+    
+    @Override
+    protected boolean isSupportingATAPI() {
+        
+        return true;
+    }
+    
+    @Override
+    public boolean onFirstExecute() {
+        
+        // Only pio transfers of atapi devices are supported
+        if(!m_currDrive.isATAPI() || (m_currDrive.getRegister().features & 0x01) != 0)
+            return abort();
+        
+        // The byte count limit has to be even and must not be zero
+        m_byteCountLimit = m_currDrive.getRegister().getCylinder() & 0xfffe;
+        if(m_byteCountLimit == 0)
+            m_byteCountLimit = 0xfffe;
+        
+        return proceed();
+    }
+    
+    @Override
+    public void onExecute() {
+        
+        ATARegister regs = m_currDrive.getRegister();
+        PIOBuffer pio = m_currDrive.getPIOBuffer();
+        
+        // Request the command packet (without an interrupt)
+        pio.setPosition(0);
+        pio.setLimit(PACKET_SIZE);
+        
+        regs.sectorCount = ATAPI_IR_COD;
+        regs.status = ATA_SR_DRDY | ATA_SR_DSC | ATA_SR_DRQ;
+        
+        m_isPacketPhase = true;
+    }
+    
+    @Override
+    public void onPIOBufferEvent() {
+        
+        if(m_isPacketPhase) {
+            
+            m_isPacketPhase = false;
+            
+            System.arraycopy(m_currDrive.getPIOBuffer().getArray(), 0, m_packet, 0, PACKET_SIZE);
+            executePacket();
+        }
+        else {
+            
+            transferData();
+        }
+    }
+    
+    
+    
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeBytes(m_packet);
+        writer.writeBoolean(m_isPacketPhase);
+        writer.writeInt(m_byteCountLimit);
+        writer.writeInt(m_dataLength);
+        writer.writeLong(m_lba);
+        writer.writeLong(m_sectorsLeft);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        super.loadState(reader);
+        
+        reader.readBytes(m_packet);
+        m_isPacketPhase = reader.readBoolean();
+        m_byteCountLimit = reader.readInt();
+        m_dataLength = reader.readInt();
+        m_lba = reader.readLong();
+        m_sectorsLeft = reader.readLong();
+    }
+    
+    
+    
+    // <editor-fold defaultstate="collapsed" desc="Packet commands">
+    
+    private void executePacket() {
+        
+        switch(getInt8(0)) {
+            
+            case CMD_TEST_UNIT_READY:
+            case CMD_START_STOP_UNIT:
+            case CMD_PREVENT_ALLOW_MEDIUM_REMOVAL:
+            case CMD_SEEK_10:
+                complete();
+                break;
+            
+            case CMD_REQUEST_SENSE:
+                requestSense();
+                break;
+            
+            case CMD_INQUIRY:
+                inquiry();
+                break;
+            
+            case CMD_MODE_SENSE_6:
+                modeSense(false);
+                break;
+            
+            case CMD_MODE_SENSE_10:
+                modeSense(true);
+                break;
+            
+            case CMD_READ_CAPACITY:
+                readCapacity();
+                break;
+            
+            case CMD_READ_TOC:
+                readTOC();
+                break;
+            
+            case CMD_READ_10:
+                read(getInt32(2), getInt16(7));
+                break;
+            
+            case CMD_READ_12:
+                read(getInt32(2), getInt32(6));
+                break;
+            
+            default:
+                checkCondition(SENSE_ILLEGAL_REQUEST, ASC_INVALID_OPCODE);
+                break;
+        }
+    }
+    
+    private void requestSense() {
+        
+        PIOBuffer pio = m_currDrive.getPIOBuffer();
+        pio.reset();
+        
+        pio.setInt8(0, 0x70); // Current error
+        pio.setInt8(2, m_currDrive.getSenseKey());
+        pio.setInt8(7, 10); // Additional sense length
+        pio.setInt8(12, m_currDrive.getSenseASC());
+        
+        sendData(18, getInt8(4));
+    }
+    
+    private void inquiry() {
+        
+        PIOBuffer pio = m_currDrive.getPIOBuffer();
+        pio.reset();
+        
+        pio.setInt8(0, 0x05); // CD-ROM
+        pio.setInt8(1, 0x80); // Removable medium
+        pio.setInt8(3, 0x21); // ATAPI, SCSI-2 response format
+        pio.setInt8(4, 31); // Additional length
+        pio.setLPadStr8(8, 8, "jPC", ASCII);
+        pio.setLPadStr8(16, 16, "CD-ROM", ASCII);
+        pio.setLPadStr8(32, 4, "0.1", ASCII);
+        
+        sendData(36, getInt8(4));
+    }
+    
+    private void modeSense(boolean isModeSense10) {
+        
+        PIOBuffer pio = m_currDrive.getPIOBuffer();
+        pio.reset();
+        
+        int page = getInt8(2) & 0x3f;
+        int headerSize = isModeSense10 ? 8 : 4;
+        int length = headerSize;
+        
+        if(page == PAGE_ERROR_RECOVERY || page == PAGE_ALL) {
+            
+            pio.setInt8(length, PAGE_ERROR_RECOVERY);
+            pio.setInt8(length + 1, 0x06);
+            length += 8;
+        }
+        
+        if(page == PAGE_CAPABILITIES || page == PAGE_ALL) {
+            
+            pio.setInt8(length, PAGE_CAPABILITIES);
+            pio.setInt8(length + 1, 0x12);
+            pio.setInt8(length + 4, 0x71); // Audio play, mode 2 form 1/2, multi session
+            pio.setInt8(length + 6, 0x29); // Tray, eject and lock supported
+            setBigEndian16(length + 8, 706); // Maximum speed in KB/s (4x)
+            setBigEndian16(length + 10, 256); // Volume levels
+            setBigEndian16(length + 12, pio.getSize() >> 10); // Buffer size in KB
+            setBigEndian16(length + 14, 706); // Current speed in KB/s
+            length += 20;
+        }
+        
+        if(length == headerSize) {
+            
+            checkCondition(SENSE_ILLEGAL_REQUEST, ASC_INVALID_FIELD);
+            return;
+        }
+        
+        // Mode parameter header (120mm data disc, no block descriptors)
+        if(isModeSense10) {
+            
+            setBigEndian16(0, length - 2);
+            pio.setInt8(2, 0x01);
+            
+            sendData(length, getInt16(7));
+        }
+        else {
+            
+            pio.setInt8(0, length - 1);
+            pio.setInt8(1, 0x01);
+            
+            sendData(length, getInt8(4));
+        }
+    }
+    
+    private void readCapacity() {
+        
+        PIOBuffer pio = m_currDrive.getPIOBuffer();
+        pio.reset();
+        
+        setBigEndian32(0, (int)(m_currDrive.getNumberOfCDROMSectors() - 1));
+        setBigEndian32(4, SECTOR_SIZE);
+        
+        sendData(8, 8);
+    }
+    
+    private void readTOC() {
+        
+        PIOBuffer pio = m_currDrive.getPIOBuffer();
+        pio.reset();
+        
+        boolean isMSF = (getInt8(1) & 0x02) != 0;
+        int startTrack = getInt8(6);
+        
+        // Older drivers put the format into the control byte
+        int format = getInt8(2) & 0x0f;
+        if(format == 0)
+            format = getInt8(9) >>> 6;
+        
+        int length = 4;
+        switch(format) {
+            
+            // Table of contents (one data track)
+            case 0:
+                if(startTrack > 1 && startTrack != 0xaa) {
+                
+                    checkCondition(SENSE_ILLEGAL_REQUEST, ASC_INVALID_FIELD);
+                    return;
+                }
+            
+                if(startTrack <= 1) {
+                
+                    setTrackDescriptor(length, 1, 0l, isMSF);
+                    length += 8;
+                }
+                setTrackDescriptor(length, 0xaa, m_currDrive.getNumberOfCDROMSectors(), isMSF);
+                length += 8;
+                break;
+            
+            // Session information (one session)
+            case 1:
+                setTrackDescriptor(length, 1, 0l, isMSF);
+                length += 8;
+                break;
+            
+            default:
+                checkCondition(SENSE_ILLEGAL_REQUEST, ASC_INVALID_FIELD);
+                return;
+        }
+        
+        setBigEndian16(0, length - 2);
+        pio.setInt8(2, 1); // First track / session
+        pio.setInt8(3, 1); // Last track / session
+        
+        sendData(length, getInt16(7));
+    }
+    
+    private void read(long lba, long numSectors) {
+        
+        lba &= 0xffffffffl;
+        numSectors &= 0xffffffffl;
+        
+        if(lba + numSectors > m_currDrive.getNumberOfCDROMSectors()) {
+            
+            checkCondition(SENSE_ILLEGAL_REQUEST, ASC_LBA_OUT_OF_RANGE);
+            return;
+        }
+        
+        m_lba = lba;
+        m_sectorsLeft = numSectors;
+        m_dataLength = 0;
+        
+        m_currDrive.getPIOBuffer().setPosition(0);
+        transferData();
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Data transfer and completion">
+    
+    private void sendData(int length, int allocationLength) {
+        
+        m_sectorsLeft = 0l;
+        m_dataLength = Math.min(length, allocationLength);
+        
+        m_currDrive.getPIOBuffer().setPosition(0);
+        transferData();
+    }
+    
+    private void transferData() {
+        
+        ATARegister regs = m_currDrive.getRegister();
+        PIOBuffer pio = m_currDrive.getPIOBuffer();
+        
+        // Refill the buffer with as many sectors as fit into one DRQ block
+        if(pio.getPosition() >= m_dataLength) {
+            
+            if(m_sectorsLeft == 0l) {
+                
+                complete();
+                return;
+            }
+            
+            int numSectors = Math.max(1, Math.min(m_byteCountLimit, pio.getSize()) / SECTOR_SIZE);
+            numSectors = (int)Math.min(numSectors, m_sectorsLeft);
+            try {
+                
+                m_currDrive.setDriveIndicator();
+                m_currDrive.readCDROM(m_lba, pio.getArray(), 0, numSectors);
+            }
+            catch(IOException ex) {
+                
+                checkCondition(SENSE_MEDIUM_ERROR, ASC_UNRECOVERED_READ_ERROR);
+                return;
+            }
+            
+            m_lba += numSectors;
+            m_sectorsLeft -= numSectors;
+            m_dataLength = numSectors * SECTOR_SIZE;
+            
+            pio.setPosition(0);
+        }
+        
+        // Transfer the next block of data to the host
+        int count = Math.min(m_byteCountLimit, m_dataLength - pio.getPosition());
+        pio.setLimit(pio.getPosition() + count);
+        
+        regs.setCylinder(count);
+        regs.sectorCount = ATAPI_IR_IO;
+        regs.status = ATA_SR_DRDY | ATA_SR_DSC | ATA_SR_DRQ;
+        m_currDrive.requestIRQ();
+    }
+    
+    private void complete() {
+        
+        ATARegister regs = m_currDrive.getRegister();
+        
+        m_currDrive.setSense(SENSE_NONE, 0);
+        
+        regs.sectorCount = ATAPI_IR_IO | ATAPI_IR_COD;
+        regs.status = ATA_SR_DRDY | ATA_SR_DSC;
+        m_currDrive.requestIRQ();
+    }
+    
+    private void checkCondition(int senseKey, int asc) {
+        
+        ATARegister regs = m_currDrive.getRegister();
+        
+        m_currDrive.setSense(senseKey, asc);
+        
+        regs.error = senseKey << 4;
+        regs.sectorCount = ATAPI_IR_IO | ATAPI_IR_COD;
+        regs.status = ATA_SR_DRDY | ATA_SR_DSC | ATA_SR_ERR;
+        m_currDrive.requestIRQ();
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Some helper methods">
+    
+    private int getInt8(int offset) {
+        
+        return m_packet[offset] & 0xff;
+    }
+    
+    private int getInt16(int offset) {
+        
+        return (getInt8(offset) << 8) | getInt8(offset + 1);
+    }
+    
+    private int getInt32(int offset) {
+        
+        return (getInt16(offset) << 16) | getInt16(offset + 2);
+    }
+    
+    private void setBigEndian16(int offset, int value) {
+        
+        PIOBuffer pio = m_currDrive.getPIOBuffer();
+        pio.setInt8(offset, value >>> 8);
+        pio.setInt8(offset + 1, value);
+    }
+    
+    private void setBigEndian32(int offset, int value) {
+        
+        setBigEndian16(offset, value >>> 16);
+        setBigEndian16(offset + 2, value);
+    }
+    
+    private void setTrackDescriptor(int offset, int track, long lba, boolean isMSF) {
+        
+        PIOBuffer pio = m_currDrive.getPIOBuffer();
+        pio.setInt8(offset + 1, 0x14); // Data track, Q sub-channel encodes the position
+        pio.setInt8(offset + 2, track);
+        
+        if(isMSF) {
+            
+            // Logical block 0 is at 00:02:00
+            lba += 150l;
+            pio.setInt8(offset + 5, (int)(lba / 75l / 60l));
+            pio.setInt8(offset + 6, (int)((lba / 75l) % 60l));
+            pio.setInt8(offset + 7, (int)(lba % 75l));
+        }
+        else {
+            
+            setBigEndian32(offset + 4, (int)lba);
+        }
+    }
+    
+    // </editor-fold>
+}
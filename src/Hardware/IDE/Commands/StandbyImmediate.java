@@ -28,6 +28,12 @@ public final class StandbyImmediate extends ATACommand {
         super(ide);
     }
 
+    @Override
+    protected boolean isSupportingATAPI() {
+        
+        return true;
+    }
+    
     @Override
     public boolean onFirstExecute() {
         
@@ -5,10 +5,14 @@ import Hardware.HardwareComponent;
 import static Hardware.IDE.ATARegister.*;
 import Hardware.IDE.Commands.*;
 import Hardware.InterruptController.PICs;
+import IOMap.IOPort;
 import IOMap.IOReadable;
 import IOMap.IOWritable;
 import Main.Systems.ComponentConfig;
 import Main.Systems.ComponentConfig.Type;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 
 
 
@@ -41,7 +45,10 @@ public final class IDE implements HardwareComponent,
     private final ATACommand m_cmdSeek;
     private final ATACommand m_cmdPIdentify;
     private final ATACommand m_cmdStandbyImmediate;
+    private final ATACommand m_cmdPacket;
+    private final ATACommand m_cmdDeviceReset;
     private ATACommand m_currentCommand;
+    private int m_currentCommandCode;
     
     /* ----------------------------------------------------- *
      * Port mapping                                          *
@@ -70,6 +77,8 @@ public final class IDE implements HardwareComponent,
         m_cmdSeek = new Seek(this);
         m_cmdPIdentify = new AtapiIdentify(this);
         m_cmdStandbyImmediate = new StandbyImmediate(this);
+        m_cmdPacket = new Packet(this);
+        m_cmdDeviceReset = new DeviceReset(this);
         
         m_portMapping = isPrimaryAdapter ? new int[] { 0x1f0, 0x1f1, 0x1f2, 0x1f3, 0x1f4, 0x1f5, 0x1f6, 0x1f7, 0x3f6 } :
                                            new int[] { 0x170, 0x171, 0x172, 0x173, 0x174, 0x175, 0x176, 0x177, 0x376 };
@@ -91,6 +100,58 @@ public final class IDE implements HardwareComponent,
         m_currentCommand = null;
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        m_drives[0].saveState(writer);
+        m_drives[1].saveState(writer);
+        
+        writer.writeBoolean(m_currentDrive == m_drives[1]);
+        
+        writer.writeBoolean(m_currentCommand != null);
+        if(m_currentCommand != null) {
+            
+            writer.writeInt(m_currentCommandCode);
+            m_currentCommand.saveState(writer);
+        }
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_drives[0].loadState(reader);
+        m_drives[1].loadState(reader);
+        
+        boolean isSlaveSelected = reader.readBoolean();
+        m_currentDrive = m_drives[isSlaveSelected ? 1 : 0];
+        m_otherDrive = m_drives[isSlaveSelected ? 0 : 1];
+        
+        m_currentCommand = null;
+        if(reader.readBoolean()) {
+            
+            m_currentCommandCode = reader.readInt();
+            m_currentCommand = getCommand(m_currentCommandCode);
+            if(m_currentCommand == null)
+                throw new IOException(String.format("The save state contains an unknown IDE command %02X", m_currentCommandCode));
+            
+            m_currentCommand.loadState(reader);
+        }
+    }
+    
+    @Override
+    public void shutdown() {
+        
+        try {
+            
+            m_drives[0].flush();
+            m_drives[1].flush();
+        }
+        catch(IOException ex) {
+            
+            ex.printStackTrace(System.err);
+        }
+    }
+    
     @Override
     public void wireWith(HardwareComponent component) {
         
@@ -115,7 +176,44 @@ public final class IDE implements HardwareComponent,
                .isResettingSystem()
                .build();
         
-        builder.value("Slave", "", Type.FileValue, value -> mountImage(1, value))
+        // The slave of the secondary channel is an atapi cd-rom drive
+        if(isPrimaryAdapter()) {
+            
+            builder.value("Slave", "", Type.FileValue, value -> mountImage(1, value))
+                   .isResettingSystem()
+                   .build();
+        }
+        else {
+            
+            builder.value("CD-ROM", "", Type.FileValue, value -> mountCDROM(1, value))
+                   .isResettingSystem()
+                   .build();
+        }
+        
+        builder.value("Virtual FAT", "FAT16", Type.ToggleGroup, this::setVirtualFATType)
+               .option("FAT16", "FAT16")
+               .option("FAT32", "FAT32")
+               .isResettingSystem()
+               .build();
+        
+        builder.value("Cache size", "4096", Type.ToggleGroup, this::setCacheSize)
+               .option("Disabled", "0")
+               .option("1 MB", "1024")
+               .option("4 MB", "4096")
+               .option("16 MB", "16384")
+               .option("64 MB", "65536")
+               .isResettingSystem()
+               .build();
+        
+        builder.value("Cache block size", "4", Type.ToggleGroup, this::setCacheBlockSize)
+               .option("4 KB", "4")
+               .option("64 KB", "64")
+               .isResettingSystem()
+               .build();
+        
+        builder.value("Cache write mode", "WriteThrough", Type.ToggleGroup, this::setCacheWriteMode)
+               .option("Write-through", "WriteThrough")
+               .option("Write-back", "WriteBack")
                .isResettingSystem()
                .build();
     }
@@ -246,6 +344,36 @@ public final class IDE implements HardwareComponent,
         }
     }
     
+    @Override
+    public void readIOBlock16(int port, byte[] dst, int offset, int count) {
+        
+        switch(port) {
+            
+            case 0x170:
+            case 0x1f0:
+                readPIOBlock(dst, offset, count << 1, 2);
+                break;
+            
+            default:
+                throw new IllegalArgumentException(String.format("Illegal access to port %04xh", port));
+        }
+    }
+    
+    @Override
+    public void readIOBlock32(int port, byte[] dst, int offset, int count) {
+        
+        switch(port) {
+            
+            case 0x170:
+            case 0x1f0:
+                readPIOBlock(dst, offset, count << 2, 4);
+                break;
+            
+            default:
+                throw new IllegalArgumentException(String.format("Illegal access to port %04xh", port));
+        }
+    }
+    
     @Override
     public int[] getWritableIOPorts() {
         
@@ -354,6 +482,59 @@ public final class IDE implements HardwareComponent,
         }
     }
     
+    @Override
+    public void writeIOBlock16(int port, byte[] src, int offset, int count) {
+        
+        switch(port) {
+            
+            case 0x170:
+            case 0x1f0:
+                writePIOBlock(src, offset, count << 1, 2);
+                break;
+            
+            default:
+                throw new IllegalArgumentException(String.format("Illegal access to port %04xh", port));
+        }
+    }
+    
+    @Override
+    public void writeIOBlock32(int port, byte[] src, int offset, int count) {
+        
+        switch(port) {
+            
+            case 0x170:
+            case 0x1f0:
+                writePIOBlock(src, offset, count << 2, 4);
+                break;
+            
+            default:
+                throw new IllegalArgumentException(String.format("Illegal access to port %04xh", port));
+        }
+    }
+    
+    @Override
+    public IOPort getPortHandler(int port) {
+        
+        // Every sector of a pio transfer goes through the data register
+        if(port == 0x170 || port == 0x1f0) {
+            
+            return new IOPort(this) {
+                
+                @Override public int readIO16(int port) { return readPIO(2); }
+                @Override public int readIO32(int port) { return readPIO(4); }
+                @Override public void readIOBlock16(int port, byte[] dst, int offset, int count) { readPIOBlock(dst, offset, count << 1, 2); }
+                @Override public void readIOBlock32(int port, byte[] dst, int offset, int count) { readPIOBlock(dst, offset, count << 2, 4); }
+                
+                @Override public void writeIO16(int port, int data) { writePIO(data, 2); }
+                @Override public void writeIO32(int port, int data) { writePIO(data, 4); }
+                @Override public void writeIOBlock16(int port, byte[] src, int offset, int count) { writePIOBlock(src, offset, count << 1, 2); }
+                @Override public void writeIOBlock32(int port, byte[] src, int offset, int count) { writePIOBlock(src, offset, count << 2, 4); }
+            };
+        }
+        
+        return null;
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="PIO transfers">
@@ -371,7 +552,7 @@ public final class IDE implements HardwareComponent,
             case 2: pio.putInt16(data); break;
             default: pio.putInt32(data); break;
         }
-        if(pio.getPosition() >= 512)
+        if(pio.isBlockComplete())
             m_currentCommand.onPIOBufferEvent();
     }
     
@@ -390,12 +571,63 @@ public final class IDE implements HardwareComponent,
             default: data = pio.getInt32(); break;
         }
         
-        if(pio.getPosition() >= 512)
+        if(pio.isBlockComplete())
             m_currentCommand.onPIOBufferEvent();
         
         return data;
     }
     
+    private void writePIOBlock(byte[] src, int offset, int length, int size) {
+        
+        while(length > 0) {
+            
+            if(m_currentCommand == null)
+                throw new IllegalStateException("Something is not right here");
+            
+            PIOBuffer pio = m_currentDrive.getPIOBuffer();
+            
+            int chunk = getPIOChunkSize(pio, length, size);
+            pio.putBlock(src, offset, chunk);
+            
+            offset += chunk;
+            length -= chunk;
+            
+            if(pio.isBlockComplete())
+                m_currentCommand.onPIOBufferEvent();
+        }
+    }
+    
+    private void readPIOBlock(byte[] dst, int offset, int length, int size) {
+        
+        while(length > 0) {
+            
+            if(m_currentCommand == null)
+                throw new IllegalStateException("Something is not right here");
+            
+            PIOBuffer pio = m_currentDrive.getPIOBuffer();
+            
+            int chunk = getPIOChunkSize(pio, length, size);
+            pio.getBlock(dst, offset, chunk);
+            
+            offset += chunk;
+            length -= chunk;
+            
+            if(pio.isBlockComplete())
+                m_currentCommand.onPIOBufferEvent();
+        }
+    }
+    
+    private int getPIOChunkSize(PIOBuffer pio, int length, int size) {
+        
+        // Transfer everything up to the end of the current data block, but at
+        // least one element (just like the single element access does)
+        int remaining = pio.getLimit() - pio.getPosition();
+        if(remaining < size)
+            return size;
+        
+        return Math.min(length, remaining - (remaining % size));
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Some helper methods">
     
@@ -437,23 +669,10 @@ public final class IDE implements HardwareComponent,
     
     private void executeCommand(int data) {
         
-        switch(data) {
-            
-            case ATA_CMD_READ_PIO: m_currentCommand = m_cmdReadPIO; break;
-            case ATA_CMD_WRITE_PIO: m_currentCommand = m_cmdWritePIO; break;
-            case ATA_CMD_INIT_DRIVE_PARAMS: m_currentCommand = m_cmdInitDriveParams; break;
-            case ATA_CMD_IDENTIFY: m_currentCommand = m_cmdIdentify; break;
-            case ATA_CMD_DRIVE_DIAGNOSTIC: m_currentCommand = m_cmdDriveDiagnostic; break;
-            case ATA_CMD_RECALIBRATE: m_currentCommand = m_cmdRecalibrate; break;
-            case ATA_CMD_READ_VERIFY_PIO: m_currentCommand = m_cmdReadVerifyPIO; break;
-            case ATA_CMD_SET_FEATURES: m_currentCommand = m_cmdSetFeatures; break;
-            case ATA_CMD_SEEK: m_currentCommand = m_cmdSeek; break;
-            case ATA_CMD_ATAPI_IDENTIFY: m_currentCommand = m_cmdPIdentify; break;
-            case ATA_CMD_STANDBY_IMMEDIATE: m_currentCommand = m_cmdStandbyImmediate; break;
-            
-            default:
-                throw new IllegalArgumentException(String.format("Unknown IDE Command: %02X", data));
-        }
+        m_currentCommand = getCommand(data);
+        m_currentCommandCode = data;
+        if(m_currentCommand == null)
+            throw new IllegalArgumentException(String.format("Unknown IDE Command: %02X", data));
         
         if(m_currentCommand.init())
             m_currentCommand.onExecute();
@@ -461,6 +680,29 @@ public final class IDE implements HardwareComponent,
             m_currentCommand = null;
     }
     
+    private ATACommand getCommand(int data) {
+        
+        switch(data) {
+            
+            case ATA_CMD_READ_PIO: return m_cmdReadPIO;
+            case ATA_CMD_WRITE_PIO: return m_cmdWritePIO;
+            case ATA_CMD_INIT_DRIVE_PARAMS: return m_cmdInitDriveParams;
+            case ATA_CMD_IDENTIFY: return m_cmdIdentify;
+            case ATA_CMD_DRIVE_DIAGNOSTIC: return m_cmdDriveDiagnostic;
+            case ATA_CMD_RECALIBRATE: return m_cmdRecalibrate;
+            case ATA_CMD_READ_VERIFY_PIO: return m_cmdReadVerifyPIO;
+            case ATA_CMD_SET_FEATURES: return m_cmdSetFeatures;
+            case ATA_CMD_SEEK: return m_cmdSeek;
+            case ATA_CMD_ATAPI_IDENTIFY: return m_cmdPIdentify;
+            case ATA_CMD_STANDBY_IMMEDIATE: return m_cmdStandbyImmediate;
+            case ATA_CMD_PACKET: return m_cmdPacket;
+            case ATA_CMD_DEVICE_RESET: return m_cmdDeviceReset;
+            
+            default:
+                return null;
+        }
+    }
+    
     public boolean isPrimaryAdapter() {
         
         return m_isPrimaryAdapter;
@@ -472,6 +714,11 @@ public final class IDE implements HardwareComponent,
                m_drives[1].isDriveIndicatorLit();
     }
     
+    public ATADrive getDrive(int driveIdx) {
+        
+        return m_drives[driveIdx];
+    }
+    
     public ATADrive getCurrentDrive() {
         
         return m_currentDrive;
@@ -493,5 +740,53 @@ public final class IDE implements HardwareComponent,
             return m_drives[driveIdx].mountImage(image);
     }
     
+    private boolean mountCDROM(int driveIdx, String image) {
+        
+        if(image.isEmpty())
+            return m_drives[driveIdx].ejectImage();
+        else
+            return m_drives[driveIdx].mountCDROM(image);
+    }
+    
+    private boolean setVirtualFATType(String value) {
+        
+        // Only takes effect when a directory gets mounted
+        boolean isFAT32 = "FAT32".equals(value);
+        
+        m_drives[0].setVirtualFAT32(isFAT32);
+        m_drives[1].setVirtualFAT32(isFAT32);
+        return true;
+    }
+    
+    // </editor-fold>
+    // <editor-fold defaultstate="collapsed" desc="Block cache">
+    
+    private boolean setCacheSize(String value) {
+        
+        int cacheSize = Integer.valueOf(value) << 10;
+        
+        m_drives[0].setCacheSize(cacheSize);
+        m_drives[1].setCacheSize(cacheSize);
+        return true;
+    }
+    
+    private boolean setCacheBlockSize(String value) {
+        
+        int blockSize = Integer.valueOf(value) << 10;
+        
+        m_drives[0].setCacheBlockSize(blockSize);
+        m_drives[1].setCacheBlockSize(blockSize);
+        return true;
+    }
+    
+    private boolean setCacheWriteMode(String value) {
+        
+        BlockCache.WriteMode writeMode = BlockCache.WriteMode.valueOf(value);
+        
+        m_drives[0].setCacheWriteMode(writeMode);
+        m_drives[1].setCacheWriteMode(writeMode);
+        return true;
+    }
+    
     // </editor-fold>
 }
@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.IDE.Image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+
+/**
+ * A sparse image where every block is compressed on its own. A block allocation
+ * table maps each block to its compressed data in the file. Blocks that only
+ * contain zeros take no space at all.
+ * 
+ * Layout (big endian):
+ * 
+ *   0x00  Magic "jPCZ"
+ *   0x04  Version
+ *   0x08  Block size in bytes
+ *   0x0c  Number of blocks
+ *   0x10  Disk size in bytes
+ *   0x18  Offset of the block allocation table
+ *   0x40  Block allocation table, 12 bytes per entry (file offset, length).
+ *         A file offset of zero is an empty block and a length that equals
+ *         the block size marks uncompressed data.
+ * 
+ * A block that grows while being rewritten is appended to the end of the file,
+ * the space of its old data isn't reused. Converting an image again compacts
+ * the file.
+ */
+public final class CompressedImage implements DiskImage {
+    
+    /* ----------------------------------------------------- *
+     * Some constants                                        *
+     * ----------------------------------------------------- */
+    private static final int MAGIC = 0x6a50435a;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 0x40;
+    private static final int BAT_ENTRY_SIZE = 12;
+    private static final int DEFAULT_BLOCK_SIZE = 64 << 10;
+    private static final int NUM_CACHED_BLOCKS = 64;
+    
+    /* ----------------------------------------------------- *
+     * Image file                                            *
+     * ----------------------------------------------------- */
+    private final RandomAccessFile m_image;
+    private final long m_size;
+    private final int m_blockSize;
+    private long m_endOfData;
+    
+    /* ----------------------------------------------------- *
+     * Block allocation table                                *
+     * ----------------------------------------------------- */
+    private final long m_batOffset;
+    private final long[] m_blockOffset;
+    private final int[] m_blockLength;
+    
+    /* ----------------------------------------------------- *
+     * Decompressed blocks (in LRU order)                    *
+     * ----------------------------------------------------- */
+    private final LinkedHashMap<Integer, byte[]> m_cache;
+    
+    /* ----------------------------------------------------- *
+     * Compression                                           *
+     * ----------------------------------------------------- */
+    private final Deflater m_deflater;
+    private final Inflater m_inflater;
+    private final byte[] m_compressed;
+    
+    
+    
+    @SuppressWarnings("serial")
+    public CompressedImage(RandomAccessFile image) throws IOException {
+        
+        m_image = image;
+        
+        byte[] data = new byte[HEADER_SIZE];
+        image.seek(0l);
+        image.readFully(data);
+        
+        ByteBuffer header = ByteBuffer.wrap(data);
+        if(header.getInt(0) != MAGIC)
+            throw new IOException("The image is not a compressed image");
+        if(header.getInt(4) != VERSION)
+            throw new IOException(String.format("Unsupported compressed image version %d", header.getInt(4)));
+        
+        m_blockSize = header.getInt(8);
+        m_size = header.getLong(16);
+        m_batOffset = header.getLong(24);
+        
+        int numBlocks = header.getInt(12);
+        if(m_blockSize <= 0 || (long)numBlocks * m_blockSize < m_size)
+            throw new IOException("The header of the compressed image is corrupt");
+        
+        // Read the block allocation table
+        m_blockOffset = new long[numBlocks];
+        m_blockLength = new int[numBlocks];
+        
+        data = new byte[numBlocks * BAT_ENTRY_SIZE];
+        image.seek(m_batOffset);
+        image.readFully(data);
+        
+        ByteBuffer bat = ByteBuffer.wrap(data);
+        for(int i = 0; i < numBlocks; i++) {
+            
+            m_blockOffset[i] = bat.getLong();
+            m_blockLength[i] = bat.getInt();
+        }
+        
+        m_endOfData = Math.max(image.length(), m_batOffset + data.length);
+        
+        m_cache = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                
+                return size() > NUM_CACHED_BLOCKS;
+            }
+        };
+        
+        m_deflater = new Deflater(Deflater.BEST_SPEED);
+        m_inflater = new Inflater();
+        m_compressed = new byte[m_blockSize];
+    }
+    
+    
+    
+    public static boolean isCompressedImage(RandomAccessFile image) throws IOException {
+        
+        if(image.length() < HEADER_SIZE)
+            return false;
+        
+        image.seek(0l);
+        
+        return image.readInt() == MAGIC;
+    }
+    
+    public static void create(DiskImage source, File file, int blockSize) throws IOException {
+        
+        if(blockSize < 512 || (blockSize % 512) != 0)
+            throw new IllegalArgumentException("The block size has to be a multiple of 512");
+        
+        long size = source.getSize();
+        int numBlocks = (int)((size + blockSize - 1) / blockSize);
+        
+        try(RandomAccessFile image = new RandomAccessFile(file, "rw")) {
+            
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(blockSize);
+            header.putInt(numBlocks);
+            header.putLong(size);
+            header.putLong(HEADER_SIZE);
+            
+            image.setLength(0l);
+            image.write(header.array());
+            image.write(new byte[numBlocks * BAT_ENTRY_SIZE]);
+        }
+        
+        try(CompressedImage image = new CompressedImage(new RandomAccessFile(file, "rw"))) {
+            
+            byte[] block = new byte[blockSize];
+            for(int i = 0; i < numBlocks; i++) {
+                
+                source.read((long)i * blockSize, block, 0, blockSize);
+                image.storeBlock(i, block);
+            }
+        }
+    }
+    
+    
+    
+    @Override
+    public long getSize() {
+        
+        return m_size;
+    }
+    
+    @Override
+    public void read(long offset, byte[] dst, int dstOffset, int length) throws IOException {
+        
+        while(length > 0) {
+            
+            int blockOffset = (int)(offset % m_blockSize);
+            int size = Math.min(length, m_blockSize - blockOffset);
+            
+            if(offset >= m_size)
+                Arrays.fill(dst, dstOffset, dstOffset + size, (byte)0);
+            else
+                System.arraycopy(getBlock((int)(offset / m_blockSize)), blockOffset, dst, dstOffset, size);
+            
+            offset += size;
+            dstOffset += size;
+            length -= size;
+        }
+    }
+    
+    @Override
+    public void write(long offset, byte[] src, int srcOffset, int length) throws IOException {
+        
+        while(length > 0 && offset < m_size) {
+            
+            int blockIdx = (int)(offset / m_blockSize);
+            int blockOffset = (int)(offset % m_blockSize);
+            int size = Math.min(length, m_blockSize - blockOffset);
+            
+            byte[] block = getBlock(blockIdx);
+            System.arraycopy(src, srcOffset, block, blockOffset, size);
+            
+            storeBlock(blockIdx, block);
+            
+            offset += size;
+            srcOffset += size;
+            length -= size;
+        }
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        
+        m_image.getChannel().force(false);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        
+        m_deflater.end();
+        m_inflater.end();
+        m_image.close();
+    }
+    
+    
+    
+    private byte[] getBlock(int blockIdx) throws IOException {
+        
+        byte[] block = m_cache.get(blockIdx);
+        if(block == null) {
+            
+            block = new byte[m_blockSize];
+            
+            int length = m_blockLength[blockIdx];
+            if(m_blockOffset[blockIdx] != 0l) {
+                
+                m_image.seek(m_blockOffset[blockIdx]);
+                
+                if(length == m_blockSize) {
+                    
+                    m_image.readFully(block);
+                }
+                else {
+                    
+                    m_image.readFully(m_compressed, 0, length);
+                    
+                    m_inflater.reset();
+                    m_inflater.setInput(m_compressed, 0, length);
+                    try {
+                        
+                        if(m_inflater.inflate(block) != m_blockSize)
+                            throw new IOException(String.format("Block %d of the compressed image is truncated", blockIdx));
+                    }
+                    catch(DataFormatException ex) {
+                        
+                        throw new IOException(String.format("Block %d of the compressed image is corrupt", blockIdx), ex);
+                    }
+                }
+            }
+            
+            m_cache.put(blockIdx, block);
+        }
+        
+        return block;
+    }
+    
+    private void storeBlock(int blockIdx, byte[] block) throws IOException {
+        
+        long offset = 0l;
+        int length = 0;
+        
+        if(!isZero(block)) {
+            
+            // Store the block uncompressed if compression doesn't pay off
+            m_deflater.reset();
+            m_deflater.setInput(block);
+            m_deflater.finish();
+            
+            length = m_deflater.deflate(m_compressed);
+            
+            byte[] data = m_compressed;
+            if(!m_deflater.finished() || length >= m_blockSize) {
+                
+                data = block;
+                length = m_blockSize;
+            }
+            
+            // Overwrite the old data if the block still fits, otherwise append it
+            if(m_blockOffset[blockIdx] != 0l && length <= m_blockLength[blockIdx]) {
+                
+                offset = m_blockOffset[blockIdx];
+            }
+            else {
+                
+                offset = m_endOfData;
+                m_endOfData += length;
+            }
+            
+            m_image.seek(offset);
+            m_image.write(data, 0, length);
+        }
+        
+        // Update the block allocation table
+        m_blockOffset[blockIdx] = offset;
+        m_blockLength[blockIdx] = length;
+        
+        m_image.seek(m_batOffset + (long)blockIdx * BAT_ENTRY_SIZE);
+        m_image.writeLong(offset);
+        m_image.writeInt(length);
+    }
+    
+    private boolean isZero(byte[] data) {
+        
+        for(byte b : data) {
+            
+            if(b != 0)
+                return false;
+        }
+        
+        return true;
+    }
+    
+    
+    
+    /**
+     * Converts an image of any supported format into a compressed image.
+     * 
+     * Usage: CompressedImage <source image> <destination image> [block size in KB]
+     */
+    public static void main(String[] args) throws IOException {
+        
+        if(args.length < 2) {
+            
+            System.out.println("Usage: CompressedImage <source image> <destination image> [block size in KB]");
+            return;
+        }
+        
+        int blockSize = args.length > 2 ? Integer.parseInt(args[2]) << 10 : DEFAULT_BLOCK_SIZE;
+        
+        try(DiskImage source = DiskImage.open(new File(args[0]))) {
+            
+            create(source, new File(args[1]), blockSize);
+        }
+    }
+}
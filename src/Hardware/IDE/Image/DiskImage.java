@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.IDE.Image;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+
+
+/**
+ * The backing store of an ATA drive. Offsets and lengths are given in bytes,
+ * reading beyond the end of the image returns zeros and writes beyond the end
+ * get discarded.
+ */
+public interface DiskImage extends Closeable {
+    
+    long getSize();
+    void read(long offset, byte[] dst, int dstOffset, int length) throws IOException;
+    void write(long offset, byte[] src, int srcOffset, int length) throws IOException;
+    void flush() throws IOException;
+    
+    
+    
+    // The geometry that is stored in the image (or zero if there is none)
+    default int getCylinders() {
+        
+        return 0;
+    }
+    
+    default int getHeads() {
+        
+        return 0;
+    }
+    
+    default int getSectors() {
+        
+        return 0;
+    }
+    
+    default String getFormatName() {
+        
+        return getClass().getSimpleName();
+    }
+    
+    
+    
+    static DiskImage open(File file) throws IOException {
+        
+        RandomAccessFile image = new RandomAccessFile(file, "rw");
+        try {
+            
+            if(CompressedImage.isCompressedImage(image))
+                return new CompressedImage(image);
+            
+            if(VHDImage.isVHDImage(image))
+                return new VHDImage(image);
+            
+            return new RawImage(image);
+        }
+        catch(IOException ex) {
+            
+            image.close();
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.IDE.Image;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+
+
+/**
+ * A read only ISO 9660 image with 2048 byte sectors. The image is mapped into
+ * memory in 1 GB regions, so reads are served without any system call.
+ */
+public final class ISOImage implements DiskImage {
+    
+    /* ----------------------------------------------------- *
+     * Some constants                                        *
+     * ----------------------------------------------------- */
+    public static final int SECTOR_SIZE = 2048;
+    private static final int REGION_BITS = 30;
+    private static final long REGION_SIZE = 1l << REGION_BITS;
+    
+    /* ----------------------------------------------------- *
+     * Mapped image                                          *
+     * ----------------------------------------------------- */
+    private final RandomAccessFile m_image;
+    private final MappedByteBuffer[] m_regions;
+    private final long m_size;
+    
+    
+    
+    public ISOImage(RandomAccessFile image) throws IOException {
+        
+        m_image = image;
+        m_size = image.length();
+        
+        FileChannel channel = image.getChannel();
+        
+        m_regions = new MappedByteBuffer[(int)((m_size + REGION_SIZE - 1) >>> REGION_BITS)];
+        for(int i = 0; i < m_regions.length; i++) {
+            
+            long offset = i * REGION_SIZE;
+            m_regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(REGION_SIZE, m_size - offset));
+        }
+    }
+    
+    
+    
+    public long getNumberOfSectors() {
+        
+        return m_size / SECTOR_SIZE;
+    }
+    
+    @Override
+    public long getSize() {
+        
+        return m_size;
+    }
+    
+    @Override
+    public String getFormatName() {
+        
+        return "ISO";
+    }
+    
+    @Override
+    public void read(long offset, byte[] dst, int dstOffset, int length) throws IOException {
+        
+        while(length > 0) {
+            
+            if(offset >= m_size) {
+                
+                Arrays.fill(dst, dstOffset, dstOffset + length, (byte)0);
+                return;
+            }
+            
+            MappedByteBuffer region = m_regions[(int)(offset >>> REGION_BITS)];
+            int regionOffset = (int)(offset & (REGION_SIZE - 1));
+            int size = Math.min(length, region.capacity() - regionOffset);
+            
+            // Don't touch the position of the shared mapping
+            ByteBuffer buffer = region.duplicate();
+            buffer.position(regionOffset);
+            buffer.get(dst, dstOffset, size);
+            
+            offset += size;
+            dstOffset += size;
+            length -= size;
+        }
+    }
+    
+    @Override
+    public void write(long offset, byte[] src, int srcOffset, int length) throws IOException {
+        
+        throw new IOException("ISO images are read only");
+    }
+    
+    @Override
+    public void flush() throws IOException {
+    }
+    
+    @Override
+    public void close() throws IOException {
+        
+        m_image.close();
+    }
+}
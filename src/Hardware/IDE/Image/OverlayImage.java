@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.IDE.Image;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * A copy-on-write layer on top of another image. Written blocks are kept in
+ * memory, so the underlying image never changes. The blocks written so far
+ * can be frozen and shared with other overlays on top of the same image, which
+ * then only allocate the blocks they write to themselves.
+ */
+public final class OverlayImage implements DiskImage {
+    
+    /* ----------------------------------------------------- *
+     * Some constants                                        *
+     * ----------------------------------------------------- */
+    private static final int BLOCK_SIZE = 4096;
+    
+    /* ----------------------------------------------------- *
+     * Underlying image and the blocks on top of it          *
+     * ----------------------------------------------------- */
+    private final DiskImage m_image;
+    private Map<Long, byte[]> m_sharedBlocks;
+    private HashMap<Long, byte[]> m_blocks;
+    
+    
+    
+    public OverlayImage(DiskImage image) {
+        
+        this(image, Collections.emptyMap());
+    }
+    
+    public OverlayImage(DiskImage image, Map<Long, byte[]> sharedBlocks) {
+        
+        m_image = image;
+        m_sharedBlocks = sharedBlocks;
+        m_blocks = new HashMap<>();
+    }
+    
+    
+    
+    @Override
+    public long getSize() {
+        
+        return m_image.getSize();
+    }
+    
+    @Override
+    public void read(long offset, byte[] dst, int dstOffset, int length) throws IOException {
+        
+        while(length > 0) {
+            
+            long blockIdx = offset / BLOCK_SIZE;
+            int blockOffset = (int)(offset % BLOCK_SIZE);
+            int size = Math.min(length, BLOCK_SIZE - blockOffset);
+            
+            byte[] block = getBlock(blockIdx);
+            if(block != null)
+                System.arraycopy(block, blockOffset, dst, dstOffset, size);
+            else
+                m_image.read(offset, dst, dstOffset, size);
+            
+            offset += size;
+            dstOffset += size;
+            length -= size;
+        }
+    }
+    
+    @Override
+    public void write(long offset, byte[] src, int srcOffset, int length) throws IOException {
+        
+        length = (int)Math.max(0l, Math.min(length, getSize() - offset));
+        while(length > 0) {
+            
+            long blockIdx = offset / BLOCK_SIZE;
+            int blockOffset = (int)(offset % BLOCK_SIZE);
+            int size = Math.min(length, BLOCK_SIZE - blockOffset);
+            
+            System.arraycopy(src, srcOffset, getPrivateBlock(blockIdx), blockOffset, size);
+            
+            offset += size;
+            srcOffset += size;
+            length -= size;
+        }
+    }
+    
+    @Override
+    public void flush() throws IOException {
+    }
+    
+    @Override
+    public void close() throws IOException {
+        
+        m_image.close();
+    }
+    
+    @Override
+    public int getCylinders() {
+        
+        return m_image.getCylinders();
+    }
+    
+    @Override
+    public int getHeads() {
+        
+        return m_image.getHeads();
+    }
+    
+    @Override
+    public int getSectors() {
+        
+        return m_image.getSectors();
+    }
+    
+    @Override
+    public String getFormatName() {
+        
+        return m_image.getFormatName() + " (Overlay)";
+    }
+    
+    
+    
+    // <editor-fold defaultstate="collapsed" desc="Block handling">
+    
+    private byte[] getBlock(long blockIdx) {
+        
+        byte[] block = m_blocks.get(blockIdx);
+        if(block == null)
+            block = m_sharedBlocks.get(blockIdx);
+        
+        return block;
+    }
+    
+    private byte[] getPrivateBlock(long blockIdx) throws IOException {
+        
+        byte[] block = m_blocks.get(blockIdx);
+        if(block == null) {
+            
+            byte[] shared = m_sharedBlocks.get(blockIdx);
+            if(shared != null) {
+                
+                block = shared.clone();
+            }
+            else {
+                
+                block = new byte[BLOCK_SIZE];
+                m_image.read(blockIdx * BLOCK_SIZE, block, 0, BLOCK_SIZE);
+            }
+            
+            m_blocks.put(blockIdx, block);
+        }
+        
+        return block;
+    }
+    
+    /**
+     * Freezes all blocks that were written so far and returns them, so they
+     * can be shared with other overlays. Further writes of this overlay go to
+     * private copies again.
+     */
+    public Map<Long, byte[]> freeze() {
+        
+        if(!m_blocks.isEmpty()) {
+            
+            HashMap<Long, byte[]> blocks = new HashMap<>(m_sharedBlocks);
+            blocks.putAll(m_blocks);
+            
+            m_sharedBlocks = Collections.unmodifiableMap(blocks);
+            m_blocks = new HashMap<>();
+        }
+        
+        return m_sharedBlocks;
+    }
+    
+    public DiskImage getImage() {
+        
+        return m_image;
+    }
+    
+    public int getNumberOfPrivateBlocks() {
+        
+        return m_blocks.size();
+    }
+    
+    // </editor-fold>
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.IDE.Image;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+
+
+/**
+ * A flat image where the sector data starts at offset zero. The size can be
+ * smaller than the file, so that it can also be used for fixed VHD images.
+ */
+public final class RawImage implements DiskImage {
+    
+    private final RandomAccessFile m_image;
+    private final long m_size;
+    
+    
+    
+    public RawImage(RandomAccessFile image) throws IOException {
+        
+        this(image, image.length());
+    }
+    
+    public RawImage(RandomAccessFile image, long size) {
+        
+        m_image = image;
+        m_size = size;
+    }
+    
+    
+    
+    @Override
+    public long getSize() {
+        
+        return m_size;
+    }
+    
+    @Override
+    public void read(long offset, byte[] dst, int dstOffset, int length) throws IOException {
+        
+        int available = (int)Math.max(0l, Math.min(length, m_size - offset));
+        if(available > 0) {
+            
+            m_image.seek(offset);
+            m_image.readFully(dst, dstOffset, available);
+        }
+        
+        for(int i = available; i < length; i++)
+            dst[dstOffset + i] = 0;
+    }
+    
+    @Override
+    public void write(long offset, byte[] src, int srcOffset, int length) throws IOException {
+        
+        int available = (int)Math.max(0l, Math.min(length, m_size - offset));
+        if(available > 0) {
+            
+            m_image.seek(offset);
+            m_image.write(src, srcOffset, available);
+        }
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        
+        m_image.getChannel().force(false);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        
+        m_image.close();
+    }
+}
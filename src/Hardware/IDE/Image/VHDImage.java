@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.IDE.Image;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+
+/**
+ * Fixed and dynamic Virtual PC / Hyper-V images. Dynamic images allocate their
+ * blocks on the first write that isn't all zeros, unallocated blocks read as
+ * zeros. Differencing images are not supported.
+ */
+public final class VHDImage implements DiskImage {
+    
+    /* ----------------------------------------------------- *
+     * Some constants                                        *
+     * ----------------------------------------------------- */
+    private static final int SECTOR_SIZE = 512;
+    private static final int FOOTER_SIZE = 512;
+    private static final int DYNAMIC_HEADER_SIZE = 1024;
+    private static final long FOOTER_COOKIE = 0x636f6e6563746978l; // "conectix"
+    private static final long DYNAMIC_COOKIE = 0x6378737061727365l; // "cxsparse"
+    private static final int TYPE_FIXED = 2;
+    private static final int TYPE_DYNAMIC = 3;
+    private static final int TYPE_DIFFERENCING = 4;
+    private static final int BLOCK_UNUSED = 0xffffffff;
+    
+    /* ----------------------------------------------------- *
+     * Image file and footer                                 *
+     * ----------------------------------------------------- */
+    private final RandomAccessFile m_image;
+    private final byte[] m_footer;
+    private long m_footerOffset;
+    private final long m_size;
+    private final int m_cylinders;
+    private final int m_heads;
+    private final int m_sectors;
+    
+    /* ----------------------------------------------------- *
+     * Block allocation table (dynamic images only)          *
+     * ----------------------------------------------------- */
+    private final int[] m_bat;
+    private final long m_batOffset;
+    private final int m_blockSize;
+    private final int m_bitmapSize;
+    private byte[] m_emptyBlock;
+    
+    
+    
+    public VHDImage(RandomAccessFile image) throws IOException {
+        
+        m_image = image;
+        
+        // Read the footer at the end of the file
+        m_footerOffset = image.length() - FOOTER_SIZE;
+        m_footer = new byte[FOOTER_SIZE];
+        
+        image.seek(m_footerOffset);
+        image.readFully(m_footer);
+        
+        ByteBuffer footer = ByteBuffer.wrap(m_footer);
+        if(footer.getLong(0) != FOOTER_COOKIE)
+            throw new IOException("The image has no valid VHD footer");
+        
+        m_size = footer.getLong(48);
+        m_cylinders = footer.getShort(56) & 0xffff;
+        m_heads = footer.get(58) & 0xff;
+        m_sectors = footer.get(59) & 0xff;
+        
+        int type = footer.getInt(60);
+        switch(type) {
+            
+            case TYPE_FIXED:
+                m_bat = null;
+                m_batOffset = 0l;
+                m_blockSize = 0;
+                m_bitmapSize = 0;
+                break;
+            
+            case TYPE_DYNAMIC:
+                byte[] data = new byte[DYNAMIC_HEADER_SIZE];
+                image.seek(footer.getLong(16));
+                image.readFully(data);
+            
+                ByteBuffer header = ByteBuffer.wrap(data);
+                if(header.getLong(0) != DYNAMIC_COOKIE)
+                    throw new IOException("The image has no valid dynamic disk header");
+            
+                m_batOffset = header.getLong(16);
+                m_blockSize = header.getInt(32);
+                if(m_blockSize < SECTOR_SIZE || (m_blockSize % SECTOR_SIZE) != 0)
+                    throw new IOException(String.format("Invalid VHD block size %d", m_blockSize));
+            
+                // The sector bitmap in front of every block is padded to a full sector
+                m_bitmapSize = ((m_blockSize / SECTOR_SIZE / 8) + SECTOR_SIZE - 1) & ~(SECTOR_SIZE - 1);
+            
+                m_bat = new int[header.getInt(28)];
+                data = new byte[m_bat.length * 4];
+                image.seek(m_batOffset);
+                image.readFully(data);
+                ByteBuffer.wrap(data).asIntBuffer().get(m_bat);
+                break;
+            
+            case TYPE_DIFFERENCING:
+                throw new IOException("Differencing VHD images are not supported");
+            
+            default:
+                throw new IOException(String.format("Unknown VHD disk type %d", type));
+        }
+    }
+    
+    
+    
+    public static boolean isVHDImage(RandomAccessFile image) throws IOException {
+        
+        if(image.length() < FOOTER_SIZE)
+            return false;
+        
+        image.seek(image.length() - FOOTER_SIZE);
+        
+        return image.readLong() == FOOTER_COOKIE;
+    }
+    
+    
+    
+    @Override
+    public long getSize() {
+        
+        return m_size;
+    }
+    
+    @Override
+    public int getCylinders() {
+        
+        return m_cylinders;
+    }
+    
+    @Override
+    public int getHeads() {
+        
+        return m_heads;
+    }
+    
+    @Override
+    public int getSectors() {
+        
+        return m_sectors;
+    }
+    
+    @Override
+    public String getFormatName() {
+        
+        return m_bat != null ? "Dynamic VHD" : "Fixed VHD";
+    }
+    
+    
+    
+    @Override
+    public void read(long offset, byte[] dst, int dstOffset, int length) throws IOException {
+        
+        while(length > 0) {
+            
+            int size = getChunkSize(offset, length);
+            long fileOffset = getFileOffset(offset);
+            
+            if(offset >= m_size || fileOffset < 0l) {
+                
+                Arrays.fill(dst, dstOffset, dstOffset + size, (byte)0);
+            }
+            else {
+                
+                m_image.seek(fileOffset);
+                m_image.readFully(dst, dstOffset, size);
+            }
+            
+            offset += size;
+            dstOffset += size;
+            length -= size;
+        }
+    }
+    
+    @Override
+    public void write(long offset, byte[] src, int srcOffset, int length) throws IOException {
+        
+        while(length > 0 && offset < m_size) {
+            
+            int size = getChunkSize(offset, length);
+            long fileOffset = getFileOffset(offset);
+            
+            // Blocks of a dynamic image are allocated on demand, zeros don't need one
+            if(fileOffset < 0l && !isZero(src, srcOffset, size))
+                fileOffset = allocateBlock(offset);
+            
+            if(fileOffset >= 0l) {
+                
+                m_image.seek(fileOffset);
+                m_image.write(src, srcOffset, size);
+            }
+            
+            offset += size;
+            srcOffset += size;
+            length -= size;
+        }
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        
+        m_image.getChannel().force(false);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        
+        m_image.close();
+    }
+    
+    
+    
+    private int getChunkSize(long offset, int length) {
+        
+        if(offset >= m_size)
+            return length;
+        
+        length = (int)Math.min(length, m_size - offset);
+        if(m_bat != null)
+            length = (int)Math.min(length, m_blockSize - (offset % m_blockSize));
+        
+        return length;
+    }
+    
+    private long getFileOffset(long offset) {
+        
+        if(m_bat == null)
+            return offset;
+        
+        int sector = m_bat[(int)(offset / m_blockSize)];
+        if(sector == BLOCK_UNUSED)
+            return -1l;
+        
+        return (sector & 0xffffffffl) * SECTOR_SIZE + m_bitmapSize + (offset % m_blockSize);
+    }
+    
+    private long allocateBlock(long offset) throws IOException {
+        
+        int blockIdx = (int)(offset / m_blockSize);
+        long blockOffset = m_footerOffset;
+        
+        if(m_emptyBlock == null)
+            m_emptyBlock = new byte[m_blockSize];
+        
+        // The new block replaces the footer, which moves to the end again. All
+        // sectors are marked as present, as the data of the block is zeroed
+        byte[] bitmap = new byte[m_bitmapSize];
+        Arrays.fill(bitmap, (byte)0xff);
+        
+        m_image.seek(blockOffset);
+        m_image.write(bitmap);
+        m_image.write(m_emptyBlock);
+        m_image.write(m_footer);
+        
+        m_footerOffset = blockOffset + m_bitmapSize + m_blockSize;
+        
+        // Update the block allocation table
+        m_bat[blockIdx] = (int)(blockOffset / SECTOR_SIZE);
+        
+        m_image.seek(m_batOffset + blockIdx * 4l);
+        m_image.writeInt(m_bat[blockIdx]);
+        
+        return getFileOffset(offset);
+    }
+    
+    private boolean isZero(byte[] data, int offset, int length) {
+        
+        for(int i = 0; i < length; i++) {
+            
+            if(data[offset + i] != 0)
+                return false;
+        }
+        
+        return true;
+    }
+}
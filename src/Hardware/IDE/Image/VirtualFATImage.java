@@ -0,0 +1,809 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Hardware.IDE.Image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+
+/**
+ * Presents a host directory as a partitioned FAT16 or FAT32 hard disk. Nothing
+ * is built in advance: directory clusters are synthesized when the guest reads
+ * them and file clusters are streamed from the host files. Clusters are handed
+ * out in the order the directories are visited. As soon as the guest looks at
+ * a part of the FAT that isn't allocated yet (or writes anything) the rest of
+ * the directory tree gets allocated, so the FAT never changes under the guest.
+ * 
+ * Writes of the guest end up in an in-memory overlay, the host directory is
+ * never modified.
+ */
+public final class VirtualFATImage implements DiskImage {
+    
+    /* ----------------------------------------------------- *
+     * Disk and volume layout                                *
+     * ----------------------------------------------------- */
+    private static final int SECTOR_SIZE = 512;
+    private static final int DIR_ENTRY_SIZE = 32;
+    private static final int HEADS = 16;
+    private static final int SECTORS = 63;
+    private static final int PARTITION_START = SECTORS;
+    private static final int FAT16_CYLINDERS = 4000;
+    private static final int FAT32_CYLINDERS = 16383;
+    private static final int FAT16_ROOT_ENTRIES = 512;
+    private static final int FAT32_ROOT_CLUSTER = 2;
+    private static final int NUM_FATS = 2;
+    private static final int NUM_CACHED_CLUSTERS = 64;
+    private static final String VOLUME_LABEL = "JPC";
+    
+    private final boolean m_isFAT32;
+    private final int m_cylinders;
+    private final long m_diskSectors;
+    private final int m_partitionSectors;
+    private final int m_sectorsPerCluster;
+    private final int m_clusterSize;
+    private final int m_reservedSectors;
+    private final int m_fatSectors;
+    private final int m_rootSectors;
+    private final int m_dataStart;
+    private final int m_numClusters;
+    private final int m_volumeID;
+    
+    /* ----------------------------------------------------- *
+     * Directory tree of the host                            *
+     * ----------------------------------------------------- */
+    private final class Node {
+        
+        File file;
+        Node parent;
+        boolean isDirectory;
+        long size;
+        int firstCluster;
+        int numClusters;
+        byte[] shortName;
+        ArrayList<Node> children;
+        boolean isAllocated;
+        boolean isChildrenAllocated;
+        byte[] data;
+    }
+    private final Node m_root;
+    private final TreeMap<Integer, Node> m_clusterMap;
+    private int m_nextFreeCluster;
+    private boolean m_isFullyAllocated;
+    
+    /* ----------------------------------------------------- *
+     * File data cache                                       *
+     * ----------------------------------------------------- */
+    private final LinkedHashMap<Integer, byte[]> m_clusterCache;
+    private RandomAccessFile m_openFile;
+    private Node m_openNode;
+    
+    /* ----------------------------------------------------- *
+     * Sectors written by the guest                          *
+     * ----------------------------------------------------- */
+    private final HashMap<Long, byte[]> m_overlay;
+    
+    private final Charset ASCII = Charset.forName("US-ASCII");
+    
+    
+    
+    @SuppressWarnings("serial")
+    public VirtualFATImage(File directory, boolean isFAT32) throws IOException {
+        
+        if(!directory.isDirectory())
+            throw new IOException(String.format("%s is not a directory", directory));
+        
+        m_isFAT32 = isFAT32;
+        
+        // Compute the volume layout
+        m_cylinders = isFAT32 ? FAT32_CYLINDERS : FAT16_CYLINDERS;
+        m_diskSectors = (long)m_cylinders * HEADS * SECTORS;
+        m_partitionSectors = (int)(m_diskSectors - PARTITION_START);
+        
+        if(isFAT32) {
+            
+            m_sectorsPerCluster = 8;
+            m_reservedSectors = 32;
+            m_rootSectors = 0;
+            m_fatSectors = divideRoundUp(m_partitionSectors - m_reservedSectors, (256 * m_sectorsPerCluster + NUM_FATS) / 2);
+        }
+        else {
+            
+            m_sectorsPerCluster = 64;
+            m_reservedSectors = 1;
+            m_rootSectors = FAT16_ROOT_ENTRIES * DIR_ENTRY_SIZE / SECTOR_SIZE;
+            m_fatSectors = divideRoundUp(m_partitionSectors - m_reservedSectors - m_rootSectors, 256 * m_sectorsPerCluster + NUM_FATS);
+        }
+        m_clusterSize = m_sectorsPerCluster * SECTOR_SIZE;
+        m_dataStart = m_reservedSectors + NUM_FATS * m_fatSectors + m_rootSectors;
+        m_numClusters = (m_partitionSectors - m_dataStart) / m_sectorsPerCluster;
+        m_volumeID = (int)directory.lastModified();
+        
+        m_clusterMap = new TreeMap<>();
+        m_nextFreeCluster = 2;
+        
+        m_clusterCache = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                
+                return size() > NUM_CACHED_CLUSTERS;
+            }
+        };
+        m_overlay = new HashMap<>();
+        
+        // The root directory of FAT32 lives in the data area
+        m_root = new Node();
+        m_root.file = directory;
+        m_root.isDirectory = true;
+        if(isFAT32)
+            allocate(m_root);
+        else
+            m_root.isAllocated = true;
+    }
+    
+    
+    
+    // <editor-fold defaultstate="collapsed" desc="Interface implementation of DiskImage">
+    
+    @Override
+    public long getSize() {
+        
+        return m_diskSectors * SECTOR_SIZE;
+    }
+    
+    @Override
+    public int getCylinders() {
+        
+        return m_cylinders;
+    }
+    
+    @Override
+    public int getHeads() {
+        
+        return HEADS;
+    }
+    
+    @Override
+    public int getSectors() {
+        
+        return SECTORS;
+    }
+    
+    @Override
+    public String getFormatName() {
+        
+        return m_isFAT32 ? "Virtual FAT32" : "Virtual FAT16";
+    }
+    
+    @Override
+    public void read(long offset, byte[] dst, int dstOffset, int length) throws IOException {
+        
+        while(length > 0) {
+            
+            long sector = offset / SECTOR_SIZE;
+            int sectorOffset = (int)(offset % SECTOR_SIZE);
+            int size = Math.min(length, SECTOR_SIZE - sectorOffset);
+            
+            byte[] overlay = m_overlay.get(sector);
+            if(overlay != null)
+                System.arraycopy(overlay, sectorOffset, dst, dstOffset, size);
+            else
+                readSector(sector, sectorOffset, dst, dstOffset, size);
+            
+            offset += size;
+            dstOffset += size;
+            length -= size;
+        }
+    }
+    
+    @Override
+    public void write(long offset, byte[] src, int srcOffset, int length) throws IOException {
+        
+        // The guest may allocate any free cluster from now on
+        allocateAll();
+        
+        while(length > 0 && offset < getSize()) {
+            
+            long sector = offset / SECTOR_SIZE;
+            int sectorOffset = (int)(offset % SECTOR_SIZE);
+            int size = Math.min(length, SECTOR_SIZE - sectorOffset);
+            
+            byte[] overlay = m_overlay.get(sector);
+            if(overlay == null) {
+                
+                overlay = new byte[SECTOR_SIZE];
+                if(size < SECTOR_SIZE)
+                    readSector(sector, 0, overlay, 0, SECTOR_SIZE);
+                
+                m_overlay.put(sector, overlay);
+            }
+            System.arraycopy(src, srcOffset, overlay, sectorOffset, size);
+            
+            offset += size;
+            srcOffset += size;
+            length -= size;
+        }
+    }
+    
+    @Override
+    public void flush() throws IOException {
+    }
+    
+    @Override
+    public void close() throws IOException {
+        
+        closeFile();
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Sector synthesis">
+    
+    private void readSector(long sector, int sectorOffset, byte[] dst, int dstOffset, int length) throws IOException {
+        
+        byte[] data = new byte[SECTOR_SIZE];
+        
+        if(sector == 0l) {
+            
+            buildMasterBootRecord(data);
+        }
+        else if(sector >= PARTITION_START && sector < m_diskSectors) {
+            
+            int idx = (int)(sector - PARTITION_START);
+            
+            if(idx < m_reservedSectors) {
+                
+                if(idx == 0 || (m_isFAT32 && idx == 6))
+                    buildBootSector(data);
+                else if(m_isFAT32 && (idx == 1 || idx == 7))
+                    buildFSInfoSector(data);
+            }
+            else if(idx < m_reservedSectors + NUM_FATS * m_fatSectors) {
+                
+                buildFATSector((idx - m_reservedSectors) % m_fatSectors, data);
+            }
+            else if(idx < m_dataStart) {
+                
+                int offset = (idx - m_reservedSectors - NUM_FATS * m_fatSectors) * SECTOR_SIZE;
+                System.arraycopy(getDirectoryData(m_root), offset, data, 0, SECTOR_SIZE);
+            }
+            else {
+                
+                int cluster = 2 + (idx - m_dataStart) / m_sectorsPerCluster;
+                int offset = ((idx - m_dataStart) % m_sectorsPerCluster) * SECTOR_SIZE;
+                
+                if(cluster < m_numClusters + 2)
+                    System.arraycopy(getClusterData(cluster), offset, data, 0, SECTOR_SIZE);
+            }
+        }
+        
+        System.arraycopy(data, sectorOffset, dst, dstOffset, length);
+    }
+    
+    private void buildMasterBootRecord(byte[] data) {
+        
+        ByteBuffer mbr = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        
+        // The disk isn't bootable, so just hand over to the next boot device
+        mbr.put(0, (byte)0xcd);
+        mbr.put(1, (byte)0x18);
+        
+        // One partition that spans the whole disk
+        int end = (int)m_diskSectors - 1;
+        mbr.put(0x1be, (byte)0x00);
+        setCHS(mbr, 0x1bf, PARTITION_START);
+        mbr.put(0x1c2, (byte)(m_isFAT32 ? 0x0c : 0x06));
+        setCHS(mbr, 0x1c3, end);
+        mbr.putInt(0x1c6, PARTITION_START);
+        mbr.putInt(0x1ca, m_partitionSectors);
+        
+        mbr.putShort(0x1fe, (short)0xaa55);
+    }
+    
+    private void buildBootSector(byte[] data) {
+        
+        ByteBuffer bs = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        
+        bs.put(0, (byte)0xeb);
+        bs.put(1, (byte)(m_isFAT32 ? 0x58 : 0x3c));
+        bs.put(2, (byte)0x90);
+        putString(data, 3, 8, "JPC 1.0");
+        bs.putShort(11, (short)SECTOR_SIZE);
+        bs.put(13, (byte)m_sectorsPerCluster);
+        bs.putShort(14, (short)m_reservedSectors);
+        bs.put(16, (byte)NUM_FATS);
+        bs.putShort(17, (short)(m_isFAT32 ? 0 : FAT16_ROOT_ENTRIES));
+        bs.put(21, (byte)0xf8);
+        bs.putShort(22, (short)(m_isFAT32 ? 0 : m_fatSectors));
+        bs.putShort(24, (short)SECTORS);
+        bs.putShort(26, (short)HEADS);
+        bs.putInt(28, PARTITION_START);
+        bs.putInt(32, m_partitionSectors);
+        
+        int ext = 36;
+        if(m_isFAT32) {
+            
+            bs.putInt(36, m_fatSectors);
+            bs.putInt(44, FAT32_ROOT_CLUSTER);
+            bs.putShort(48, (short)1); // FSInfo sector
+            bs.putShort(50, (short)6); // Backup boot sector
+            ext = 64;
+        }
+        bs.put(ext, (byte)0x80);
+        bs.put(ext + 2, (byte)0x29);
+        bs.putInt(ext + 3, m_volumeID);
+        putString(data, ext + 7, 11, VOLUME_LABEL);
+        putString(data, ext + 18, 8, m_isFAT32 ? "FAT32" : "FAT16");
+        
+        // Boot code: int 18h
+        int code = ext + 26;
+        bs.put(code, (byte)0xcd);
+        bs.put(code + 1, (byte)0x18);
+        
+        bs.putShort(0x1fe, (short)0xaa55);
+    }
+    
+    private void buildFSInfoSector(byte[] data) {
+        
+        ByteBuffer fsi = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        
+        fsi.putInt(0, 0x41615252);
+        fsi.putInt(484, 0x61417272);
+        fsi.putInt(488, 0xffffffff); // Free cluster count unknown
+        fsi.putInt(492, 0xffffffff);
+        fsi.putInt(508, 0xaa550000);
+    }
+    
+    private void buildFATSector(int fatSector, byte[] data) throws IOException {
+        
+        ByteBuffer fat = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        
+        int entrySize = m_isFAT32 ? 4 : 2;
+        int first = fatSector * (SECTOR_SIZE / entrySize);
+        int last = first + (SECTOR_SIZE / entrySize) - 1;
+        
+        // Never show free clusters that might be handed out later
+        if(last >= m_nextFreeCluster)
+            allocateAll();
+        
+        int eoc = m_isFAT32 ? 0x0fffffff : 0xffff;
+        for(int cluster = first; cluster <= last && cluster < m_numClusters + 2; cluster++) {
+            
+            int value;
+            if(cluster < 2) {
+                
+                value = cluster == 0 ? (eoc & ~0xff) | 0xf8 : eoc;
+            }
+            else {
+                
+                Map.Entry<Integer, Node> entry = m_clusterMap.floorEntry(cluster);
+                if(entry == null || cluster >= entry.getKey() + entry.getValue().numClusters)
+                    value = 0;
+                else if(cluster == entry.getKey() + entry.getValue().numClusters - 1)
+                    value = eoc;
+                else
+                    value = cluster + 1;
+            }
+            
+            if(m_isFAT32)
+                fat.putInt((cluster - first) * 4, value);
+            else
+                fat.putShort((cluster - first) * 2, (short)value);
+        }
+    }
+    
+    private byte[] getClusterData(int cluster) throws IOException {
+        
+        Map.Entry<Integer, Node> entry = m_clusterMap.floorEntry(cluster);
+        if(entry == null || cluster >= entry.getKey() + entry.getValue().numClusters)
+            return new byte[m_clusterSize];
+        
+        Node node = entry.getValue();
+        int offset = (cluster - node.firstCluster) * m_clusterSize;
+        
+        if(node.isDirectory) {
+            
+            byte[] data = new byte[m_clusterSize];
+            System.arraycopy(getDirectoryData(node), offset, data, 0, m_clusterSize);
+            return data;
+        }
+        
+        byte[] data = m_clusterCache.get(cluster);
+        if(data == null) {
+            
+            data = new byte[m_clusterSize];
+            readFile(node, offset, data, (int)Math.min(m_clusterSize, node.size - offset));
+            
+            m_clusterCache.put(cluster, data);
+        }
+        
+        return data;
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Directory tree and cluster allocation">
+    
+    private void listChildren(Node dir) {
+        
+        if(dir.children != null)
+            return;
+        
+        dir.children = new ArrayList<>();
+        
+        File[] files = dir.file.listFiles();
+        if(files == null)
+            return;
+        
+        Arrays.sort(files);
+        
+        HashSet<String> shortNames = new HashSet<>();
+        for(File file : files) {
+            
+            if(file.isHidden() || (file.isFile() && file.length() > 0xffffffffl))
+                continue;
+            
+            Node node = new Node();
+            node.file = file;
+            node.parent = dir;
+            node.isDirectory = file.isDirectory();
+            node.size = node.isDirectory ? 0l : file.length();
+            node.shortName = getShortName(file.getName(), shortNames);
+            
+            dir.children.add(node);
+        }
+    }
+    
+    private void allocate(Node node) {
+        
+        if(node.isAllocated)
+            return;
+        
+        node.isAllocated = true;
+        
+        int numClusters;
+        if(node.isDirectory) {
+            
+            listChildren(node);
+            numClusters = Math.max(1, divideRoundUp(getDirectorySize(node), m_clusterSize));
+        }
+        else {
+            
+            numClusters = (int)((node.size + m_clusterSize - 1) / m_clusterSize);
+        }
+        
+        // Empty files and everything that doesn't fit anymore get no clusters
+        if(numClusters == 0 || m_nextFreeCluster + numClusters > m_numClusters + 2)
+            return;
+        
+        node.firstCluster = m_nextFreeCluster;
+        node.numClusters = numClusters;
+        m_nextFreeCluster += numClusters;
+        
+        m_clusterMap.put(node.firstCluster, node);
+    }
+    
+    private void allocateChildren(Node dir) {
+        
+        if(dir.isChildrenAllocated)
+            return;
+        
+        dir.isChildrenAllocated = true;
+        
+        listChildren(dir);
+        for(Node child : dir.children)
+            allocate(child);
+    }
+    
+    private void allocateAll() {
+        
+        if(m_isFullyAllocated)
+            return;
+        
+        m_isFullyAllocated = true;
+        
+        ArrayDeque<Node> dirs = new ArrayDeque<>();
+        dirs.add(m_root);
+        
+        while(!dirs.isEmpty()) {
+            
+            Node dir = dirs.poll();
+            
+            allocateChildren(dir);
+            for(Node child : dir.children) {
+                
+                if(child.isDirectory && child.numClusters > 0)
+                    dirs.add(child);
+            }
+        }
+    }
+    
+    private int getDirectorySize(Node dir) {
+        
+        int numEntries = dir == m_root ? 1 : 2;
+        for(Node child : dir.children)
+            numEntries += 1 + getNumLongNameEntries(child);
+        
+        return numEntries * DIR_ENTRY_SIZE;
+    }
+    
+    private byte[] getDirectoryData(Node dir) {
+        
+        if(dir.data != null)
+            return dir.data;
+        
+        allocateChildren(dir);
+        
+        int size = dir == m_root && !m_isFAT32 ? m_rootSectors * SECTOR_SIZE : dir.numClusters * m_clusterSize;
+        ByteBuffer data = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        
+        if(dir == m_root) {
+            
+            byte[] label = new byte[11];
+            Arrays.fill(label, (byte)' ');
+            System.arraycopy(VOLUME_LABEL.getBytes(ASCII), 0, label, 0, VOLUME_LABEL.length());
+            
+            putDirectoryEntry(data, label, 0x08, 0, 0l, dir.file.lastModified());
+        }
+        else {
+            
+            int parentCluster = dir.parent == m_root ? 0 : dir.parent.firstCluster;
+            
+            putDirectoryEntry(data, ".          ".getBytes(ASCII), 0x10, dir.firstCluster, 0l, dir.file.lastModified());
+            putDirectoryEntry(data, "..         ".getBytes(ASCII), 0x10, parentCluster, 0l, dir.file.lastModified());
+        }
+        
+        for(Node child : dir.children) {
+            
+            // Skip everything that didn't fit onto the volume
+            if(child.size > 0l || child.isDirectory) {
+                
+                if(child.numClusters == 0)
+                    continue;
+            }
+            
+            int entries = 1 + getNumLongNameEntries(child);
+            if(data.remaining() < entries * DIR_ENTRY_SIZE)
+                break;
+            
+            putLongNameEntries(data, child);
+            putDirectoryEntry(data, child.shortName, child.isDirectory ? 0x10 : 0x20, child.firstCluster, child.size, child.file.lastModified());
+        }
+        
+        return dir.data = data.array();
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Directory entries">
+    
+    private void putDirectoryEntry(ByteBuffer data, byte[] name, int attributes, int cluster, long size, long lastModified) {
+        
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(lastModified);
+        
+        int time = (c.get(Calendar.HOUR_OF_DAY) << 11) | (c.get(Calendar.MINUTE) << 5) | (c.get(Calendar.SECOND) >> 1);
+        int date = (Math.max(0, c.get(Calendar.YEAR) - 1980) << 9) | ((c.get(Calendar.MONTH) + 1) << 5) | c.get(Calendar.DAY_OF_MONTH);
+        
+        int pos = data.position();
+        data.put(name, 0, 11);
+        data.put(pos + 11, (byte)attributes);
+        data.putShort(pos + 14, (short)time);
+        data.putShort(pos + 16, (short)date);
+        data.putShort(pos + 18, (short)date);
+        data.putShort(pos + 20, (short)(cluster >>> 16));
+        data.putShort(pos + 22, (short)time);
+        data.putShort(pos + 24, (short)date);
+        data.putShort(pos + 26, (short)cluster);
+        data.putInt(pos + 28, (int)size);
+        data.position(pos + DIR_ENTRY_SIZE);
+    }
+    
+    private void putLongNameEntries(ByteBuffer data, Node node) {
+        
+        int numEntries = getNumLongNameEntries(node);
+        if(numEntries == 0)
+            return;
+        
+        // The name is terminated by 0000h and padded with FFFFh
+        char[] name = new char[numEntries * 13];
+        Arrays.fill(name, (char)0xffff);
+        
+        String longName = node.file.getName();
+        longName.getChars(0, longName.length(), name, 0);
+        if(longName.length() < name.length)
+            name[longName.length()] = 0;
+        
+        int checksum = 0;
+        for(int i = 0; i < 11; i++)
+            checksum = (((checksum & 1) << 7) + (checksum >>> 1) + (node.shortName[i] & 0xff)) & 0xff;
+        
+        // The entries are stored in reverse order
+        for(int i = numEntries; i >= 1; i--) {
+            
+            int pos = data.position();
+            int chars = (i - 1) * 13;
+            
+            data.put(pos, (byte)(i == numEntries ? i | 0x40 : i));
+            for(int j = 0; j < 5; j++)
+                data.putShort(pos + 1 + j * 2, (short)name[chars + j]);
+            data.put(pos + 11, (byte)0x0f);
+            data.put(pos + 13, (byte)checksum);
+            for(int j = 0; j < 6; j++)
+                data.putShort(pos + 14 + j * 2, (short)name[chars + 5 + j]);
+            for(int j = 0; j < 2; j++)
+                data.putShort(pos + 28 + j * 2, (short)name[chars + 11 + j]);
+            
+            data.position(pos + DIR_ENTRY_SIZE);
+        }
+    }
+    
+    private int getNumLongNameEntries(Node node) {
+        
+        String name = node.file.getName();
+        if(name.equals(getShortNameString(node.shortName)))
+            return 0;
+        
+        return divideRoundUp(name.length(), 13);
+    }
+    
+    private byte[] getShortName(String name, HashSet<String> usedNames) {
+        
+        String base = name;
+        String ext = "";
+        
+        int dot = name.lastIndexOf('.');
+        if(dot > 0) {
+            
+            base = name.substring(0, dot);
+            ext = name.substring(dot + 1);
+        }
+        base = getShortNameChars(base);
+        ext = getShortNameChars(ext);
+        
+        if(base.isEmpty())
+            base = "_";
+        if(ext.length() > 3)
+            ext = ext.substring(0, 3);
+        
+        // Use a numeric tail if the name had to be changed or is already taken
+        String shortName = base.length() > 8 ? base.substring(0, 8) : base;
+        String candidate = shortName + (ext.isEmpty() ? "" : "." + ext);
+        
+        boolean isLossy = !candidate.equalsIgnoreCase(name) || base.length() > 8;
+        for(int i = 1; isLossy || usedNames.contains(candidate); i++) {
+            
+            String tail = "~" + i;
+            shortName = base.substring(0, Math.min(base.length(), 8 - tail.length())) + tail;
+            candidate = shortName + (ext.isEmpty() ? "" : "." + ext);
+            isLossy = false;
+        }
+        usedNames.add(candidate);
+        
+        byte[] data = new byte[11];
+        Arrays.fill(data, (byte)' ');
+        System.arraycopy(shortName.getBytes(ASCII), 0, data, 0, shortName.length());
+        System.arraycopy(ext.getBytes(ASCII), 0, data, 8, ext.length());
+        
+        // A leading E5h marks a deleted entry
+        if(data[0] == (byte)0xe5)
+            data[0] = 0x05;
+        
+        return data;
+    }
+    
+    private String getShortNameChars(String name) {
+        
+        StringBuilder sb = new StringBuilder();
+        for(char c : name.toUpperCase().toCharArray()) {
+            
+            if((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || "!#$%&'()-@^_`{}~".indexOf(c) >= 0)
+                sb.append(c);
+            else if(c != ' ' && c != '.')
+                sb.append('_');
+        }
+        
+        return sb.toString();
+    }
+    
+    private String getShortNameString(byte[] shortName) {
+        
+        String base = new String(shortName, 0, 8, ASCII).trim();
+        String ext = new String(shortName, 8, 3, ASCII).trim();
+        
+        return ext.isEmpty() ? base : base + "." + ext;
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Some helper methods">
+    
+    private void readFile(Node node, long offset, byte[] dst, int length) throws IOException {
+        
+        if(length <= 0)
+            return;
+        
+        if(m_openNode != node) {
+            
+            closeFile();
+            
+            m_openFile = new RandomAccessFile(node.file, "r");
+            m_openNode = node;
+        }
+        
+        // The host file might have shrunk in the meantime
+        m_openFile.seek(offset);
+        m_openFile.read(dst, 0, length);
+    }
+    
+    private void closeFile() throws IOException {
+        
+        if(m_openFile != null) {
+            
+            m_openFile.close();
+            m_openFile = null;
+            m_openNode = null;
+        }
+    }
+    
+    private void setCHS(ByteBuffer data, int offset, int lba) {
+        
+        int c = lba / (HEADS * SECTORS);
+        int h = (lba / SECTORS) % HEADS;
+        int s = (lba % SECTORS) + 1;
+        
+        // Addresses beyond the CHS limit are marked with the maximum value
+        if(c > 1023) {
+            
+            c = 1023;
+            h = HEADS - 1;
+            s = SECTORS;
+        }
+        
+        data.put(offset, (byte)h);
+        data.put(offset + 1, (byte)(s | ((c >>> 2) & 0xc0)));
+        data.put(offset + 2, (byte)c);
+    }
+    
+    private void putString(byte[] data, int offset, int length, String str) {
+        
+        Arrays.fill(data, offset, offset + length, (byte)' ');
+        System.arraycopy(str.getBytes(ASCII), 0, data, offset, Math.min(length, str.length()));
+    }
+    
+    private static int divideRoundUp(int value, int divisor) {
+        
+        return (value + divisor - 1) / divisor;
+    }
+    
+    // </editor-fold>
+}
@@ -17,6 +17,9 @@
  */
 package Hardware.IDE;
 
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 
@@ -29,12 +32,14 @@ public final class PIOBuffer {
      * ----------------------------------------------------- */
     private final byte[] m_buffer;
     private int m_pos;
+    private int m_limit;
     
     
     
     public PIOBuffer(int size) {
         
         m_buffer = new byte[size];
+        m_limit = 512;
     }
     
     
@@ -45,11 +50,41 @@ public final class PIOBuffer {
         m_pos = 0;
     }
     
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeBulk(m_buffer);
+        writer.writeInt(m_pos);
+        writer.writeInt(m_limit);
+    }
+    
+    public void loadState(StateReader reader) throws IOException {
+        
+        reader.readBulk(m_buffer);
+        m_pos = reader.readInt();
+        m_limit = reader.readInt();
+    }
+    
     public void setPosition(int pos) {
         
         m_pos = pos;
     }
     
+    // The position at which the current data block is complete
+    public void setLimit(int limit) {
+        
+        m_limit = limit;
+    }
+    
+    public int getLimit() {
+        
+        return m_limit;
+    }
+    
+    public boolean isBlockComplete() {
+        
+        return m_pos >= m_limit;
+    }
+    
     public int getSize() {
         
         return m_buffer.length;
@@ -102,6 +137,14 @@ public final class PIOBuffer {
     
     
     
+    public void getBlock(byte[] dst, int offset, int length) {
+        
+        System.arraycopy(m_buffer, m_pos, dst, offset, length);
+        m_pos += length;
+    }
+    
+    
+    
     public void putInt8(int value) {
         
         m_buffer[m_pos++] = (byte)(value & 0xff);
@@ -121,6 +164,12 @@ public final class PIOBuffer {
         m_buffer[m_pos++] = (byte)((value >>> 24) & 0xff);
     }
     
+    public void putBlock(byte[] src, int offset, int length) {
+        
+        System.arraycopy(src, offset, m_buffer, m_pos, length);
+        m_pos += length;
+    }
+    
     
     
     public void setInt8(int offset, int value) {
@@ -18,8 +18,12 @@
 package Hardware.InterruptController;
 
 import Hardware.HardwareComponent;
+import IOMap.IOPort;
 import IOMap.IOReadable;
 import IOMap.IOWritable;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 
 
 
@@ -50,6 +54,11 @@ public final class Intel8259a implements HardwareComponent,
      * ----------------------------------------------------- */
     private boolean m_statusReadISR;
     
+    /* ----------------------------------------------------- *
+     * Gets notified whenever a request might be pending     *
+     * ----------------------------------------------------- */
+    private Runnable m_requestHandler;
+    
     
     
     public Intel8259a(boolean isMaster) {
@@ -73,6 +82,38 @@ public final class Intel8259a implements HardwareComponent,
         m_isr = 0x00;
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(m_vector);
+        writer.writeInt(m_imr);
+        writer.writeInt(m_irr);
+        writer.writeInt(m_isr);
+        writer.writeBoolean(m_autoEOI);
+        writer.writeInt(m_icwIndex);
+        writer.writeBoolean(m_isInitialized);
+        writer.writeBoolean(m_singlePIC);
+        writer.writeBoolean(m_needICW4);
+        writer.writeBoolean(m_statusReadISR);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_vector = reader.readInt();
+        m_imr = reader.readInt();
+        m_irr = reader.readInt();
+        m_isr = reader.readInt();
+        m_autoEOI = reader.readBoolean();
+        m_icwIndex = reader.readInt();
+        m_isInitialized = reader.readBoolean();
+        m_singlePIC = reader.readBoolean();
+        m_needICW4 = reader.readBoolean();
+        m_statusReadISR = reader.readBoolean();
+        
+        notifyRequest();
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Interface implementation of IOReadable / IOWritable">
     
@@ -134,6 +175,7 @@ public final class Intel8259a implements HardwareComponent,
                     
                     m_imr = 0x00;
                     m_statusReadISR = false;
+                    notifyRequest();
                     
                     writeICW(m_icwIndex, data);
                 }
@@ -154,6 +196,28 @@ public final class Intel8259a implements HardwareComponent,
         }
     }
     
+    @Override
+    public IOPort getPortHandler(int port) {
+        
+        // Every interrupt handler ends with an EOI to the command port
+        if(port == 0x20 || port == 0xa0) {
+            
+            return new IOPort(this) {
+                
+                @Override
+                public void writeIO8(int port, int data) {
+                    
+                    if((data & 0x18) == 0x00)
+                        writeOCW(2, data);
+                    else
+                        Intel8259a.this.writeIO8(port, data);
+                }
+            };
+        }
+        
+        return null;
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="Handling of the initialization control words">
@@ -195,6 +259,7 @@ public final class Intel8259a implements HardwareComponent,
             
             case 1:
                 m_imr = data;
+                notifyRequest();
                 break;
                 
             case 2:
@@ -244,9 +309,21 @@ public final class Intel8259a implements HardwareComponent,
     
     // <editor-fold defaultstate="collapsed" desc="Setting, getting and clearing of interrupts">
     
+    public void setRequestHandler(Runnable handler) {
+        
+        m_requestHandler = handler;
+    }
+    
+    private void notifyRequest() {
+        
+        if(m_requestHandler != null && isPending())
+            m_requestHandler.run();
+    }
+    
     public void setInterrupt(int irq) {
         
         m_irr |= 1 << irq;
+        notifyRequest();
     }
     
     public void clearInterrupt(int irq) {
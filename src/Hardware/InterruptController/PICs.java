@@ -92,6 +92,12 @@ public final class PICs implements HardwareComponent {
         return m_picMaster.getInterrupt();
     }
     
+    public void setRequestHandler(Runnable handler) {
+        
+        m_picMaster.setRequestHandler(handler);
+        m_picSlave.setRequestHandler(handler);
+    }
+    
     public void setInterrupt(int irq) {
         
         if(!m_isSinglePIC && irq == 0x02)
@@ -17,6 +17,7 @@
  */
 package Hardware.Keyboard;
 
+import java.awt.GraphicsEnvironment;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.HashMap;
@@ -24,6 +25,7 @@ import java.awt.Toolkit;
 import java.util.LinkedList;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 
 
@@ -53,7 +55,7 @@ public final class JPCKeyboardAdapter extends KeyAdapter {
             
             this.key = key;
             this.isPressed = isPressed;
-            this.timeNextEvent = System.currentTimeMillis();
+            this.timeNextEvent = m_timeSource.getAsLong();
         }
     }
     private final ConcurrentLinkedQueue<JPCKeyAction> m_keyChain;
@@ -66,6 +68,11 @@ public final class JPCKeyboardAdapter extends KeyAdapter {
     private long m_typematicRepeatRate;
     private boolean m_isScanningEnabled;
     
+    /* ----------------------------------------------------- *
+     * Time source of the typematic repeat (in ms)           *
+     * ----------------------------------------------------- */
+    private LongSupplier m_timeSource;
+    
     
     
     public JPCKeyboardAdapter() {
@@ -73,6 +80,7 @@ public final class JPCKeyboardAdapter extends KeyAdapter {
         m_bindings = new HashMap<>();
         m_pressedKeys = new LinkedList<>();
         m_keyChain = new ConcurrentLinkedQueue<>();
+        m_timeSource = System::currentTimeMillis;
     }
     
     
@@ -146,6 +154,15 @@ public final class JPCKeyboardAdapter extends KeyAdapter {
         m_isScanningEnabled = isEnabled;
     }
     
+    /**
+     * Replaces the wall clock that drives the typematic repeat, so that a
+     * benchmark can run the keyboard on the emulated time.
+     */
+    public void setTimeSource(LongSupplier timeSource) {
+        
+        m_timeSource = timeSource;
+    }
+    
     public void setTypematicRepeatDelay(long ms) {
         
         m_typematicRepeatDelay = ms;
@@ -158,9 +175,12 @@ public final class JPCKeyboardAdapter extends KeyAdapter {
     
     public void reset(boolean numLock, boolean capsLock, boolean scrollLock) {
 
-        Toolkit.getDefaultToolkit().setLockingKeyState(KeyEvent.VK_NUM_LOCK, numLock);
-        Toolkit.getDefaultToolkit().setLockingKeyState(KeyEvent.VK_CAPS_LOCK, capsLock);
-        Toolkit.getDefaultToolkit().setLockingKeyState(KeyEvent.VK_SCROLL_LOCK, scrollLock);
+        if(!GraphicsEnvironment.isHeadless()) {
+            
+            Toolkit.getDefaultToolkit().setLockingKeyState(KeyEvent.VK_NUM_LOCK, numLock);
+            Toolkit.getDefaultToolkit().setLockingKeyState(KeyEvent.VK_CAPS_LOCK, capsLock);
+            Toolkit.getDefaultToolkit().setLockingKeyState(KeyEvent.VK_SCROLL_LOCK, scrollLock);
+        }
         
         m_pressedKeys.clear();
         m_keyChain.clear();
@@ -188,7 +208,7 @@ public final class JPCKeyboardAdapter extends KeyAdapter {
     
     public void update(Consumer<Integer> consumer) {
             
-        long now = System.currentTimeMillis();
+        long now = m_timeSource.getAsLong();
 
         // Handle key presses and releases
         while(!m_keyChain.isEmpty()) {
@@ -226,6 +246,20 @@ public final class JPCKeyboardAdapter extends KeyAdapter {
             queue.accept(data[i]);
     }
     
+    public synchronized boolean sendKey(int vk, int location, boolean isPressed) {
+        
+        JPCVirtualKey key = m_bindings.get(getMappingValue(vk, location));
+        if(key == null)
+            return false;
+        
+        if(isPressed)
+            pressKey(key);
+        else
+            releaseKey(key);
+        
+        return true;
+    }
+    
     public synchronized void releaseAllKeys() {
         
         m_pressedKeys.forEach(k -> releaseKey(k));
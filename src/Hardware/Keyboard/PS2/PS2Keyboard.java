@@ -23,7 +23,10 @@ import Hardware.Keyboard.Keyboard;
 import Hardware.PS2.PS2Controller;
 import Hardware.PS2.PS2Port;
 import Hardware.PS2.PS2Port.PS2PortDevice;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import java.awt.event.KeyEvent;
+import java.io.IOException;
 
 
 
@@ -61,6 +64,18 @@ public final class PS2Keyboard implements HardwareComponent,
         m_keyAdapter.reset(true, false, false);
         m_command = -1;
     }
+    
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(m_command);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_command = reader.readInt();
+    }
 
     @Override
     public void wireWith(HardwareComponent component) {
@@ -20,10 +20,13 @@ package Hardware.Keyboard.XT;
 import Hardware.HardwareComponent;
 import Hardware.Keyboard.JPCKeyboardAdapter;
 import Hardware.Keyboard.Keyboard;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import Scheduler.Scheduler;
 import java.awt.event.KeyEvent;
 import Hardware.PPI.Intel8255;
 import Scheduler.Schedulable;
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -71,6 +74,20 @@ public final class XTKeyboard implements HardwareComponent,
         m_cyclesRemaining = m_cyclesKeyboard;
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeQueue(m_buffer);
+        writer.writeInt(m_cyclesRemaining);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        reader.readQueue(m_buffer);
+        m_cyclesRemaining = reader.readInt();
+    }
+    
     @Override
     public void wireWith(HardwareComponent component) {
         
@@ -106,6 +123,12 @@ public final class XTKeyboard implements HardwareComponent,
         }
     }
     
+    @Override
+    public int getCyclesUntilNextEvent() {
+        
+        return m_cyclesRemaining;
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Interface implementation of Keyboard">
     
@@ -23,6 +23,9 @@ import Hardware.Mouse.Mouse;
 import Hardware.PS2.PS2Controller;
 import Hardware.PS2.PS2Port;
 import Hardware.PS2.PS2Port.PS2PortDevice;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 
 
 
@@ -74,6 +77,28 @@ public final class PS2Mouse implements HardwareComponent,
         m_resolution = 4;
         m_sampleRate = 100;
     }
+    
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeBoolean(m_streamMode);
+        writer.writeBoolean(m_streamActive);
+        writer.writeBoolean(m_scaling1To1);
+        writer.writeInt(m_resolution);
+        writer.writeInt(m_sampleRate);
+        writer.writeInt(m_command);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_streamMode = reader.readBoolean();
+        m_streamActive = reader.readBoolean();
+        m_scaling1To1 = reader.readBoolean();
+        m_resolution = reader.readInt();
+        m_sampleRate = reader.readInt();
+        m_command = reader.readInt();
+    }
 
     @Override
     public void wireWith(HardwareComponent component) {
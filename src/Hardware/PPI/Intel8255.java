@@ -23,6 +23,9 @@ import IOMap.IOReadable;
 import IOMap.IOWritable;
 import Hardware.Speaker.Speaker;
 import Hardware.Timer.Intel8253;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 
 
 
@@ -66,6 +69,22 @@ public final class Intel8255 implements HardwareComponent,
         m_portB = 0x00;
         m_portC = 0x00;
     }
+    
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(m_portA);
+        writer.writeInt(m_portB);
+        writer.writeInt(m_portC);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_portA = reader.readInt();
+        m_portB = reader.readInt();
+        m_portC = reader.readInt();
+    }
 
     @Override
     public void wireWith(HardwareComponent component) {
@@ -23,8 +23,11 @@ import Hardware.InterruptController.PICs;
 import Hardware.PS2.PS2Port.PS2PortDevice;
 import IOMap.IOReadable;
 import IOMap.IOWritable;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import Scheduler.Schedulable;
 import Scheduler.Scheduler;
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -136,6 +139,34 @@ public final class PS2Controller implements HardwareComponent,
         m_keyPort.reset();
         m_mousePort.reset();
     }
+    
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(m_status);
+        writer.writeInt(m_command);
+        writer.writeQueue(m_controllerFIFO);
+        writer.writeInt(m_data);
+        writer.writeInt(m_irq);
+        writer.writeInts(m_ram);
+        writer.writeQueue(m_keyPort.m_buffer);
+        writer.writeQueue(m_mousePort.m_buffer);
+        writer.writeInt(m_cyclesRemaining);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_status = reader.readInt();
+        m_command = reader.readInt();
+        reader.readQueue(m_controllerFIFO);
+        m_data = reader.readInt();
+        m_irq = reader.readInt();
+        reader.readInts(m_ram);
+        reader.readQueue(m_keyPort.m_buffer);
+        reader.readQueue(m_mousePort.m_buffer);
+        m_cyclesRemaining = reader.readInt();
+    }
 
     @Override
     public void wireWith(HardwareComponent component) {
@@ -237,6 +268,12 @@ public final class PS2Controller implements HardwareComponent,
         }
     }
     
+    @Override
+    public int getCyclesUntilNextEvent() {
+        
+        return m_cyclesRemaining;
+    }
+    
     // </editor-fold>
     
     
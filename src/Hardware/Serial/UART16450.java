@@ -22,8 +22,11 @@ import Hardware.InterruptController.PICs;
 import Hardware.Serial.COMPort.COMPortDevice;
 import IOMap.IOReadable;
 import IOMap.IOWritable;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import Scheduler.Schedulable;
 import Scheduler.Scheduler;
+import java.io.IOException;
 import java.util.LinkedList;
 
 
@@ -207,6 +210,48 @@ public final class UART16450 implements HardwareComponent,
         m_comPort.reset();
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(m_lsr);
+        writer.writeInt(m_lcr);
+        writer.writeInt(m_dlr);
+        writer.writeBoolean(m_isDLRAccessible);
+        writer.writeInt(m_mcr);
+        writer.writeInt(m_msr);
+        writer.writeInt(m_msrOld);
+        writer.writeInt(m_iir);
+        writer.writeInt(m_ier);
+        writer.writeInt(m_irq);
+        writer.writeInt(m_scratchPad);
+        writer.writeInt(m_thr);
+        writer.writeInt(m_rbr);
+        writer.writeQueue(m_comPort.m_buffer);
+        writer.writeInt(m_cyclesRemaining);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_lsr = reader.readInt();
+        m_lcr = reader.readInt();
+        m_dlr = reader.readInt();
+        m_isDLRAccessible = reader.readBoolean();
+        m_mcr = reader.readInt();
+        m_msr = reader.readInt();
+        m_msrOld = reader.readInt();
+        m_iir = reader.readInt();
+        m_ier = reader.readInt();
+        m_irq = reader.readInt();
+        m_scratchPad = reader.readInt();
+        m_thr = reader.readInt();
+        m_rbr = reader.readInt();
+        reader.readQueue(m_comPort.m_buffer);
+        
+        updateTimings();
+        m_cyclesRemaining = reader.readInt();
+    }
+    
     @Override
     public void wireWith(HardwareComponent component) {
         
@@ -466,6 +511,12 @@ public final class UART16450 implements HardwareComponent,
         }
     }
     
+    @Override
+    public int getCyclesUntilNextEvent() {
+        
+        return m_cyclesRemaining;
+    }
+    
     private void updateTimings() {
         
         if(m_dlr != 0) {
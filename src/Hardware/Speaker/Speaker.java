@@ -20,8 +20,11 @@ package Hardware.Speaker;
 import Hardware.HardwareComponent;
 import Main.Systems.ComponentConfig;
 import Main.Systems.ComponentConfig.Type;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import Scheduler.Schedulable;
 import Scheduler.Scheduler;
+import java.io.IOException;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.DataLine;
@@ -53,6 +56,7 @@ public final class Speaker implements HardwareComponent,
      * ----------------------------------------------------- */
     private final DataLine.Info m_dlInfo;
     private SourceDataLine m_sdl;
+    private boolean m_isAudioOutputEnabled;
     
     /* ----------------------------------------------------- *
      * Sound data buffer related things                      *
@@ -86,6 +90,8 @@ public final class Speaker implements HardwareComponent,
         
         // The sample buffer has room for ~BUFFER_LENGTH_IN_MS milliseconds of audio
         m_sampleBuffer = new byte[Math.round(0.5f + ((SAMPLE_RATE * BUFFER_LENGTH_IN_MS) / 1000.0f) * FRAME_SIZE) & ~(FRAME_SIZE - 1)];
+        
+        m_isAudioOutputEnabled = true;
     }
     
     
@@ -95,6 +101,13 @@ public final class Speaker implements HardwareComponent,
     @Override
     public void init() {
         
+        // Without audio output there is no data line and no samples get generated
+        if(!m_isAudioOutputEnabled) {
+            
+            m_isInitialized = false;
+            return;
+        }
+        
         try {
             
             m_sdl = (SourceDataLine)AudioSystem.getLine(m_dlInfo);
@@ -124,6 +137,25 @@ public final class Speaker implements HardwareComponent,
             m_sdl.flush();
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeBoolean(m_data);
+        writer.writeBoolean(m_output);
+        writer.writeInt(m_cyclesRemaining);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_data = reader.readBoolean();
+        m_output = reader.readBoolean();
+        m_cyclesRemaining = reader.readInt();
+        
+        if(m_isInitialized)
+            m_sdl.flush();
+    }
+    
     @Override
     public void shutdown() {
         
@@ -173,10 +205,21 @@ public final class Speaker implements HardwareComponent,
         }
     }
     
+    @Override
+    public int getCyclesUntilNextEvent() {
+        
+        return m_isInitialized && m_isEnabled ? m_cyclesRemaining : Integer.MAX_VALUE;
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="Speaker control">
     
+    public void setAudioOutputEnabled(boolean isEnabled) {
+        
+        m_isAudioOutputEnabled = isEnabled;
+    }
+    
     public void setEnable(boolean isEnabled) {
             
         m_isEnabled = isEnabled;
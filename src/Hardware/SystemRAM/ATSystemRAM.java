@@ -21,6 +21,10 @@ import Hardware.CMOS.CMOSMap;
 import Hardware.HardwareComponent;
 import MemoryMap.MemoryReadable;
 import MemoryMap.MemoryWritable;
+import SaveState.Snapshot;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 import java.util.Arrays;
 
 
@@ -36,21 +40,34 @@ public final class ATSystemRAM implements HardwareComponent,
     public static final int RAM_SIZE_MASK = (RAM_SIZE_IN_MB << 20) - 1;
     
     /* ----------------------------------------------------- *
-     * RAM data                                              *
+     * Pages (same granularity as the memory map)            *
      * ----------------------------------------------------- */
-    private final int[] m_data;
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int PAGE_COUNT = (RAM_SIZE_IN_MB << 20) >>> PAGE_BITS;
+    private static final int[] ZERO_PAGE = new int[PAGE_SIZE];
+    
+    /* ----------------------------------------------------- *
+     * RAM data. Shared pages are copied on the first write  *
+     * ----------------------------------------------------- */
+    private final int[][] m_pages;
+    private final boolean[] m_isShared;
     private final int[][] m_mapping;
     
     
 
     public ATSystemRAM() {
             
-        m_data = new int[RAM_SIZE_IN_MB << 20];
+        m_pages = new int[PAGE_COUNT][];
+        m_isShared = new boolean[PAGE_COUNT];
         m_mapping = new int[][] {
 
             new int[] { 0x00000, 0xa0000, 0 },
             new int[] { 0x00100000, (RAM_SIZE_IN_MB - 1) << 20, 0x00100000 }
         };
+        
+        clear();
     }
     
     
@@ -60,7 +77,45 @@ public final class ATSystemRAM implements HardwareComponent,
     @Override
     public void reset() {
         
-        Arrays.fill(m_data, 0x00);
+        clear();
+    }
+    
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        Snapshot snapshot = writer.getSnapshot();
+        
+        writer.writeBoolean(snapshot != null);
+        if(snapshot != null) {
+            
+            // From now on this ram also has to copy the pages before writing
+            Arrays.fill(m_isShared, true);
+            writer.writeInt(snapshot.share(m_pages.clone()));
+        }
+        else {
+            
+            writer.writeBulkPages(m_pages, PAGE_SIZE);
+        }
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        if(reader.readBoolean()) {
+            
+            int[][] pages = reader.getSnapshot().getShared(reader.readInt(), int[][].class);
+            if(pages.length != PAGE_COUNT)
+                throw new IOException("The snapshot contains a different amount of ram");
+            
+            System.arraycopy(pages, 0, m_pages, 0, PAGE_COUNT);
+            Arrays.fill(m_isShared, true);
+        }
+        else {
+            
+            reader.readBulkPages(m_pages, PAGE_SIZE, ZERO_PAGE);
+            for(int i = 0; i < PAGE_COUNT; i++)
+                m_isShared[i] = m_pages[i] == ZERO_PAGE;
+        }
     }
 
     @Override
@@ -81,23 +136,39 @@ public final class ATSystemRAM implements HardwareComponent,
     @Override
     public int readMEM8(int address) {
         
-        return m_data[address];
+        return m_pages[address >>> PAGE_BITS][address & PAGE_MASK];
     }
 
     @Override
     public int readMEM16(int address) {
         
-        return m_data[address] |
-              (m_data[address + 1] << 8);
+        int offset = address & PAGE_MASK;
+        if(offset > PAGE_SIZE - 2) {
+            
+            return readMEM8(address) |
+                  (readMEM8(address + 1) << 8);
+        }
+        
+        int[] page = m_pages[address >>> PAGE_BITS];
+        return page[offset] |
+              (page[offset + 1] << 8);
     }
     
     @Override
     public int readMEM32(int address) {
         
-        return m_data[address] |
-              (m_data[address + 1] << 8) |
-              (m_data[address + 2] << 16) |
-              (m_data[address + 3] << 24);
+        int offset = address & PAGE_MASK;
+        if(offset > PAGE_SIZE - 4) {
+            
+            return readMEM16(address) |
+                  (readMEM16(address + 2) << 16);
+        }
+        
+        int[] page = m_pages[address >>> PAGE_BITS];
+        return page[offset] |
+              (page[offset + 1] << 8) |
+              (page[offset + 2] << 16) |
+              (page[offset + 3] << 24);
     }
 
     @Override
@@ -109,23 +180,90 @@ public final class ATSystemRAM implements HardwareComponent,
     @Override
     public void writeMEM8(int address, int data) {
         
-        m_data[address] = data & 0xff;
+        getWritablePage(address >>> PAGE_BITS)[address & PAGE_MASK] = data & 0xff;
     }
     
     @Override
     public void writeMEM16(int address, int data) {
         
-        m_data[address] = data & 0xff;
-        m_data[address + 1] = (data >>> 8) & 0xff;
+        int offset = address & PAGE_MASK;
+        if(offset > PAGE_SIZE - 2) {
+            
+            writeMEM8(address, data);
+            writeMEM8(address + 1, data >>> 8);
+            return;
+        }
+        
+        int[] page = getWritablePage(address >>> PAGE_BITS);
+        page[offset] = data & 0xff;
+        page[offset + 1] = (data >>> 8) & 0xff;
     }
     
     @Override
     public void writeMEM32(int address, int data) {
         
-        m_data[address] = data & 0xff;
-        m_data[address + 1] = (data >>> 8) & 0xff;
-        m_data[address + 2] = (data >>> 16) & 0xff;
-        m_data[address + 3] = (data >>> 24) & 0xff;
+        int offset = address & PAGE_MASK;
+        if(offset > PAGE_SIZE - 4) {
+            
+            writeMEM16(address, data);
+            writeMEM16(address + 2, data >>> 16);
+            return;
+        }
+        
+        int[] page = getWritablePage(address >>> PAGE_BITS);
+        page[offset] = data & 0xff;
+        page[offset + 1] = (data >>> 8) & 0xff;
+        page[offset + 2] = (data >>> 16) & 0xff;
+        page[offset + 3] = (data >>> 24) & 0xff;
+    }
+    
+    @Override
+    public void readMEMBlock(int address, byte[] dst, int offset, int length) {
+        
+        for(int i = 0; i < length; i++)
+            dst[offset + i] = (byte)readMEM8(address + i);
+    }
+    
+    @Override
+    public void writeMEMBlock(int address, byte[] src, int offset, int length) {
+        
+        for(int i = 0; i < length; i++)
+            writeMEM8(address + i, src[offset + i]);
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Copy-on-write handling">
+    
+    private void clear() {
+        
+        // Every page starts out as a shared zero page, so the ram only gets
+        // allocated as far as the guest actually uses it
+        Arrays.fill(m_pages, ZERO_PAGE);
+        Arrays.fill(m_isShared, true);
+    }
+    
+    private int[] getWritablePage(int pageIdx) {
+        
+        if(m_isShared[pageIdx]) {
+            
+            m_pages[pageIdx] = m_pages[pageIdx].clone();
+            m_isShared[pageIdx] = false;
+        }
+        
+        return m_pages[pageIdx];
+    }
+    
+    public int getNumberOfPrivatePages() {
+        
+        int count = 0;
+        for(boolean isShared : m_isShared) {
+            
+            if(!isShared)
+                count++;
+        }
+        
+        return count;
     }
     
     // </editor-fold>
@@ -20,6 +20,9 @@ package Hardware.SystemRAM;
 import Hardware.HardwareComponent;
 import MemoryMap.MemoryReadable;
 import MemoryMap.MemoryWritable;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 import java.util.Arrays;
 
 
@@ -50,6 +53,18 @@ public final class XTSystemRAM implements HardwareComponent,
         Arrays.fill(m_data, 0x00);
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeBulkBytes(m_data);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        reader.readBulkBytes(m_data);
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Interface implementation of MemoryReadable and MemoryWritable">
     
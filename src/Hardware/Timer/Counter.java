@@ -18,8 +18,11 @@
 package Hardware.Timer;
 
 import Hardware.HardwareComponent;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import Scheduler.Schedulable;
 import Scheduler.Scheduler;
+import java.io.IOException;
 
 
 
@@ -112,6 +115,44 @@ public final class Counter implements HardwareComponent,
         m_isTerminalCountReached = true;
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeBoolean(m_gate);
+        writer.writeInt(m_opMode);
+        writer.writeInt(m_readMode);
+        writer.writeInt(m_writeMode);
+        writer.writeInt(m_counterLatch);
+        writer.writeInt(m_counterRegister);
+        writer.writeInt(m_counterCycles);
+        writer.writeBoolean(m_isLatched);
+        writer.writeBoolean(m_isRunning);
+        writer.writeBoolean(m_isDisabled);
+        writer.writeBoolean(m_isInitial);
+        writer.writeBoolean(m_isTerminalCountReached);
+        writer.writeBoolean(m_output);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_gate = reader.readBoolean();
+        m_opMode = reader.readInt();
+        m_readMode = reader.readInt();
+        m_writeMode = reader.readInt();
+        m_counterLatch = reader.readInt();
+        m_counterRegister = reader.readInt();
+        m_counterCycles = reader.readInt();
+        m_isLatched = reader.readBoolean();
+        m_isRunning = reader.readBoolean();
+        m_isDisabled = reader.readBoolean();
+        m_isInitial = reader.readBoolean();
+        m_isTerminalCountReached = reader.readBoolean();
+        
+        // The listeners restore their own state, so the output is set silently
+        m_output = reader.readBoolean();
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Interface implementation of Schedulable">
     
@@ -185,6 +226,12 @@ public final class Counter implements HardwareComponent,
         }
     }
     
+    @Override
+    public int getCyclesUntilNextEvent() {
+        
+        return m_isRunning ? m_counterCycles : Integer.MAX_VALUE;
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="Write control word">
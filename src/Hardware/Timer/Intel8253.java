@@ -18,6 +18,7 @@
 package Hardware.Timer;
 
 import Hardware.HardwareComponent;
+import IOMap.IOPort;
 import IOMap.IOReadable;
 import IOMap.IOWritable;
 import Hardware.InterruptController.PICs;
@@ -154,6 +155,24 @@ public final class Intel8253 implements HardwareComponent,
         }
     }
     
+    @Override
+    public IOPort getPortHandler(int port) {
+        
+        // The counters are read continuously by timing loops
+        if(port >= 0x40 && port <= 0x42) {
+            
+            Counter counter = m_counter[port & 0x03];
+            
+            return new IOPort(this) {
+                
+                @Override public int readIO8(int port) { return counter.readCounter(); }
+                @Override public void writeIO8(int port, int data) { counter.writeCounter(data); }
+            };
+        }
+        
+        return null;
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="Counter gate control">
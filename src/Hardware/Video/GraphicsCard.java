@@ -74,6 +74,11 @@ public abstract class GraphicsCard implements HardwareComponent {
     
     
     
+    public long getRenderedFrames() {
+        
+        return m_frameNumber & 0xffffffffl;
+    }
+    
     public int getElapsedFrames() {
         
         int numFrames = m_frameNumber - m_lastFrameNumber;
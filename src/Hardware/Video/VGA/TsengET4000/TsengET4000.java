@@ -20,6 +20,9 @@ package Hardware.Video.VGA.TsengET4000;
 import Hardware.ROM.Peripherals.ET4000.ET4000Bios;
 import Hardware.HardwareComponent;
 import Hardware.Video.VGA.VGAAdapter;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import Hardware.Video.GraphicsCardListener;
 import Hardware.Video.VGA.VGARenderer;
@@ -70,6 +73,29 @@ public final class TsengET4000 extends VGAAdapter {
         return c;
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        super.saveState(writer);
+        
+        writer.writeInt(m_gdcSegmentOffset);
+        writer.writeInt(m_dacCounter);
+        writer.writeInt(m_dacControl);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        super.loadState(reader);
+        
+        m_gdcSegmentOffset = reader.readInt();
+        m_dacCounter = reader.readInt();
+        m_dacControl = reader.readInt();
+        
+        // The HiColor mode affects the renderer selection
+        updateRenderer();
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Interface implementation of IOReadable / IOWritable">
     
@@ -18,10 +18,14 @@
 package Hardware.Video.VGA;
 
 import Hardware.HardwareComponent;
+import IOMap.IOPort;
 import IOMap.IOReadable;
 import IOMap.IOWritable;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import Scheduler.Scheduler;
 import Hardware.Video.GraphicsCard;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import Scheduler.Schedulable;
@@ -111,6 +115,7 @@ public abstract class VGAAdapter extends GraphicsCard
     private final VGARenderer m_blankRenderer;
     protected int m_vramAddr;
     protected int m_pixelShift;
+    private long m_renderedLines;
     
     /* ----------------------------------------------------- *
      * Scheduling                                            *
@@ -214,6 +219,81 @@ public abstract class VGAAdapter extends GraphicsCard
         m_isLineOnScreen = true;
         m_scanlineDoublingFlipFlop = true;
     }
+    
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInts(m_crtc);
+        writer.writeInt(m_crtcIndex);
+        writer.writeInts(m_atc);
+        writer.writeInt(m_atcIndex);
+        writer.writeBoolean(m_atcFlipFlop);
+        writer.writeInts(m_atcPaletteCache);
+        writer.writeInts(m_gdc);
+        writer.writeInt(m_gdcIndex);
+        writer.writeInts(m_seq);
+        writer.writeInt(m_seqIndex);
+        
+        for(int[] entry : m_dac)
+            writer.writeInts(entry);
+        writer.writeInt(m_dacAddrRead);
+        writer.writeInt(m_dacAddrWrite);
+        writer.writeInt(m_dacEntry);
+        writer.writeInt(m_dacPixelMask);
+        writer.writeInt(m_dacState);
+        writer.writeInts(m_dacPaletteCache);
+        
+        writer.writeInt(m_miscOut);
+        writer.writeInt(m_status0);
+        writer.writeInt(m_status1);
+        
+        writer.writeBoolean(m_scanlineDoublingFlipFlop);
+        writer.writeInt(m_screenScanline);
+        writer.writeInt(m_charScanline);
+        writer.writeInt(m_vramAddr);
+        writer.writeInt(m_pixelShift);
+        writer.writeBoolean(m_isLineOnScreen);
+        writer.writeInt(m_cyclesRemaining);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        reader.readInts(m_crtc);
+        m_crtcIndex = reader.readInt();
+        reader.readInts(m_atc);
+        m_atcIndex = reader.readInt();
+        m_atcFlipFlop = reader.readBoolean();
+        reader.readInts(m_atcPaletteCache);
+        reader.readInts(m_gdc);
+        m_gdcIndex = reader.readInt();
+        reader.readInts(m_seq);
+        m_seqIndex = reader.readInt();
+        
+        for(int[] entry : m_dac)
+            reader.readInts(entry);
+        m_dacAddrRead = reader.readInt();
+        m_dacAddrWrite = reader.readInt();
+        m_dacEntry = reader.readInt();
+        m_dacPixelMask = reader.readInt();
+        m_dacState = reader.readInt();
+        reader.readInts(m_dacPaletteCache);
+        
+        m_miscOut = reader.readInt();
+        m_status0 = reader.readInt();
+        m_status1 = reader.readInt();
+        
+        m_scanlineDoublingFlipFlop = reader.readBoolean();
+        m_screenScanline = reader.readInt();
+        m_charScanline = reader.readInt();
+        m_vramAddr = reader.readInt();
+        m_pixelShift = reader.readInt();
+        m_isLineOnScreen = reader.readBoolean();
+        
+        // Resolution, renderer and line timings are derived from the registers
+        updateTimings();
+        m_cyclesRemaining = reader.readInt();
+    }
 
     @Override
     public ArrayList<HardwareComponent> getSubComponents() {
@@ -260,12 +340,7 @@ public abstract class VGAAdapter extends GraphicsCard
             // VGA Input Status Register 1
             case 0x3ba:
             case 0x3da:
-                m_atcFlipFlop = false;
-                if((m_status1 & 0x01) != 0)
-                    m_status1 &= ~0x30;
-                else
-                    m_status1 ^= 0x30;
-                return m_status1;
+                return readStatus1();
                 
             // Attribute Controller Index Register 
             case 0x3c0:
@@ -473,6 +548,44 @@ public abstract class VGAAdapter extends GraphicsCard
         }
     }
     
+    @Override
+    public IOPort getPortHandler(int port) {
+        
+        // The input status register is polled in nearly every retrace loop
+        if(port == 0x3ba || port == 0x3da) {
+            
+            return new IOPort(this) {
+                
+                @Override
+                public int readIO8(int port) {
+                    
+                    return readStatus1();
+                }
+            };
+        }
+        
+        return null;
+    }
+    
+    private int readStatus1() {
+        
+        m_atcFlipFlop = false;
+        if((m_status1 & 0x01) != 0)
+            m_status1 &= ~0x30;
+        else
+            m_status1 ^= 0x30;
+        
+        return m_status1;
+    }
+    
+    // </editor-fold>
+    // <editor-fold defaultstate="collapsed" desc="Statistics">
+    
+    public long getRenderedLines() {
+        
+        return m_renderedLines;
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Interface implementation of Schedulable">
     
@@ -496,8 +609,11 @@ public abstract class VGAAdapter extends GraphicsCard
                 
 
                 // Draw current scanline
-                if(m_screenScanline < m_frameHeight)
+                if(m_screenScanline < m_frameHeight) {
+                    
                     m_currentRenderer.drawLine(m_screenScanline * m_frameWidth);
+                    m_renderedLines++;
+                }
 
                 // Update status register            
                 m_status1 |= STAT1_DISPLAY_DISABLE;
@@ -565,6 +681,12 @@ public abstract class VGAAdapter extends GraphicsCard
         }
     }
     
+    @Override
+    public int getCyclesUntilNextEvent() {
+        
+        return m_cyclesRemaining;
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="Handling of changes in certain register values">
@@ -20,6 +20,9 @@ package Hardware.Video.VGA;
 import Hardware.HardwareComponent;
 import MemoryMap.MemoryReadable;
 import MemoryMap.MemoryWritable;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 import java.util.Arrays;
 
 
@@ -47,6 +50,7 @@ public final class VGARam implements HardwareComponent,
      * ----------------------------------------------------- */    
     private Runnable m_memoryMapperDelegate;
     private int[][] m_memoryMapping;
+    private int m_memoryMappingMode;
     
     /* ----------------------------------------------------- *
      * ALU operations                                        *
@@ -157,6 +161,63 @@ public final class VGARam implements HardwareComponent,
         setMemoryMappingMode(0);
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeBulkBytes(m_ram);
+        writer.writeInts(m_ramLatches);
+        writer.writeInt(m_ramBankOffsetRead);
+        writer.writeInt(m_ramBankOffsetWrite);
+        writer.writeInt(m_memoryMappingMode);
+        
+        int aluOP = 0;
+        while(m_aluOPs[aluOP] != m_aluOP)
+            aluOP++;
+        writer.writeInt(aluOP);
+        writer.writeInt(m_aluRotationCount);
+        writer.writeInt(m_aluBitMask);
+        
+        writer.writeInt(m_readMode);
+        writer.writeInt(m_readPlane);
+        writer.writeInt(m_writeMode);
+        writer.writeInt(m_writePlane);
+        writer.writeBoolean(m_chain4);
+        writer.writeBoolean(m_oddEvenRead);
+        writer.writeBoolean(m_oddEvenWrite);
+        
+        writer.writeBooleans(m_setResetEnable);
+        writer.writeInts(m_setResetValue);
+        writer.writeInts(m_colorCompare);
+        writer.writeInts(m_colorCare);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        reader.readBulkBytes(m_ram);
+        reader.readInts(m_ramLatches);
+        m_ramBankOffsetRead = reader.readInt();
+        m_ramBankOffsetWrite = reader.readInt();
+        setMemoryMappingMode(reader.readInt() & 0x03);
+        
+        m_aluOP = m_aluOPs[reader.readInt() & 0x03];
+        m_aluRotationCount = reader.readInt();
+        m_aluBitMask = reader.readInt();
+        
+        m_readMode = reader.readInt();
+        m_readPlane = reader.readInt();
+        m_writeMode = reader.readInt();
+        m_writePlane = reader.readInt();
+        m_chain4 = reader.readBoolean();
+        m_oddEvenRead = reader.readBoolean();
+        m_oddEvenWrite = reader.readBoolean();
+        
+        reader.readBooleans(m_setResetEnable);
+        reader.readInts(m_setResetValue);
+        reader.readInts(m_colorCompare);
+        reader.readInts(m_colorCare);
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Interface implementation of MemoryReadable and MemoryWritable">
     
@@ -360,6 +421,7 @@ public final class VGARam implements HardwareComponent,
             default:
                 throw new IllegalArgumentException(String.format("%s: Illegal memory mapping mode specified (%d)", getClass().getName(), mode));
         }
+        m_memoryMappingMode = mode;
         
         if(m_memoryMapperDelegate != null)
             m_memoryMapperDelegate.run();
@@ -23,6 +23,9 @@ import Hardware.IDE.IDE;
 import Hardware.ROM.ROM;
 import IOMap.IOReadable;
 import IOMap.IOWritable;
+import SaveState.StateReader;
+import SaveState.StateWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 
 
@@ -70,6 +73,18 @@ public final class XTIDE implements HardwareComponent,
         m_pioReg = 0;
     }
     
+    @Override
+    public void saveState(StateWriter writer) throws IOException {
+        
+        writer.writeInt(m_pioReg);
+    }
+    
+    @Override
+    public void loadState(StateReader reader) throws IOException {
+        
+        m_pioReg = reader.readInt();
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Interface implementation of IOReadable / IOWritable">
     
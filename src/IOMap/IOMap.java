@@ -19,6 +19,7 @@ package IOMap;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.TreeMap;
 import java.util.stream.IntStream;
 
 
@@ -56,6 +57,12 @@ public final class IOMap {
     private final IOReadable[] m_read;
     private final IOWritable[] m_write;
     
+    /* ----------------------------------------------------- *
+     * Number of accesses per port                           *
+     * ----------------------------------------------------- */
+    private final long[] m_reads;
+    private final long[] m_writes;
+    
     
     
     public IOMap() {
@@ -65,6 +72,9 @@ public final class IOMap {
         m_read = new IOReadable[0x10000];
         m_write = new IOWritable[0x10000];
         m_unmapped = new UnmappedIODevice();
+        
+        m_reads = new long[0x10000];
+        m_writes = new long[0x10000];
     }
     
     
@@ -119,7 +129,7 @@ public final class IOMap {
         
         for(int i = 0; i < m_read.length; i++) {
             
-            if(m_read[i] == ioDevice)
+            if(getDevice(m_read[i]) == ioDevice)
                 m_read[i] = m_unmapped;
         }
         
@@ -136,7 +146,7 @@ public final class IOMap {
         
         for(int i = 0; i < m_write.length; i++) {
             
-            if(m_write[i] == ioDevice)
+            if(getDevice(m_write[i]) == ioDevice)
                 m_write[i] = m_unmapped;
         }
 
@@ -153,8 +163,15 @@ public final class IOMap {
         
         if(port < 0 || port > 0xffff)
             throw new IllegalArgumentException("Illegal port number specified");
-
-        dstMap[port] = ioDevice;
+        
+        IOPort handler = ioDevice.getPortHandler(port);
+        
+        dstMap[port] = handler != null ? handler : ioDevice;
+    }
+    
+    private IOMapped getDevice(IOMapped mapping) {
+        
+        return mapping instanceof IOPort ? ((IOPort)mapping).getDevice() : mapping;
     }
     
     // </editor-fold>
@@ -162,34 +179,122 @@ public final class IOMap {
     
     public int readIO8(int port) {
         
+        m_reads[port]++;
         return m_read[port].readIO8(port);
     }
     
     public void writeIO8(int port, int data) {
         
+        m_writes[port]++;
         m_write[port].writeIO8(port, data);
     }
     
     public int readIO16(int port) {
         
+        m_reads[port]++;
         return m_read[port].readIO16(port);
     }
     
     public void writeIO16(int port, int data) {
         
+        m_writes[port]++;
         m_write[port].writeIO16(port, data);
     }
     
     public int readIO32(int port) {
         
+        m_reads[port]++;
         return m_read[port].readIO32(port);
     }
     
     public void writeIO32(int port, int data) {
         
+        m_writes[port]++;
         m_write[port].writeIO32(port, data);
     }
     
+    public void readIOBlock16(int port, byte[] dst, int offset, int count) {
+        
+        m_reads[port]++;
+        m_read[port].readIOBlock16(port, dst, offset, count);
+    }
+    
+    public void writeIOBlock16(int port, byte[] src, int offset, int count) {
+        
+        m_writes[port]++;
+        m_write[port].writeIOBlock16(port, src, offset, count);
+    }
+    
+    public void readIOBlock32(int port, byte[] dst, int offset, int count) {
+        
+        m_reads[port]++;
+        m_read[port].readIOBlock32(port, dst, offset, count);
+    }
+    
+    public void writeIOBlock32(int port, byte[] src, int offset, int count) {
+        
+        m_writes[port]++;
+        m_write[port].writeIOBlock32(port, src, offset, count);
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Access statistics">
+    
+    public long getReads(int port) {
+        
+        return m_reads[port];
+    }
+    
+    public long getWrites(int port) {
+        
+        return m_writes[port];
+    }
+    
+    /**
+     * Returns the most frequently accessed ports, ordered by their number of
+     * reads and writes.
+     */
+    public int[] getHottestPorts(int count) {
+        
+        return IntStream.range(0, 0x10000)
+                        .filter(port -> (m_reads[port] | m_writes[port]) != 0l)
+                        .boxed()
+                        .sorted((a, b) -> Long.compare(m_reads[b] + m_writes[b], m_reads[a] + m_writes[a]))
+                        .limit(count)
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+    }
+    
+    public void clearStatistics() {
+        
+        Arrays.fill(m_reads, 0l);
+        Arrays.fill(m_writes, 0l);
+    }
+    
+    /**
+     * Returns the number of port accesses per device class. The accesses are
+     * attributed to the device that is currently mapped to the port.
+     */
+    public TreeMap<String, Long> getAccessesPerDevice() {
+        
+        TreeMap<String, Long> res = new TreeMap<>();
+        for(int port = 0; port < 0x10000; port++) {
+            
+            if(m_reads[port] != 0l)
+                res.merge(getDeviceName(m_read[port]), m_reads[port], Long::sum);
+            if(m_writes[port] != 0l)
+                res.merge(getDeviceName(m_write[port]), m_writes[port], Long::sum);
+        }
+        
+        return res;
+    }
+    
+    private String getDeviceName(IOMapped ioDevice) {
+        
+        return ioDevice == m_unmapped ? "Unmapped" : getDevice(ioDevice).getClass().getSimpleName();
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="Extending I/O ports">
@@ -22,4 +22,8 @@ package IOMap;
 public interface IOMapped {
     
     default void offerIOMapperDelegate(Runnable delegate) {}
+    
+    // Devices can hand out a dedicated handler for their hottest ports, which
+    // then gets mapped instead of the device itself
+    default IOPort getPortHandler(int port) { return null; }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package IOMap;
+
+
+
+/**
+ * A dedicated handler for a single, frequently accessed port of a device. It
+ * gets mapped instead of the device, so that an access doesn't have to go
+ * through the port switch of the device. Every access that isn't overridden
+ * is passed on to the device.
+ */
+public abstract class IOPort implements IOReadable,
+                                        IOWritable {
+    
+    /* ----------------------------------------------------- *
+     * The device that owns this port                        *
+     * ----------------------------------------------------- */
+    private final IOMapped m_device;
+    
+    
+    
+    public IOPort(IOMapped device) {
+        
+        m_device = device;
+    }
+    
+    
+    
+    public IOMapped getDevice() {
+        
+        return m_device;
+    }
+    
+    // <editor-fold defaultstate="collapsed" desc="Interface implementation of IOReadable / IOWritable">
+    
+    @Override public int[] getReadableIOPorts() { return null; }
+    @Override public int readIO8(int port) { return ((IOReadable)m_device).readIO8(port); }
+    @Override public int readIO16(int port) { return ((IOReadable)m_device).readIO16(port); }
+    @Override public int readIO32(int port) { return ((IOReadable)m_device).readIO32(port); }
+    @Override public void readIOBlock16(int port, byte[] dst, int offset, int count) { ((IOReadable)m_device).readIOBlock16(port, dst, offset, count); }
+    @Override public void readIOBlock32(int port, byte[] dst, int offset, int count) { ((IOReadable)m_device).readIOBlock32(port, dst, offset, count); }
+    
+    @Override public int[] getWritableIOPorts() { return null; }
+    @Override public void writeIO8(int port, int data) { ((IOWritable)m_device).writeIO8(port, data); }
+    @Override public void writeIO16(int port, int data) { ((IOWritable)m_device).writeIO16(port, data); }
+    @Override public void writeIO32(int port, int data) { ((IOWritable)m_device).writeIO32(port, data); }
+    @Override public void writeIOBlock16(int port, byte[] src, int offset, int count) { ((IOWritable)m_device).writeIOBlock16(port, src, offset, count); }
+    @Override public void writeIOBlock32(int port, byte[] src, int offset, int count) { ((IOWritable)m_device).writeIOBlock32(port, src, offset, count); }
+    
+    // </editor-fold>
+}
@@ -38,4 +38,29 @@ public interface IOReadable extends IOMapped {
               (readIO8(port + 2) << 16) |
               (readIO8(port + 3) << 24);
     }
+    
+    // Block transfers from a single port, the data is stored in little endian
+    // byte order. Devices with a data port should override these.
+    default void readIOBlock16(int port, byte[] dst, int offset, int count) {
+        
+        while(count-- > 0) {
+            
+            int data = readIO16(port);
+            
+            dst[offset++] = (byte)data;
+            dst[offset++] = (byte)(data >>> 8);
+        }
+    }
+    default void readIOBlock32(int port, byte[] dst, int offset, int count) {
+        
+        while(count-- > 0) {
+            
+            int data = readIO32(port);
+            
+            dst[offset++] = (byte)data;
+            dst[offset++] = (byte)(data >>> 8);
+            dst[offset++] = (byte)(data >>> 16);
+            dst[offset++] = (byte)(data >>> 24);
+        }
+    }
 }
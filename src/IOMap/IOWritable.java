@@ -39,4 +39,29 @@ public interface IOWritable extends IOMapped {
         writeIO8(port + 3, (data >>> 24) & 0xff);
         
     }
+    
+    // Block transfers to a single port, the data is expected in little endian
+    // byte order. Devices with a data port should override these.
+    default void writeIOBlock16(int port, byte[] src, int offset, int count) {
+        
+        while(count-- > 0) {
+            
+            writeIO16(port, (src[offset] & 0xff) |
+                           ((src[offset + 1] & 0xff) << 8));
+            
+            offset += 2;
+        }
+    }
+    default void writeIOBlock32(int port, byte[] src, int offset, int count) {
+        
+        while(count-- > 0) {
+            
+            writeIO32(port, (src[offset] & 0xff) |
+                           ((src[offset + 1] & 0xff) << 8) |
+                           ((src[offset + 2] & 0xff) << 16) |
+                           ((src[offset + 3] & 0xff) << 24));
+            
+            offset += 4;
+        }
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Main.Headless;
+
+import Hardware.Video.GraphicsCardListener;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+
+
+/**
+ * A graphics card listener that doesn't display anything, but counts the
+ * rendered frames and optionally writes every n-th frame as png file.
+ */
+public final class FrameSampler implements GraphicsCardListener {
+    
+    /* ----------------------------------------------------- *
+     * Current frame                                         *
+     * ----------------------------------------------------- */
+    private int[] m_frameData;
+    private int m_width;
+    private int m_height;
+    private volatile long m_frameCount;
+    
+    /* ----------------------------------------------------- *
+     * Sampling                                              *
+     * ----------------------------------------------------- */
+    private final File m_directory;
+    private final int m_interval;
+    
+    
+    
+    public FrameSampler(File directory, int interval) {
+        
+        m_directory = directory;
+        m_interval = interval;
+    }
+    
+    
+    
+    @Override
+    public void onInit(int[] frameData, int width, int height) {
+        
+        m_frameData = frameData;
+        m_width = width;
+        m_height = height;
+    }
+    
+    @Override
+    public void onRedraw() {
+        
+        m_frameCount++;
+        
+        if(m_interval > 0 && (m_frameCount % m_interval) == 0)
+            saveFrame(String.format("frame%08d", m_frameCount));
+    }
+    
+    public long getFrameCount() {
+        
+        return m_frameCount;
+    }
+    
+    public void saveFrame(String name) {
+        
+        if(m_directory == null || m_frameData == null || m_width <= 0 || m_height <= 0)
+            return;
+        
+        BufferedImage img = new BufferedImage(m_width, m_height, BufferedImage.TYPE_INT_RGB);
+        img.setRGB(0, 0, m_width, m_height, m_frameData, 0, m_width);
+        
+        try {
+            
+            ImageIO.write(img, "png", new File(m_directory, name + ".png"));
+        }
+        catch(IOException ex) {
+            
+            ex.printStackTrace(System.err);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Main.Headless;
+
+import Hardware.CPU.Intel80386.Codeblock.BlockProfiler;
+import Hardware.CPU.Intel80386.Intel80386;
+import Hardware.Speaker.Speaker;
+import Main.Systems.AT386System;
+import Main.Systems.AT486System;
+import Main.Systems.JPCSystem;
+import Main.Systems.XTSystem;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Properties;
+
+
+
+/**
+ * Runs a system without any user interface. The system is described by a
+ * properties file:
+ * 
+ *   system          = AT 386 System | AT 486 System | XT System
+ *   Category/Label  = option value (spaces in the key have to be escaped)
+ *   keys.<n>        = <delay in ms> <text> (see KeyScript)
+ *   exit.timeout    = seconds after which the system gets stopped
+ *   exit.frames     = number of frames after which the system gets stopped
+ *   exit.afterKeys  = delay in ms after the last key event until the stop
+ *   frames.directory = where sampled frames are written to
+ *   frames.interval = write every n-th frame (0 writes only the last one)
+ *   state.load      = save state that gets loaded once the system is running
+ *   state.save      = file the state is saved to before the system is stopped
+ *   profile.report  = hot-spot report of the executed codeblocks (386/486 only)
+ *   profile.stacks  = the same data as collapsed stacks for flamegraph.pl
+ *   profile.interval = every n-th block execution gets timed (default 64)
+ * 
+ * The exit code is 0 if one of the exit conditions was met and 1 if the
+ * emulation crashed.
+ */
+public final class HeadlessRunner {
+    
+    /* ----------------------------------------------------- *
+     * Some constants                                        *
+     * ----------------------------------------------------- */
+    private static final int POLL_INTERVAL_IN_MS = 10;
+    private static final int PROFILE_REPORT_ENTRIES = 200;
+    
+    /* ----------------------------------------------------- *
+     * The system and its output                             *
+     * ----------------------------------------------------- */
+    private final JPCSystem m_system;
+    private final FrameSampler m_frameSampler;
+    private final KeyScript m_keyScript;
+    private volatile Exception m_exception;
+    
+    /* ----------------------------------------------------- *
+     * Exit conditions                                       *
+     * ----------------------------------------------------- */
+    private final long m_timeout;
+    private final long m_maxFrames;
+    private final long m_afterKeys;
+    
+    /* ----------------------------------------------------- *
+     * Save states                                           *
+     * ----------------------------------------------------- */
+    private final File m_loadState;
+    private final File m_saveState;
+    
+    /* ----------------------------------------------------- *
+     * Profiling                                             *
+     * ----------------------------------------------------- */
+    private final BlockProfiler m_profiler;
+    private final File m_profileReport;
+    private final File m_profileStacks;
+    
+    
+    
+    public HeadlessRunner(Properties props) {
+        
+        String dir = props.getProperty("frames.directory");
+        m_frameSampler = new FrameSampler(dir != null ? new File(dir) : null,
+                                          Integer.parseInt(props.getProperty("frames.interval", "0")));
+        
+        m_system = createSystem(props, m_frameSampler);
+        m_keyScript = new KeyScript(props);
+        
+        m_timeout = Long.parseLong(props.getProperty("exit.timeout", "0")) * 1000l;
+        m_maxFrames = Long.parseLong(props.getProperty("exit.frames", "0"));
+        m_afterKeys = Long.parseLong(props.getProperty("exit.afterKeys", "-1"));
+        
+        String loadState = props.getProperty("state.load");
+        String saveState = props.getProperty("state.save");
+        m_loadState = loadState != null ? new File(loadState) : null;
+        m_saveState = saveState != null ? new File(saveState) : null;
+        
+        String profileReport = props.getProperty("profile.report");
+        String profileStacks = props.getProperty("profile.stacks");
+        m_profileReport = profileReport != null ? new File(profileReport) : null;
+        m_profileStacks = profileStacks != null ? new File(profileStacks) : null;
+        
+        if(m_profileReport != null || m_profileStacks != null) {
+            
+            Intel80386 cpu = m_system.getComponent(Intel80386.class);
+            if(cpu == null)
+                throw new IllegalArgumentException("The profiler needs a system with an 80386 compatible cpu");
+            
+            m_profiler = new BlockProfiler(cpu, Integer.parseInt(props.getProperty("profile.interval", String.valueOf(BlockProfiler.DEFAULT_SAMPLE_INTERVAL))));
+            cpu.setProfiler(m_profiler);
+        }
+        else {
+            
+            m_profiler = null;
+        }
+    }
+    
+    
+    
+    public int run() throws InterruptedException {
+        
+        m_system.run(ex -> m_exception = ex);
+        
+        long startTime = System.currentTimeMillis();
+        long keysFinishedTime = -1l;
+        boolean hasStarted = false;
+        
+        while(true) {
+            
+            Thread.sleep(POLL_INTERVAL_IN_MS);
+            
+            // The system only counts as stopped after it was running once
+            if(!m_system.isStopped()) {
+                
+                if(!hasStarted && m_loadState != null && !processState(m_loadState, false))
+                    break;
+                
+                hasStarted = true;
+            }
+            else if(hasStarted || m_exception != null) {
+                
+                break;
+            }
+            
+            long time = System.currentTimeMillis() - startTime;
+            if(hasStarted)
+                m_keyScript.dispatch(time, m_system.getKeyAdapter());
+            
+            if(m_timeout > 0l && time >= m_timeout)
+                break;
+            if(m_maxFrames > 0l && m_frameSampler.getFrameCount() >= m_maxFrames)
+                break;
+            
+            if(m_afterKeys >= 0l && m_keyScript.isFinished()) {
+                
+                if(keysFinishedTime < 0l)
+                    keysFinishedTime = time;
+                else if(time - keysFinishedTime >= m_afterKeys)
+                    break;
+            }
+        }
+        
+        if(m_saveState != null && !m_system.isStopped())
+            processState(m_saveState, true);
+        
+        m_system.stop();
+        m_frameSampler.saveFrame("final");
+        
+        if(m_profiler != null)
+            writeProfile();
+        
+        if(m_exception != null) {
+            
+            m_exception.printStackTrace(System.err);
+            return 1;
+        }
+        
+        return 0;
+    }
+    
+    
+    
+    /**
+     * Creates the system described by the "system" property and applies the
+     * component options. Nothing of the system gets connected to the host
+     * besides its disk images.
+     */
+    static JPCSystem createSystem(Properties props, FrameSampler frameSampler) {
+        
+        JPCSystem system;
+        
+        String systemName = props.getProperty("system", AT386System.SYSTEM_NAME);
+        switch(systemName) {
+            
+            case XTSystem.SYSTEM_NAME:
+                system = new XTSystem(frameSampler);
+                break;
+            
+            case AT386System.SYSTEM_NAME:
+                system = new AT386System(frameSampler);
+                break;
+            
+            case AT486System.SYSTEM_NAME:
+                system = new AT486System(frameSampler);
+                break;
+            
+            default:
+                throw new IllegalArgumentException(String.format("Unknown system %s", systemName));
+        }
+        
+        // Component options are the only keys that contain a slash
+        HashMap<String, String> config = new HashMap<>();
+        props.stringPropertyNames().forEach(key -> {
+            
+            if(key.contains("/"))
+                config.put(key, props.getProperty(key));
+        });
+        system.setFixedConfiguration(config);
+        
+        // There is no event dispatch thread
+        system.setEventDispatcher(Runnable::run);
+        
+        Speaker speaker = system.getComponent(Speaker.class);
+        if(speaker != null)
+            speaker.setAudioOutputEnabled(false);
+        
+        return system;
+    }
+    
+    private void writeProfile() {
+        
+        try {
+            
+            if(m_profileReport != null)
+                m_profiler.writeReport(m_profileReport, PROFILE_REPORT_ENTRIES);
+            if(m_profileStacks != null)
+                m_profiler.writeCollapsedStacks(m_profileStacks);
+        }
+        catch(IOException ex) {
+            
+            System.err.printf("The profile couldn't be written: %s\n", ex.getMessage());
+        }
+    }
+    
+    private boolean processState(File file, boolean isSave) {
+        
+        try {
+            
+            if(isSave)
+                m_system.saveState(file);
+            else
+                m_system.loadState(file);
+            
+            return true;
+        }
+        catch(IOException | IllegalStateException ex) {
+            
+            m_exception = ex;
+            return false;
+        }
+    }
+    
+    
+    
+    public static void main(String[] args) throws IOException, InterruptedException {
+        
+        System.setProperty("java.awt.headless", "true");
+        
+        if(args.length != 1) {
+            
+            System.err.println("Usage: HeadlessRunner <config file>");
+            System.exit(2);
+        }
+        
+        Properties props = new Properties();
+        try(InputStream in = new FileInputStream(args[0])) {
+            
+            props.load(in);
+        }
+        
+        System.exit(new HeadlessRunner(props).run());
+    }
+}
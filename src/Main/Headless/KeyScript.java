@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Main.Headless;
+
+import Hardware.Keyboard.JPCKeyboardAdapter;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+
+
+/**
+ * Scripted keyboard input for the headless runner. Every script entry has the
+ * form "keys.<n> = <delay in ms> <text>", where the delay is relative to the
+ * end of the previous entry. Text gets typed character by character, special
+ * keys are written as {VK_NAME} without the VK_ prefix (e.g. {ENTER}) and key
+ * combinations as {CONTROL+ALT+DELETE}.
+ */
+public final class KeyScript {
+    
+    /* ----------------------------------------------------- *
+     * Some constants                                        *
+     * ----------------------------------------------------- */
+    private static final int KEY_DELAY_IN_MS = 40;
+    private static final String SHIFTED_SYMBOLS = "!@#$%^&*()_+{}|:\"<>?~";
+    private static final String UNSHIFTED_SYMBOLS = "1234567890-=[]\\;',./`";
+    
+    /* ----------------------------------------------------- *
+     * Key events of the script                              *
+     * ----------------------------------------------------- */
+    private final class KeyStep {
+        
+        final long time;
+        final int vk;
+        final int location;
+        final boolean isPressed;
+        
+        KeyStep(long time, int vk, int location, boolean isPressed) {
+            
+            this.time = time;
+            this.vk = vk;
+            this.location = location;
+            this.isPressed = isPressed;
+        }
+    }
+    private final ArrayList<KeyStep> m_steps;
+    private int m_nextStep;
+    private long m_time;
+    
+    
+    
+    public KeyScript(Properties props) {
+        
+        m_steps = new ArrayList<>();
+        
+        TreeMap<Integer, String> entries = new TreeMap<>();
+        props.stringPropertyNames().forEach(key -> {
+            
+            if(key.startsWith("keys.")) {
+                
+                try {
+                    
+                    entries.put(Integer.parseInt(key.substring(5)), props.getProperty(key));
+                }
+                catch(NumberFormatException ex) {
+                    
+                    throw new IllegalArgumentException(String.format("Invalid key script entry %s", key));
+                }
+            }
+        });
+        
+        for(Map.Entry<Integer, String> entry : entries.entrySet())
+            parseEntry(entry.getKey(), entry.getValue());
+    }
+    
+    
+    
+    // <editor-fold defaultstate="collapsed" desc="Parsing">
+    
+    private void parseEntry(int idx, String entry) {
+        
+        int split = entry.indexOf(' ');
+        try {
+            
+            m_time += Long.parseLong(split < 0 ? entry : entry.substring(0, split));
+        }
+        catch(NumberFormatException ex) {
+            
+            throw new IllegalArgumentException(String.format("The key script entry %d has no valid delay", idx));
+        }
+        if(split < 0)
+            return;
+        
+        String text = entry.substring(split + 1);
+        for(int i = 0; i < text.length(); i++) {
+            
+            char c = text.charAt(i);
+            if(c == '{') {
+                
+                int end = text.indexOf('}', i);
+                if(end < 0)
+                    throw new IllegalArgumentException(String.format("The key script entry %d has an unterminated key name", idx));
+                
+                addCombination(text.substring(i + 1, end).split("\\+"));
+                i = end;
+            }
+            else {
+                
+                addCharacter(c);
+            }
+        }
+    }
+    
+    private void addCombination(String[] names) {
+        
+        int[] vks = new int[names.length];
+        for(int i = 0; i < names.length; i++)
+            vks[i] = getKeyCode(names[i].trim());
+        
+        for(int vk : vks)
+            addKey(vk, true);
+        for(int i = vks.length - 1; i >= 0; i--)
+            addKey(vks[i], false);
+    }
+    
+    private void addCharacter(char c) {
+        
+        boolean isShifted = false;
+        int vk;
+        
+        if(c >= 'a' && c <= 'z') {
+            
+            vk = KeyEvent.VK_A + (c - 'a');
+        }
+        else if(c >= 'A' && c <= 'Z') {
+            
+            vk = KeyEvent.VK_A + (c - 'A');
+            isShifted = true;
+        }
+        else if(SHIFTED_SYMBOLS.indexOf(c) >= 0) {
+            
+            vk = getSymbolKeyCode(UNSHIFTED_SYMBOLS.charAt(SHIFTED_SYMBOLS.indexOf(c)));
+            isShifted = true;
+        }
+        else {
+            
+            vk = getSymbolKeyCode(c);
+        }
+        
+        if(isShifted)
+            addKey(KeyEvent.VK_SHIFT, true);
+        addKey(vk, true);
+        addKey(vk, false);
+        if(isShifted)
+            addKey(KeyEvent.VK_SHIFT, false);
+    }
+    
+    private void addKey(int vk, boolean isPressed) {
+        
+        int location = KeyEvent.KEY_LOCATION_STANDARD;
+        if(vk == KeyEvent.VK_SHIFT || vk == KeyEvent.VK_CONTROL || vk == KeyEvent.VK_ALT)
+            location = KeyEvent.KEY_LOCATION_LEFT;
+        
+        m_steps.add(new KeyStep(m_time, vk, location, isPressed));
+        m_time += KEY_DELAY_IN_MS;
+    }
+    
+    private int getSymbolKeyCode(char c) {
+        
+        if(c >= '0' && c <= '9')
+            return KeyEvent.VK_0 + (c - '0');
+        
+        switch(c) {
+            
+            case ' ': return KeyEvent.VK_SPACE;
+            case '\t': return KeyEvent.VK_TAB;
+            case '-': return KeyEvent.VK_MINUS;
+            case '=': return KeyEvent.VK_EQUALS;
+            case '[': return KeyEvent.VK_OPEN_BRACKET;
+            case ']': return KeyEvent.VK_CLOSE_BRACKET;
+            case '\\': return KeyEvent.VK_BACK_SLASH;
+            case ';': return KeyEvent.VK_SEMICOLON;
+            case '\'': return KeyEvent.VK_QUOTE;
+            case ',': return KeyEvent.VK_COMMA;
+            case '.': return KeyEvent.VK_PERIOD;
+            case '/': return KeyEvent.VK_SLASH;
+            case '`': return KeyEvent.VK_BACK_QUOTE;
+            
+            default:
+                throw new IllegalArgumentException(String.format("The character '%c' can't be typed", c));
+        }
+    }
+    
+    private int getKeyCode(String name) {
+        
+        try {
+            
+            return KeyEvent.class.getField("VK_" + name.toUpperCase()).getInt(null);
+        }
+        catch(NoSuchFieldException | IllegalAccessException ex) {
+            
+            throw new IllegalArgumentException(String.format("Unknown key name %s", name));
+        }
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Playback">
+    
+    /**
+     * Sends all key events that are due at the given time (in milliseconds
+     * since the start of the system).
+     */
+    public void dispatch(long time, JPCKeyboardAdapter adapter) {
+        
+        while(m_nextStep < m_steps.size() && m_steps.get(m_nextStep).time <= time) {
+            
+            KeyStep step = m_steps.get(m_nextStep++);
+            if(!adapter.sendKey(step.vk, step.location, step.isPressed))
+                System.err.printf("The key %s isn't mapped on this system\n", KeyEvent.getKeyText(step.vk));
+        }
+    }
+    
+    public boolean isFinished() {
+        
+        return m_nextStep >= m_steps.size();
+    }
+    
+    public boolean isEmpty() {
+        
+        return m_steps.isEmpty();
+    }
+    
+    // </editor-fold>
+}
@@ -0,0 +1,468 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Main.Headless;
+
+import Hardware.CMOS.CMOS;
+import Hardware.CPU.CPU;
+import Main.Systems.JPCSystem;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * Boots a system without user interface and without wall clock
+ * synchronization and measures how long it takes to reach fixed checkpoints
+ * of emulated time. The key script is played back on the emulated clock and
+ * the rtc starts at a fixed date, so every run executes the same guest code.
+ * Besides the system, component options and keys.<n> of the HeadlessRunner
+ * the following properties are used:
+ * 
+ *   bench.checkpoints = emulated seconds of the checkpoints (e.g. 5, 10, 30)
+ *   bench.runs        = number of runs (default 3)
+ *   bench.timeout     = wall clock seconds after which a run is aborted
+ *   bench.save        = file the results are written to
+ *   bench.baseline    = results of an earlier benchmark to compare against
+ *   bench.tolerance   = allowed slowdown against the baseline in percent
+ * 
+ * The exit code is 0 on success, 1 if a run failed and 3 if a checkpoint was
+ * reached slower than the baseline allows.
+ */
+public final class WorkloadBenchmark {
+    
+    /* ----------------------------------------------------- *
+     * Some constants                                        *
+     * ----------------------------------------------------- */
+    private static final long RTC_TIME = 1483228800000l; // 2017-01-01 00:00:00 UTC
+    private static final int DEFAULT_RUNS = 3;
+    private static final int DEFAULT_TIMEOUT = 600;
+    private static final float DEFAULT_TOLERANCE = 5.0f;
+    private static final int EXIT_REGRESSION = 3;
+    
+    /* ----------------------------------------------------- *
+     * Measurements taken at a checkpoint                    *
+     * ----------------------------------------------------- */
+    private static final class Sample {
+        
+        final double wallTime;
+        final double emulatedTime;
+        final long instructions;
+        final long decodedBlocks;
+        final long executedBlocks;
+        final long frames;
+        
+        Sample(double wallTime, double emulatedTime, long instructions, long decodedBlocks, long executedBlocks, long frames) {
+            
+            this.wallTime = wallTime;
+            this.emulatedTime = emulatedTime;
+            this.instructions = instructions;
+            this.decodedBlocks = decodedBlocks;
+            this.executedBlocks = executedBlocks;
+            this.frames = frames;
+        }
+        
+        double getMIPS() {
+            
+            return instructions / wallTime / 1.0e6;
+        }
+        
+        double getSpeed() {
+            
+            return emulatedTime / wallTime;
+        }
+    }
+    
+    /* ----------------------------------------------------- *
+     * Takes the samples in the emulation thread             *
+     * ----------------------------------------------------- */
+    private final class Measurement implements Runnable {
+        
+        private final JPCSystem m_system;
+        private final CPU m_cpu;
+        private final FrameSampler m_frameSampler;
+        private final KeyScript m_keyScript;
+        private final Sample[] m_samples;
+        private final CountDownLatch m_finished;
+        private long m_startTime;
+        private int m_nextCheckpoint;
+        private volatile Exception m_exception;
+        
+        Measurement(JPCSystem system, FrameSampler frameSampler) {
+            
+            m_system = system;
+            m_cpu = system.getComponent(CPU.class);
+            m_frameSampler = frameSampler;
+            m_keyScript = new KeyScript(m_props);
+            m_samples = new Sample[m_checkpoints.length];
+            m_finished = new CountDownLatch(1);
+        }
+        
+        void start() {
+            
+            m_startTime = System.nanoTime();
+            m_system.run(ex -> {
+                
+                m_exception = ex;
+                m_finished.countDown();
+            });
+        }
+        
+        @Override
+        public void run() {
+            
+            double time = m_system.getEmulatedTime();
+            
+            m_keyScript.dispatch((long)(time * 1000.0), m_system.getKeyAdapter());
+            
+            while(m_nextCheckpoint < m_checkpoints.length && time >= m_checkpoints[m_nextCheckpoint]) {
+                
+                m_samples[m_nextCheckpoint++] = new Sample(
+                
+                    (System.nanoTime() - m_startTime) / 1.0e9,
+                    time,
+                    m_cpu.getRetiredInstructions(),
+                    m_cpu.getDecodedBlocks(),
+                    m_cpu.getExecutedBlocks(),
+                    m_frameSampler.getFrameCount()
+                );
+                
+                if(m_nextCheckpoint == m_checkpoints.length)
+                    m_finished.countDown();
+            }
+        }
+    }
+    
+    /* ----------------------------------------------------- *
+     * Settings                                              *
+     * ----------------------------------------------------- */
+    private final Properties m_props;
+    private final double[] m_checkpoints;
+    private final int m_runs;
+    private final long m_timeout;
+    private final float m_tolerance;
+    private final File m_saveFile;
+    private final Properties m_baseline;
+    
+    /* ----------------------------------------------------- *
+     * Results of all runs                                   *
+     * ----------------------------------------------------- */
+    private final ArrayList<Sample[]> m_results;
+    
+    
+    
+    public WorkloadBenchmark(Properties props) throws IOException {
+        
+        m_props = props;
+        
+        String checkpoints = props.getProperty("bench.checkpoints");
+        if(checkpoints == null)
+            throw new IllegalArgumentException("No checkpoints are defined (bench.checkpoints)");
+        
+        m_checkpoints = Arrays.stream(checkpoints.split(",")).mapToDouble(s -> Double.parseDouble(s.trim())).sorted().toArray();
+        m_runs = Integer.parseInt(props.getProperty("bench.runs", String.valueOf(DEFAULT_RUNS)));
+        m_timeout = Long.parseLong(props.getProperty("bench.timeout", String.valueOf(DEFAULT_TIMEOUT)));
+        m_tolerance = Float.parseFloat(props.getProperty("bench.tolerance", String.valueOf(DEFAULT_TOLERANCE)));
+        
+        String saveFile = props.getProperty("bench.save");
+        m_saveFile = saveFile != null ? new File(saveFile) : null;
+        
+        String baselineFile = props.getProperty("bench.baseline");
+        if(baselineFile != null) {
+            
+            m_baseline = new Properties();
+            try(InputStream in = new FileInputStream(baselineFile)) {
+                
+                m_baseline.load(in);
+            }
+        }
+        else {
+            
+            m_baseline = null;
+        }
+        
+        m_results = new ArrayList<>();
+    }
+    
+    
+    
+    public int run() throws InterruptedException, IOException {
+        
+        for(int i = 1; i <= m_runs; i++) {
+            
+            Sample[] samples = runOnce();
+            if(samples == null)
+                return 1;
+            
+            System.out.printf("Run %d/%d\n", i, m_runs);
+            printSamples(samples);
+            
+            m_results.add(samples);
+        }
+        
+        checkDeterminism();
+        printSummary();
+        
+        if(m_saveFile != null)
+            saveResults();
+        
+        if(m_baseline != null && !compareWithBaseline())
+            return EXIT_REGRESSION;
+        
+        return 0;
+    }
+    
+    private Sample[] runOnce() throws InterruptedException {
+        
+        FrameSampler frameSampler = new FrameSampler(null, 0);
+        JPCSystem system = HeadlessRunner.createSystem(m_props, frameSampler);
+        
+        // Run unthrottled and independent of the host time
+        system.setSynchronizationEnabled(false);
+        system.getKeyAdapter().setTimeSource(() -> (long)(system.getEmulatedTime() * 1000.0));
+        
+        CMOS cmos = system.getComponent(CMOS.class);
+        if(cmos != null)
+            cmos.setCalendarTime(RTC_TIME);
+        
+        Measurement measurement = new Measurement(system, frameSampler);
+        system.setSliceHook(measurement);
+        measurement.start();
+        
+        boolean isFinished = measurement.m_finished.await(m_timeout, TimeUnit.SECONDS);
+        system.stop();
+        
+        if(measurement.m_exception != null) {
+            
+            measurement.m_exception.printStackTrace(System.err);
+            return null;
+        }
+        if(!isFinished) {
+            
+            System.err.printf("The run was aborted after %d seconds at %.2f seconds of emulated time\n", m_timeout, system.getEmulatedTime());
+            return null;
+        }
+        
+        return measurement.m_samples;
+    }
+    
+    
+    
+    // <editor-fold defaultstate="collapsed" desc="Reporting">
+    
+    private void printSamples(Sample[] samples) {
+        
+        System.out.printf("  %-10s %10s %14s %10s %8s %10s %12s %8s\n", "Checkpoint", "Wall [s]", "Instructions", "MIPS", "Speed", "Decoded", "Executed", "Frames");
+        
+        for(int i = 0; i < samples.length; i++) {
+            
+            Sample s = samples[i];
+            System.out.printf("  %-10s %10.3f %14d %10.2f %7.2fx %10d %12d %8d\n",
+            
+                getCheckpointName(i),
+                s.wallTime,
+                s.instructions,
+                s.getMIPS(),
+                s.getSpeed(),
+                s.decodedBlocks,
+                s.executedBlocks,
+                s.frames
+            );
+        }
+    }
+    
+    private void printSummary() {
+        
+        System.out.printf("Summary over %d runs (mean +- standard deviation)\n", m_results.size());
+        System.out.printf("  %-10s %20s %20s %20s\n", "Checkpoint", "Wall [s]", "MIPS", "Speed");
+        
+        for(int i = 0; i < m_checkpoints.length; i++) {
+            
+            System.out.printf("  %-10s %20s %20s %20s\n",
+            
+                getCheckpointName(i),
+                formatStatistic(getWallTimes(i)),
+                formatStatistic(getMIPS(i)),
+                formatStatistic(getSpeeds(i))
+            );
+        }
+    }
+    
+    /**
+     * Identical input has to result in identical guest execution. Otherwise
+     * the numbers of different runs aren't comparable.
+     */
+    private void checkDeterminism() {
+        
+        for(int i = 0; i < m_checkpoints.length; i++) {
+            
+            long instructions = m_results.get(0)[i].instructions;
+            for(Sample[] samples : m_results) {
+                
+                if(samples[i].instructions != instructions) {
+                    
+                    System.out.printf("Warning: The runs retired a different number of instructions until %s\n", getCheckpointName(i));
+                    break;
+                }
+            }
+        }
+    }
+    
+    private String formatStatistic(double[] values) {
+        
+        return String.format("%.3f +- %.3f", getMean(values), getStandardDeviation(values));
+    }
+    
+    private String getCheckpointName(int idx) {
+        
+        return String.format("%.1fs", m_checkpoints[idx]);
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Baseline handling">
+    
+    private void saveResults() throws IOException {
+        
+        Properties results = new Properties();
+        for(int i = 0; i < m_checkpoints.length; i++) {
+            
+            String prefix = String.format("checkpoint.%d.", i);
+            Sample first = m_results.get(0)[i];
+            
+            results.setProperty(prefix + "time", String.valueOf(m_checkpoints[i]));
+            results.setProperty(prefix + "wall", String.valueOf(getMean(getWallTimes(i))));
+            results.setProperty(prefix + "mips", String.valueOf(getMean(getMIPS(i))));
+            results.setProperty(prefix + "speed", String.valueOf(getMean(getSpeeds(i))));
+            results.setProperty(prefix + "instructions", String.valueOf(first.instructions));
+            results.setProperty(prefix + "frames", String.valueOf(first.frames));
+        }
+        
+        try(OutputStream out = new FileOutputStream(m_saveFile)) {
+            
+            results.store(out, "Workload benchmark results");
+        }
+    }
+    
+    /**
+     * Compares the mean speed at every checkpoint with the baseline. Returns
+     * false if one of them is slower than the tolerance allows.
+     */
+    private boolean compareWithBaseline() {
+        
+        boolean isPassing = true;
+        
+        System.out.printf("Comparison with the baseline (tolerance %.1f%%)\n", m_tolerance);
+        System.out.printf("  %-10s %12s %12s %10s\n", "Checkpoint", "Baseline", "Current", "Change");
+        
+        for(int i = 0; i < m_checkpoints.length; i++) {
+            
+            String prefix = String.format("checkpoint.%d.", i);
+            String baseTime = m_baseline.getProperty(prefix + "time");
+            String baseSpeed = m_baseline.getProperty(prefix + "speed");
+            
+            if(baseTime == null || baseSpeed == null || Double.parseDouble(baseTime) != m_checkpoints[i]) {
+                
+                System.out.printf("  %-10s %12s\n", getCheckpointName(i), "missing");
+                continue;
+            }
+            
+            double base = Double.parseDouble(baseSpeed);
+            double current = getMean(getSpeeds(i));
+            double change = (current / base - 1.0) * 100.0;
+            boolean isRegression = change < -m_tolerance;
+            
+            System.out.printf("  %-10s %11.2fx %11.2fx %+9.1f%%%s\n", getCheckpointName(i), base, current, change, isRegression ? "  REGRESSION" : "");
+            
+            String baseInstructions = m_baseline.getProperty(prefix + "instructions");
+            if(baseInstructions != null && Long.parseLong(baseInstructions) != m_results.get(0)[i].instructions)
+                System.out.printf("  Warning: The guest executed a different number of instructions than in the baseline\n");
+            
+            if(isRegression)
+                isPassing = false;
+        }
+        
+        return isPassing;
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Statistics">
+    
+    private double[] getWallTimes(int checkpoint) {
+        
+        return m_results.stream().mapToDouble(s -> s[checkpoint].wallTime).toArray();
+    }
+    
+    private double[] getMIPS(int checkpoint) {
+        
+        return m_results.stream().mapToDouble(s -> s[checkpoint].getMIPS()).toArray();
+    }
+    
+    private double[] getSpeeds(int checkpoint) {
+        
+        return m_results.stream().mapToDouble(s -> s[checkpoint].getSpeed()).toArray();
+    }
+    
+    private static double getMean(double[] values) {
+        
+        return Arrays.stream(values).average().orElse(0.0);
+    }
+    
+    private static double getStandardDeviation(double[] values) {
+        
+        if(values.length < 2)
+            return 0.0;
+        
+        double mean = getMean(values);
+        double sum = Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum();
+        
+        return Math.sqrt(sum / (values.length - 1));
+    }
+    
+    // </editor-fold>
+    
+    
+    
+    public static void main(String[] args) throws IOException, InterruptedException {
+        
+        System.setProperty("java.awt.headless", "true");
+        
+        if(args.length != 1) {
+            
+            System.err.println("Usage: WorkloadBenchmark <config file>");
+            System.exit(2);
+        }
+        
+        Properties props = new Properties();
+        try(InputStream in = new FileInputStream(args[0])) {
+            
+            props.load(in);
+        }
+        
+        System.exit(new WorkloadBenchmark(props).run());
+    }
+}
@@ -94,6 +94,21 @@ public final class ComponentConfig {
         m_value.initValue();
     }
     
+    public void applyValue(String value) {
+        
+        m_value.applyValue(value);
+    }
+    
+    public String getDefaultValue() {
+        
+        return m_value.getDefaultValue();
+    }
+    
+    public void detach() {
+        
+        m_value.detach();
+    }
+    
     public boolean isResettingSystem() {
         
         return m_isResettingSystem;
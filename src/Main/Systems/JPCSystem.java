@@ -30,11 +30,21 @@ import IOMap.IOMap;
 import IOMap.IOMapped;
 import MemoryMap.MemoryMap;
 import MemoryMap.MemoryMapped;
+import SaveState.Snapshot;
+import SaveState.StateReader;
+import SaveState.StateWriter;
 import Scheduler.Schedulable;
 import Scheduler.Scheduler;
 import java.awt.EventQueue;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -50,6 +60,7 @@ public abstract class JPCSystem {
         void onStateChanged();
     }
     private final ArrayList<JPCSystemStateListener> m_listener;
+    private Consumer<Runnable> m_eventDispatcher;
     
     /* ----------------------------------------------------- *
      * System name                                           *
@@ -60,6 +71,7 @@ public abstract class JPCSystem {
      * Configuration of the hardware components              *
      * ----------------------------------------------------- */
     private final TreeMap<String, ArrayList<ComponentConfig>> m_config;
+    private Map<String, String> m_fixedConfig;
     
     /* ----------------------------------------------------- *
      * Hardware components                                   *
@@ -89,6 +101,16 @@ public abstract class JPCSystem {
     private boolean m_flagPause;
     private boolean m_isPaused;
     
+    /* ----------------------------------------------------- *
+     * Pending save state operation (runs in the emulation)  *
+     * ----------------------------------------------------- */
+    private FutureTask<?> m_stateTask;
+    
+    /* ----------------------------------------------------- *
+     * Runs in the emulation after every slice of blocks     *
+     * ----------------------------------------------------- */
+    private Runnable m_sliceHook;
+    
     
     
     public JPCSystem(String systemName,
@@ -98,6 +120,7 @@ public abstract class JPCSystem {
         m_config = new TreeMap<>();
         
         m_listener = new ArrayList<>();
+        m_eventDispatcher = EventQueue::invokeLater;
         
         m_ioMap = new IOMap();
         m_memMap = new MemoryMap(sizeOfAddressbusInBit);
@@ -120,6 +143,9 @@ public abstract class JPCSystem {
             m_components.forEach(cA -> m_components.forEach(cB -> cA.wireWith(cB)));
             m_components.forEach(c -> c.init());
             
+            SystemMetrics metrics = new SystemMetrics(this);
+            metrics.register();
+            
             try {
                 
                 m_flagReset = true;
@@ -150,6 +176,10 @@ public abstract class JPCSystem {
                     
                     // Let the cpu run a few code blocks
                     m_cpu.run(8192);
+                    runPendingStateTask();
+                    
+                    if(m_sliceHook != null)
+                        m_sliceHook.run();
                     
                     // Don't waste cpu while being paused
                     while(m_flagPause) {
@@ -164,6 +194,7 @@ public abstract class JPCSystem {
                         
                         while(m_flagPause && m_isRunning) {
 
+                            runPendingStateTask();
                             Thread.sleep(250);
                         }
                         m_isPaused = false;
@@ -181,11 +212,22 @@ public abstract class JPCSystem {
                 
                 // Report exceptions with an added dump of the cpus state
                 if(exceptionHandler != null)
-                    EventQueue.invokeLater(() -> exceptionHandler.accept(new Exception("\n\n" + m_cpu.toString() + "\n", ex)));
+                    m_eventDispatcher.accept(() -> exceptionHandler.accept(new Exception("\n\n" + m_cpu.toString() + "\n", ex)));
+            }
+            
+            synchronized(this) {
+                
+                if(m_stateTask != null) {
+                    
+                    m_stateTask.cancel(false);
+                    m_stateTask = null;
+                }
             }
             
             notifyListener();
             
+            metrics.unregister();
+            
             m_components.forEach(c -> c.shutdown());
             m_mainThread = null;
         });
@@ -196,11 +238,14 @@ public abstract class JPCSystem {
     public final void reset() {
         
         m_flagReset = true;
+        requestYield();
     }
         
     public final void pause(boolean isPaused) {
         
         m_flagPause = isPaused;
+        if(isPaused)
+            requestYield();
     }
     
     public final void stop() {
@@ -208,6 +253,7 @@ public abstract class JPCSystem {
         if(m_mainThread != null) {
             
             m_isRunning = false;
+            requestYield();
             try {
                 
                 m_mainThread.join();
@@ -218,6 +264,184 @@ public abstract class JPCSystem {
         }
     }
     
+    // <editor-fold defaultstate="collapsed" desc="Save states">
+    
+    /**
+     * Saves the state of all hardware components. The disk images and the
+     * configuration are not part of the state. The call blocks until the
+     * emulation thread has written the state.
+     */
+    public final void saveState(File file) throws IOException {
+        
+        runStateTask(() -> writeState(file, null));
+    }
+    
+    /**
+     * Loads a state that was saved by an identically configured system with
+     * the same disk images mounted.
+     */
+    public final void loadState(File file) throws IOException {
+        
+        runStateTask(() -> readState(file, null));
+    }
+    
+    /**
+     * Creates a snapshot from which other systems can be forked. The ram and
+     * the hard disk contents are kept in memory and shared copy-on-write by
+     * this system and all the systems that load the snapshot. From now on
+     * this system doesn't write to its hard disk images anymore.
+     */
+    public final Snapshot createSnapshot(File stateFile) throws IOException {
+        
+        return runStateTask(() -> {
+            
+            Snapshot snapshot = new Snapshot(stateFile);
+            writeState(stateFile, snapshot);
+            
+            return snapshot;
+        });
+    }
+    
+    /**
+     * Forks this system from the given snapshot. The system has to be
+     * configured identically to the one that created the snapshot.
+     */
+    public final void loadSnapshot(Snapshot snapshot) throws IOException {
+        
+        runStateTask(() -> readState(snapshot.getStateFile(), snapshot));
+    }
+    
+    private <T> T runStateTask(Callable<T> action) throws IOException {
+        
+        FutureTask<T> task = new FutureTask<>(action);
+        
+        if(Thread.currentThread() == m_mainThread) {
+            
+            task.run();
+        }
+        else {
+            
+            synchronized(this) {
+                
+                if(!m_isRunning)
+                    throw new IllegalStateException("The system is not running");
+                if(m_stateTask != null)
+                    throw new IllegalStateException("Another save state operation is in progress");
+                
+                m_stateTask = task;
+            }
+            requestYield();
+        }
+        
+        try {
+            
+            return task.get();
+        }
+        catch(CancellationException ex) {
+            
+            throw new IOException("The system was stopped before the state could be processed", ex);
+        }
+        catch(InterruptedException ex) {
+            
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the state to be processed", ex);
+        }
+        catch(ExecutionException ex) {
+            
+            Throwable cause = ex.getCause();
+            if(cause instanceof IOException)
+                throw (IOException)cause;
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            
+            throw new IOException(cause);
+        }
+    }
+    
+    private void requestYield() {
+        
+        // Let the emulation thread notice the request without finishing
+        // the current slice first
+        if(m_cpu != null)
+            m_cpu.requestYield();
+    }
+    
+    private void runPendingStateTask() {
+        
+        FutureTask<?> task;
+        synchronized(this) {
+            
+            task = m_stateTask;
+            m_stateTask = null;
+        }
+        
+        if(task != null)
+            task.run();
+    }
+    
+    private Void writeState(File file, Snapshot snapshot) throws IOException {
+        
+        try(StateWriter writer = new StateWriter(file, m_systemName, snapshot)) {
+            
+            for(int i = 0; i < m_components.size(); i++) {
+                
+                HardwareComponent component = m_components.get(i);
+                
+                writer.beginSection(getSectionName(i));
+                component.saveState(writer);
+                writer.endSection();
+            }
+        }
+        
+        return null;
+    }
+    
+    private Void readState(File file, Snapshot snapshot) throws IOException {
+        
+        try(StateReader reader = new StateReader(file, snapshot)) {
+            
+            if(!reader.getSystemName().equals(m_systemName))
+                throw new IOException(String.format("The save state belongs to the system '%s'", reader.getSystemName()));
+            
+            // The scheduler resets the timings of all devices, so it has to
+            // happen before the components restore their remaining cycles
+            m_scheduler.reset();
+            
+            try {
+                
+                for(int i = 0; i < m_components.size(); i++) {
+                    
+                    HardwareComponent component = m_components.get(i);
+                    
+                    reader.beginSection(getSectionName(i));
+                    component.loadState(reader);
+                    reader.endSection();
+                }
+            }
+            catch(IOException | RuntimeException ex) {
+                
+                // Don't continue with a partially loaded machine
+                m_flagReset = true;
+                throw ex;
+            }
+            
+            // Rebuild the i/o and memory mappings from the loaded state
+            m_ioMap.reset();
+            m_memMap.reset();
+        }
+        
+        return null;
+    }
+    
+    private String getSectionName(int componentIdx) {
+        
+        return String.format("%d:%s", componentIdx, m_components.get(componentIdx).getClass().getSimpleName());
+    }
+    
+    // </editor-fold>
+    
+    
+    
     public final boolean isPaused() {
         
         return m_isPaused;
@@ -240,7 +464,38 @@ public abstract class JPCSystem {
     
     private void notifyListener() {
         
-        EventQueue.invokeLater(() -> m_listener.forEach(l -> l.onStateChanged()));
+        m_eventDispatcher.accept(() -> m_listener.forEach(l -> l.onStateChanged()));
+    }
+    
+    /**
+     * Sets where listener and exception notifications get executed, which is
+     * the AWT event dispatch thread by default.
+     */
+    public final void setEventDispatcher(Consumer<Runnable> dispatcher) {
+        
+        m_eventDispatcher = dispatcher;
+    }
+    
+    
+    
+    /**
+     * Sets a hook that runs in the emulation thread after every slice of
+     * executed code blocks. As the slices only depend on the emulated
+     * machine, this allows input and measurements at reproducible points.
+     */
+    public final void setSliceHook(Runnable hook) {
+        
+        m_sliceHook = hook;
+    }
+    
+    public final void setSynchronizationEnabled(boolean isEnabled) {
+        
+        m_scheduler.setSynchronizationEnabled(isEnabled);
+    }
+    
+    public final double getEmulatedTime() {
+        
+        return m_scheduler.getEmulatedTime();
     }
     
     
@@ -272,6 +527,29 @@ public abstract class JPCSystem {
         );
     }
     
+    public final <T extends HardwareComponent> T getComponent(Class<T> type) {
+        
+        for(HardwareComponent component : m_components) {
+            
+            if(type.isInstance(component))
+                return type.cast(component);
+        }
+        
+        return null;
+    }
+    
+    public final <T extends HardwareComponent> ArrayList<T> getComponents(Class<T> type) {
+        
+        ArrayList<T> res = new ArrayList<>();
+        for(HardwareComponent component : m_components) {
+            
+            if(type.isInstance(component))
+                res.add(type.cast(component));
+        }
+        
+        return res;
+    }
+    
     public final boolean isDriveIndicatorLit() {
         
         boolean result = false;
@@ -378,6 +656,18 @@ public abstract class JPCSystem {
     
     public final void configure() {
         
+        // A fixed configuration doesn't touch the preferences at all
+        if(m_fixedConfig != null) {
+            
+            m_config.values().forEach(configList -> configList.forEach(config -> {
+                
+                String key = config.getCategory() + "/" + config.getLabel();
+                config.applyValue(m_fixedConfig.getOrDefault(key, config.getDefaultValue()));
+            }));
+            
+            return;
+        }
+        
         m_config.values()
                 .forEach(configList -> {
                     
@@ -385,6 +675,18 @@ public abstract class JPCSystem {
         });
     }
     
+    /**
+     * Uses the given values (keyed by "category/label") instead of the user
+     * preferences. Values that are missing are set to their default. The
+     * system is detached from the preferences, so other systems of the same
+     * type can't change its configuration.
+     */
+    public final void setFixedConfiguration(Map<String, String> values) {
+        
+        m_fixedConfig = values;
+        m_config.values().forEach(configList -> configList.forEach(config -> config.detach()));
+    }
+    
     public final void forEachConfiguration(BiConsumer<String, ArrayList<ComponentConfig>> consumer) {
         
         m_config.forEach((category, componentList) -> {
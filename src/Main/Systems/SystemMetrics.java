@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Main.Systems;
+
+import Hardware.CPU.CPU;
+import Hardware.CPU.Intel80386.Intel80386;
+import Hardware.CPU.Intel80386.MMU.MMU;
+import Hardware.IDE.IDE;
+import Hardware.Video.GraphicsCard;
+import Hardware.Video.VGA.VGAAdapter;
+import IOMap.IOMap;
+import Scheduler.Scheduler;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+
+
+/**
+ * Publishes the counters of a system as MXBeans on the platform mbean server,
+ * so that they can be watched with jconsole or any other JMX client. Every
+ * system instance gets its own set of beans under "jPC:system=...,id=...".
+ * The counters are written by the emulation thread without synchronization,
+ * so a read might be slightly outdated.
+ */
+public final class SystemMetrics {
+    
+    /* ----------------------------------------------------- *
+     * The exposed interfaces                                *
+     * ----------------------------------------------------- */
+    public interface CPUMetricsMXBean {
+        
+        long getRetiredInstructions();
+        long getExecutedBlocks();
+        long getDecodedBlocks();
+        long getCacheInvalidations();
+        long getPredecodedBlocks();
+        long getDescriptorCacheHits();
+        long getDescriptorCacheMisses();
+        long getIOPermissionCacheHits();
+        long getIOPermissionCacheMisses();
+        long getFastInterrupts();
+        long getDeliveredInterrupts();
+        Map<String, Long> getExceptionsByVector();
+    }
+    
+    public interface MMUMetricsMXBean {
+        
+        long getTLBHits();
+        long getTLBMisses();
+        long getTLBFlushes();
+    }
+    
+    public interface IOMetricsMXBean {
+        
+        Map<String, Long> getPortAccessesPerDevice();
+        Map<String, Long> getHottestPorts();
+    }
+    
+    public interface DiskMetricsMXBean {
+        
+        long getBytesRead();
+        long getBytesWritten();
+    }
+    
+    public interface VideoMetricsMXBean {
+        
+        long getRenderedFrames();
+        long getRenderedLines();
+    }
+    
+    public interface SchedulerMetricsMXBean {
+        
+        double getEmulatedTime();
+        double getSkippedIdleTime();
+        float getEffectiveMhz();
+        long getSyncPoints();
+        long getLateSyncPoints();
+        long getSyncOvershootMicros();
+        long getMaxSyncOvershootMicros();
+    }
+    
+    /* ----------------------------------------------------- *
+     * Unique id of every system instance                    *
+     * ----------------------------------------------------- */
+    private static final AtomicInteger INSTANCE_ID = new AtomicInteger();
+    
+    /* ----------------------------------------------------- *
+     * Number of ports in the i/o histogram                  *
+     * ----------------------------------------------------- */
+    private static final int HOTTEST_PORTS = 16;
+    
+    /* ----------------------------------------------------- *
+     * Registered beans                                      *
+     * ----------------------------------------------------- */
+    private final JPCSystem m_system;
+    private final String m_domain;
+    private final ArrayList<ObjectName> m_names;
+    
+    
+    
+    public SystemMetrics(JPCSystem system) {
+        
+        m_system = system;
+        m_domain = String.format("jPC:system=%s,id=%d", ObjectName.quote(system.getSystemName()), INSTANCE_ID.incrementAndGet());
+        m_names = new ArrayList<>();
+    }
+    
+    
+    
+    // <editor-fold defaultstate="collapsed" desc="Registration">
+    
+    public void register() {
+        
+        CPU cpu = m_system.getComponent(CPU.class);
+        if(cpu != null)
+            register("CPU", CPUMetricsMXBean.class, createCPUMetrics(cpu));
+        
+        if(cpu instanceof Intel80386)
+            register("MMU", MMUMetricsMXBean.class, createMMUMetrics(((Intel80386)cpu).getMMU()));
+        
+        register("IO", IOMetricsMXBean.class, createIOMetrics(m_system.getIOMap()));
+        
+        ArrayList<IDE> ides = m_system.getComponents(IDE.class);
+        if(!ides.isEmpty())
+            register("Disk", DiskMetricsMXBean.class, createDiskMetrics(ides));
+        
+        GraphicsCard card = m_system.getComponent(GraphicsCard.class);
+        if(card != null)
+            register("Video", VideoMetricsMXBean.class, createVideoMetrics(card));
+        
+        register("Scheduler", SchedulerMetricsMXBean.class, createSchedulerMetrics(m_system.getScheduler()));
+    }
+    
+    public void unregister() {
+        
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for(ObjectName name : m_names) {
+            
+            try {
+                
+                server.unregisterMBean(name);
+            }
+            catch(JMException ex) {
+            }
+        }
+        m_names.clear();
+    }
+    
+    private <T> void register(String type, Class<T> mxbeanInterface, T implementation) {
+        
+        try {
+            
+            ObjectName name = new ObjectName(String.format("%s,type=%s", m_domain, type));
+            
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(implementation, mxbeanInterface, true), name);
+            m_names.add(name);
+        }
+        catch(JMException ex) {
+            
+            System.err.printf("The %s metrics couldn't be registered: %s\n", type, ex.getMessage());
+        }
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Implementations of the beans">
+    
+    private CPUMetricsMXBean createCPUMetrics(CPU cpu) {
+        
+        return new CPUMetricsMXBean() {
+            
+            @Override public long getRetiredInstructions() { return cpu.getRetiredInstructions(); }
+            @Override public long getExecutedBlocks() { return cpu.getExecutedBlocks(); }
+            @Override public long getDecodedBlocks() { return cpu.getDecodedBlocks(); }
+            @Override public long getCacheInvalidations() { return cpu.getCacheInvalidations(); }
+            @Override public long getPredecodedBlocks() { return cpu instanceof Intel80386 ? ((Intel80386)cpu).getPredecodedBlocks() : 0l; }
+            @Override public long getDescriptorCacheHits() { return cpu instanceof Intel80386 ? ((Intel80386)cpu).getDescriptorCacheHits() : 0l; }
+            @Override public long getDescriptorCacheMisses() { return cpu instanceof Intel80386 ? ((Intel80386)cpu).getDescriptorCacheMisses() : 0l; }
+            @Override public long getIOPermissionCacheHits() { return cpu instanceof Intel80386 ? ((Intel80386)cpu).TR.getIOPermissionCacheHits() : 0l; }
+            @Override public long getIOPermissionCacheMisses() { return cpu instanceof Intel80386 ? ((Intel80386)cpu).TR.getIOPermissionCacheMisses() : 0l; }
+            @Override public long getFastInterrupts() { return cpu instanceof Intel80386 ? ((Intel80386)cpu).getFastInterrupts() : 0l; }
+            @Override public long getDeliveredInterrupts() { return cpu.getDeliveredInterrupts(); }
+            
+            @Override
+            public Map<String, Long> getExceptionsByVector() {
+                
+                TreeMap<String, Long> res = new TreeMap<>();
+                if(cpu instanceof Intel80386) {
+                    
+                    for(int vector = 0; vector < 32; vector++) {
+                        
+                        long count = ((Intel80386)cpu).getExceptionCount(vector);
+                        if(count > 0l)
+                            res.put(String.format("%02xh", vector), count);
+                    }
+                }
+                
+                return res;
+            }
+        };
+    }
+    
+    private MMUMetricsMXBean createMMUMetrics(MMU mmu) {
+        
+        return new MMUMetricsMXBean() {
+            
+            @Override public long getTLBHits() { return mmu.getTLBHits(); }
+            @Override public long getTLBMisses() { return mmu.getTLBMisses(); }
+            @Override public long getTLBFlushes() { return mmu.getTLBFlushes(); }
+        };
+    }
+    
+    private IOMetricsMXBean createIOMetrics(IOMap ioMap) {
+        
+        return new IOMetricsMXBean() {
+            
+            @Override
+            public Map<String, Long> getPortAccessesPerDevice() {
+                
+                return ioMap.getAccessesPerDevice();
+            }
+            
+            @Override
+            public Map<String, Long> getHottestPorts() {
+                
+                TreeMap<String, Long> res = new TreeMap<>();
+                for(int port : ioMap.getHottestPorts(HOTTEST_PORTS))
+                    res.put(String.format("%04xh", port), ioMap.getReads(port) + ioMap.getWrites(port));
+                
+                return res;
+            }
+        };
+    }
+    
+    private DiskMetricsMXBean createDiskMetrics(ArrayList<IDE> ides) {
+        
+        return new DiskMetricsMXBean() {
+            
+            @Override
+            public long getBytesRead() {
+                
+                return ides.stream().mapToLong(ide -> ide.getDrive(0).getBytesRead() + ide.getDrive(1).getBytesRead()).sum();
+            }
+            
+            @Override
+            public long getBytesWritten() {
+                
+                return ides.stream().mapToLong(ide -> ide.getDrive(0).getBytesWritten() + ide.getDrive(1).getBytesWritten()).sum();
+            }
+        };
+    }
+    
+    private VideoMetricsMXBean createVideoMetrics(GraphicsCard card) {
+        
+        return new VideoMetricsMXBean() {
+            
+            @Override
+            public long getRenderedFrames() {
+                
+                return card.getRenderedFrames();
+            }
+            
+            @Override
+            public long getRenderedLines() {
+                
+                return card instanceof VGAAdapter ? ((VGAAdapter)card).getRenderedLines() : 0l;
+            }
+        };
+    }
+    
+    private SchedulerMetricsMXBean createSchedulerMetrics(Scheduler scheduler) {
+        
+        return new SchedulerMetricsMXBean() {
+            
+            @Override public double getEmulatedTime() { return scheduler.getEmulatedTime(); }
+            @Override public double getSkippedIdleTime() { return scheduler.getSkippedTime(); }
+            @Override public float getEffectiveMhz() { return scheduler.getEffectiveMhz(); }
+            @Override public long getSyncPoints() { return scheduler.getSyncPoints(); }
+            @Override public long getLateSyncPoints() { return scheduler.getLateSyncPoints(); }
+            @Override public long getSyncOvershootMicros() { return scheduler.getSyncOvershoot() / 1000l; }
+            @Override public long getMaxSyncOvershootMicros() { return scheduler.getMaxSyncOvershoot() / 1000l; }
+        };
+    }
+    
+    // </editor-fold>
+}
@@ -295,5 +295,41 @@ public final class MemoryMap {
         w.mem.writeMEM32(w.offset + (address & MAP_PAGE_MASK), data);
     }
     
+    
+    
+    public void readMEMBlock(int address, byte[] dst, int offset, int length) {
+        
+        while(length > 0) {
+            
+            address &= MAP_ADDR_MASK;
+            
+            ReadMapping r = m_read[address >>> MAP_PAGE_BITS];
+            int size = Math.min(length, MAP_PAGE_SIZE - (address & MAP_PAGE_MASK));
+            
+            r.mem.readMEMBlock(r.offset + (address & MAP_PAGE_MASK), dst, offset, size);
+            
+            address += size;
+            offset += size;
+            length -= size;
+        }
+    }
+    
+    public void writeMEMBlock(int address, byte[] src, int offset, int length) {
+        
+        while(length > 0) {
+            
+            address &= MAP_ADDR_MASK;
+            
+            WriteMapping w = m_write[address >>> MAP_PAGE_BITS];
+            int size = Math.min(length, MAP_PAGE_SIZE - (address & MAP_PAGE_MASK));
+            
+            w.mem.writeMEMBlock(w.offset + (address & MAP_PAGE_MASK), src, offset, size);
+            
+            address += size;
+            offset += size;
+            length -= size;
+        }
+    }
+    
     // </editor-fold>
 }
@@ -26,4 +26,11 @@ public interface MemoryReadable extends MemoryMapped {
     int readMEM8(int address);
     int readMEM16(int address);
     int readMEM32(int address);
+    
+    // Block transfer of bytes, it never crosses the page the address is in
+    default void readMEMBlock(int address, byte[] dst, int offset, int length) {
+        
+        while(length-- > 0)
+            dst[offset++] = (byte)readMEM8(address++);
+    }
 }
@@ -26,4 +26,11 @@ public interface MemoryWritable extends MemoryMapped {
     void writeMEM8(int address, int data);
     void writeMEM16(int address, int data);
     void writeMEM32(int address, int data);
+    
+    // Block transfer of bytes, it never crosses the page the address is in
+    default void writeMEMBlock(int address, byte[] src, int offset, int length) {
+        
+        while(length-- > 0)
+            writeMEM8(address++, src[offset++] & 0xff);
+    }
 }
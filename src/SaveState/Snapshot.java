@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package SaveState;
+
+import java.io.File;
+import java.util.ArrayList;
+
+
+
+/**
+ * A save state that keeps large memory areas (RAM pages and disk overlays) in
+ * memory instead of the state file. Every system that loads the snapshot
+ * references this data read-only and only allocates private copies of the
+ * pages it writes to, so many guests can be forked from one booted system.
+ * The system that created the snapshot shares its pages in the same way.
+ */
+public final class Snapshot {
+    
+    /* ----------------------------------------------------- *
+     * State file and the shared data it refers to           *
+     * ----------------------------------------------------- */
+    private final File m_stateFile;
+    private final ArrayList<Object> m_sharedData;
+    
+    
+    
+    public Snapshot(File stateFile) {
+        
+        m_stateFile = stateFile;
+        m_sharedData = new ArrayList<>();
+    }
+    
+    
+    
+    public File getStateFile() {
+        
+        return m_stateFile;
+    }
+    
+    /**
+     * Adds data that must not be modified anymore and returns the index under
+     * which the state refers to it.
+     */
+    public int share(Object data) {
+        
+        m_sharedData.add(data);
+        
+        return m_sharedData.size() - 1;
+    }
+    
+    public <T> T getShared(int index, Class<T> type) {
+        
+        if(index < 0 || index >= m_sharedData.size() || !type.isInstance(m_sharedData.get(index)))
+            throw new IllegalArgumentException(String.format("The snapshot doesn't contain shared data of type %s at index %d", type.getSimpleName(), index));
+        
+        return type.cast(m_sharedData.get(index));
+    }
+}
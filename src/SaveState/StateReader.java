@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package SaveState;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+
+
+/**
+ * Reads a save state file that was written by the StateWriter. The file gets
+ * mapped into memory and bulk data is decompressed in parallel.
+ */
+public final class StateReader implements Closeable {
+    
+    /* ----------------------------------------------------- *
+     * Input                                                 *
+     * ----------------------------------------------------- */
+    private final FileChannel m_channel;
+    private final ByteBuffer m_buffer;
+    private final String m_systemName;
+    private String m_sectionName;
+    private long m_sectionEnd;
+    
+    /* ----------------------------------------------------- *
+     * Snapshot that provides the shared data (optional)     *
+     * ----------------------------------------------------- */
+    private final Snapshot m_snapshot;
+    
+    
+    
+    public StateReader(File file) throws IOException {
+        
+        this(file, null);
+    }
+    
+    public StateReader(File file, Snapshot snapshot) throws IOException {
+        
+        m_snapshot = snapshot;
+        
+        m_channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            
+            m_buffer = m_channel.map(FileChannel.MapMode.READ_ONLY, 0l, m_channel.size());
+            
+            if(m_buffer.remaining() < 8 || m_buffer.getInt() != StateWriter.MAGIC)
+                throw new IOException(String.format("The file %s isn't a save state", file.getName()));
+            
+            int version = m_buffer.getInt();
+            if(version != StateWriter.FORMAT_VERSION)
+                throw new IOException(String.format("The save state version %d isn't supported", version));
+            
+            m_systemName = readString();
+            m_sectionEnd = -1l;
+        }
+        catch(IOException | RuntimeException ex) {
+            
+            m_channel.close();
+            throw ex;
+        }
+    }
+    
+    
+    
+    public String getSystemName() {
+        
+        return m_systemName;
+    }
+    
+    /**
+     * Returns the snapshot that provides the shared data of this state.
+     */
+    public Snapshot getSnapshot() throws IOException {
+        
+        if(m_snapshot == null)
+            throw new IOException(String.format("The state of %s refers to the shared data of a snapshot", m_sectionName));
+        
+        return m_snapshot;
+    }
+    
+    
+    
+    // <editor-fold defaultstate="collapsed" desc="Sections">
+    
+    public void beginSection(String name) throws IOException {
+        
+        if(m_sectionEnd >= 0l)
+            throw new IllegalStateException("The previous section wasn't finished");
+        
+        m_sectionName = readString();
+        if(!m_sectionName.equals(name))
+            throw new IOException(String.format("Expected the state of %s, but found %s", name, m_sectionName));
+        
+        long length = readLong();
+        m_sectionEnd = m_buffer.position() + length;
+        
+        if(m_sectionEnd > m_buffer.limit())
+            throw new IOException(String.format("The state of %s is truncated", name));
+    }
+    
+    public void endSection() throws IOException {
+        
+        if(m_buffer.position() != m_sectionEnd)
+            throw new IOException(String.format("The state of %s has an unexpected size", m_sectionName));
+        
+        m_sectionEnd = -1l;
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Values">
+    
+    public int readInt() throws IOException {
+        
+        try {
+            
+            return m_buffer.getInt();
+        }
+        catch(BufferUnderflowException ex) {
+            
+            throw new IOException("Unexpected end of the save state", ex);
+        }
+    }
+    
+    public long readLong() throws IOException {
+        
+        try {
+            
+            return m_buffer.getLong();
+        }
+        catch(BufferUnderflowException ex) {
+            
+            throw new IOException("Unexpected end of the save state", ex);
+        }
+    }
+    
+    public boolean readBoolean() throws IOException {
+        
+        try {
+            
+            return m_buffer.get() != 0;
+        }
+        catch(BufferUnderflowException ex) {
+            
+            throw new IOException("Unexpected end of the save state", ex);
+        }
+    }
+    
+    public float readFloat() throws IOException {
+        
+        return Float.intBitsToFloat(readInt());
+    }
+    
+    public double readDouble() throws IOException {
+        
+        return Double.longBitsToDouble(readLong());
+    }
+    
+    public String readString() throws IOException {
+        
+        byte[] data = new byte[readInt()];
+        readBytes(data);
+        
+        return new String(data, StandardCharsets.UTF_8);
+    }
+    
+    public void readBytes(byte[] dst) throws IOException {
+        
+        try {
+            
+            m_buffer.get(dst);
+        }
+        catch(BufferUnderflowException ex) {
+            
+            throw new IOException("Unexpected end of the save state", ex);
+        }
+    }
+    
+    public void readInts(int[] dst) throws IOException {
+        
+        checkLength(dst.length);
+        for(int i = 0; i < dst.length; i++)
+            dst[i] = readInt();
+    }
+    
+    public void readBooleans(boolean[] dst) throws IOException {
+        
+        checkLength(dst.length);
+        for(int i = 0; i < dst.length; i++)
+            dst[i] = readBoolean();
+    }
+    
+    public void readDoubles(double[] dst) throws IOException {
+        
+        checkLength(dst.length);
+        for(int i = 0; i < dst.length; i++)
+            dst[i] = readDouble();
+    }
+    
+    /**
+     * Replaces the content of the given queue with the stored elements.
+     */
+    public void readQueue(Collection<Integer> dst) throws IOException {
+        
+        int length = readInt();
+        if(length < 0)
+            throw new IOException(String.format("The state of %s contains a queue of size %d", m_sectionName, length));
+        
+        dst.clear();
+        for(int i = 0; i < length; i++)
+            dst.add(readInt());
+    }
+    
+    private void checkLength(int expectedLength) throws IOException {
+        
+        int length = readInt();
+        if(length != expectedLength)
+            throw new IOException(String.format("The state of %s contains an array of size %d instead of %d", m_sectionName, length, expectedLength));
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Bulk data">
+    
+    public void readBulkBytes(int[] dst) throws IOException {
+        
+        readBulk(dst.length, (offset, src, length) -> {
+            
+            for(int i = 0; i < length; i++)
+                dst[offset + i] = src[i] & 0xff;
+        });
+    }
+    
+    public void readBulkInts(int[] dst) throws IOException {
+        
+        readBulk(dst.length * 4, (offset, src, length) -> {
+            
+            ByteBuffer.wrap(src, 0, length).asIntBuffer().get(dst, offset >>> 2, length >>> 2);
+        });
+    }
+    
+    /**
+     * Reads equally sized pages where every element only holds a byte. Pages
+     * that only contain zeros aren't allocated but refer to the given page.
+     */
+    public void readBulkPages(int[][] pages, int pageSize, int[] zeroPage) throws IOException {
+        
+        if(StateWriter.CHUNK_SIZE % pageSize != 0)
+            throw new IllegalArgumentException("The chunk size has to be a multiple of the page size");
+        
+        readBulk(pages.length * pageSize, (offset, src, length) -> {
+            
+            for(int pos = 0; pos < length; pos += pageSize) {
+                
+                int[] page = null;
+                for(int i = 0; i < pageSize; i++) {
+                    
+                    if(src[pos + i] != 0 && page == null)
+                        page = new int[pageSize];
+                    if(page != null)
+                        page[i] = src[pos + i] & 0xff;
+                }
+                
+                pages[(offset + pos) / pageSize] = page != null ? page : zeroPage;
+            }
+        });
+    }
+    
+    public void readBulk(byte[] dst) throws IOException {
+        
+        readBulk(dst.length, (offset, src, length) -> System.arraycopy(src, 0, dst, offset, length));
+    }
+    
+    private interface ChunkDestination {
+        
+        void store(int offset, byte[] src, int length);
+    }
+    
+    private void readBulk(int length, ChunkDestination destination) throws IOException {
+        
+        int storedLength = readInt();
+        if(storedLength != length)
+            throw new IOException(String.format("The state of %s contains %d bytes of bulk data instead of %d", m_sectionName, storedLength, length));
+        
+        // Locate all chunks first, so they can be decompressed in parallel
+        int numChunks = (length + StateWriter.CHUNK_SIZE - 1) / StateWriter.CHUNK_SIZE;
+        int[] chunkOffset = new int[numChunks];
+        int[] chunkLength = new int[numChunks];
+        for(int i = 0; i < numChunks; i++) {
+            
+            chunkLength[i] = readInt();
+            chunkOffset[i] = m_buffer.position();
+            
+            if(chunkLength[i] < 0 || chunkLength[i] > m_buffer.remaining())
+                throw new IOException(String.format("The state of %s is truncated", m_sectionName));
+            
+            m_buffer.position(chunkOffset[i] + chunkLength[i]);
+        }
+        
+        boolean[] isCorrupt = new boolean[1];
+        IntStream.range(0, numChunks).parallel().forEach(i -> {
+            
+            byte[] raw = new byte[Math.min(StateWriter.CHUNK_SIZE, length - i * StateWriter.CHUNK_SIZE)];
+            if(chunkLength[i] > 0) {
+                
+                ByteBuffer src = m_buffer.duplicate();
+                src.position(chunkOffset[i]);
+                
+                byte[] compressed = new byte[chunkLength[i]];
+                src.get(compressed);
+                
+                if(!decompress(compressed, raw))
+                    isCorrupt[0] = true;
+            }
+            
+            destination.store(i * StateWriter.CHUNK_SIZE, raw, raw.length);
+        });
+        
+        if(isCorrupt[0])
+            throw new IOException(String.format("The state of %s contains corrupt data", m_sectionName));
+    }
+    
+    private static boolean decompress(byte[] src, byte[] dst) {
+        
+        Inflater inflater = new Inflater();
+        try {
+            
+            inflater.setInput(src);
+            
+            int length = 0;
+            while(length < dst.length && !inflater.finished()) {
+                
+                int n = inflater.inflate(dst, length, dst.length - length);
+                if(n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    return false;
+                
+                length += n;
+            }
+            
+            return length == dst.length;
+        }
+        catch(DataFormatException ex) {
+            
+            return false;
+        }
+        finally {
+            
+            inflater.end();
+        }
+    }
+    
+    // </editor-fold>
+    
+    @Override
+    public void close() throws IOException {
+        
+        m_channel.close();
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2017 h0MER247
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package SaveState;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+
+
+
+/**
+ * Writes the state of a system into a save state file. The file consists of
+ * a header followed by one section per hardware component. Small values are
+ * written as they are, whereas large memory areas (RAM, VRAM) are split into
+ * chunks which get compressed in parallel and written in bulk.
+ */
+public final class StateWriter implements Closeable {
+    
+    /* ----------------------------------------------------- *
+     * File format                                           *
+     * ----------------------------------------------------- */
+    public static final int MAGIC = 0x6a504353; // "jPCS"
+    public static final int FORMAT_VERSION = 1;
+    public static final int CHUNK_SIZE = 256 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    /* ----------------------------------------------------- *
+     * Output                                                *
+     * ----------------------------------------------------- */
+    private final FileChannel m_channel;
+    private final ByteBuffer m_buffer;
+    private long m_sectionStart;
+    
+    /* ----------------------------------------------------- *
+     * Snapshot that receives the shared data (optional)     *
+     * ----------------------------------------------------- */
+    private final Snapshot m_snapshot;
+    
+    
+    
+    public StateWriter(File file, String systemName) throws IOException {
+        
+        this(file, systemName, null);
+    }
+    
+    public StateWriter(File file, String systemName, Snapshot snapshot) throws IOException {
+        
+        m_snapshot = snapshot;
+        
+        m_channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.WRITE);
+        
+        m_buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        m_sectionStart = -1l;
+        
+        writeInt(MAGIC);
+        writeInt(FORMAT_VERSION);
+        writeString(systemName);
+    }
+    
+    
+    
+    /**
+     * Returns the snapshot that is being created or null, if this is a plain
+     * save state.
+     */
+    public Snapshot getSnapshot() {
+        
+        return m_snapshot;
+    }
+    
+    
+    
+    // <editor-fold defaultstate="collapsed" desc="Sections">
+    
+    public void beginSection(String name) throws IOException {
+        
+        if(m_sectionStart >= 0l)
+            throw new IllegalStateException("The previous section wasn't finished");
+        
+        writeString(name);
+        flushBuffer();
+        
+        // The length of the section gets patched in as soon as it's finished
+        m_sectionStart = m_channel.position();
+        writeLong(0l);
+    }
+    
+    public void endSection() throws IOException {
+        
+        flushBuffer();
+        
+        long length = m_channel.position() - m_sectionStart - 8l;
+        
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putLong(length).flip();
+        while(buf.hasRemaining())
+            m_channel.write(buf, m_sectionStart + buf.position());
+        
+        m_sectionStart = -1l;
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Values">
+    
+    public void writeInt(int value) throws IOException {
+        
+        ensureCapacity(4);
+        m_buffer.putInt(value);
+    }
+    
+    public void writeLong(long value) throws IOException {
+        
+        ensureCapacity(8);
+        m_buffer.putLong(value);
+    }
+    
+    public void writeBoolean(boolean value) throws IOException {
+        
+        ensureCapacity(1);
+        m_buffer.put(value ? (byte)1 : (byte)0);
+    }
+    
+    public void writeFloat(float value) throws IOException {
+        
+        ensureCapacity(4);
+        m_buffer.putFloat(value);
+    }
+    
+    public void writeDouble(double value) throws IOException {
+        
+        ensureCapacity(8);
+        m_buffer.putDouble(value);
+    }
+    
+    public void writeString(String value) throws IOException {
+        
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        
+        writeInt(data.length);
+        writeBytes(data);
+    }
+    
+    public void writeBytes(byte[] data) throws IOException {
+        
+        for(int i = 0; i < data.length; ) {
+            
+            ensureCapacity(1);
+            
+            int length = Math.min(data.length - i, m_buffer.remaining());
+            m_buffer.put(data, i, length);
+            i += length;
+        }
+    }
+    
+    public void writeInts(int[] data) throws IOException {
+        
+        writeInt(data.length);
+        for(int value : data)
+            writeInt(value);
+    }
+    
+    public void writeBooleans(boolean[] data) throws IOException {
+        
+        writeInt(data.length);
+        for(boolean value : data)
+            writeBoolean(value);
+    }
+    
+    public void writeDoubles(double[] data) throws IOException {
+        
+        writeInt(data.length);
+        for(double value : data)
+            writeDouble(value);
+    }
+    
+    public void writeQueue(Collection<Integer> data) throws IOException {
+        
+        writeInt(data.size());
+        for(int value : data)
+            writeInt(value);
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Bulk data">
+    
+    /**
+     * Writes an int array where every element only holds a byte (like the
+     * system ram does).
+     */
+    public void writeBulkBytes(int[] data) throws IOException {
+        
+        writeBulk(data.length, (offset, dst) -> {
+            
+            for(int i = 0; i < dst.length; i++)
+                dst[i] = (byte)data[offset + i];
+        });
+    }
+    
+    public void writeBulkInts(int[] data) throws IOException {
+        
+        writeBulk(data.length * 4, (offset, dst) -> {
+            
+            ByteBuffer.wrap(dst).asIntBuffer().put(data, offset >>> 2, dst.length >>> 2);
+        });
+    }
+    
+    /**
+     * Writes equally sized pages where every element only holds a byte.
+     */
+    public void writeBulkPages(int[][] pages, int pageSize) throws IOException {
+        
+        writeBulk(pages.length * pageSize, (offset, dst) -> {
+            
+            for(int i = 0; i < dst.length; i++)
+                dst[i] = (byte)pages[(offset + i) / pageSize][(offset + i) % pageSize];
+        });
+    }
+    
+    public void writeBulk(byte[] data) throws IOException {
+        
+        writeBulk(data.length, (offset, dst) -> System.arraycopy(data, offset, dst, 0, dst.length));
+    }
+    
+    private interface ChunkSource {
+        
+        void fill(int offset, byte[] dst);
+    }
+    
+    private void writeBulk(int length, ChunkSource source) throws IOException {
+        
+        int numChunks = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        
+        // Compress all chunks in parallel. A chunk that only contains zeros
+        // is stored as an empty chunk.
+        byte[][] chunks = new byte[numChunks][];
+        IntStream.range(0, numChunks).parallel().forEach(i -> {
+            
+            byte[] raw = new byte[Math.min(CHUNK_SIZE, length - i * CHUNK_SIZE)];
+            source.fill(i * CHUNK_SIZE, raw);
+            
+            chunks[i] = compress(raw);
+        });
+        
+        writeInt(length);
+        flushBuffer();
+        
+        ByteBuffer[] buffers = new ByteBuffer[numChunks * 2];
+        for(int i = 0; i < numChunks; i++) {
+            
+            buffers[i * 2] = ByteBuffer.allocate(4);
+            buffers[i * 2].putInt(chunks[i].length).flip();
+            buffers[i * 2 + 1] = ByteBuffer.wrap(chunks[i]);
+        }
+        
+        long remaining = 0l;
+        for(ByteBuffer buf : buffers)
+            remaining += buf.remaining();
+        
+        while(remaining > 0l)
+            remaining -= m_channel.write(buffers);
+    }
+    
+    private static byte[] compress(byte[] data) {
+        
+        boolean isZero = true;
+        for(int i = 0; i < data.length && isZero; i++)
+            isZero = data[i] == 0;
+        
+        if(isZero)
+            return new byte[0];
+        
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            
+            deflater.setInput(data);
+            deflater.finish();
+            
+            byte[] result = new byte[data.length + (data.length >>> 8) + 64];
+            int length = 0;
+            while(!deflater.finished()) {
+                
+                if(length == result.length)
+                    result = Arrays.copyOf(result, result.length * 2);
+                
+                length += deflater.deflate(result, length, result.length - length);
+            }
+            
+            return Arrays.copyOf(result, length);
+        }
+        finally {
+            
+            deflater.end();
+        }
+    }
+    
+    // </editor-fold>
+    
+    // <editor-fold defaultstate="collapsed" desc="Buffer handling">
+    
+    private void ensureCapacity(int size) throws IOException {
+        
+        if(m_buffer.remaining() < size)
+            flushBuffer();
+    }
+    
+    private void flushBuffer() throws IOException {
+        
+        m_buffer.flip();
+        while(m_buffer.hasRemaining())
+            m_channel.write(m_buffer);
+        
+        m_buffer.clear();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        
+        try {
+            
+            flushBuffer();
+        }
+        finally {
+            
+            m_channel.close();
+        }
+    }
+    
+    // </editor-fold>
+}
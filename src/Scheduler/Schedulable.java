@@ -23,4 +23,8 @@ public interface Schedulable {
     
     void setBaseFrequency(float baseFrequency);
     void updateClock(int cycles);
+    
+    // Returns the number of (fixed point) cycles until the device changes its
+    // state the next time on its own, e.g. by raising an interrupt
+    int getCyclesUntilNextEvent();
 }
@@ -53,6 +53,8 @@ public final class Scheduler {
     private int m_numDevices;
     private final Schedulable[] m_devices;
     private long m_cycleCounter;
+    private long m_skippedCycles;
+    private int m_epoch;
     
     /* ----------------------------------------------------- *
      * To calculate the cpus emulated clock speed in Hz      *
@@ -69,12 +71,22 @@ public final class Scheduler {
     private long m_cycleCounterSync;
     private long m_syncCycles;
     private long m_syncTime;
+    private boolean m_isSyncEnabled;
+    
+    /* ----------------------------------------------------- *
+     * Statistics of the synchronization                     *
+     * ----------------------------------------------------- */
+    private long m_syncPoints;
+    private long m_lateSyncPoints;
+    private long m_syncOvershoot;
+    private long m_maxSyncOvershoot;
     
     
     
     public Scheduler() {
         
         m_devices = new Schedulable[NUM_MAX_DEVICES];
+        m_isSyncEnabled = true;
     }
     
     
@@ -84,6 +96,8 @@ public final class Scheduler {
     public void reset() {
         
         m_cycleCounter = 0l;
+        m_skippedCycles = 0l;
+        m_epoch = 0;
         m_cycleCounterSync = m_syncCycles;
         m_cycleCounterStatistic = m_statisticCycles;
         
@@ -141,23 +155,73 @@ public final class Scheduler {
         if(Long.compareUnsigned(m_cycleCounter, m_cycleCounterSync) >= 0) {
             
             m_cycleCounterSync += m_syncCycles;
-            syncWithWallClock();
+            if(m_isSyncEnabled)
+                syncWithWallClock();
         }
         
         // Statistic
         if(Long.compareUnsigned(m_cycleCounter, m_cycleCounterStatistic) >= 0) {
             
             m_cycleCounterStatistic += m_statisticCycles;
+            m_epoch++;
             updateStatistics();
         }
     }
     
+    /**
+     * Returns the number of (fixed point) cycles that can pass until any of
+     * the devices changes its state. Idle loops of the cpu can be skipped up
+     * to this point, as they would only observe the very same state.
+     */
+    public int getCyclesUntilNextEvent() {
+        
+        long cycles = Math.min(m_cycleCounterSync - m_cycleCounter,
+                               m_cycleCounterStatistic - m_cycleCounter);
+        
+        for(int i = 0; i < m_numDevices; i++)
+            cycles = Math.min(cycles, m_devices[i].getCyclesUntilNextEvent());
+        
+        return (int)Math.max(cycles, 0l);
+    }
+    
+    /**
+     * Skips the given number of cycles at once, which are spent in an idle
+     * loop of the cpu.
+     */
+    public void skipIdleCycles(int cycles) {
+        
+        m_skippedCycles += cycles;
+        updateClock(cycles);
+    }
+    
+    /**
+     * Returns the emulated time in seconds that was skipped in idle loops.
+     */
+    public double getSkippedTime() {
+        
+        return m_skippedCycles / (m_baseFrequency * (double)TO_FIXED_POINT);
+    }
+    
     // </editor-fold>
     
     // <editor-fold defaultstate="collapsed" desc="Synchronization with wall clock time">
     
+    /**
+     * Lets the emulation run as fast as possible if the synchronization is
+     * disabled (used by benchmarks).
+     */
+    public void setSynchronizationEnabled(boolean isEnabled) {
+        
+        m_isSyncEnabled = isEnabled;
+        m_syncTime = System.nanoTime() + TIME_NEXT_SYNC_POINT_IN_NS;
+    }
+    
     private void syncWithWallClock() {
         
+        m_syncPoints++;
+        if(System.nanoTime() > m_syncTime)
+            m_lateSyncPoints++;
+        
         // TODO: Find a better synchronization method...
         long timeInMS = TimeUnit.NANOSECONDS.toMillis(m_syncTime - System.nanoTime()) - SLEEP_FUDGE_IN_MS;
         if(timeInMS > 0l) {
@@ -171,7 +235,38 @@ public final class Scheduler {
         }
         while(System.nanoTime() < m_syncTime) { }
         
-        m_syncTime = System.nanoTime() + TIME_NEXT_SYNC_POINT_IN_NS;
+        // The overshoot is the time by which the sync point was missed
+        long now = System.nanoTime();
+        long overshoot = now - m_syncTime;
+        m_syncOvershoot += overshoot;
+        m_maxSyncOvershoot = Math.max(m_maxSyncOvershoot, overshoot);
+        
+        m_syncTime = now + TIME_NEXT_SYNC_POINT_IN_NS;
+    }
+    
+    public long getSyncPoints() {
+        
+        return m_syncPoints;
+    }
+    
+    public long getLateSyncPoints() {
+        
+        return m_lateSyncPoints;
+    }
+    
+    /**
+     * Returns the sum of the times (in ns) by which the sync points were
+     * missed, either because the emulation was too slow or the host woke up
+     * the thread too late.
+     */
+    public long getSyncOvershoot() {
+        
+        return m_syncOvershoot;
+    }
+    
+    public long getMaxSyncOvershoot() {
+        
+        return m_maxSyncOvershoot;
     }
     
     // </editor-fold>
@@ -187,6 +282,15 @@ public final class Scheduler {
         m_statisticTime = System.nanoTime();
     }
     
+    /**
+     * Returns the number of emulated seconds since the last reset. Components
+     * can use it to age their caches independent of the host speed.
+     */
+    public int getEpoch() {
+        
+        return m_epoch;
+    }
+    
     public float getEffectiveMhz() {
         
         return m_effectiveMHz;
@@ -197,6 +301,14 @@ public final class Scheduler {
         return m_effectivePercentage;
     }
     
+    /**
+     * Returns the emulated time in seconds since the last reset.
+     */
+    public double getEmulatedTime() {
+        
+        return m_cycleCounter / (m_baseFrequency * (double)TO_FIXED_POINT);
+    }
+    
     // </editor-fold>
     // <editor-fold defaultstate="collapsed" desc="Fixed point calculation helper">
     
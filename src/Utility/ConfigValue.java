@@ -1,7 +1,9 @@
 package Utility;
 
+import java.util.ArrayList;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.prefs.PreferenceChangeListener;
 import java.util.prefs.Preferences;
 
 
@@ -10,6 +12,8 @@ public final class ConfigValue {
 
     private final Preferences m_prefNode;
     private final String m_defaultValue;
+    private final Function<String, Boolean> m_valueManipulator;
+    private final ArrayList<PreferenceChangeListener> m_listeners;
     
     
 
@@ -18,7 +22,10 @@ public final class ConfigValue {
                        Function<String, Boolean> valueManipulator) {
         
         m_prefNode = prefNode;
-        m_prefNode.addPreferenceChangeListener(pl -> {
+        m_valueManipulator = valueManipulator;
+        m_listeners = new ArrayList<>();
+        
+        addListener(pl -> {
             
             // Update value as soon as the configuration changes or set it
             // back to default if there was a problem while doing so.
@@ -33,7 +40,20 @@ public final class ConfigValue {
     
     public void addChangeListener(Consumer<String> listener) {
 
-        m_prefNode.addPreferenceChangeListener(pl -> listener.accept(pl.getNewValue()));
+        addListener(pl -> listener.accept(pl.getNewValue()));
+    }
+    
+    private void addListener(PreferenceChangeListener listener) {
+        
+        m_listeners.add(listener);
+        m_prefNode.addPreferenceChangeListener(listener);
+    }
+    
+    public void detach() {
+        
+        // Changes of the preferences (e.g. made by another system) are ignored from now on
+        m_listeners.forEach(l -> m_prefNode.removePreferenceChangeListener(l));
+        m_listeners.clear();
     }
 
     public void setValue(String value) {
@@ -46,4 +66,16 @@ public final class ConfigValue {
         // This informs all listeners about the current value
         setValue(m_prefNode.get("value", m_defaultValue));
     }
+    
+    public void applyValue(String value) {
+        
+        // Bypasses the preferences (and their listeners) completely
+        if(!m_valueManipulator.apply(value))
+            m_valueManipulator.apply(m_defaultValue);
+    }
+    
+    public String getDefaultValue() {
+        
+        return m_defaultValue;
+    }
 }
@@ -27,7 +27,6 @@ public final class ExtendedDouble {
         public int mid;
         public int high;
     }
-    private static final Float80 FP80 = new Float80();
     
     
     
@@ -68,7 +67,7 @@ public final class ExtendedDouble {
     
     
     
-    public static final Float80 toFloat80(double value) {
+    public static final Float80 toFloat80(double value, Float80 result) {
         
         long raw = Double.doubleToRawLongBits(value);
         long sgn = (raw & 0x8000000000000000l) >>> 48;
@@ -91,10 +90,10 @@ public final class ExtendedDouble {
         }
         
         // Return the 80 bit double extended value
-        FP80.low = (int)(man & 0xffffffffl);
-        FP80.mid = (int)((man >>> 32) & 0xffffffffl);
-        FP80.high = (int)((exp | sgn) & 0xffffl);
+        result.low = (int)(man & 0xffffffffl);
+        result.mid = (int)((man >>> 32) & 0xffffffffl);
+        result.high = (int)((exp | sgn) & 0xffffl);
         
-        return FP80;
+        return result;
     }
 }
@@ -48,18 +48,22 @@ public final class SwingDialogs {
                 return f.isDirectory() ||
                        fileName.endsWith(".bin") ||
                        fileName.endsWith(".ima") ||
-                       fileName.endsWith(".img");
+                       fileName.endsWith(".img") ||
+                       fileName.endsWith(".vhd") ||
+                       fileName.endsWith(".iso") ||
+                       fileName.endsWith(".jpcz");
             }
             
             @Override
             public String getDescription() {
                 
-                return "Raw binary images (*.bin, *.ima, *.img)";
+                return "Disk images (*.bin, *.ima, *.img, *.vhd, *.jpcz, *.iso)";
             }
         };
         
         JFileChooser fc = new JFileChooser();
         fc.setMultiSelectionEnabled(false);
+        fc.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
         fc.addChoosableFileFilter(filter);
         fc.setFileFilter(filter);
         fc.setCurrentDirectory(new File(".\\"));